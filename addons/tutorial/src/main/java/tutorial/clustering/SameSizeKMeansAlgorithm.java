@@ -96,14 +96,13 @@ public class SameSizeKMeansAlgorithm<V extends NumberVector> extends AbstractKMe
    * Run k-means with cluster size constraints.
    *
    * @param relation relation to use
+   * @param means initial means
    * @return result
    */
   @Override
-  public Clustering<MeanModel> run(Relation<V> relation) {
+  public Clustering<MeanModel> run(Relation<V> relation, double[][] means) {
     // Database objects to process
     final DBIDs ids = relation.getDBIDs();
-    // Choose initial means
-    double[][] means = initializer.chooseInitialMeans(relation, k, distance);
     // Setup cluster assignment store
     List<ModifiableDBIDs> clusters = new ArrayList<>();
     for(int i = 0; i < k; i++) {
@@ -0,0 +1,124 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.data.DoubleVector;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+
+/**
+ * Benchmark the Euclidean distance kernels.
+ * <p>
+ * Each invocation computes the distances of consecutive pairs of a block of
+ * vectors, large enough to not be trivially cached in registers.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+  /**
+   * Number of vectors in the block.
+   */
+  private static final int BLOCK = 1024;
+
+  /**
+   * Dimensionality.
+   */
+  @Param({ "2", "10", "100" })
+  public int dim;
+
+  /**
+   * Vectors.
+   */
+  private DoubleVector[] vecs;
+
+  /**
+   * Raw arrays, same data.
+   */
+  private double[][] raw;
+
+  /**
+   * Generate the data.
+   */
+  @Setup
+  public void setup() {
+    raw = SyntheticData.generate(BLOCK, dim);
+    vecs = new DoubleVector[BLOCK];
+    for(int i = 0; i < BLOCK; i++) {
+      vecs[i] = DoubleVector.wrap(raw[i]);
+    }
+  }
+
+  /**
+   * Euclidean distance of vectors.
+   *
+   * @return Sum of distances
+   */
+  @Benchmark
+  public double euclidean() {
+    final EuclideanDistance dist = EuclideanDistance.STATIC;
+    double sum = 0;
+    for(int i = 1; i < BLOCK; i++) {
+      sum += dist.distance(vecs[i - 1], vecs[i]);
+    }
+    return sum;
+  }
+
+  /**
+   * Squared Euclidean distance of vectors.
+   *
+   * @return Sum of distances
+   */
+  @Benchmark
+  public double squaredEuclidean() {
+    final SquaredEuclideanDistance dist = SquaredEuclideanDistance.STATIC;
+    double sum = 0;
+    for(int i = 1; i < BLOCK; i++) {
+      sum += dist.distance(vecs[i - 1], vecs[i]);
+    }
+    return sum;
+  }
+
+  /**
+   * Squared Euclidean distance of raw arrays.
+   *
+   * @return Sum of distances
+   */
+  @Benchmark
+  public double squaredEuclideanArray() {
+    final SquaredEuclideanDistance dist = SquaredEuclideanDistance.STATIC;
+    double sum = 0;
+    for(int i = 1; i < BLOCK; i++) {
+      sum += dist.distance(raw[i - 1], raw[i]);
+    }
+    return sum;
+  }
+}
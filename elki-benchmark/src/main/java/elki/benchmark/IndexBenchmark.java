@@ -0,0 +1,185 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.data.NumberVector;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.query.QueryBuilder;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.index.Index;
+import elki.index.IndexFactory;
+import elki.index.linearscan.BlockedEuclideanScan;
+import elki.index.tree.metrical.covertree.CoverTree;
+import elki.index.tree.spatial.kd.SmallMemoryKDTree;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import elki.index.tree.spatial.rstarvariants.strategies.bulk.SortTileRecursiveBulkSplit;
+import elki.persistent.AbstractPageFileFactory;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Benchmark construction and kNN queries of index structures.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexBenchmark {
+  /**
+   * Number of query points.
+   */
+  private static final int QUERIES = 256;
+
+  /**
+   * Index structures to benchmark.
+   */
+  public enum Structure {
+    /** k-d-tree */
+    KDTREE,
+    /** Cover tree */
+    COVERTREE,
+    /** R*-tree, bulk loaded with sort-tile-recursive */
+    RSTARTREE,
+    /** Blocked linear scan */
+    BLOCKEDSCAN,
+  }
+
+  /**
+   * Index structure.
+   */
+  @Param
+  public Structure index;
+
+  /**
+   * Dimensionality.
+   */
+  @Param({ "2", "10" })
+  public int dim;
+
+  /**
+   * Data set size.
+   */
+  @Param({ "10000", "100000" })
+  public int size;
+
+  /**
+   * Number of neighbors.
+   */
+  @Param({ "10" })
+  public int k;
+
+  /**
+   * Index factory.
+   */
+  private IndexFactory<NumberVector> factory;
+
+  /**
+   * Relation, without index.
+   */
+  private Relation<NumberVector> relation;
+
+  /**
+   * Query points.
+   */
+  private ArrayDBIDs queries;
+
+  /**
+   * Searcher using the index.
+   */
+  private KNNSearcher<DBIDRef> knnq;
+
+  /**
+   * Load the data set, and build the index once for querying.
+   */
+  @Setup
+  public void setup() {
+    double[][] data = SyntheticData.generate(size, dim);
+    factory = makeFactory(index);
+    relation = SyntheticData.vectors(SyntheticData.database(data, null));
+    Relation<NumberVector> indexed = SyntheticData.vectors(SyntheticData.database(data, Collections.singletonList(factory)));
+    queries = DBIDUtil.ensureArray(DBIDUtil.randomSample(indexed.getDBIDs(), QUERIES, SyntheticData.SEED));
+    knnq = new QueryBuilder<>(indexed, EuclideanDistance.STATIC).kNNByDBID(k);
+  }
+
+  /**
+   * Make the index factory.
+   *
+   * @param index Index structure
+   * @return Factory
+   */
+  private static IndexFactory<NumberVector> makeFactory(Structure index) {
+    switch(index){
+    case KDTREE:
+      return new SmallMemoryKDTree.Factory<>();
+    case COVERTREE:
+      return new CoverTree.Factory<>(EuclideanDistance.STATIC, 1.3, 10);
+    case RSTARTREE:
+      return new ELKIBuilder<RStarTreeFactory<NumberVector>>(RStarTreeFactory.class) //
+          .with(AbstractPageFileFactory.Par.PAGE_SIZE_ID, 4096) //
+          .with(RStarTreeFactory.Par.BULK_SPLIT_ID, SortTileRecursiveBulkSplit.class) //
+          .build();
+    case BLOCKEDSCAN:
+      return new BlockedEuclideanScan.Factory<>();
+    default:
+      throw new IllegalStateException(index.toString());
+    }
+  }
+
+  /**
+   * Build the index.
+   *
+   * @return Index
+   */
+  @Benchmark
+  public Index build() {
+    Index idx = factory.instantiate(relation);
+    idx.initialize();
+    return idx;
+  }
+
+  /**
+   * Query the index.
+   *
+   * @return Sum of kNN distances
+   */
+  @Benchmark
+  public double query() {
+    double sum = 0;
+    for(DBIDIter it = queries.iter(); it.valid(); it.advance()) {
+      sum += knnq.getKNN(it, k).getKNNDistance();
+    }
+    return sum;
+  }
+}
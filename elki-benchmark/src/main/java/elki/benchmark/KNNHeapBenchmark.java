@@ -0,0 +1,110 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.KNNHeap;
+import elki.database.ids.KNNList;
+
+/**
+ * Benchmark insertion into the kNN heap, as done by every kNN searcher.
+ * <p>
+ * Candidates arrive in random order, so most are rejected by the heap bound
+ * once the heap has filled.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KNNHeapBenchmark {
+  /**
+   * Number of neighbors.
+   */
+  @Param({ "1", "10", "100" })
+  public int k;
+
+  /**
+   * Number of candidates.
+   */
+  @Param({ "10000" })
+  public int size;
+
+  /**
+   * Candidate ids.
+   */
+  private DBIDRange ids;
+
+  /**
+   * Candidate distances.
+   */
+  private double[] dists;
+
+  /**
+   * Generate the candidates.
+   */
+  @Setup
+  public void setup() {
+    ids = DBIDUtil.generateStaticDBIDRange(size);
+    dists = new double[size];
+    Random rnd = new Random(SyntheticData.SEED);
+    for(int i = 0; i < size; i++) {
+      dists[i] = rnd.nextDouble();
+    }
+  }
+
+  /**
+   * Release the ids.
+   */
+  @TearDown
+  public void teardown() {
+    DBIDUtil.deallocateDBIDRange(ids);
+  }
+
+  /**
+   * Insert all candidates into a new heap.
+   *
+   * @return Resulting kNN list
+   */
+  @Benchmark
+  public KNNList insert() {
+    KNNHeap heap = DBIDUtil.newHeap(k);
+    double kdist = Double.POSITIVE_INFINITY;
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final double d = dists[it.getOffset()];
+      if(d <= kdist) {
+        kdist = heap.insert(d, it);
+      }
+    }
+    return heap.toKNNList();
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.data.NumberVector;
+import elki.database.datastore.DataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.database.query.knn.BatchKNNSearcher;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+
+/**
+ * Benchmark the linear scan kNN searchers, for a sample of query points.
+ * <p>
+ * The batch variant uses the {@link BatchKNNSearcher} interface, which the
+ * linear scans implement with parallel, blocked processing.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinearScanBenchmark {
+  /**
+   * Number of query points.
+   */
+  private static final int QUERIES = 256;
+
+  /**
+   * Dimensionality.
+   */
+  @Param({ "2", "10", "100" })
+  public int dim;
+
+  /**
+   * Data set size.
+   */
+  @Param({ "10000", "100000" })
+  public int size;
+
+  /**
+   * Number of neighbors.
+   */
+  @Param({ "10" })
+  public int k;
+
+  /**
+   * Query points.
+   */
+  private ArrayDBIDs queries;
+
+  /**
+   * Euclidean searcher.
+   */
+  private KNNSearcher<DBIDRef> euclidean;
+
+  /**
+   * Squared Euclidean searcher.
+   */
+  private KNNSearcher<DBIDRef> squared;
+
+  /**
+   * Load the data set.
+   */
+  @Setup
+  public void setup() {
+    Relation<NumberVector> relation = SyntheticData.vectors(SyntheticData.database(SyntheticData.generate(size, dim), null));
+    queries = DBIDUtil.ensureArray(DBIDUtil.randomSample(relation.getDBIDs(), QUERIES, SyntheticData.SEED));
+    euclidean = new QueryBuilder<>(relation, EuclideanDistance.STATIC).linearOnly().kNNByDBID(k);
+    squared = new QueryBuilder<>(relation, SquaredEuclideanDistance.STATIC).linearOnly().kNNByDBID(k);
+  }
+
+  /**
+   * Serial Euclidean kNN queries.
+   *
+   * @return Sum of kNN distances
+   */
+  @Benchmark
+  public double euclidean() {
+    return serial(euclidean);
+  }
+
+  /**
+   * Serial squared Euclidean kNN queries.
+   *
+   * @return Sum of kNN distances
+   */
+  @Benchmark
+  public double squaredEuclidean() {
+    return serial(squared);
+  }
+
+  /**
+   * Batch Euclidean kNN queries.
+   *
+   * @return kNN lists
+   */
+  @Benchmark
+  public DataStore<KNNList> euclideanBatch() {
+    return BatchKNNSearcher.getKNNs(euclidean, queries, k);
+  }
+
+  /**
+   * Run the queries one at a time.
+   *
+   * @param knnq kNN searcher
+   * @return Sum of kNN distances
+   */
+  private double serial(KNNSearcher<DBIDRef> knnq) {
+    double sum = 0;
+    for(DBIDIter it = queries.iter(); it.valid(); it.advance()) {
+      sum += knnq.getKNN(it, k).getKNNDistance();
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.parallel.ParallelCore;
+import elki.parallel.ParallelExecutor;
+
+/**
+ * Benchmark the scaling of {@link ParallelExecutor} with the number of
+ * threads.
+ * <p>
+ * The workload is a k-means style assignment of each point to the nearest of
+ * a fixed set of centers, which is typical for the parallel algorithms.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelExecutorBenchmark {
+  /**
+   * Number of centers.
+   */
+  private static final int CENTERS = 20;
+
+  /**
+   * Number of threads.
+   */
+  @Param({ "1", "2", "4", "8" })
+  public int threads;
+
+  /**
+   * Dimensionality.
+   */
+  @Param({ "10" })
+  public int dim;
+
+  /**
+   * Data set size.
+   */
+  @Param({ "100000" })
+  public int size;
+
+  /**
+   * Block size.
+   */
+  @Param({ "256" })
+  public int blocksize;
+
+  /**
+   * Parallel core.
+   */
+  private ParallelCore core;
+
+  /**
+   * Data relation.
+   */
+  private Relation<NumberVector> relation;
+
+  /**
+   * Object ids.
+   */
+  private ArrayDBIDs ids;
+
+  /**
+   * Centers.
+   */
+  private DoubleVector[] centers;
+
+  /**
+   * Load the data set and start the worker threads.
+   */
+  @Setup
+  public void setup() {
+    relation = SyntheticData.vectors(SyntheticData.database(SyntheticData.generate(size, dim), null));
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    double[][] c = SyntheticData.generate(CENTERS, dim);
+    centers = new DoubleVector[CENTERS];
+    for(int i = 0; i < CENTERS; i++) {
+      centers[i] = DoubleVector.wrap(c[i]);
+    }
+    core = new ParallelCore(threads);
+    // Keep the pool alive across invocations.
+    core.connect();
+  }
+
+  /**
+   * Stop the worker threads.
+   */
+  @TearDown
+  public void teardown() {
+    core.disconnect();
+    core.shutdown();
+  }
+
+  /**
+   * Assign all points to their nearest center.
+   *
+   * @return Assignment
+   */
+  @Benchmark
+  public int[] assign() {
+    final int[] assignment = new int[ids.size()];
+    final SquaredEuclideanDistance dist = SquaredEuclideanDistance.STATIC;
+    ParallelExecutor.runBlocks(core, ids, blocksize, (ids, start, end) -> {
+      for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+        final NumberVector v = relation.get(it);
+        int best = 0;
+        double bestd = dist.distance(v, centers[0]);
+        for(int c = 1; c < centers.length; c++) {
+          final double d = dist.distance(v, centers[c]);
+          if(d < bestd) {
+            bestd = d;
+            best = c;
+          }
+        }
+        assignment[it.getOffset()] = best;
+      }
+    });
+    return assignment;
+  }
+}
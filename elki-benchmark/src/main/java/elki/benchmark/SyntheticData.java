@@ -0,0 +1,115 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import elki.data.NumberVector;
+import elki.data.synthetic.bymodel.GeneratorSingleCluster;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.index.IndexFactory;
+import elki.math.statistics.distribution.NormalDistribution;
+
+/**
+ * Synthetic data sets for benchmarking, produced with the cluster generators
+ * of the data generator.
+ * <p>
+ * The data consists of Gaussian clusters with random centers in the unit cube,
+ * such that index structures have some structure to exploit. All data is
+ * generated from a fixed seed, to make benchmark runs comparable.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public final class SyntheticData {
+  /**
+   * Number of clusters to generate.
+   */
+  private static final int CLUSTERS = 10;
+
+  /**
+   * Standard deviation of each cluster.
+   */
+  private static final double STDDEV = 0.05;
+
+  /**
+   * Fixed random seed.
+   */
+  public static final long SEED = 0L;
+
+  /**
+   * Private constructor. Static methods only.
+   */
+  private SyntheticData() {
+    // Do not use.
+  }
+
+  /**
+   * Generate a data set.
+   *
+   * @param size Number of points
+   * @param dim Dimensionality
+   * @return Data points
+   */
+  public static double[][] generate(int size, int dim) {
+    Random rnd = new Random(SEED);
+    List<double[]> points = new ArrayList<>(size);
+    for(int c = 0; c < CLUSTERS; c++) {
+      final int csize = (size * (c + 1)) / CLUSTERS - (size * c) / CLUSTERS;
+      GeneratorSingleCluster gen = new GeneratorSingleCluster("cluster" + c, csize, 1., rnd);
+      for(int d = 0; d < dim; d++) {
+        gen.addGenerator(new NormalDistribution(rnd.nextDouble(), STDDEV), new Random(rnd.nextLong()));
+      }
+      points.addAll(gen.generate(csize));
+    }
+    return points.toArray(new double[points.size()][]);
+  }
+
+  /**
+   * Load a data set into a new database.
+   *
+   * @param data Data points
+   * @param indexes Index factories to use
+   * @return Initialized database
+   */
+  public static Database database(double[][] data, Collection<? extends IndexFactory<?>> indexes) {
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), indexes);
+    db.initialize();
+    return db;
+  }
+
+  /**
+   * Get the vector relation of a database.
+   *
+   * @param db Database
+   * @return Vector relation
+   */
+  public static Relation<NumberVector> vectors(Database db) {
+    return db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+}
@@ -25,6 +25,8 @@ import java.util.List;
 
 import elki.Algorithm;
 import elki.clustering.ClusteringAlgorithm;
+import elki.clustering.dbscan.predicates.EpsilonNeighborPredicate;
+import elki.clustering.dbscan.predicates.MinPtsCorePredicate;
 import elki.data.Cluster;
 import elki.data.Clustering;
 import elki.data.model.ClusterModel;
@@ -51,6 +53,7 @@ import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.constraints.CommonConstraints;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.IntParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
@@ -70,6 +73,11 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * Erich Schubert, Jörg Sander, Martin Ester, Hans-Peter Kriegel, Xiaowei Xu<br>
  * DBSCAN Revisited, Revisited: Why and How You Should (Still) Use DBSCAN<br>
  * ACM Trans. Database Systems (TODS)
+ * <p>
+ * In parallel mode, the range queries are run for blocks of points
+ * concurrently, and clusters are merged with union-find, see
+ * {@link GeneralizedDBSCAN.ParallelInstance}. The clusters are the same, but
+ * the objects within each cluster are in database order.
  *
  * @author Arthur Zimek
  * @author Erich Schubert
@@ -110,6 +118,11 @@ public class DBSCAN<O> implements ClusteringAlgorithm<Clustering<Model>> {
    */
   protected int minpts;
 
+  /**
+   * Run the range queries in parallel.
+   */
+  protected boolean parallel;
+
   /**
    * Constructor with parameters.
    *
@@ -118,10 +131,23 @@ public class DBSCAN<O> implements ClusteringAlgorithm<Clustering<Model>> {
    * @param minpts Minpts parameter
    */
   public DBSCAN(Distance<? super O> distance, double epsilon, int minpts) {
+    this(distance, epsilon, minpts, false);
+  }
+
+  /**
+   * Constructor with parameters.
+   *
+   * @param distance Distance function
+   * @param epsilon Epsilon value
+   * @param minpts Minpts parameter
+   * @param parallel Run the range queries in parallel
+   */
+  public DBSCAN(Distance<? super O> distance, double epsilon, int minpts, boolean parallel) {
     super();
     this.distance = distance;
     this.epsilon = epsilon;
     this.minpts = minpts;
+    this.parallel = parallel;
   }
 
   @Override
@@ -141,17 +167,14 @@ public class DBSCAN<O> implements ClusteringAlgorithm<Clustering<Model>> {
       return result;
     }
 
+    if(parallel) {
+      return runParallel(relation);
+    }
+
     Instance dbscan = new Instance();
     dbscan.run(relation, new QueryBuilder<>(relation, distance).rangeByDBID(epsilon));
 
-    double averagen = dbscan.ncounter / (double) relation.size();
-    LOG.statistics(new DoubleStatistic(DBSCAN.class.getName() + ".average-neighbors", averagen));
-    if(averagen < 1 + 0.1 * (minpts - 1)) {
-      LOG.warning("There are very few neighbors found. Epsilon may be too small.");
-    }
-    if(averagen > 100 * minpts) {
-      LOG.warning("There are very many neighbors found. Epsilon may be too large.");
-    }
+    checkNeighbors(dbscan.ncounter / (double) relation.size());
 
     Clustering<Model> result = new Clustering<>();
     Metadata.of(result).setLongName("DBSCAN Clustering");
@@ -162,6 +185,50 @@ public class DBSCAN<O> implements ClusteringAlgorithm<Clustering<Model>> {
     return result;
   }
 
+  /**
+   * Run DBSCAN with parallel range queries.
+   *
+   * @param relation Data relation
+   * @return Clustering result
+   */
+  protected Clustering<Model> runParallel(Relation<O> relation) {
+    // Range searchers are not thread-safe, so every block gets its own.
+    GeneralizedDBSCAN.ParallelInstance<DoubleDBIDList> dbscan = new GeneralizedDBSCAN.ParallelInstance<>( //
+        new EpsilonNeighborPredicate.Instance(epsilon, () -> new QueryBuilder<>(relation, distance).rangeByDBID(epsilon), relation.getDBIDs()), //
+        new MinPtsCorePredicate.Instance(minpts), false);
+    Clustering<Model> gdbscan = dbscan.run();
+    checkNeighbors(dbscan.getNeighborCount() / (double) relation.size());
+
+    // Noise comes last in DBSCAN.
+    Clustering<Model> result = new Clustering<>();
+    Metadata.of(result).setLongName("DBSCAN Clustering");
+    Cluster<Model> noise = null;
+    for(Cluster<Model> clu : gdbscan.getToplevelClusters()) {
+      if(clu.isNoise()) {
+        noise = clu;
+        continue;
+      }
+      result.addToplevelCluster(clu);
+    }
+    result.addToplevelCluster(noise);
+    return result;
+  }
+
+  /**
+   * Log the average number of neighbors, and warn about bad parameters.
+   *
+   * @param averagen Average number of neighbors
+   */
+  private void checkNeighbors(double averagen) {
+    LOG.statistics(new DoubleStatistic(DBSCAN.class.getName() + ".average-neighbors", averagen));
+    if(averagen < 1 + 0.1 * (minpts - 1)) {
+      LOG.warning("There are very few neighbors found. Epsilon may be too small.");
+    }
+    if(averagen > 100 * minpts) {
+      LOG.warning("There are very many neighbors found. Epsilon may be too large.");
+    }
+  }
+
   /**
    * Instance for a single data set.
    *
@@ -317,6 +384,11 @@ public class DBSCAN<O> implements ClusteringAlgorithm<Clustering<Model>> {
      */
     public static final OptionID MINPTS_ID = new OptionID("dbscan.minpts", "Threshold for minimum number of points in the epsilon-neighborhood of a point. The suggested value is '2 * dim - 1'.");
 
+    /**
+     * Flag to run the range queries in parallel.
+     */
+    public static final OptionID PARALLEL_ID = new OptionID("dbscan.parallel", "Run the range queries in parallel, and merge clusters with union-find. Keeps the neighborhoods of core points in memory.");
+
     /**
      * Holds the epsilon radius threshold.
      */
@@ -332,6 +404,11 @@ public class DBSCAN<O> implements ClusteringAlgorithm<Clustering<Model>> {
      */
     protected Distance<? super O> distance;
 
+    /**
+     * Run the range queries in parallel.
+     */
+    protected boolean parallel;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
@@ -344,11 +421,12 @@ public class DBSCAN<O> implements ClusteringAlgorithm<Clustering<Model>> {
           .grab(config, x -> minpts = x) && minpts <= 2) {
         LOG.warning("DBSCAN with minPts <= 2 is equivalent to single-link clustering at a single height. Consider using larger values of minPts.");
       }
+      new Flag(PARALLEL_ID).grab(config, x -> parallel = x);
     }
 
     @Override
     public DBSCAN<O> make() {
-      return new DBSCAN<>(distance, epsilon, minpts);
+      return new DBSCAN<>(distance, epsilon, minpts, parallel);
     }
   }
 }
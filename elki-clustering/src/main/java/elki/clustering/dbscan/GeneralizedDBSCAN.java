@@ -20,6 +20,8 @@
  */
 package elki.clustering.dbscan;
 
+import java.util.Arrays;
+
 import elki.clustering.ClusteringAlgorithm;
 import elki.clustering.dbscan.predicates.CorePredicate;
 import elki.clustering.dbscan.predicates.EpsilonNeighborPredicate;
@@ -36,16 +38,13 @@ import elki.database.Database;
 import elki.database.datastore.DataStoreFactory;
 import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableIntegerDataStore;
-import elki.database.ids.ArrayModifiableDBIDs;
-import elki.database.ids.DBIDIter;
-import elki.database.ids.DBIDRef;
-import elki.database.ids.DBIDUtil;
-import elki.database.ids.DBIDVar;
-import elki.database.ids.DBIDs;
+import elki.database.ids.*;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.logging.progress.IndefiniteProgress;
+import elki.parallel.ParallelExecutor;
 import elki.result.Metadata;
+import elki.utilities.datastructures.unionfind.WeightedQuickUnionInteger;
 import elki.utilities.documentation.Reference;
 import elki.utilities.exceptions.AbortException;
 import elki.utilities.optionhandling.OptionID;
@@ -65,6 +64,10 @@ import it.unimi.dsi.fastutil.ints.IntArrayList;
  * Density-Based Clustering in Spatial Databases:
  * The Algorithm GDBSCAN and Its Applications<br>
  * Data Mining and Knowledge Discovery, 1998.
+ * <p>
+ * In parallel mode, the neighbor and core predicates are evaluated for blocks
+ * of points concurrently, and the clusters are then merged with a union-find
+ * data structure, see {@link ParallelInstance}.
  *
  * @author Erich Schubert
  * @author Arthur Zimek
@@ -73,6 +76,7 @@ import it.unimi.dsi.fastutil.ints.IntArrayList;
  * @opt nodefillcolor LemonChiffon
  *
  * @has - - - Instance
+ * @has - - - ParallelInstance
  * @composed - - - CorePredicate
  * @composed - - - NeighborPredicate
  */
@@ -102,6 +106,11 @@ public class GeneralizedDBSCAN implements ClusteringAlgorithm<Clustering<Model>>
    */
   protected boolean coremodel = false;
 
+  /**
+   * Evaluate the predicates in parallel.
+   */
+  protected boolean parallel = false;
+
   /**
    * Constructor for parameterized algorithm.
    *
@@ -110,10 +119,23 @@ public class GeneralizedDBSCAN implements ClusteringAlgorithm<Clustering<Model>>
    * @param coremodel Keep track of core points.
    */
   public GeneralizedDBSCAN(NeighborPredicate<?> npred, CorePredicate<?> corepred, boolean coremodel) {
+    this(npred, corepred, coremodel, false);
+  }
+
+  /**
+   * Constructor for parameterized algorithm.
+   *
+   * @param npred Neighbor predicate.
+   * @param corepred Core point predicate.
+   * @param coremodel Keep track of core points.
+   * @param parallel Evaluate the predicates in parallel.
+   */
+  public GeneralizedDBSCAN(NeighborPredicate<?> npred, CorePredicate<?> corepred, boolean coremodel, boolean parallel) {
     super();
     this.npred = npred;
     this.corepred = corepred;
     this.coremodel = coremodel;
+    this.parallel = parallel;
     // Ignore the generic, we do a run-time test below:
     @SuppressWarnings("unchecked")
     CorePredicate<Object> cp = (CorePredicate<Object>) corepred;
@@ -130,7 +152,8 @@ public class GeneralizedDBSCAN implements ClusteringAlgorithm<Clustering<Model>>
     if(!cp.acceptsType(npred.getOutputType())) {
       throw new AbortException("Core predicate and neighbor predicate are not compatible.");
     }
-    return new Instance<>(npred.instantiate(database), cp.instantiate(database), coremodel).run();
+    return parallel ? new ParallelInstance<>(npred.instantiate(database), cp.instantiate(database), coremodel).run() //
+        : new Instance<>(npred.instantiate(database), cp.instantiate(database), coremodel).run();
   }
 
   @Override
@@ -323,6 +346,212 @@ public class GeneralizedDBSCAN implements ClusteringAlgorithm<Clustering<Model>>
     }
   }
 
+  /**
+   * Parallel instance for a particular data set.
+   * <p>
+   * The neighbor and core predicates - usually range queries, and the
+   * majority of the run time - are evaluated for blocks of points
+   * concurrently. The neighborhoods of core points are kept (as offsets), and
+   * connected core points are then merged with a union-find data structure.
+   * Border points are assigned to the first cluster that would have reached
+   * them in the serial algorithm, i.e., the cluster whose first core point
+   * comes first. For symmetric neighbor predicates (such as all predicates
+   * included with ELKI), the result is hence the same as with
+   * {@link Instance}.
+   * <p>
+   * The neighbor predicate is instantiated only once, and every block uses a
+   * {@link NeighborPredicate.Instance#concurrentInstance()} of it, which shares
+   * the preprocessed data (and indexes) but not the searchers, as these are
+   * not thread-safe. Predicates that do not support concurrent use are
+   * processed serially. Core predicates are shared, and must not have state.
+   *
+   * @author Erich Schubert
+   *
+   * @composed - - - CorePredicate.Instance
+   * @composed - - - NeighborPredicate.Instance
+   */
+  public static class ParallelInstance<T> {
+    /**
+     * Minimum number of objects per block.
+     */
+    private static final int MIN_BLOCKSIZE = 64;
+
+    /**
+     * Maximum number of blocks.
+     */
+    private static final int MAX_BLOCKS = 1024;
+
+    /**
+     * The neighborhood predicate
+     */
+    protected final NeighborPredicate.Instance<T> npred;
+
+    /**
+     * The core object property
+     */
+    protected final CorePredicate.Instance<? super T> corepred;
+
+    /**
+     * Track which objects are "core" objects.
+     */
+    protected boolean coremodel = false;
+
+    /**
+     * Total number of neighbors found.
+     */
+    protected long neighbors;
+
+    /**
+     * Full Constructor
+     *
+     * @param npred Neighborhood predicate
+     * @param corepred Core object predicate
+     * @param coremodel Keep track of core points.
+     */
+    public ParallelInstance(NeighborPredicate.Instance<T> npred, CorePredicate.Instance<? super T> corepred, boolean coremodel) {
+      super();
+      this.npred = npred;
+      this.corepred = corepred;
+      this.coremodel = coremodel;
+    }
+
+    /**
+     * Run the parallel GDBSCAN algorithm.
+     *
+     * @return Clustering result
+     */
+    public Clustering<Model> run() {
+      if(npred.concurrentInstance() == null) {
+        LOG.warning("The neighbor predicate does not support concurrent use, running serially.");
+        return new Instance<>(npred, corepred, coremodel).run();
+      }
+      final ArrayDBIDs ids = DBIDUtil.ensureArray(npred.getIDs());
+      final int size = ids.size();
+      // Map neighbors to offsets.
+      final DBIDRange range = ids instanceof DBIDRange ? (DBIDRange) ids : null;
+      final WritableIntegerDataStore offsets = range != null ? null : DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
+      if(offsets != null) {
+        for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+          offsets.putInt(it, it.getOffset());
+        }
+      }
+
+      // Evaluate the predicates in parallel, keeping the core neighborhoods.
+      final FiniteProgress progress = LOG.isVerbose() ? new FiniteProgress("Generalized DBSCAN neighborhoods", size, LOG) : null;
+      final int[][] coreneighbors = new int[size][];
+      final int blocksize = Math.max(MIN_BLOCKSIZE, (size + MAX_BLOCKS - 1) / MAX_BLOCKS);
+      final long[] counts = new long[(size + blocksize - 1) / blocksize];
+      ParallelExecutor.runBlocks(ids, blocksize, (ids2, start, end) -> {
+        // Searchers are not thread-safe, the preprocessed data is shared:
+        final NeighborPredicate.Instance<T> bnpred = npred.concurrentInstance();
+        long count = 0;
+        int[] buf = new int[16];
+        for(DBIDArrayIter it = ids2.iter().seek(start); it.getOffset() < end; it.advance()) {
+          final T neighbors = bnpred.getNeighbors(it);
+          final boolean core = corepred.isCorePoint(it, neighbors);
+          int n = 0;
+          for(DBIDIter nit = bnpred.iterDBIDs(neighbors); nit.valid(); nit.advance(), count++) {
+            if(!core) {
+              continue;
+            }
+            final int off = range != null ? range.getOffset(nit) : offsets.intValue(nit);
+            if(off < 0 || off >= size) {
+              continue; // Not part of the clustering.
+            }
+            buf = n == buf.length ? Arrays.copyOf(buf, n << 1) : buf;
+            buf[n++] = off;
+          }
+          if(core) {
+            coreneighbors[it.getOffset()] = Arrays.copyOf(buf, n);
+          }
+          LOG.incrementProcessed(progress);
+        }
+        counts[start / blocksize] = count;
+      });
+      LOG.ensureCompleted(progress);
+      if(offsets != null) {
+        offsets.destroy();
+      }
+      neighbors = 0;
+      for(long c : counts) {
+        neighbors += c;
+      }
+
+      // Merge connected core points.
+      WeightedQuickUnionInteger uf = new WeightedQuickUnionInteger();
+      for(int i = 0; i < size; i++) {
+        uf.nextIndex(1);
+      }
+      for(int i = 0; i < size; i++) {
+        if(coreneighbors[i] != null) {
+          for(int j : coreneighbors[i]) {
+            if(coreneighbors[j] != null) {
+              uf.union(i, j);
+            }
+          }
+        }
+      }
+      // Number clusters in the order of their first core point, as in the
+      // serial algorithm; non-core points are noise unless reached.
+      int[] clusterid = new int[size], rootid = new int[size];
+      int numclusters = Instance.NOISE + 1;
+      for(int i = 0; i < size; i++) {
+        if(coreneighbors[i] != null) {
+          final int root = uf.find(i);
+          clusterid[i] = rootid[root] = rootid[root] != 0 ? rootid[root] : numclusters++;
+        }
+      }
+      // Border points go to the first cluster that reaches them.
+      for(int i = 0; i < size; i++) {
+        if(coreneighbors[i] != null) {
+          final int cid = clusterid[i];
+          for(int j : coreneighbors[i]) {
+            if(coreneighbors[j] == null && (clusterid[j] == 0 || cid < -clusterid[j])) {
+              clusterid[j] = -cid;
+            }
+          }
+        }
+      }
+
+      // Transform cluster ID mapping into a clustering result:
+      ArrayModifiableDBIDs[] clusterlists = new ArrayModifiableDBIDs[numclusters];
+      ArrayModifiableDBIDs[] corelists = coremodel ? new ArrayModifiableDBIDs[numclusters] : null;
+      for(int i = Instance.NOISE; i < numclusters; i++) {
+        clusterlists[i] = DBIDUtil.newArray();
+        if(corelists != null) {
+          corelists[i] = DBIDUtil.newArray();
+        }
+      }
+      for(DBIDArrayIter id = ids.iter(); id.valid(); id.advance()) {
+        // Negative values are non-core points, zero is noise:
+        final int cid = clusterid[id.getOffset()];
+        final int cluster = cid < 0 ? -cid : cid > 0 ? cid : Instance.NOISE;
+        clusterlists[cluster].add(id);
+        if(corelists != null && cid > Instance.NOISE) {
+          corelists[cluster].add(id);
+        }
+      }
+
+      Clustering<Model> result = new Clustering<>();
+      Metadata.of(result).setLongName("Generalized DBSCAN Clustering");
+      for(int cid = Instance.NOISE; cid < clusterlists.length; cid++) {
+        boolean isNoise = (cid == Instance.NOISE);
+        Model m = coremodel ? new CoreObjectsModel(corelists[cid]) : ClusterModel.CLUSTER;
+        result.addToplevelCluster(new Cluster<Model>(clusterlists[cid], isNoise, m));
+      }
+      return result;
+    }
+
+    /**
+     * Get the total number of neighbors found in the last run.
+     *
+     * @return Number of neighbors
+     */
+    public long getNeighborCount() {
+      return neighbors;
+    }
+  }
+
   /**
    * Parameterization class
    *
@@ -347,6 +576,12 @@ public class GeneralizedDBSCAN implements ClusteringAlgorithm<Clustering<Model>>
     public static final OptionID COREMODEL_ID = new OptionID("gdbscan.core-model", //
         "Use a model that keeps track of core points. Needs more memory.");
 
+    /**
+     * Flag to evaluate the predicates in parallel.
+     */
+    public static final OptionID PARALLEL_ID = new OptionID("gdbscan.parallel", //
+        "Evaluate the neighbor predicates in parallel, and merge clusters with union-find. Keeps the neighborhoods of core points in memory.");
+
     /**
      * Neighborhood predicate.
      */
@@ -362,6 +597,11 @@ public class GeneralizedDBSCAN implements ClusteringAlgorithm<Clustering<Model>>
      */
     protected boolean coremodel = false;
 
+    /**
+     * Evaluate the predicates in parallel.
+     */
+    protected boolean parallel = false;
+
     @Override
     public void configure(Parameterization config) {
       // Neighborhood predicate
@@ -379,11 +619,12 @@ public class GeneralizedDBSCAN implements ClusteringAlgorithm<Clustering<Model>>
         }
       }
       new Flag(COREMODEL_ID).grab(config, x -> coremodel = x);
+      new Flag(PARALLEL_ID).grab(config, x -> parallel = x);
     }
 
     @Override
     public GeneralizedDBSCAN make() {
-      return new GeneralizedDBSCAN(npred, corepred, coremodel);
+      return new GeneralizedDBSCAN(npred, corepred, coremodel, parallel);
     }
   }
 }
@@ -20,7 +20,16 @@
  */
 package elki.clustering.dbscan;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import elki.Algorithm;
 import elki.clustering.ClusteringAlgorithm;
@@ -30,6 +39,7 @@ import elki.clustering.dbscan.util.Core;
 import elki.clustering.dbscan.util.MultiBorder;
 import elki.data.Cluster;
 import elki.data.Clustering;
+import elki.data.DoubleVector;
 import elki.data.NumberVector;
 import elki.data.model.ClusterModel;
 import elki.data.model.Model;
@@ -47,6 +57,7 @@ import elki.database.relation.ProxyView;
 import elki.database.relation.Relation;
 import elki.database.relation.RelationUtil;
 import elki.distance.Distance;
+import elki.distance.NumberVectorDistance;
 import elki.distance.minkowski.EuclideanDistance;
 import elki.distance.minkowski.LPNormDistance;
 import elki.logging.Logging;
@@ -54,9 +65,11 @@ import elki.logging.progress.FiniteProgress;
 import elki.logging.statistics.DoubleStatistic;
 import elki.logging.statistics.LongStatistic;
 import elki.logging.statistics.StringStatistic;
+import elki.parallel.ParallelExecutor;
 import elki.result.Metadata;
 import elki.utilities.documentation.Reference;
 import elki.utilities.documentation.Title;
+import elki.utilities.exceptions.AbortException;
 import elki.utilities.exceptions.IncompatibleDataException;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
@@ -64,6 +77,8 @@ import elki.utilities.optionhandling.constraints.CommonConstraints;
 import elki.utilities.optionhandling.constraints.GreaterEqualConstraint;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.FileParameter;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.IntParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
@@ -80,6 +95,13 @@ import net.jafama.FastMath;
  * <p>
  * Because of partitioning the data, this version does not make use of indexes.
  * <p>
+ * Optionally, the grid cells can be processed as independent tasks in
+ * parallel. Each task then holds a copy of only its own cell (including the
+ * epsilon overlap with the neighboring cells), and the partial clusters are
+ * merged across cell borders in a final serial pass. The cell partitions can
+ * also be spilled to disk, such that only the partitions currently processed
+ * need to be held in memory.
+ * <p>
  * Reference:
  * <p>
  * S. Mahran, K. Mahar<br>
@@ -125,6 +147,16 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
    */
   protected double gridwidth;
 
+  /**
+   * Process grid cells as parallel tasks.
+   */
+  protected boolean parallel;
+
+  /**
+   * Directory to spill cell partitions to, may be {@code null}.
+   */
+  protected Path spill;
+
   /**
    * Constructor with parameters.
    *
@@ -134,11 +166,27 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
    * @param gridwidth Grid width
    */
   public GriDBSCAN(Distance<? super V> distance, double epsilon, int minpts, double gridwidth) {
+    this(distance, epsilon, minpts, gridwidth, false, null);
+  }
+
+  /**
+   * Constructor with parameters.
+   *
+   * @param distance Distance function
+   * @param epsilon Epsilon value
+   * @param minpts Minpts parameter
+   * @param gridwidth Grid width
+   * @param parallel Process grid cells as parallel tasks
+   * @param spill Directory to spill cell partitions to, may be {@code null}
+   */
+  public GriDBSCAN(Distance<? super V> distance, double epsilon, int minpts, double gridwidth, boolean parallel, Path spill) {
     super();
     this.distance = distance;
     this.epsilon = epsilon;
     this.minpts = minpts;
     this.gridwidth = gridwidth;
+    this.parallel = parallel;
+    this.spill = spill;
   }
 
   @Override
@@ -165,6 +213,12 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
       LOG.warning("Invalid grid width (less than 2*epsilon, recommended 10*epsilon). Increasing grid width automatically.");
       gridwidth = 2. * epsilon;
     }
+    if(parallel || spill != null) {
+      if(!(distance instanceof NumberVectorDistance)) {
+        throw new AbortException("Partitioned GriDBSCAN needs a vector distance function.");
+      }
+      return new ParallelInstance<V>(distance, epsilon, minpts, gridwidth, spill).run(relation);
+    }
     return new Instance<V>(distance, epsilon, minpts, gridwidth).run(relation);
   }
 
@@ -289,23 +343,35 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
       long numcells = computeGridBaseOffsets(size);
 
       // Build the data grid.
-      buildGrid(relation, (int) numcells, offset);
-      if(grid.size() <= dim) {
-        LOG.warning("There are only " + grid.size() + " occupied cells. This will likely be slower than regular DBSCAN!");
+      buildGrid(relation, DBIDUtil.ensureArray(ids), (int) numcells);
+      int[] cellsizes = getCellSizes();
+      if(cellsizes.length <= dim) {
+        LOG.warning("There are only " + cellsizes.length + " occupied cells. This will likely be slower than regular DBSCAN!");
       }
 
       // Check grid cell counts:
-      int mincells = checkGridCellSizes(size, numcells);
+      int mincells = checkGridCellSizes(size, numcells, cellsizes);
 
       // (Temporary) store the cluster ID assigned.
       clusterids = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_TEMP, Assignment.class);
-      temporary = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP, UNPROCESSED);
-      final ArrayModifiableDBIDs activeSet = DBIDUtil.newArray();
       // Reserve the first two cluster ids:
-      int clusterid = NOISE + 1;
       this.cores = new Core[2];
       this.borders = new Border[2];
+      int clusterid = processCells(relation, mincells);
+      return buildResult(ids, clusterid);
+    }
 
+    /**
+     * Run DBSCAN on all grid cells, and merge the cluster assignments.
+     *
+     * @param relation Data relation
+     * @param mincells Number of cells with at least minPts objects
+     * @return Largest cluster number assigned, plus one
+     */
+    protected int processCells(Relation<V> relation, int mincells) {
+      temporary = DataStoreUtil.makeIntegerStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP, UNPROCESSED);
+      final ArrayModifiableDBIDs activeSet = DBIDUtil.newArray();
+      int clusterid = NOISE + 1;
       // Reused storage for neighbors:
       ModifiableDoubleDBIDList neighbors = DBIDUtil.newDistanceDBIDList(minpts << 1);
       // Run DBSCAN on each cell that has enough objects.
@@ -314,7 +380,7 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
         if(cellids.size() < minpts) {
           continue; // Too few objects.
         }
-        clusterid += runDBSCANOnCell(cellids, relation, neighbors, activeSet, clusterid);
+        clusterid = runDBSCANOnCell(cellids, relation, neighbors, activeSet, clusterid);
         // Post-process DBSCAN clustering result:
         updateCoreBorderObjects(clusterid);
         mergeClusterInformation(cellids, temporary, clusterids);
@@ -322,8 +388,7 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
       }
       LOG.ensureCompleted(cprog);
       temporary.destroy();
-
-      return buildResult(ids, clusterid);
+      return clusterid;
     }
 
     private int runDBSCANOnCell(DBIDs cellids, Relation<V> relation, ModifiableDoubleDBIDList neighbors, ArrayModifiableDBIDs activeSet, int clusterid) {
@@ -355,7 +420,7 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
      *
      * @param clusterid Number of clusters
      */
-    private void updateCoreBorderObjects(int clusterid) {
+    protected void updateCoreBorderObjects(int clusterid) {
       int i = cores.length;
       cores = Arrays.copyOf(cores, clusterid);
       borders = Arrays.copyOf(borders, clusterid);
@@ -420,17 +485,46 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
      * Build the data grid.
      *
      * @param relation Data relation
+     * @param ids Object IDs
      * @param numcells Total number of cells
-     * @param offset Offset
      */
-    protected void buildGrid(Relation<V> relation, int numcells, double[] offset) {
+    protected void buildGrid(Relation<V> relation, ArrayDBIDs ids, int numcells) {
       grid = new Long2ObjectOpenHashMap<ModifiableDBIDs>(numcells >>> 2);
-      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
         V obj = relation.get(it);
         insertIntoGrid(it, obj, 0, 0);
       }
     }
 
+    /**
+     * Add an object to a grid cell.
+     *
+     * @param cell Cell number
+     * @param id Object ID
+     * @param obj Object
+     */
+    protected void addToCell(int cell, DBIDArrayIter id, V obj) {
+      ModifiableDBIDs ids = grid.get(cell);
+      if(ids == null) {
+        grid.put(cell, ids = DBIDUtil.newArray());
+      }
+      ids.add(id);
+    }
+
+    /**
+     * Get the sizes of all occupied grid cells.
+     *
+     * @return Cell sizes
+     */
+    protected int[] getCellSizes() {
+      int[] sizes = new int[grid.size()];
+      int i = 0;
+      for(ModifiableDBIDs cell : grid.values()) {
+        sizes[i++] = cell.size();
+      }
+      return sizes;
+    }
+
     /**
      * Insert a single object into the grid; potentially into multiple cells (at
      * most 2^d) via recursion.
@@ -440,7 +534,7 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
      * @param d Current dimension
      * @param v Current cell value
      */
-    private void insertIntoGrid(DBIDRef id, V obj, int d, int v) {
+    protected void insertIntoGrid(DBIDArrayIter id, V obj, int d, int v) {
       final int cn = cells[d]; // Number of cells in this dimension
       final int nd = d + 1; // Next dimension
       int mi = Math.max(0, (int) FastMath.floor((obj.doubleValue(d) - offset[d] - epsilon) / gridwidth));
@@ -449,11 +543,7 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
       for(int i = mi; i <= ma; i++) {
         int c = v * cn + i;
         if(nd == cells.length) {
-          ModifiableDBIDs ids = grid.get(c);
-          if(ids == null) {
-            grid.put(c, ids = DBIDUtil.newArray());
-          }
-          ids.add(id);
+          addToCell(c, id, obj);
         }
         else {
           insertIntoGrid(id, obj, nd, c);
@@ -466,14 +556,14 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
      *
      * @param numcell Number of cells
      * @param size Relation size
+     * @param cellsizes Sizes of the occupied cells
      * @return Number of cells with minPts points
      */
-    protected int checkGridCellSizes(int size, long numcell) {
+    protected int checkGridCellSizes(int size, long numcell, int[] cellsizes) {
       int tcount = 0;
       int hasmin = 0;
       double sqcount = 0;
-      for(ModifiableDBIDs cell : grid.values()) {
-        final int s = cell.size();
+      for(final int s : cellsizes) {
         if(s >= size >> 1) {
           LOG.warning("A single cell contains half of the database (" + s//
               + " objects). This will not scale very well.");
@@ -494,7 +584,7 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
       else {
         LOG.statistics(new LongStatistic(GriDBSCAN.class.getName() + ".all-cells", numcell));
       }
-      LOG.statistics(new LongStatistic(GriDBSCAN.class.getName() + ".used-cells", grid.size()));
+      LOG.statistics(new LongStatistic(GriDBSCAN.class.getName() + ".used-cells", cellsizes.length));
       LOG.statistics(new LongStatistic(GriDBSCAN.class.getName() + ".minpts-cells", hasmin));
       LOG.statistics(new DoubleStatistic(GriDBSCAN.class.getName() + ".redundancy", tcount / (double) size));
       LOG.statistics(new DoubleStatistic(GriDBSCAN.class.getName() + ".relative-cost", savings));
@@ -571,63 +661,72 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
     protected void mergeClusterInformation(ModifiableDBIDs cellids, WritableIntegerDataStore temporary, WritableDataStore<Assignment> clusterids) {
       FiniteProgress mprog = LOG.isVerbose() ? new FiniteProgress("Collecting result", cellids.size(), LOG) : null;
       for(DBIDIter id = cellids.iter(); id.valid(); id.advance()) {
-        int nclus = temporary.intValue(id);
-        if(nclus > NOISE) { // Core point
-          Core core = cores[nclus];
-          assert (core.num > NOISE);
-          Assignment oclus = clusterids.get(id);
-          if(oclus == null) { // No assignment yet (= NOISE)
-            clusterids.put(id, core);
-          }
-          else if(oclus instanceof Core) { // Core and core - merge!
-            core.mergeWith((Core) oclus);
-          }
-          else if(oclus instanceof Border) { // Core and border point, merge!
-            core.mergeWith(((Border) oclus).core);
-            clusterids.put(id, core);
-          }
-          else { // Point is border for multiple clusters
-            assert (oclus instanceof MultiBorder);
-            if(LOG.isDebuggingFinest()) {
-              LOG.debugFinest("Multi-Merge: " + nclus + " - " + oclus + " -> " + core);
-            }
-            // Find minimum:
-            int m = core.num, m2 = ((MultiBorder) oclus).getCore().num;
-            m = m < m2 ? m : m2;
-            assert (m > NOISE);
-            // Execute all merges:
-            for(Border b : ((MultiBorder) oclus).cs) {
-              cores[b.core.num].num = m;
-            }
-            core.num = m;
-            clusterids.put(id, core);
-          }
+        mergeAssignment(id, temporary.intValue(id));
+        LOG.incrementProcessed(mprog);
+      }
+      LOG.ensureCompleted(mprog);
+    }
+
+    /**
+     * Merge the cluster assignment of a single object.
+     *
+     * @param id Object
+     * @param nclus Cluster assignment within the current cell
+     */
+    protected void mergeAssignment(DBIDRef id, int nclus) {
+      if(nclus > NOISE) { // Core point
+        Core core = cores[nclus];
+        assert (core.num > NOISE);
+        Assignment oclus = clusterids.get(id);
+        if(oclus == null) { // No assignment yet (= NOISE)
+          clusterids.put(id, core);
         }
-        else if(nclus < 0) { // Border point
-          Border border = borders[-nclus];
-          Assignment oclus = clusterids.get(id);
-          if(oclus == null) { // No assignment yet.
-            clusterids.put(id, border);
-          }
-          else if(oclus instanceof Core) { // Border and core point - merge
-            ((Core) oclus).mergeWith(border.core);
+        else if(oclus instanceof Core) { // Core and core - merge!
+          core.mergeWith((Core) oclus);
+        }
+        else if(oclus instanceof Border) { // Core and border point, merge!
+          core.mergeWith(((Border) oclus).core);
+          clusterids.put(id, core);
+        }
+        else { // Point is border for multiple clusters
+          assert (oclus instanceof MultiBorder);
+          if(LOG.isDebuggingFinest()) {
+            LOG.debugFinest("Multi-Merge: " + nclus + " - " + oclus + " -> " + core);
           }
-          else if(oclus instanceof Border) { // Border and border
-            if(((Border) oclus).core.num != border.core.num) {
-              clusterids.put(id, new MultiBorder((Border) oclus, border));
-            }
+          // Find minimum:
+          int m = core.num, m2 = ((MultiBorder) oclus).getCore().num;
+          m = m < m2 ? m : m2;
+          assert (m > NOISE);
+          // Execute all merges:
+          for(Border b : ((MultiBorder) oclus).cs) {
+            cores[b.core.num].num = m;
           }
-          else {
-            assert (oclus instanceof MultiBorder);
-            clusterids.put(id, ((MultiBorder) oclus).update(border));
+          core.num = m;
+          clusterids.put(id, core);
+        }
+      }
+      else if(nclus < 0) { // Border point
+        Border border = borders[-nclus];
+        Assignment oclus = clusterids.get(id);
+        if(oclus == null) { // No assignment yet.
+          clusterids.put(id, border);
+        }
+        else if(oclus instanceof Core) { // Border and core point - merge
+          ((Core) oclus).mergeWith(border.core);
+        }
+        else if(oclus instanceof Border) { // Border and border
+          if(((Border) oclus).core.num != border.core.num) {
+            clusterids.put(id, new MultiBorder((Border) oclus, border));
           }
         }
         else {
-          assert (nclus == NOISE); // Ignore noise.
+          assert (oclus instanceof MultiBorder);
+          clusterids.put(id, ((MultiBorder) oclus).update(border));
         }
-        LOG.incrementProcessed(mprog);
       }
-      LOG.ensureCompleted(mprog);
+      else {
+        assert (nclus == NOISE); // Ignore noise.
+      }
     }
 
     /**
@@ -683,6 +782,461 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
     }
   }
 
+  /**
+   * Instance processing the grid cells as independent tasks.
+   * <p>
+   * Each task runs DBSCAN on the objects of a single cell (including the
+   * epsilon overlap), and only keeps the local cluster labels. The partial
+   * clusters are then merged across cell borders in cell order, which yields
+   * the same result as the serial version. If a spill directory is given, the
+   * cell partitions (object offsets and coordinates) are written to disk while
+   * building the grid, and only read back when the cell is processed.
+   *
+   * @author Erich Schubert
+   *
+   * @param <V> Vector type
+   */
+  protected static class ParallelInstance<V extends NumberVector> extends Instance<V> {
+    /**
+     * Number of records buffered per cell before writing to disk.
+     */
+    private static final int SPILL_BUFFER = 256;
+
+    /**
+     * Maximum number of spill buffers held in memory at the same time.
+     */
+    private static final int SPILL_BUFFERS = 64;
+
+    /**
+     * Distance function, on vectors.
+     */
+    protected NumberVectorDistance<?> vdistance;
+
+    /**
+     * Directory to spill cell partitions to, may be {@code null}.
+     */
+    protected Path spill;
+
+    /**
+     * Object IDs.
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Data grid partitioning.
+     */
+    private Long2ObjectOpenHashMap<Partition> partitions;
+
+    /**
+     * Partitions currently holding a spill buffer, oldest first.
+     */
+    private ArrayDeque<Partition> buffered;
+
+    /**
+     * Constructor.
+     *
+     * @param distance Distance function
+     * @param epsilon Epsilon
+     * @param minpts MinPts
+     * @param gridwidth Grid width
+     * @param spill Directory to spill partitions to, may be {@code null}
+     */
+    public ParallelInstance(Distance<? super V> distance, double epsilon, int minpts, double gridwidth, Path spill) {
+      super(distance, epsilon, minpts, gridwidth);
+      this.vdistance = (NumberVectorDistance<?>) distance;
+      this.spill = spill;
+    }
+
+    @Override
+    protected void buildGrid(Relation<V> relation, ArrayDBIDs ids, int numcells) {
+      this.ids = ids;
+      partitions = new Long2ObjectOpenHashMap<Partition>(numcells >>> 2);
+      buffered = spill != null ? new ArrayDeque<>(SPILL_BUFFERS) : null;
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        V obj = relation.get(it);
+        insertIntoGrid(it, obj, 0, 0);
+      }
+      if(buffered != null) {
+        for(Partition part : buffered) {
+          part.finish();
+        }
+        buffered = null;
+      }
+    }
+
+    @Override
+    protected void addToCell(int cell, DBIDArrayIter id, V obj) {
+      Partition part = partitions.get(cell);
+      if(part == null) {
+        partitions.put(cell, part = new Partition());
+      }
+      part.add(id.getOffset(), obj);
+    }
+
+    @Override
+    protected int[] getCellSizes() {
+      int[] sizes = new int[partitions.size()];
+      int i = 0;
+      for(Partition part : partitions.values()) {
+        sizes[i++] = part.size;
+      }
+      return sizes;
+    }
+
+    @Override
+    protected int processCells(Relation<V> relation, int mincells) {
+      final List<Partition> parts = new ArrayList<>(partitions.values());
+      partitions = null;
+      try {
+        FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Processing grid cells", mincells, LOG) : null;
+        ParallelExecutor.runTasks(parts.size(), Integer.MAX_VALUE, i -> {
+          Partition part = parts.get(i);
+          if(part.size < minpts) {
+            part.discard(); // Too few objects.
+            return;
+          }
+          part.cluster(relation);
+          LOG.incrementProcessed(cprog);
+        });
+        LOG.ensureCompleted(cprog);
+        // Merge the partial clusters, in cell order:
+        FiniteProgress mprog = LOG.isVerbose() ? new FiniteProgress("Merging partial clusters", parts.size(), LOG) : null;
+        DBIDArrayIter it = ids.iter();
+        int clusterid = NOISE + 1;
+        for(Partition part : parts) {
+          clusterid = part.merge(it, clusterid);
+          LOG.incrementProcessed(mprog);
+        }
+        LOG.ensureCompleted(mprog);
+        return clusterid;
+      }
+      finally {
+        for(Partition part : parts) {
+          part.discard();
+        }
+      }
+    }
+
+    /**
+     * Run DBSCAN on the objects of a single cell.
+     *
+     * @param vecs Objects of the cell
+     * @param labels Output cluster labels
+     * @return Number of clusters found
+     */
+    protected int runDBSCANOnCell(NumberVector[] vecs, int[] labels) {
+      final int n = vecs.length;
+      int[] neighbors = new int[n], stack = new int[n];
+      double[] dists = new double[n];
+      int clusterid = NOISE + 1;
+      for(int i = 0; i < n; i++) {
+        // Skip already processed objects.
+        if(labels[i] != UNPROCESSED) {
+          continue;
+        }
+        int nn = rangeQuery(vecs, i, neighbors, dists);
+        if(nn < minpts) {
+          labels[i] = NOISE;
+          continue;
+        }
+        int sp = processCorePoint(i, neighbors, dists, nn, clusterid, labels, stack, 0);
+        while(sp > 0) {
+          final int j = stack[--sp];
+          nn = rangeQuery(vecs, j, neighbors, dists);
+          if(nn >= minpts) {
+            sp = processCorePoint(j, neighbors, dists, nn, clusterid, labels, stack, sp);
+          }
+        }
+        ++clusterid;
+      }
+      return clusterid - NOISE - 1;
+    }
+
+    /**
+     * Linear scan range query within a cell.
+     *
+     * @param vecs Objects of the cell
+     * @param q Query object index
+     * @param neighbors Output neighbor indexes
+     * @param dists Output neighbor distances
+     * @return Number of neighbors
+     */
+    private int rangeQuery(NumberVector[] vecs, int q, int[] neighbors, double[] dists) {
+      final NumberVector vq = vecs[q];
+      int nn = 0;
+      for(int i = 0; i < vecs.length; i++) {
+        final double d = vdistance.distance(vq, vecs[i]);
+        if(d <= epsilon) {
+          neighbors[nn] = i;
+          dists[nn++] = d;
+        }
+      }
+      return nn;
+    }
+
+    /**
+     * Process a single core point.
+     *
+     * @param seed Point to process
+     * @param neighbors Neighbor indexes
+     * @param dists Neighbor distances
+     * @param nn Number of neighbors
+     * @param clusterid Cluster to add to
+     * @param labels Cluster labels
+     * @param stack Stack of cluster seeds
+     * @param sp Stack pointer
+     * @return New stack pointer
+     */
+    private static int processCorePoint(int seed, int[] neighbors, double[] dists, int nn, int clusterid, int[] labels, int[] stack, int sp) {
+      labels[seed] = clusterid; // Core point now
+      for(int i = 0; i < nn; i++) {
+        final int p = neighbors[i], oldassign = labels[p];
+        if(oldassign == UNPROCESSED) {
+          if(dists[i] > 0.) { // We can skip points at distance 0.
+            stack[sp++] = p;
+          }
+        }
+        else if(oldassign != NOISE) {
+          continue; // Member of some cluster.
+        }
+        labels[p] = -clusterid;
+      }
+      return sp;
+    }
+
+    /**
+     * Partition of a single grid cell.
+     *
+     * @author Erich Schubert
+     */
+    private class Partition {
+      /**
+       * Number of objects.
+       */
+      int size;
+
+      /**
+       * Object offsets, in memory.
+       */
+      int[] offsets;
+
+      /**
+       * Local cluster labels.
+       */
+      int[] labels;
+
+      /**
+       * Number of local clusters.
+       */
+      int nclusters;
+
+      /**
+       * Spill file, or {@code null}.
+       */
+      Path file;
+
+      /**
+       * Write buffer for spilling, from a bounded pool; may be {@code null}.
+       */
+      ByteBuffer buffer;
+
+      /**
+       * Constructor.
+       */
+      Partition() {
+        if(spill == null) {
+          offsets = new int[16];
+        }
+      }
+
+      /**
+       * Add an object to the partition.
+       *
+       * @param off Object offset
+       * @param obj Object
+       */
+      void add(int off, V obj) {
+        if(spill == null) {
+          if(size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size << 1);
+          }
+          offsets[size++] = off;
+          return;
+        }
+        if(buffer == null) {
+          acquireBuffer();
+        }
+        else if(!buffer.hasRemaining()) {
+          flush();
+        }
+        buffer.putInt(off);
+        for(int d = 0; d < dim; d++) {
+          buffer.putDouble(obj.doubleValue(d));
+        }
+        ++size;
+      }
+
+      /**
+       * Get a spill buffer; if all buffers are in use, the buffer held the
+       * longest is flushed and taken over.
+       */
+      private void acquireBuffer() {
+        if(buffered.size() < SPILL_BUFFERS) {
+          buffer = ByteBuffer.allocate(SPILL_BUFFER * (Integer.BYTES + dim * Double.BYTES));
+        }
+        else {
+          Partition victim = buffered.poll();
+          victim.flush();
+          buffer = victim.buffer;
+          victim.buffer = null;
+        }
+        buffered.add(this);
+      }
+
+      /**
+       * Append the write buffer to the spill file.
+       */
+      private void flush() {
+        if(file == null) {
+          try {
+            file = Files.createTempFile(spill, "gridbscan", ".part");
+          }
+          catch(IOException e) {
+            throw new AbortException("Could not create grid partition file in " + spill, e);
+          }
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+          while(buffer.hasRemaining()) {
+            channel.write(buffer);
+          }
+        }
+        catch(IOException e) {
+          throw new AbortException("Could not write grid partition " + file, e);
+        }
+        buffer.clear();
+      }
+
+      /**
+       * Finish building the partition.
+       */
+      void finish() {
+        if(buffer != null) {
+          flush();
+          buffer = null;
+        }
+      }
+
+      /**
+       * Run DBSCAN on the partition, and keep the local labels.
+       *
+       * @param relation Data relation
+       */
+      void cluster(Relation<V> relation) {
+        NumberVector[] vecs = new NumberVector[size];
+        if(spill == null) {
+          DBIDArrayIter it = ids.iter();
+          for(int i = 0; i < size; i++) {
+            vecs[i] = relation.get(it.seek(offsets[i]));
+          }
+        }
+        else {
+          ByteBuffer in = read();
+          offsets = new int[size];
+          for(int i = 0; i < size; i++) {
+            offsets[i] = in.getInt();
+            double[] v = new double[dim];
+            for(int d = 0; d < dim; d++) {
+              v[d] = in.getDouble();
+            }
+            vecs[i] = DoubleVector.wrap(v);
+          }
+        }
+        labels = new int[size];
+        nclusters = runDBSCANOnCell(vecs, labels);
+        if(nclusters == 0) {
+          discard(); // Noise only, nothing to merge.
+          return;
+        }
+        if(file != null) {
+          ByteBuffer out = ByteBuffer.allocate(size * Integer.BYTES * 2);
+          for(int i = 0; i < size; i++) {
+            out.putInt(offsets[i]).putInt(labels[i]);
+          }
+          try {
+            Files.write(file, out.array());
+          }
+          catch(IOException e) {
+            throw new AbortException("Could not write grid partition " + file, e);
+          }
+          offsets = labels = null;
+        }
+      }
+
+      /**
+       * Merge the local clusters into the global assignment.
+       *
+       * @param it Iterator for seeking objects
+       * @param clusterid Next global cluster number
+       * @return Next global cluster number
+       */
+      int merge(DBIDArrayIter it, int clusterid) {
+        if(nclusters == 0) {
+          return clusterid;
+        }
+        if(file != null) {
+          ByteBuffer in = read();
+          offsets = new int[size];
+          labels = new int[size];
+          for(int i = 0; i < size; i++) {
+            offsets[i] = in.getInt();
+            labels[i] = in.getInt();
+          }
+        }
+        final int shift = clusterid - (NOISE + 1);
+        clusterid += nclusters;
+        updateCoreBorderObjects(clusterid);
+        for(int i = 0; i < size; i++) {
+          final int l = labels[i];
+          mergeAssignment(it.seek(offsets[i]), l > NOISE ? l + shift : l < 0 ? l - shift : l);
+        }
+        discard();
+        return clusterid;
+      }
+
+      /**
+       * Read the spill file.
+       *
+       * @return File contents
+       */
+      private ByteBuffer read() {
+        try {
+          return ByteBuffer.wrap(Files.readAllBytes(file));
+        }
+        catch(IOException e) {
+          throw new AbortException("Could not read grid partition " + file, e);
+        }
+      }
+
+      /**
+       * Release the memory and spill file of this partition.
+       */
+      void discard() {
+        offsets = labels = null;
+        nclusters = 0;
+        if(file != null) {
+          try {
+            Files.deleteIfExists(file);
+          }
+          catch(IOException e) {
+            LOG.warning("Could not delete grid partition " + file);
+          }
+          file = null;
+        }
+      }
+    }
+  }
+
   /**
    * Parameterization class.
    *
@@ -700,6 +1254,16 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
      */
     public static final OptionID GRID_ID = new OptionID("gridbscan.gridwidth", "Width of the grid used, must be at least two times epsilon.");
 
+    /**
+     * Flag to process the grid cells as parallel tasks.
+     */
+    public static final OptionID PARALLEL_ID = new OptionID("gridbscan.parallel", "Process the grid cells as independent tasks in parallel, and merge the partial clusters afterwards.");
+
+    /**
+     * Directory to spill the grid cell partitions to.
+     */
+    public static final OptionID SPILL_ID = new OptionID("gridbscan.spill", "Directory to spill the grid cell partitions to, to bound memory usage.");
+
     /**
      * Holds the epsilon radius threshold.
      */
@@ -715,6 +1279,16 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
      */
     protected double gridwidth;
 
+    /**
+     * Process grid cells as parallel tasks.
+     */
+    protected boolean parallel;
+
+    /**
+     * Directory to spill cell partitions to.
+     */
+    protected Path spill;
+
     /**
      * The distance function to use.
      */
@@ -740,11 +1314,17 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
           .setDefaultValue(epsilon > 0 ? 10. * epsilon : 1.) //
           .addConstraint(new GreaterEqualConstraint(2. * epsilon)) //
           .grab(config, x -> gridwidth = x);
+      new Flag(PARALLEL_ID).grab(config, x -> parallel = x);
+      if(parallel) {
+        new FileParameter(SPILL_ID, FileParameter.FileType.DIRECTORY) //
+            .setOptional(true) //
+            .grab(config, x -> spill = x);
+      }
     }
 
     @Override
     public GriDBSCAN<O> make() {
-      return new GriDBSCAN<>(distance, epsilon, minpts, gridwidth);
+      return new GriDBSCAN<>(distance, epsilon, minpts, gridwidth, parallel, spill);
     }
   }
 }
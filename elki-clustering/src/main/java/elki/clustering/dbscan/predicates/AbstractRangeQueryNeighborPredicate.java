@@ -158,6 +158,11 @@ public abstract class AbstractRangeQueryNeighborPredicate<O, M, N> implements Ne
     public DBIDs getIDs() {
       return ids;
     }
+
+    @Override
+    public NeighborPredicate.Instance<N> concurrentInstance() {
+      return this; // Only reads the precomputed models.
+    }
   }
 
   /**
@@ -20,6 +20,8 @@
  */
 package elki.clustering.dbscan.predicates;
 
+import java.util.function.Supplier;
+
 import elki.Algorithm;
 import elki.clustering.dbscan.DBSCAN;
 import elki.data.type.SimpleTypeInformation;
@@ -91,8 +93,7 @@ public class EpsilonNeighborPredicate<O> implements NeighborPredicate<DoubleDBID
   @Override
   public Instance instantiate(Database database) {
     Relation<O> relation = database.getRelation(distance.getInputTypeRestriction());
-    RangeSearcher<DBIDRef> rq = new QueryBuilder<>(relation, distance).rangeByDBID(epsilon);
-    return new Instance(epsilon, rq, relation.getDBIDs());
+    return new Instance(epsilon, () -> new QueryBuilder<>(relation, distance).rangeByDBID(epsilon), relation.getDBIDs());
   }
 
   @Override
@@ -121,6 +122,11 @@ public class EpsilonNeighborPredicate<O> implements NeighborPredicate<DoubleDBID
      */
     protected RangeSearcher<DBIDRef> rq;
 
+    /**
+     * Factory for range queries, for concurrent use; may be {@code null}.
+     */
+    protected Supplier<? extends RangeSearcher<DBIDRef>> rqs;
+
     /**
      * DBIDs to process
      */
@@ -140,6 +146,18 @@ public class EpsilonNeighborPredicate<O> implements NeighborPredicate<DoubleDBID
       this.ids = ids;
     }
 
+    /**
+     * Constructor, supporting concurrent use.
+     *
+     * @param epsilon Epsilon
+     * @param rqs Factory for range queries
+     * @param ids DBIDs to process
+     */
+    public Instance(double epsilon, Supplier<? extends RangeSearcher<DBIDRef>> rqs, DBIDs ids) {
+      this(epsilon, rqs.get(), ids);
+      this.rqs = rqs;
+    }
+
     @Override
     public DBIDs getIDs() {
       return ids;
@@ -154,6 +172,12 @@ public class EpsilonNeighborPredicate<O> implements NeighborPredicate<DoubleDBID
     public DBIDIter iterDBIDs(DoubleDBIDList neighbors) {
       return neighbors.iter();
     }
+
+    @Override
+    public Instance concurrentInstance() {
+      // Searchers are not thread-safe, but indexes are shared.
+      return rqs != null ? new Instance(epsilon, rqs, ids) : null;
+    }
   }
 
   /**
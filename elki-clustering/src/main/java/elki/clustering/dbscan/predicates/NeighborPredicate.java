@@ -90,5 +90,20 @@ public interface NeighborPredicate<T> {
      * @return iterator
      */
     DBIDIter iterDBIDs(T neighbors);
+
+    /**
+     * Get an instance for use by another thread, sharing the preprocessed
+     * data with this instance.
+     * <p>
+     * Instances that only read precomputed data can return themselves;
+     * instances using searchers (which are not thread-safe) need to return a
+     * copy with a new searcher. The default returns {@code null}, i.e., the
+     * instance does not support concurrent use.
+     *
+     * @return Instance for use by another thread, or {@code null}
+     */
+    default Instance<T> concurrentInstance() {
+      return null;
+    }
   }
 }
\ No newline at end of file
@@ -20,6 +20,8 @@
  */
 package elki.clustering.dbscan.predicates;
 
+import java.util.function.Supplier;
+
 import elki.data.type.SimpleTypeInformation;
 import elki.data.type.TypeInformation;
 import elki.data.type.TypeUtil;
@@ -89,8 +91,7 @@ public class SimilarityNeighborPredicate<O> implements NeighborPredicate<DoubleD
   @Override
   public Instance instantiate(Database database) {
     Relation<O> relation = database.getRelation(simFunc.getInputTypeRestriction());
-    RangeSearcher<DBIDRef> rq = new QueryBuilder<>(relation, simFunc).similarityRangeByDBID(epsilon);
-    return new Instance(epsilon, rq, relation.getDBIDs());
+    return new Instance(epsilon, () -> new QueryBuilder<>(relation, simFunc).similarityRangeByDBID(epsilon), relation.getDBIDs());
   }
 
   @Override
@@ -119,6 +120,11 @@ public class SimilarityNeighborPredicate<O> implements NeighborPredicate<DoubleD
      */
     protected RangeSearcher<DBIDRef> rq;
 
+    /**
+     * Factory for range queries, for concurrent use; may be {@code null}.
+     */
+    protected Supplier<? extends RangeSearcher<DBIDRef>> rqs;
+
     /**
      * DBIDs to process
      */
@@ -138,6 +144,18 @@ public class SimilarityNeighborPredicate<O> implements NeighborPredicate<DoubleD
       this.ids = ids;
     }
 
+    /**
+     * Constructor, supporting concurrent use.
+     *
+     * @param epsilon Epsilon
+     * @param rqs Factory for range queries
+     * @param ids DBIDs to process
+     */
+    public Instance(double epsilon, Supplier<? extends RangeSearcher<DBIDRef>> rqs, DBIDs ids) {
+      this(epsilon, rqs.get(), ids);
+      this.rqs = rqs;
+    }
+
     @Override
     public DBIDs getIDs() {
       return ids;
@@ -152,6 +170,12 @@ public class SimilarityNeighborPredicate<O> implements NeighborPredicate<DoubleD
     public DBIDIter iterDBIDs(DoubleDBIDList neighbors) {
       return neighbors.iter();
     }
+
+    @Override
+    public Instance concurrentInstance() {
+      // Searchers are not thread-safe, but indexes are shared.
+      return rqs != null ? new Instance(epsilon, rqs, ids) : null;
+    }
   }
 
   /**
@@ -20,9 +20,8 @@
  */
 package elki.clustering.em;
 
-import static elki.math.linearalgebra.VMath.argmax;
-
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import elki.clustering.ClusteringAlgorithm;
@@ -37,6 +36,8 @@ import elki.data.type.TypeUtil;
 import elki.database.datastore.DataStoreFactory;
 import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
 import elki.database.ids.DBIDIter;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.ModifiableDBIDs;
@@ -46,6 +47,7 @@ import elki.distance.minkowski.SquaredEuclideanDistance;
 import elki.logging.Logging;
 import elki.logging.statistics.DoubleStatistic;
 import elki.logging.statistics.LongStatistic;
+import elki.parallel.ParallelExecutor;
 import elki.result.Metadata;
 import elki.utilities.Priority;
 import elki.utilities.documentation.Description;
@@ -56,6 +58,7 @@ import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.constraints.CommonConstraints;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.IntParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
@@ -77,6 +80,11 @@ import net.jafama.FastMath;
  * Bayesian Regularization for Normal Mixture Estimation and Model-Based
  * Clustering<br>
  * J. Classification 24(2)
+ * <p>
+ * The cluster probabilities are kept in a single dense array. Optionally, the
+ * expectation and maximization steps are processed in parallel on blocks of
+ * the data, where each block aggregates into its own model accumulators that
+ * are merged afterwards (if supported by the cluster models).
  * 
  * @author Arthur Zimek
  * @author Erich Schubert
@@ -111,6 +119,17 @@ public class EM<V extends NumberVector, M extends MeanModel> implements Clusteri
    */
   private static final String KEY = EM.class.getName();
 
+  /**
+   * Minimum number of objects in a block.
+   */
+  private static final int MIN_BLOCKSIZE = 256;
+
+  /**
+   * Maximum number of blocks; this bounds the memory used for the
+   * accumulators.
+   */
+  private static final int MAX_BLOCKS = 128;
+
   /**
    * Number of clusters
    */
@@ -141,6 +160,11 @@ public class EM<V extends NumberVector, M extends MeanModel> implements Clusteri
    */
   private boolean soft;
 
+  /**
+   * Process in parallel.
+   */
+  private boolean parallel;
+
   /**
    * Minimum loglikelihood to avoid -infinity.
    */
@@ -186,6 +210,21 @@ public class EM<V extends NumberVector, M extends MeanModel> implements Clusteri
    * @param soft Include soft assignments
    */
   public EM(int k, double delta, EMClusterModelFactory<V, M> mfactory, int maxiter, double prior, boolean soft) {
+    this(k, delta, mfactory, maxiter, prior, soft, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param k k parameter
+   * @param delta delta parameter
+   * @param mfactory EM cluster model factory
+   * @param maxiter Maximum number of iterations
+   * @param prior MAP prior
+   * @param soft Include soft assignments
+   * @param parallel Process in parallel
+   */
+  public EM(int k, double delta, EMClusterModelFactory<V, M> mfactory, int maxiter, double prior, boolean soft, boolean parallel) {
     super();
     this.k = k;
     this.delta = delta;
@@ -193,6 +232,7 @@ public class EM<V extends NumberVector, M extends MeanModel> implements Clusteri
     this.maxiter = maxiter;
     this.prior = prior;
     this.soft = soft;
+    this.parallel = parallel;
   }
 
   @Override
@@ -215,10 +255,17 @@ public class EM<V extends NumberVector, M extends MeanModel> implements Clusteri
     if(relation.size() == 0) {
       throw new IllegalArgumentException("database empty: must contain elements");
     }
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    if((long) ids.size() * k > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many objects and clusters for a dense probability matrix.");
+    }
+    // Fixed partitioning, independent of the number of threads, so that the
+    // partial sums are merged the same way and the results are reproducible.
+    final int blocksize = parallel ? Math.max(MIN_BLOCKSIZE, (ids.size() + MAX_BLOCKS - 1) / MAX_BLOCKS) : ids.size();
     // initial models
     List<? extends EMClusterModel<M>> models = mfactory.buildInitialModels(relation, k, SquaredEuclideanDistance.STATIC);
-    WritableDataStore<double[]> probClusterIGivenX = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_SORTED, double[].class);
-    double loglikelihood = assignProbabilitiesToInstances(relation, models, probClusterIGivenX);
+    double[] probClusterIGivenX = new double[ids.size() * k];
+    double loglikelihood = assignProbabilitiesToInstances(relation, ids, models, probClusterIGivenX, blocksize);
     DoubleStatistic likestat = new DoubleStatistic(this.getClass().getName() + ".loglikelihood");
     LOG.statistics(likestat.setDouble(loglikelihood));
 
@@ -227,9 +274,9 @@ public class EM<V extends NumberVector, M extends MeanModel> implements Clusteri
     double bestloglikelihood = loglikelihood; // For detecting instabilities.
     for(++it; it < maxiter || maxiter < 0; it++) {
       final double oldloglikelihood = loglikelihood;
-      recomputeCovarianceMatrices(relation, probClusterIGivenX, models, prior);
+      recomputeCovarianceMatrices(relation, ids, probClusterIGivenX, models, prior, blocksize);
       // reassign probabilities
-      loglikelihood = assignProbabilitiesToInstances(relation, models, probClusterIGivenX);
+      loglikelihood = assignProbabilitiesToInstances(relation, ids, models, probClusterIGivenX, blocksize);
 
       LOG.statistics(likestat.setDouble(loglikelihood));
       if(loglikelihood - bestloglikelihood > delta) {
@@ -249,8 +296,13 @@ public class EM<V extends NumberVector, M extends MeanModel> implements Clusteri
     }
 
     // provide a hard clustering
-    for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-      hardClusters.get(argmax(probClusterIGivenX.get(iditer))).add(iditer);
+    for(DBIDArrayIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      final int start = iditer.getOffset() * k;
+      int best = 0;
+      for(int i = 1; i < k; i++) {
+        best = probClusterIGivenX[start + i] > probClusterIGivenX[start + best] ? i : best;
+      }
+      hardClusters.get(best).add(iditer);
     }
     Clustering<M> result = new Clustering<>();
     Metadata.of(result).setLongName("EM Clustering");
@@ -259,10 +311,12 @@ public class EM<V extends NumberVector, M extends MeanModel> implements Clusteri
       result.addToplevelCluster(new Cluster<>(hardClusters.get(i), models.get(i).finalizeCluster()));
     }
     if(isSoft()) {
-      Metadata.hierarchyOf(result).addChild(new MaterializedRelation<>("EM Cluster Probabilities", SOFT_TYPE, relation.getDBIDs(), probClusterIGivenX));
-    }
-    else {
-      probClusterIGivenX.destroy();
+      WritableDataStore<double[]> probs = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_SORTED, double[].class);
+      for(DBIDArrayIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+        final int start = iditer.getOffset() * k;
+        probs.put(iditer, Arrays.copyOfRange(probClusterIGivenX, start, start + k));
+      }
+      Metadata.hierarchyOf(result).addChild(new MaterializedRelation<>("EM Cluster Probabilities", SOFT_TYPE, ids, probs));
     }
     return result;
   }
@@ -350,6 +404,160 @@ public class EM<V extends NumberVector, M extends MeanModel> implements Clusteri
     return emSum / relation.size();
   }
 
+  /**
+   * Recompute the covariance matrixes, using a dense probability matrix.
+   * <p>
+   * The data is processed in blocks of the given size, each aggregating into
+   * its own model accumulators (c.f. {@link EMClusterModel#newAccumulator()}),
+   * which are merged in block order afterwards. If a model does not support
+   * accumulators, the data is processed serially.
+   *
+   * @param relation Vector data
+   * @param ids Object ids, in matrix order
+   * @param probClusterIGivenX Object probabilities, one row of k values for
+   *        each object
+   * @param models Cluster models to update
+   * @param prior MAP prior (use 0 for MLE)
+   * @param blocksize Block size for parallel processing
+   */
+  public static void recomputeCovarianceMatrices(Relation<? extends NumberVector> relation, ArrayDBIDs ids, double[] probClusterIGivenX, List<? extends EMClusterModel<?>> models, double prior, int blocksize) {
+    final int k = models.size(), size = ids.size();
+    boolean needsTwoPass = false;
+    for(EMClusterModel<?> m : models) {
+      m.beginEStep();
+      needsTwoPass |= m.needsTwoPass();
+    }
+    EMClusterModel<?>[][] acc = newAccumulators(models, (size - 1) / blocksize + 1);
+    final int bs = acc != null ? blocksize : size;
+    // First pass, only for two-pass models.
+    if(needsTwoPass) {
+      final EMClusterModel<?>[][] acc1 = acc;
+      ParallelExecutor.runBlocks(ids, bs, (ids2, start, end) -> {
+        final EMClusterModel<?>[] ms = acc1 != null ? acc1[start / bs] : models.toArray(new EMClusterModel<?>[k]);
+        for(DBIDArrayIter iditer = ids2.iter().seek(start); iditer.getOffset() < end; iditer.advance()) {
+          NumberVector instance = relation.get(iditer);
+          for(int i = 0, j = iditer.getOffset() * k; i < k; i++, j++) {
+            final double prob = probClusterIGivenX[j];
+            if(prob > 1e-10) {
+              ms[i].firstPassE(instance, prob);
+            }
+          }
+        }
+      });
+      for(int b = 1; acc != null && b < acc.length; b++) {
+        for(int i = 0; i < k; i++) {
+          models.get(i).mergeFirstPassE(acc[b][i]);
+        }
+      }
+      for(EMClusterModel<?> m : models) {
+        m.finalizeFirstPassE();
+      }
+      // Second pass needs new accumulators, with the updated means:
+      acc = acc != null ? newAccumulators(models, acc.length) : null;
+    }
+    final EMClusterModel<?>[][] acc2 = acc;
+    final double[][] wsums = new double[(size - 1) / bs + 1][k];
+    ParallelExecutor.runBlocks(ids, bs, (ids2, start, end) -> {
+      final EMClusterModel<?>[] ms = acc2 != null ? acc2[start / bs] : models.toArray(new EMClusterModel<?>[k]);
+      final double[] wsum = wsums[start / bs];
+      for(DBIDArrayIter iditer = ids2.iter().seek(start); iditer.getOffset() < end; iditer.advance()) {
+        NumberVector instance = relation.get(iditer);
+        for(int i = 0, j = iditer.getOffset() * k; i < k; i++, j++) {
+          final double prob = probClusterIGivenX[j];
+          if(prob > 1e-10) {
+            ms[i].updateE(instance, prob);
+          }
+          wsum[i] += prob;
+        }
+      }
+    });
+    for(int b = 1; acc2 != null && b < acc2.length; b++) {
+      for(int i = 0; i < k; i++) {
+        models.get(i).mergeE(acc2[b][i]);
+      }
+    }
+    double[] wsum = wsums[0];
+    for(int b = 1; b < wsums.length; b++) {
+      for(int i = 0; i < k; i++) {
+        wsum[i] += wsums[b][i];
+      }
+    }
+    for(int i = 0; i < models.size(); i++) {
+      // MLE / MAP
+      final double weight = prior <= 0. ? wsum[i] / size : (wsum[i] + prior - 1) / (size + prior * k - k);
+      models.get(i).finalizeEStep(weight, prior);
+    }
+  }
+
+  /**
+   * Create model accumulators for each block; the first block uses the models
+   * themselves.
+   *
+   * @param models Cluster models
+   * @param numblocks Number of blocks
+   * @return Accumulators, or {@code null} if there is only one block, or the
+   *         models do not support accumulators
+   */
+  private static EMClusterModel<?>[][] newAccumulators(List<? extends EMClusterModel<?>> models, int numblocks) {
+    if(numblocks <= 1) {
+      return null;
+    }
+    final int k = models.size();
+    EMClusterModel<?>[][] acc = new EMClusterModel<?>[numblocks][];
+    acc[0] = models.toArray(new EMClusterModel<?>[k]);
+    for(int b = 1; b < numblocks; b++) {
+      acc[b] = new EMClusterModel<?>[k];
+      for(int i = 0; i < k; i++) {
+        if((acc[b][i] = models.get(i).newAccumulator()) == null) {
+          return null;
+        }
+      }
+    }
+    return acc;
+  }
+
+  /**
+   * Assigns the current probability values to the instances in the database and
+   * compute the expectation value of the current mixture of distributions,
+   * using a dense probability matrix.
+   * <p>
+   * The data is processed in blocks of the given size.
+   *
+   * @param relation the database used for assignment to instances
+   * @param ids Object ids, in matrix order
+   * @param models Cluster models
+   * @param probClusterIGivenX Output storage for cluster probabilities, one row
+   *        of k values for each object
+   * @param blocksize Block size for parallel processing
+   * @return the expectation value of the current mixture of distributions
+   */
+  public static double assignProbabilitiesToInstances(Relation<? extends NumberVector> relation, ArrayDBIDs ids, List<? extends EMClusterModel<?>> models, double[] probClusterIGivenX, int blocksize) {
+    final int k = models.size();
+    final double[] emSums = new double[(ids.size() - 1) / blocksize + 1];
+    ParallelExecutor.runBlocks(ids, blocksize, (ids2, start, end) -> {
+      double[] probs = new double[k];
+      double emSum = 0.;
+      for(DBIDArrayIter iditer = ids2.iter().seek(start); iditer.getOffset() < end; iditer.advance()) {
+        NumberVector vec = relation.get(iditer);
+        for(int i = 0; i < k; i++) {
+          double v = models.get(i).estimateLogDensity(vec);
+          probs[i] = v > MIN_LOGLIKELIHOOD ? v : MIN_LOGLIKELIHOOD;
+        }
+        final double logP = logSumExp(probs);
+        for(int i = 0, j = iditer.getOffset() * k; i < k; i++, j++) {
+          probClusterIGivenX[j] = FastMath.exp(probs[i] - logP);
+        }
+        emSum += logP;
+      }
+      emSums[start / blocksize] = emSum;
+    });
+    double emSum = 0.;
+    for(double s : emSums) {
+      emSum += s;
+    }
+    return emSum / ids.size();
+  }
+
   /**
    * Compute log(sum(exp(x_i)), with attention to numerical issues.
    * 
@@ -419,6 +627,12 @@ public class EM<V extends NumberVector, M extends MeanModel> implements Clusteri
     public static final OptionID PRIOR_ID = new OptionID("em.map.prior", //
         "Regularization factor for MAP estimation.");
 
+    /**
+     * Flag to process the data in parallel.
+     */
+    public static final OptionID PARALLEL_ID = new OptionID("em.parallel", //
+        "Process the expectation and maximization steps in parallel, on blocks of the data.");
+
     /**
      * Number of clusters.
      */
@@ -444,6 +658,11 @@ public class EM<V extends NumberVector, M extends MeanModel> implements Clusteri
      */
     double prior = 0.;
 
+    /**
+     * Process in parallel.
+     */
+    boolean parallel;
+
     @Override
     public void configure(Parameterization config) {
       new IntParameter(K_ID) //
@@ -462,11 +681,12 @@ public class EM<V extends NumberVector, M extends MeanModel> implements Clusteri
           .setOptional(true) //
           .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
           .grab(config, x -> prior = x);
+      new Flag(PARALLEL_ID).grab(config, x -> parallel = x);
     }
 
     @Override
     public EM<V, M> make() {
-      return new EM<>(k, delta, initializer, maxiter, prior, false);
+      return new EM<>(k, delta, initializer, maxiter, prior, false, parallel);
     }
   }
 }
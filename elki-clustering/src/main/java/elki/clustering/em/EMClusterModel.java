@@ -81,6 +81,47 @@ public interface EMClusterModel<M extends MeanModel> {
    */
   void finalizeEStep(double weight, double prior);
 
+  /**
+   * Create an empty accumulator for the E step.
+   * <p>
+   * The accumulator shares the parameters needed for aggregation (such as the
+   * mean found in the first pass of two-pass models), but no aggregated data.
+   * It is used to process a block of the data in parallel, and then merged
+   * into this model with {@link #mergeFirstPassE} or {@link #mergeE}.
+   * <p>
+   * Models that cannot be aggregated in parts return {@code null}, which is
+   * the default; then the data is processed serially, and {@link #mergeE} is
+   * never called.
+   *
+   * @return Accumulator, or {@code null}
+   */
+  default EMClusterModel<M> newAccumulator() {
+    return null;
+  }
+
+  /**
+   * Merge the first pass of an accumulator into this model.
+   *
+   * By default, this is not used (c.f. {@link #needsTwoPass()}.
+   *
+   * @param other Accumulator to merge
+   */
+  default void mergeFirstPassE(EMClusterModel<?> other) {
+    // empty.
+  }
+
+  /**
+   * Merge the E step data of an accumulator into this model.
+   * <p>
+   * Only called with accumulators obtained from {@link #newAccumulator()}, so
+   * models that do not provide accumulators need not implement this.
+   *
+   * @param other Accumulator to merge
+   */
+  default void mergeE(EMClusterModel<?> other) {
+    throw new UnsupportedOperationException("Model does not support accumulators.");
+  }
+
   /**
    * Estimate the log likelihood of a vector.
    * 
@@ -115,6 +115,17 @@ public class MultivariateGaussianModel implements EMClusterModel<EMModel> {
     updateCholesky();
   }
 
+  /**
+   * Constructor for an empty accumulator.
+   *
+   * @param dim Dimensionality
+   */
+  private MultivariateGaussianModel(int dim) {
+    this.mean = new double[dim];
+    this.nmea = new double[dim];
+    this.covariance = new double[dim][dim];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -192,6 +203,38 @@ public class MultivariateGaussianModel implements EMClusterModel<EMModel> {
     }
   }
 
+  @Override
+  public MultivariateGaussianModel newAccumulator() {
+    return new MultivariateGaussianModel(mean.length);
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<?> other) {
+    final MultivariateGaussianModel o = (MultivariateGaussianModel) other;
+    if(o.wsum <= 0.) {
+      return;
+    }
+    final int dim = mean.length;
+    final double nwsum = wsum + o.wsum;
+    final double f = o.wsum / nwsum, g = wsum * f;
+    for(int i = 0; i < dim; i++) {
+      nmea[i] = o.mean[i] - mean[i];
+    }
+    // Combine the scatter matrixes, with a correction for the mean shift:
+    for(int i = 0; i < dim; i++) {
+      double[] cov_i = covariance[i], ocov_i = o.covariance[i];
+      final double delta_i = nmea[i] * g;
+      for(int j = 0; j <= i; j++) {
+        cov_i[j] += ocov_i[j] + delta_i * nmea[j];
+      }
+      // Other half is NOT updated here, but in finalizeEStep!
+    }
+    for(int i = 0; i < dim; i++) {
+      mean[i] += nmea[i] * f;
+    }
+    wsum = nwsum;
+  }
+
   /**
    * Update the cholesky decomposition.
    */
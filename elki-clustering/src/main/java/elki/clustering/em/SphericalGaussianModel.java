@@ -94,6 +94,16 @@ public class SphericalGaussianModel implements EMClusterModel<EMModel> {
     this.wsum = 0.;
   }
 
+  /**
+   * Constructor for an empty accumulator.
+   *
+   * @param dim Dimensionality
+   */
+  private SphericalGaussianModel(int dim) {
+    this.mean = new double[dim];
+    this.nmea = new double[dim];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -138,6 +148,29 @@ public class SphericalGaussianModel implements EMClusterModel<EMModel> {
     logNormDet = FastMath.log(weight) - .5 * logNorm - logDet;
   }
 
+  @Override
+  public SphericalGaussianModel newAccumulator() {
+    return new SphericalGaussianModel(mean.length);
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<?> other) {
+    final SphericalGaussianModel o = (SphericalGaussianModel) other;
+    if(o.wsum <= 0.) {
+      return;
+    }
+    final double nwsum = wsum + o.wsum;
+    final double f = o.wsum / nwsum, g = wsum * f;
+    double shift = 0.;
+    for(int i = 0; i < mean.length; i++) {
+      final double delta = o.mean[i] - mean[i];
+      shift += delta * delta;
+      mean[i] += delta * f;
+    }
+    variance += o.variance + shift * g;
+    wsum = nwsum;
+  }
+
   /**
    * Compute the Mahalanobis distance from the centroid for a given vector.
    * 
@@ -122,6 +122,17 @@ public class TextbookMultivariateGaussianModel implements EMClusterModel<EMModel
     updateCholesky();
   }
 
+  /**
+   * Constructor for an empty accumulator.
+   *
+   * @param dim Dimensionality
+   */
+  private TextbookMultivariateGaussianModel(int dim) {
+    this.mean = new double[dim];
+    this.tmp = new double[dim];
+    this.covariance = new double[dim][dim];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -197,6 +208,25 @@ public class TextbookMultivariateGaussianModel implements EMClusterModel<EMModel
     }
   }
 
+  @Override
+  public TextbookMultivariateGaussianModel newAccumulator() {
+    return new TextbookMultivariateGaussianModel(mean.length);
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<?> other) {
+    final TextbookMultivariateGaussianModel o = (TextbookMultivariateGaussianModel) other;
+    for(int i = 0; i < mean.length; i++) {
+      mean[i] += o.mean[i];
+      double[] cov_i = covariance[i], ocov_i = o.covariance[i];
+      for(int j = 0; j <= i; j++) {
+        cov_i[j] += ocov_i[j];
+      }
+      // Other half is NOT updated here, but in finalizeEStep!
+    }
+    wsum += o.wsum;
+  }
+
   /**
    * Update the cholesky decomposition.
    */
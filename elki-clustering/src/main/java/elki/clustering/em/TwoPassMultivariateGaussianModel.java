@@ -122,6 +122,17 @@ public class TwoPassMultivariateGaussianModel implements EMClusterModel<EMModel>
     updateCholesky();
   }
 
+  /**
+   * Constructor for an empty accumulator.
+   *
+   * @param dim Dimensionality
+   */
+  private TwoPassMultivariateGaussianModel(int dim) {
+    this.mean = new double[dim];
+    this.tmp = new double[dim];
+    this.covariance = new double[dim][dim];
+  }
+
   @Override
   public void beginEStep() {
     wsum = 0.;
@@ -226,6 +237,34 @@ public class TwoPassMultivariateGaussianModel implements EMClusterModel<EMModel>
     }
   }
 
+  @Override
+  public TwoPassMultivariateGaussianModel newAccumulator() {
+    TwoPassMultivariateGaussianModel acc = new TwoPassMultivariateGaussianModel(mean.length);
+    System.arraycopy(mean, 0, acc.mean, 0, mean.length);
+    return acc;
+  }
+
+  @Override
+  public void mergeFirstPassE(EMClusterModel<?> other) {
+    final TwoPassMultivariateGaussianModel o = (TwoPassMultivariateGaussianModel) other;
+    for(int i = 0; i < mean.length; i++) {
+      mean[i] += o.mean[i];
+    }
+    wsum += o.wsum;
+  }
+
+  @Override
+  public void mergeE(EMClusterModel<?> other) {
+    final double[][] ocov = ((TwoPassMultivariateGaussianModel) other).covariance;
+    for(int i = 0; i < covariance.length; i++) {
+      double[] cov_i = covariance[i], ocov_i = ocov[i];
+      for(int j = 0; j <= i; j++) {
+        cov_i[j] += ocov_i[j];
+      }
+      // Other half is NOT updated here, but in finalizeEStep!
+    }
+  }
+
   /**
    * Update the cholesky decomposition.
    */
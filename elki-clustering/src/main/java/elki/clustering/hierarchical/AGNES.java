@@ -20,6 +20,8 @@
  */
 package elki.clustering.hierarchical;
 
+import java.util.Arrays;
+
 import elki.Algorithm;
 import elki.clustering.hierarchical.linkage.CentroidLinkage;
 import elki.clustering.hierarchical.linkage.Linkage;
@@ -43,6 +45,7 @@ import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -82,6 +85,11 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * R. M. Cormack<br>
  * A Review of Classification<br>
  * Journal of the Royal Statistical Society. Series A, Vol. 134, No. 3
+ * <p>
+ * The distance matrix is computed in parallel. For large data sets, the matrix
+ * scans and updates of each merge are also processed in parallel blocks; the
+ * result is the same as with serial processing. The matrix can optionally be
+ * stored in single precision, to halve the memory usage.
  *
  * @author Erich Schubert
  * @since 0.6.0
@@ -123,6 +131,11 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    */
   protected Linkage linkage = WardLinkage.STATIC;
 
+  /**
+   * Store the distance matrix in single precision.
+   */
+  protected boolean singlePrecision;
+
   /**
    * Constructor.
    *
@@ -130,9 +143,21 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    * @param linkage Linkage method
    */
   public AGNES(Distance<? super O> distance, Linkage linkage) {
+    this(distance, linkage, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param linkage Linkage method
+   * @param singlePrecision Store the distance matrix in single precision
+   */
+  public AGNES(Distance<? super O> distance, Linkage linkage, boolean singlePrecision) {
     super();
     this.distance = distance;
     this.linkage = linkage;
+    this.singlePrecision = singlePrecision;
   }
 
   /**
@@ -150,7 +175,7 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
 
     // Compute the initial (lower triangular) distance matrix.
-    MatrixParadigm mat = new MatrixParadigm(ids);
+    MatrixParadigm mat = new MatrixParadigm(ids, singlePrecision);
     initializeDistanceMatrix(mat, dq, linkage);
 
     // Initialize space for result:
@@ -197,26 +222,8 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    * @param linkage Linkage method
    */
   protected static void initializeDistanceMatrix(MatrixParadigm mat, DistanceQuery<?> dq, Linkage linkage) {
-    final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] matrix = mat.matrix;
     final boolean issquare = dq.getDistance().isSquared();
-    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Distance matrix computation", matrix.length, LOG) : null;
-    int pos = 0;
-    for(ix.seek(0); ix.valid(); ix.advance()) {
-      final int x = ix.getOffset();
-      assert (pos == MatrixParadigm.triangleSize(x));
-      for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
-        matrix[pos++] = linkage.initial(dq.distance(ix, iy), issquare);
-      }
-      if(prog != null) {
-        prog.setProcessed(pos, LOG);
-      }
-    }
-    // Avoid logging errors in case scratch space was too large:
-    if(prog != null) {
-      prog.setProcessed(matrix.length, LOG);
-    }
-    LOG.ensureCompleted(prog);
+    mat.initializeWithDistances(dq, d -> linkage.initial(d, issquare));
   }
 
   /**
@@ -229,29 +236,49 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    */
   protected int findMerge(int end, MatrixParadigm mat, PointerHierarchyRepresentationBuilder builder) {
     assert (end > 0);
-    final DBIDArrayIter ix = mat.ix, iy = mat.iy;
-    final double[] matrix = mat.matrix;
-    double mindist = Double.POSITIVE_INFINITY;
-    int x = -1, y = -1;
-    // Find minimum:
-    for(int ox = 0, xbase = 0; ox < end; xbase += ox++) {
-      // Skip if object has already joined a cluster:
-      if(builder.isLinked(ix.seek(ox))) {
-        continue;
-      }
-      assert (xbase == MatrixParadigm.triangleSize(ox));
-      for(int oy = 0; oy < ox; oy++) {
+    // Minimum of each block of rows:
+    final int numblocks = (end - 1) / mat.blocksize + 1;
+    final double[] bestd = new double[numblocks];
+    final int[] bestx = new int[numblocks], besty = new int[numblocks];
+    Arrays.fill(bestx, -1);
+    mat.runBlocks(end, (ix, start, stop) -> {
+      final DBIDArrayIter iy = mat.ids.iter();
+      double mindist = Double.POSITIVE_INFINITY;
+      int x = -1, y = -1;
+      long xbase = MatrixParadigm.triangleSizeLong(start);
+      for(int ox = start; ox < stop; xbase += ox++) {
         // Skip if object has already joined a cluster:
-        if(builder.isLinked(iy.seek(oy))) {
+        if(builder.isLinked(ix.seek(ox))) {
           continue;
         }
-        final double dist = matrix[xbase + oy];
-        if(dist <= mindist) { // Prefer later on ==, to truncate more often.
-          mindist = dist;
-          x = ox;
-          y = oy;
+        assert (xbase == MatrixParadigm.triangleSizeLong(ox));
+        for(int oy = 0; oy < ox; oy++) {
+          // Skip if object has already joined a cluster:
+          if(builder.isLinked(iy.seek(oy))) {
+            continue;
+          }
+          final double dist = mat.getValue(xbase + oy);
+          if(dist <= mindist) { // Prefer later on ==, to truncate more often.
+            mindist = dist;
+            x = ox;
+            y = oy;
+          }
         }
       }
+      final int b = start / mat.blocksize;
+      bestd[b] = mindist;
+      bestx[b] = x;
+      besty[b] = y;
+    });
+    // Find minimum, with the same preference as above:
+    double mindist = Double.POSITIVE_INFINITY;
+    int x = -1, y = -1;
+    for(int b = 0; b < numblocks; b++) {
+      if(bestx[b] >= 0 && bestd[b] <= mindist) {
+        mindist = bestd[b];
+        x = bestx[b];
+        y = besty[b];
+      }
     }
     assert (x >= 0 && y >= 0);
     assert (y < x); // We could swap otherwise, but this shouldn't arise.
@@ -299,40 +326,26 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    */
   protected void updateMatrix(int end, MatrixParadigm mat, PointerHierarchyRepresentationBuilder builder, double mindist, int x, int y, final int sizex, final int sizey) {
     // Update distance matrix. Note: y < x
-    final int xbase = MatrixParadigm.triangleSize(x);
-    final int ybase = MatrixParadigm.triangleSize(y);
-    double[] scratch = mat.matrix;
-    DBIDArrayIter ij = mat.ix;
-
-    // Write to (y, j), with j < y
-    int j = 0;
-    for(; j < y; j++) {
-      if(builder.isLinked(ij.seek(j))) {
-        continue;
-      }
-      assert (j < y); // Otherwise, ybase + j is the wrong position!
-      final int yb = ybase + j;
-      scratch[yb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[yb], builder.getSize(ij), mindist);
-    }
-    j++; // Skip y
-    // Write to (j, y), with y < j < x
-    int jbase = MatrixParadigm.triangleSize(j);
-    for(; j < x; jbase += j++) {
-      if(builder.isLinked(ij.seek(j))) {
-        continue;
-      }
-      final int jb = jbase + y;
-      scratch[jb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[jb], builder.getSize(ij), mindist);
-    }
-    jbase += j++; // Skip x
-    // Write to (j, y), with y < x < j
-    for(; j < end; jbase += j++) {
-      if(builder.isLinked(ij.seek(j))) {
-        continue;
+    final long xbase = MatrixParadigm.triangleSizeLong(x);
+    final long ybase = MatrixParadigm.triangleSizeLong(y);
+    mat.runBlocks(end, (ij, start, stop) -> {
+      for(int j = start; j < stop; j++) {
+        if(j == y || j == x || builder.isLinked(ij.seek(j))) {
+          continue;
+        }
+        final long jb, xb;
+        if(j < y) { // Write to (y, j), with j < y
+          jb = ybase + j;
+          xb = xbase + j;
+        }
+        else { // Write to (j, y), with y < j
+          final long jbase = MatrixParadigm.triangleSizeLong(j);
+          jb = jbase + y;
+          xb = j < x ? xbase + j : jbase + x;
+        }
+        mat.setValue(jb, linkage.combine(sizex, mat.getValue(xb), sizey, mat.getValue(jb), builder.getSize(ij), mindist));
       }
-      final int jb = jbase + y;
-      scratch[jb] = linkage.combine(sizex, scratch[jbase + x], sizey, scratch[jb], builder.getSize(ij), mindist);
-    }
+    });
   }
 
   @Override
@@ -355,6 +368,11 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
      */
     public static final OptionID LINKAGE_ID = new OptionID("hierarchical.linkage", "Linkage method to use (e.g. Ward, Single-Link)");
 
+    /**
+     * Flag to store the distance matrix in single precision.
+     */
+    public static final OptionID FLOAT_ID = new OptionID("hierarchical.float", "Store the distance matrix in single precision, to halve the memory usage. This also allows data sets with more than 65536 objects.");
+
     /**
      * Current linkage in use.
      */
@@ -365,6 +383,11 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
      */
     protected Distance<? super O> distance;
 
+    /**
+     * Store the distance matrix in single precision.
+     */
+    protected boolean singlePrecision;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<Linkage>(LINKAGE_ID, Linkage.class) //
@@ -374,11 +397,12 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
           ? SquaredEuclideanDistance.class : EuclideanDistance.class;
       new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, defaultD) //
           .grab(config, x -> distance = x);
+      new Flag(FLOAT_ID).grab(config, x -> singlePrecision = x);
     }
 
     @Override
     public AGNES<O> make() {
-      return new AGNES<>(distance, linkage);
+      return new AGNES<>(distance, linkage, singlePrecision);
     }
   }
 }
@@ -44,6 +44,7 @@ import elki.utilities.Priority;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -65,6 +66,10 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * Hierarchical Clustering Methods<br>
  * Cluster Analysis for Applications<br>
  * ISBN: 0120576503
+ * <p>
+ * For large data sets, the matrix updates are processed in parallel blocks;
+ * the result is the same as with serial processing. The matrix can optionally
+ * be stored in single precision, to halve the memory usage.
  *
  * @author Erich Schubert
  * @since 0.7.0
@@ -95,6 +100,11 @@ public class Anderberg<O> implements HierarchicalClusteringAlgorithm {
    */
   protected Linkage linkage = WardLinkage.STATIC;
 
+  /**
+   * Store the distance matrix in single precision.
+   */
+  protected boolean singlePrecision;
+
   /**
    * Constructor.
    *
@@ -102,9 +112,21 @@ public class Anderberg<O> implements HierarchicalClusteringAlgorithm {
    * @param linkage Linkage method
    */
   public Anderberg(Distance<? super O> distance, Linkage linkage) {
+    this(distance, linkage, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param linkage Linkage method
+   * @param singlePrecision Store the distance matrix in single precision
+   */
+  public Anderberg(Distance<? super O> distance, Linkage linkage, boolean singlePrecision) {
     super();
     this.distance = distance;
     this.linkage = linkage;
+    this.singlePrecision = singlePrecision;
   }
 
   /**
@@ -119,7 +141,7 @@ public class Anderberg<O> implements HierarchicalClusteringAlgorithm {
     }
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
     final DBIDs ids = relation.getDBIDs();
-    MatrixParadigm mat = new MatrixParadigm(ids);
+    MatrixParadigm mat = new MatrixParadigm(ids, singlePrecision);
     final int size = ids.size();
 
     // Position counter - must agree with computeOffset!
@@ -128,7 +150,7 @@ public class Anderberg<O> implements HierarchicalClusteringAlgorithm {
     // Arrays used for caching:
     double[] bestd = new double[size];
     int[] besti = new int[size];
-    initializeNNCache(mat.matrix, bestd, besti);
+    initializeNNCache(mat, bestd, besti);
 
     // Initialize space for result:
     PointerHierarchyRepresentationBuilder builder = new PointerHierarchyRepresentationBuilder(ids, dq.getDistance().isSquared());
@@ -149,30 +171,33 @@ public class Anderberg<O> implements HierarchicalClusteringAlgorithm {
   /**
    * Initialize the NN cache.
    *
-   * @param scratch Scratch space
+   * @param mat Matrix paradigm
    * @param bestd Best distance
    * @param besti Best index
    */
-  protected static void initializeNNCache(double[] scratch, double[] bestd, int[] besti) {
+  protected static void initializeNNCache(MatrixParadigm mat, double[] bestd, int[] besti) {
     final int size = bestd.length;
     Arrays.fill(bestd, Double.POSITIVE_INFINITY);
     Arrays.fill(besti, -1);
     besti[0] = Integer.MAX_VALUE; // invalid, but not deactivated
-    for(int x = 1, p = 0; x < size; x++) {
-      assert p == MatrixParadigm.triangleSize(x);
-      double bestdx = Double.POSITIVE_INFINITY;
-      int bestix = -1;
-      for(int y = 0; y < x; y++, p++) {
-        final double v = scratch[p];
-        if(v < bestdx) {
-          bestdx = v;
-          bestix = y;
+    mat.runBlocks(size, (ix, start, end) -> {
+      long p = MatrixParadigm.triangleSizeLong(Math.max(start, 1));
+      for(int x = Math.max(start, 1); x < end; x++) {
+        assert p == MatrixParadigm.triangleSizeLong(x);
+        double bestdx = Double.POSITIVE_INFINITY;
+        int bestix = -1;
+        for(int y = 0; y < x; y++, p++) {
+          final double v = mat.getValue(p);
+          if(v < bestdx) {
+            bestdx = v;
+            bestix = y;
+          }
         }
+        assert 0 <= bestix && bestix < x;
+        bestd[x] = bestdx;
+        besti[x] = bestix;
       }
-      assert 0 <= bestix && bestix < x;
-      bestd[x] = bestdx;
-      besti[x] = bestix;
-    }
+    });
   }
 
   /**
@@ -235,18 +260,21 @@ public class Anderberg<O> implements HierarchicalClusteringAlgorithm {
     final int sizex = builder.getSize(ix), sizey = builder.getSize(iy);
     builder.setSize(iy, sizex + sizey);
     besti[x] = -1; // Deactivate removed cluster.
-    updateMatrix(size, mat.matrix, iy, bestd, besti, builder, mindist, x, y, sizex, sizey);
+    updateMatrix(size, mat, bestd, besti, builder, mindist, x, y, sizex, sizey);
     if(y > 0) {
-      findBest(size, mat.matrix, bestd, besti, y);
+      findBest(size, mat, bestd, besti, y);
     }
   }
 
   /**
    * Update the scratch distance matrix.
+   * <p>
+   * For large data sets, this is processed in parallel blocks. Each block only
+   * modifies the matrix cells and cache entries of its own objects, and
+   * objects are never deactivated during the update.
    *
    * @param size Data set size
-   * @param scratch Scratch matrix.
-   * @param ij Iterator to reuse
+   * @param mat Matrix paradigm
    * @param bestd Best distance
    * @param besti Index of best distance
    * @param builder Hierarchy builder
@@ -256,52 +284,36 @@ public class Anderberg<O> implements HierarchicalClusteringAlgorithm {
    * @param sizex Old size of first cluster, with {@code x > y}
    * @param sizey Old size of second cluster, with {@code y > x}
    */
-  protected void updateMatrix(int size, double[] scratch, DBIDArrayIter ij, double[] bestd, int[] besti, PointerHierarchyRepresentationBuilder builder, double mindist, int x, int y, final int sizex, final int sizey) {
+  protected void updateMatrix(int size, MatrixParadigm mat, double[] bestd, int[] besti, PointerHierarchyRepresentationBuilder builder, double mindist, int x, int y, final int sizex, final int sizey) {
     // Update distance matrix. Note: miny < minx
-    final int xbase = MatrixParadigm.triangleSize(x);
-    final int ybase = MatrixParadigm.triangleSize(y);
-
-    // Write to (y, j), with j < y
-    int j = 0;
-    for(; j < y; j++) {
-      if(builder.isLinked(ij.seek(j))) {
-        continue;
-      }
-      final int sizej = builder.getSize(ij);
-      final int yb = ybase + j;
-      final double d = scratch[yb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[yb], sizej, mindist);
-      updateCache(size, scratch, bestd, besti, x, y, j, d);
-    }
-    j++; // Skip y
-    // Write to (j, y), with y < j < x
-    int jbase = MatrixParadigm.triangleSize(j);
-    for(; j < x; jbase += j++) {
-      if(builder.isLinked(ij.seek(j))) {
-        continue;
-      }
-      final int sizej = builder.getSize(ij);
-      final int jb = jbase + y;
-      final double d = scratch[jb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[jb], sizej, mindist);
-      updateCache(size, scratch, bestd, besti, x, y, j, d);
-    }
-    jbase += j++; // Skip x
-    // Write to (j, y), with y < x < j
-    for(; j < size; jbase += j++) {
-      if(builder.isLinked(ij.seek(j))) {
-        continue;
+    final long xbase = MatrixParadigm.triangleSizeLong(x);
+    final long ybase = MatrixParadigm.triangleSizeLong(y);
+    mat.runBlocks(size, (ij, start, end) -> {
+      for(int j = start; j < end; j++) {
+        if(j == y || j == x || builder.isLinked(ij.seek(j))) {
+          continue;
+        }
+        final long jb, xb;
+        if(j < y) { // Write to (y, j), with j < y
+          jb = ybase + j;
+          xb = xbase + j;
+        }
+        else { // Write to (j, y), with y < j
+          final long jbase = MatrixParadigm.triangleSizeLong(j);
+          jb = jbase + y;
+          xb = j < x ? xbase + j : jbase + x;
+        }
+        final double d = mat.setValue(jb, linkage.combine(sizex, mat.getValue(xb), sizey, mat.getValue(jb), builder.getSize(ij), mindist));
+        updateCache(size, mat, bestd, besti, x, y, j, d);
       }
-      final int sizej = builder.getSize(ij);
-      final int jb = jbase + y;
-      final double d = scratch[jb] = linkage.combine(sizex, scratch[jbase + x], sizey, scratch[jb], sizej, mindist);
-      updateCache(size, scratch, bestd, besti, x, y, j, d);
-    }
+    });
   }
 
   /**
    * Update the cache.
    *
    * @param size Working set size
-   * @param scratch Scratch matrix
+   * @param mat Matrix paradigm
    * @param bestd Best distance
    * @param besti Best index
    * @param x First cluster
@@ -309,7 +321,7 @@ public class Anderberg<O> implements HierarchicalClusteringAlgorithm {
    * @param j Updated value d(y, j)
    * @param d New distance
    */
-  protected static void updateCache(int size, double[] scratch, double[] bestd, int[] besti, int x, int y, int j, double d) {
+  protected static void updateCache(int size, MatrixParadigm mat, double[] bestd, int[] besti, int x, int y, int j, double d) {
     assert y < x;
     // New best
     if(y < j && d <= bestd[j]) {
@@ -319,7 +331,7 @@ public class Anderberg<O> implements HierarchicalClusteringAlgorithm {
     }
     // Needs slow update.
     if(besti[j] == x || besti[j] == y) {
-      findBest(size, scratch, bestd, besti, j);
+      findBest(size, mat, bestd, besti, j);
     }
   }
 
@@ -327,20 +339,21 @@ public class Anderberg<O> implements HierarchicalClusteringAlgorithm {
    * Find the best in a row of the triangular matrix.
    *
    * @param size Active size
-   * @param scratch Scratch matrix
+   * @param mat Matrix paradigm
    * @param bestd Best distances cache
    * @param besti Best indexes cache
    * @param j Row to update
    */
-  protected static void findBest(int size, double[] scratch, double[] bestd, int[] besti, int j) {
+  protected static void findBest(int size, MatrixParadigm mat, double[] bestd, int[] besti, int j) {
     // The distance has increased, we may no longer be the best merge.
     double bestdj = Double.POSITIVE_INFINITY;
     int bestij = -1;
-    for(int i = 0, o = MatrixParadigm.triangleSize(j); i < j; i++, o++) {
+    long o = MatrixParadigm.triangleSizeLong(j);
+    for(int i = 0; i < j; i++, o++) {
       if(besti[i] < 0) {
         continue;
       }
-      final double dist = scratch[o];
+      final double dist = mat.getValue(o);
       if(dist <= bestdj) {
         bestdj = dist;
         bestij = i;
@@ -376,6 +389,11 @@ public class Anderberg<O> implements HierarchicalClusteringAlgorithm {
      */
     protected Distance<? super O> distance;
 
+    /**
+     * Store the distance matrix in single precision.
+     */
+    protected boolean singlePrecision;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<Linkage>(AGNES.Par.LINKAGE_ID, Linkage.class) //
@@ -385,11 +403,12 @@ public class Anderberg<O> implements HierarchicalClusteringAlgorithm {
           ? SquaredEuclideanDistance.class : EuclideanDistance.class;
       new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, defaultD) //
           .grab(config, x -> distance = x);
+      new Flag(AGNES.Par.FLOAT_ID).grab(config, x -> singlePrecision = x);
     }
 
     @Override
     public Anderberg<O> make() {
-      return new Anderberg<>(distance, linkage);
+      return new Anderberg<>(distance, linkage, singlePrecision);
     }
   }
 }
@@ -20,11 +20,16 @@
  */
 package elki.clustering.hierarchical;
 
+import java.util.function.DoubleUnaryOperator;
+
 import elki.database.ids.ArrayDBIDs;
 import elki.database.ids.DBIDArrayIter;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
 import elki.database.query.distance.DistanceQuery;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.parallel.ParallelExecutor;
 import elki.utilities.exceptions.AbortException;
 
 /**
@@ -36,47 +41,164 @@ import elki.utilities.exceptions.AbortException;
  * the matrix view (indexed by integers 0...n-1).
  * <p>
  * While this will usually store (merge-) distances when clustering, it can
- * store arbitrary doubles.
+ * store arbitrary doubles. Optionally, the values can be stored in single
+ * precision only, which halves the memory requirements; then only
+ * {@link #fmatrix} is available, and algorithms need to access the values via
+ * {@link #getValue} and {@link #setValue}. The single precision matrix is
+ * split into multiple arrays, and hence is not limited by the maximum array
+ * size of Java; use {@link #triangleSizeLong} for its positions.
  *
  * @author Erich Schubert
  * @since 0.7.5
  */
 public class MatrixParadigm {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(MatrixParadigm.class);
+
+  /**
+   * Default minimum number of rows or columns to process in parallel.
+   */
+  public static final int PARALLEL_THRESHOLD = 1 << 14;
+
+  /**
+   * Default block size for parallel processing of rows or columns.
+   */
+  public static final int PARALLEL_BLOCKSIZE = 1 << 10;
+
+  /**
+   * Maximum size in double precision, due to the maximum array size.
+   */
+  private static final int MAX_DOUBLE_SIZE = 0x10000;
+
+  /**
+   * Maximum size in single precision, to keep the number of arrays an int.
+   */
+  private static final int MAX_FLOAT_SIZE = 0x1000000;
+
+  /**
+   * Number of values per array in single precision (as power of two).
+   */
+  private static final int SHIFT = 30;
+
+  /**
+   * Mask for the position within an array.
+   */
+  private static final long MASK = (1L << SHIFT) - 1;
+
+  /**
+   * Current minimum number of rows or columns to process in parallel.
+   */
+  private static volatile int parallelThreshold = PARALLEL_THRESHOLD;
+
+  /**
+   * Current block size for parallel processing.
+   */
+  private static volatile int parallelBlocksize = PARALLEL_BLOCKSIZE;
+
+  /**
+   * Object ids, in matrix order.
+   */
+  public final ArrayDBIDs ids;
+
   /**
    * Two iterators to reference to objects.
    */
   public final DBIDArrayIter ix, iy;
 
   /**
-   * Distance matrix (<b>modifiable</b>).
+   * Distance matrix (<b>modifiable</b>), {@code null} in single precision.
    */
   public final double[] matrix;
 
+  /**
+   * Single precision distance matrix (<b>modifiable</b>), {@code null} in
+   * double precision. Split into arrays of 2^30 values each.
+   */
+  public final float[][] fmatrix;
+
   /**
    * Number of rows/columns.
    */
   public final int size;
 
+  /**
+   * Minimum number of rows or columns to process in parallel.
+   */
+  public final int threshold;
+
+  /**
+   * Block size for parallel processing of rows or columns.
+   */
+  public final int blocksize;
+
   /**
    * Constructor.
    *
    * @param ids Database ids.
    */
   public MatrixParadigm(DBIDs ids) {
+    this(ids, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param ids Database ids.
+   * @param singlePrecision Store values in single precision only
+   */
+  public MatrixParadigm(DBIDs ids, boolean singlePrecision) {
     size = ids.size();
-    if(size > 0x10000) {
+    if(!singlePrecision && size > MAX_DOUBLE_SIZE) {
+      throw new AbortException("This implementation does not scale to data sets larger than " + //
+          MAX_DOUBLE_SIZE + " instances (~16 GB RAM) in double precision, at which point the Java maximum array size is reached." + //
+          " Use single precision for larger data sets.");
+    }
+    if(singlePrecision && size > MAX_FLOAT_SIZE) {
       throw new AbortException("This implementation does not scale to data sets larger than " + //
-          0x10000 // = 65535
-          + " instances (~16 GB RAM), at which point the Java maximum array size is reached.");
+          MAX_FLOAT_SIZE + " instances in single precision.");
     }
-    ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
-    ix = aids.iter();
-    iy = aids.iter();
-    matrix = new double[triangleSize(size)];
+    this.ids = DBIDUtil.ensureArray(ids);
+    ix = this.ids.iter();
+    iy = this.ids.iter();
+    threshold = parallelThreshold;
+    blocksize = parallelBlocksize;
+    if(singlePrecision) {
+      final long msize = triangleSizeLong(size);
+      matrix = null;
+      fmatrix = new float[(int) ((msize + MASK) >>> SHIFT)][];
+      for(int i = 0; i < fmatrix.length; i++) {
+        fmatrix[i] = new float[(int) Math.min(MASK + 1, msize - (((long) i) << SHIFT))];
+      }
+    }
+    else {
+      matrix = new double[triangleSize(size)];
+      fmatrix = null;
+    }
+  }
+
+  /**
+   * Set the minimum size and block size for parallel processing of the
+   * matrices created afterwards. This affects all matrices of the JVM, and is
+   * only meant for testing; tests must restore the defaults afterwards.
+   *
+   * @param threshold Minimum number of rows or columns to process in parallel
+   * @param blocksize Block size for parallel processing
+   */
+  static void setParallelThreshold(int threshold, int blocksize) {
+    if(blocksize < 1) {
+      throw new IllegalArgumentException("Block size must be positive.");
+    }
+    parallelThreshold = threshold;
+    parallelBlocksize = blocksize;
   }
 
   /**
    * Compute the size of a complete x by x triangle (minus diagonal)
+   * <p>
+   * This is only valid for double precision matrixes, use
+   * {@link #triangleSizeLong} for single precision.
    *
    * @param x Offset
    * @return Size of complete triangle
@@ -85,6 +207,17 @@ public class MatrixParadigm {
     return (x * (x - 1)) >>> 1;
   }
 
+  /**
+   * Compute the size of a complete x by x triangle (minus diagonal), for
+   * positions in matrixes of more than 65536 objects.
+   *
+   * @param x Offset
+   * @return Size of complete triangle
+   */
+  public static long triangleSizeLong(int x) {
+    return (x * (long) (x - 1)) >>> 1;
+  }
+
   /**
    * Get a value from the (upper triangular) distance matrix.
    * <p>
@@ -96,7 +229,51 @@ public class MatrixParadigm {
    * @return Distance
    */
   public double get(int x, int y) {
-    return x == y ? 0 : x < y ? matrix[triangleSize(y) + x] : matrix[triangleSize(x) + y];
+    return x == y ? 0 : x < y ? getValue(triangleSizeLong(y) + x) : getValue(triangleSizeLong(x) + y);
+  }
+
+  /**
+   * Get the value at a position of the triangular matrix.
+   *
+   * @param pos Position, {@code triangleSizeLong(x) + y} for {@code y < x}
+   * @return Value
+   */
+  public double getValue(long pos) {
+    return matrix != null ? matrix[(int) pos] : fmatrix[(int) (pos >>> SHIFT)][(int) (pos & MASK)];
+  }
+
+  /**
+   * Set the value at a position of the triangular matrix.
+   *
+   * @param pos Position, {@code triangleSizeLong(x) + y} for {@code y < x}
+   * @param v Value
+   * @return Value as stored, i.e., rounded in single precision
+   */
+  public double setValue(long pos, double v) {
+    if(matrix != null) {
+      return matrix[(int) pos] = v;
+    }
+    return fmatrix[(int) (pos >>> SHIFT)][(int) (pos & MASK)] = (float) v;
+  }
+
+  /**
+   * Process a range of rows or columns, in parallel blocks if it is large.
+   * Blocks are aligned to multiples of {@link #blocksize}, and must not write
+   * to shared state other than their own matrix cells.
+   *
+   * @param end End of the range (exclusive), starting at 0
+   * @param proc Block processor, receiving an iterator for its own use
+   */
+  public void runBlocks(int end, RangeProcessor proc) {
+    if(end < threshold) {
+      proc.process(ids.iter(), 0, end);
+      return;
+    }
+    ParallelExecutor.runBlocks(ids, blocksize, (ids, start, stop) -> {
+      if(start < end) {
+        proc.process(ids.iter(), start, Math.min(stop, end));
+      }
+    });
   }
 
   /**
@@ -106,16 +283,56 @@ public class MatrixParadigm {
    * @return this
    */
   public MatrixParadigm initializeWithDistances(DistanceQuery<?> dq) {
-    final DBIDArrayIter ix = this.ix, iy = this.iy;
-    final double[] matrix = this.matrix;
-    int pos = 0;
-    for(ix.seek(0); ix.valid(); ix.advance()) {
-      final int x = ix.getOffset();
-      assert (pos == triangleSize(x));
-      for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
-        matrix[pos++] = dq.distance(ix, iy);
+    return initializeWithDistances(dq, DoubleUnaryOperator.identity());
+  }
+
+  /**
+   * Initialize a distance matrix, computing the rows in parallel.
+   *
+   * @param dq Distance query
+   * @param transform Transformation of the distance values
+   * @return this
+   */
+  public MatrixParadigm initializeWithDistances(DistanceQuery<?> dq, DoubleUnaryOperator transform) {
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Distance matrix computation", size, LOG) : null;
+    // Rows have different length, so use small blocks for load balancing.
+    ParallelExecutor.runBlocks(ids, 64, (ids, start, end) -> {
+      final DBIDArrayIter ix = ids.iter(), iy = ids.iter();
+      for(ix.seek(start); ix.getOffset() < end; ix.advance()) {
+        final int x = ix.getOffset();
+        if(matrix != null) {
+          int pos = triangleSize(x);
+          for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
+            matrix[pos++] = transform.applyAsDouble(dq.distance(ix, iy));
+          }
+        }
+        else {
+          long pos = triangleSizeLong(x);
+          for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
+            setValue(pos++, transform.applyAsDouble(dq.distance(ix, iy)));
+          }
+        }
+        LOG.incrementProcessed(prog);
       }
-    }
+    });
+    LOG.ensureCompleted(prog);
     return this;
   }
+
+  /**
+   * Processor for a range of rows or columns.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  public interface RangeProcessor {
+    /**
+     * Process a range of rows or columns.
+     *
+     * @param it Iterator, for use by this processor only
+     * @param start Start of the range
+     * @param end End of the range (exclusive)
+     */
+    void process(DBIDArrayIter it, int start, int end);
+  }
 }
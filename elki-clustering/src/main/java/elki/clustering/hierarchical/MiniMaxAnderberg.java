@@ -111,7 +111,7 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
     // Arrays used for caching:
     double[] bestd = new double[size];
     int[] besti = new int[size];
-    Anderberg.initializeNNCache(mat.matrix, bestd, besti);
+    Anderberg.initializeNNCache(mat, bestd, besti);
 
     // Repeat until everything merged into 1 cluster
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Agglomerative clustering", size - 1, LOG) : null;
@@ -204,7 +204,7 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
     besti[x] = -1; // Deactivate x in cache:
     updateMatrices(size, mat, prots, builder, clusters, dq, bestd, besti, x, y);
     if(y > 0) {
-      Anderberg.findBest(size, distances, bestd, besti, y);
+      Anderberg.findBest(size, mat, bestd, besti, y);
     }
   }
 
@@ -239,7 +239,7 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
         continue;
       }
       MiniMax.updateEntry(mat, prots, clusters, dq, a, b);
-      Anderberg.updateCache(size, distances, bestd, besti, x, y, b, distances[yoffset + b]);
+      Anderberg.updateCache(size, mat, bestd, besti, x, y, b, distances[yoffset + b]);
     }
 
     // Update entries at (a,y) with a > y
@@ -252,7 +252,7 @@ public class MiniMaxAnderberg<O> implements HierarchicalClusteringAlgorithm {
         continue;
       }
       MiniMax.updateEntry(mat, prots, clusters, dq, a, b);
-      Anderberg.updateCache(size, distances, bestd, besti, x, y, a, distances[MatrixParadigm.triangleSize(a) + y]);
+      Anderberg.updateCache(size, mat, bestd, besti, x, y, a, distances[MatrixParadigm.triangleSize(a) + y]);
     }
   }
 
@@ -20,6 +20,8 @@
  */
 package elki.clustering.hierarchical;
 
+import java.util.Arrays;
+
 import elki.clustering.hierarchical.linkage.Linkage;
 import elki.clustering.hierarchical.linkage.SingleLinkage;
 import elki.database.ids.DBIDArrayIter;
@@ -76,6 +78,17 @@ public class NNChain<O> extends AGNES<O> {
     super(distance, linkage);
   }
 
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param linkage Linkage method
+   * @param singlePrecision Store the distance matrix in single precision
+   */
+  public NNChain(Distance<? super O> distance, Linkage linkage, boolean singlePrecision) {
+    super(distance, linkage, singlePrecision);
+  }
+
   /**
    * Run the algorithm
    *
@@ -88,7 +101,7 @@ public class NNChain<O> extends AGNES<O> {
     }
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
     final DBIDs ids = relation.getDBIDs();
-    MatrixParadigm mat = new MatrixParadigm(ids);
+    MatrixParadigm mat = new MatrixParadigm(ids, singlePrecision);
 
     // Compute the initial (lower triangular) distance matrix.
     initializeDistanceMatrix(mat, dq, linkage);
@@ -109,7 +122,6 @@ public class NNChain<O> extends AGNES<O> {
    */
   private void nnChainCore(MatrixParadigm mat, PointerHierarchyRepresentationBuilder builder) {
     final DBIDArrayIter ix = mat.ix;
-    final double[] distances = mat.matrix;
     final int size = mat.size;
     // The maximum chain size = number of ids + 1
     IntegerArray chain = new IntegerArray(size + 1);
@@ -143,27 +155,8 @@ public class NNChain<O> extends AGNES<O> {
       // For ties, always prefer the second-last element b:
       double minDist = mat.get(a, b);
       do {
-        int c = b;
-        final int ta = MatrixParadigm.triangleSize(a);
-        for(int i = 0; i < a; i++) {
-          if(i != b && !builder.isLinked(ix.seek(i))) {
-            double dist = distances[ta + i];
-            if(dist < minDist) {
-              minDist = dist;
-              c = i;
-            }
-          }
-        }
-        for(int i = a + 1; i < size; i++) {
-          if(i != b && !builder.isLinked(ix.seek(i))) {
-            double dist = distances[MatrixParadigm.triangleSize(i) + a];
-            if(dist < minDist) {
-              minDist = dist;
-              c = i;
-            }
-          }
-        }
-
+        final int c = findNearest(mat, builder, a, b, minDist);
+        minDist = mat.get(a, c);
         b = a;
         a = c;
 
@@ -186,6 +179,55 @@ public class NNChain<O> extends AGNES<O> {
     LOG.ensureCompleted(progress);
   }
 
+  /**
+   * Find the nearest neighbor of a, preferring b on ties.
+   * <p>
+   * For large data sets, this is processed in parallel blocks, and the blocks
+   * are combined in order, for the same result as with serial processing.
+   *
+   * @param mat Matrix paradigm
+   * @param builder Linkage information
+   * @param a Object to find the nearest neighbor of
+   * @param b Current candidate
+   * @param minDist Distance of a and b
+   * @return Nearest neighbor
+   */
+  private static int findNearest(MatrixParadigm mat, PointerHierarchyRepresentationBuilder builder, int a, int b, double minDist) {
+    final int size = mat.size;
+    // Nearest neighbor of each block:
+    final int numblocks = (size - 1) / mat.blocksize + 1;
+    final double[] bestd = new double[numblocks];
+    final int[] besti = new int[numblocks];
+    Arrays.fill(besti, -1);
+    final long ta = MatrixParadigm.triangleSizeLong(a);
+    mat.runBlocks(size, (ix, start, end) -> {
+      double mind = minDist;
+      int c = -1;
+      for(int i = start; i < end; i++) {
+        if(i != a && i != b && !builder.isLinked(ix.seek(i))) {
+          double dist = mat.getValue(i < a ? ta + i : MatrixParadigm.triangleSizeLong(i) + a);
+          if(dist < mind) {
+            mind = dist;
+            c = i;
+          }
+        }
+      }
+      final int blk = start / mat.blocksize;
+      bestd[blk] = mind;
+      besti[blk] = c;
+    });
+    // Combine, preferring the first on ties:
+    double mind = minDist;
+    int c = b;
+    for(int blk = 0; blk < numblocks; blk++) {
+      if(besti[blk] >= 0 && bestd[blk] < mind) {
+        mind = bestd[blk];
+        c = besti[blk];
+      }
+    }
+    return c;
+  }
+
   /**
    * Find an unlinked object.
    *
@@ -217,7 +259,7 @@ public class NNChain<O> extends AGNES<O> {
   public static class Par<O> extends AGNES.Par<O> {
     @Override
     public NNChain<O> make() {
-      return new NNChain<>(distance, linkage);
+      return new NNChain<>(distance, linkage, singlePrecision);
     }
   }
 }
@@ -35,6 +35,7 @@ import elki.database.ids.DBIDUtil;
 import elki.database.ids.ModifiableDBIDs;
 import elki.database.relation.Relation;
 import elki.database.relation.RelationUtil;
+import elki.datasource.bundle.BundleStreamSource;
 import elki.result.Metadata;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.Parameterizer;
@@ -124,6 +125,47 @@ public class BIRCHLeafClustering implements ClusteringAlgorithm<Clustering<MeanM
     return result;
   }
 
+  /**
+   * Run the clustering algorithm on a data stream, in a single pass.
+   * <p>
+   * Because the data is not stored, the resulting clusters only carry the
+   * centroids of the leaves, but no object ids.
+   *
+   * <p>
+   * A relative maximum number of leaves then refers to the number of objects
+   * seen so far, c.f. {@link CFTree.Factory#newTree(BundleStreamSource)}.
+   *
+   * @param source Data source
+   * @return Clustering (clusters do not contain objects)
+   */
+  public Clustering<MeanModel> run(BundleStreamSource source) {
+    return run(source, 0);
+  }
+
+  /**
+   * Run the clustering algorithm on a data stream of the expected size, in a
+   * single pass.
+   *
+   * @param source Data source
+   * @param expected Expected number of objects, to resolve a relative maximum
+   *        number of leaves; 0 if unknown
+   * @return Clustering (clusters do not contain objects)
+   */
+  public Clustering<MeanModel> run(BundleStreamSource source, long expected) {
+    CFTree tree = cffactory.newTree(source, expected);
+    Clustering<MeanModel> result = new Clustering<>();
+    for(CFTree.LeafIterator iter = tree.leafIterator(); iter.valid(); iter.advance()) {
+      ClusteringFeature leaf = iter.get();
+      double[] center = new double[leaf.getDimensionality()];
+      for(int i = 0; i < center.length; i++) {
+        center[i] = leaf.centroid(i);
+      }
+      result.addToplevelCluster(new Cluster<>(DBIDUtil.EMPTYDBIDS, new MeanModel(center)));
+    }
+    Metadata.of(result).setLongName("BIRCH Clustering");
+    return result;
+  }
+
   /**
    * Parameterization class.
    *
@@ -38,6 +38,7 @@ import elki.database.ids.DBIDIter;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.ModifiableDBIDs;
 import elki.database.relation.Relation;
+import elki.datasource.bundle.BundleStreamSource;
 import elki.logging.Logging;
 import elki.logging.statistics.DoubleStatistic;
 import elki.logging.statistics.LongStatistic;
@@ -181,6 +182,63 @@ public class BIRCHLloydKMeans<M extends MeanModel> implements ClusteringAlgorith
     return result;
   }
 
+  /**
+   * Run the clustering algorithm on a data stream, in a single pass.
+   * <p>
+   * Because the data is not stored, the resulting clusters only carry their
+   * {@link KMeansModel}, with the variance sum computed from the clustering
+   * features, but no object ids.
+   *
+   * <p>
+   * A relative maximum number of leaves then refers to the number of objects
+   * seen so far, c.f. {@link CFTree.Factory#newTree(BundleStreamSource)}.
+   *
+   * @param source Data source
+   * @return Clustering (clusters do not contain objects)
+   */
+  public Clustering<KMeansModel> run(BundleStreamSource source) {
+    return run(source, 0);
+  }
+
+  /**
+   * Run the clustering algorithm on a data stream of the expected size, in a
+   * single pass.
+   *
+   * @param source Data source
+   * @param expected Expected number of objects, to resolve a relative maximum
+   *        number of leaves; 0 if unknown
+   * @return Clustering (clusters do not contain objects)
+   */
+  public Clustering<KMeansModel> run(BundleStreamSource source, long expected) {
+    CFTree tree = cffactory.newTree(source, expected);
+    ClusteringFeature[] cfs = new ClusteringFeature[tree.leaves];
+    double[][] cfmeans = new double[tree.leaves][];
+    int z = 0;
+    for(LeafIterator iter = tree.leafIterator(); iter.valid(); iter.advance()) {
+      ClusteringFeature f = cfs[z] = iter.get();
+      cfmeans[z] = times(f.ls, 1. / f.n);
+      z++;
+    }
+    int[] assignment = new int[tree.leaves], weights = new int[k];
+    Arrays.fill(assignment, -1);
+    double[][] means = kmeans(cfmeans, cfs, assignment, weights);
+    // Sum of squared deviations from the mean, from the CF statistics:
+    double[] varsum = new double[k];
+    for(int i = 0; i < cfs.length; i++) {
+      final ClusteringFeature cf = cfs[i];
+      final double[] mean = means[assignment[i]];
+      varsum[assignment[i]] += cf.ss - 2 * transposeTimes(cf.ls, mean) + cf.n * squareSum(mean);
+    }
+    Clustering<KMeansModel> result = new Clustering<>();
+    for(int i = 0; i < k; i++) {
+      if(weights[i] > 0) {
+        result.addToplevelCluster(new Cluster<>(DBIDUtil.EMPTYDBIDS, new KMeansModel(means[i], varsum[i])));
+      }
+    }
+    Metadata.of(result).setLongName("BIRCH k-Means Clustering");
+    return result;
+  }
+
   /**
    * Perform k-means clustering.
    *
@@ -24,13 +24,22 @@ import java.util.ArrayList;
 import java.util.Arrays;
 
 import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
 import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
 import elki.database.relation.Relation;
+import elki.datasource.bundle.BundleMeta;
+import elki.datasource.bundle.BundleStreamSource;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
+import elki.logging.progress.IndefiniteProgress;
+import elki.parallel.ParallelExecutor;
 import elki.utilities.datastructures.iterator.Iter;
 import elki.utilities.documentation.Reference;
+import elki.utilities.exceptions.AbortException;
 import elki.utilities.io.FormatUtil;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.OptionID;
@@ -57,6 +66,11 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * Condensing and merging refinement are possible, and improvements to this code
  * are welcome - please send a pull request!
  * <p>
+ * The tree can also be built in a single pass over a data stream, without
+ * materializing a database, or from multiple shards of the data in parallel.
+ * The partial trees of the shards are then merged by inserting their leaf
+ * clustering features into the first tree.
+ * <p>
  * References:
  * <p>
  * T. Zhang, R. Ramakrishnan, M. Livny<br>
@@ -184,13 +198,55 @@ public class CFTree {
     root.addToStatistics(first);
     ++leaves;
     for(iter.advance(); iter.valid(); iter.advance()) {
-      TreeNode other = insert(root, iter.get());
-      // Handle root overflow:
-      if(other != null) {
-        TreeNode newnode = new TreeNode(dim, capacity);
-        newnode.addToStatistics(newnode.children[0] = root);
-        newnode.addToStatistics(newnode.children[1] = other);
-        root = newnode;
+      insertLeaf(iter.get());
+    }
+  }
+
+  /**
+   * Insert a leaf entry, e.g., of another tree, into the tree.
+   * <p>
+   * The entry is either absorbed by an existing leaf, or becomes a leaf of
+   * this tree itself.
+   *
+   * @param leaf Leaf entry
+   */
+  protected void insertLeaf(ClusteringFeature leaf) {
+    assert root != null;
+    TreeNode other = insert(root, leaf);
+    // Handle root overflow:
+    if(other != null) {
+      TreeNode newnode = new TreeNode(root.getDimensionality(), capacity);
+      newnode.addToStatistics(newnode.children[0] = root);
+      newnode.addToStatistics(newnode.children[1] = other);
+      root = newnode;
+    }
+  }
+
+  /**
+   * Merge the leaves of another tree into this tree.
+   * <p>
+   * The other tree must no longer be used afterwards, as its leaf entries may
+   * become part of this tree.
+   *
+   * @param other Other tree
+   * @param max Maximum number of leaves
+   */
+  protected void merge(CFTree other, double max) {
+    if(other.root == null) {
+      return;
+    }
+    if(root == null) {
+      root = other.root;
+      leaves = other.leaves;
+      thresholdsq = Math.max(thresholdsq, other.thresholdsq);
+      return;
+    }
+    // Never decrease the threshold.
+    thresholdsq = Math.max(thresholdsq, other.thresholdsq);
+    for(LeafIterator iter = other.leafIterator(); iter.valid(); iter.advance()) {
+      insertLeaf(iter.get());
+      if(leaves > max) {
+        rebuildTree();
       }
     }
   }
@@ -623,6 +679,11 @@ public class CFTree {
      */
     double maxleaves;
 
+    /**
+     * Number of shards to build partial trees for in parallel.
+     */
+    int shards;
+
     /**
      * Constructor.
      *
@@ -633,11 +694,26 @@ public class CFTree {
      * @param maxleaves Maximum number of leaves
      */
     public Factory(BIRCHDistance distance, BIRCHAbsorptionCriterion absorption, double threshold, int branchingFactor, double maxleaves) {
+      this(distance, absorption, threshold, branchingFactor, maxleaves, 1);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param distance Distance to use
+     * @param absorption Absorption criterion (diameter, distance).
+     * @param threshold Distance threshold
+     * @param branchingFactor Maximum branching factor.
+     * @param maxleaves Maximum number of leaves
+     * @param shards Number of shards to build partial trees for in parallel
+     */
+    public Factory(BIRCHDistance distance, BIRCHAbsorptionCriterion absorption, double threshold, int branchingFactor, double maxleaves, int shards) {
       this.distance = distance;
       this.absorption = absorption;
       this.threshold = threshold;
       this.branchingFactor = branchingFactor;
       this.maxleaves = maxleaves;
+      this.shards = shards;
     }
 
     /**
@@ -648,8 +724,11 @@ public class CFTree {
      * @return New tree
      */
     public CFTree newTree(DBIDs ids, Relation<? extends NumberVector> relation) {
-      CFTree tree = new CFTree(distance, absorption, threshold, branchingFactor);
       final double max = maxleaves <= 1 ? maxleaves * ids.size() : maxleaves;
+      if(shards > 1 && ids.size() >= shards * branchingFactor) {
+        return newShardedTree(DBIDUtil.ensureArray(ids), relation, max);
+      }
+      CFTree tree = new CFTree(distance, absorption, threshold, branchingFactor);
       FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Building tree", relation.size(), LOG) : null;
       for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
         tree.insert(relation.get(it));
@@ -665,6 +744,129 @@ public class CFTree {
       return tree;
     }
 
+    /**
+     * Build partial trees for contiguous shards of the data in parallel, and
+     * merge them in shard order.
+     * <p>
+     * A relative maximum number of leaves refers to the size of the shard, an
+     * absolute maximum applies to each shard as well as to the merged tree.
+     * The result depends on the number of shards, but not on the
+     * number of threads used.
+     *
+     * @param ids DBIDs to insert
+     * @param relation Data relation
+     * @param max Maximum number of leaves
+     * @return New tree
+     */
+    protected CFTree newShardedTree(ArrayDBIDs ids, Relation<? extends NumberVector> relation, double max) {
+      final int size = ids.size();
+      CFTree[] trees = new CFTree[shards];
+      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Building partial trees", size, LOG) : null;
+      ParallelExecutor.runTasks(shards, shards, s -> {
+        final int start = (int) ((long) size * s / shards);
+        final int end = (int) ((long) size * (s + 1) / shards);
+        final double smax = maxleaves <= 1 ? maxleaves * (end - start) : maxleaves;
+        CFTree tree = new CFTree(distance, absorption, threshold, branchingFactor);
+        for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+          tree.insert(relation.get(it));
+          if(tree.leaves > smax) {
+            tree.rebuildTree();
+          }
+          LOG.incrementProcessed(prog);
+        }
+        trees[s] = tree;
+      });
+      LOG.ensureCompleted(prog);
+      if(LOG.isVerbose()) {
+        LOG.verbose("Merging " + shards + " partial CF-trees.");
+      }
+      CFTree tree = trees[0];
+      for(int s = 1; s < shards; s++) {
+        tree.merge(trees[s], max);
+        trees[s] = null;
+      }
+      return tree;
+    }
+
+    /**
+     * Make a new tree from a data stream, in a single pass and without
+     * materializing a database.
+     * <p>
+     * Because the total number of objects is not known in advance, a relative
+     * maximum number of leaves refers to the number of objects seen so far
+     * (but is at least the branching factor). This causes additional rebuilds
+     * early on, and usually fewer leaves than on a relation of the same size;
+     * use {@link #newTree(BundleStreamSource, long)} if the size of the stream
+     * is known.
+     *
+     * @param source Data source
+     * @return New tree
+     */
+    public CFTree newTree(BundleStreamSource source) {
+      return newTree(source, 0);
+    }
+
+    /**
+     * Make a new tree from a data stream, in a single pass and without
+     * materializing a database.
+     * <p>
+     * A relative maximum number of leaves refers to the expected size of the
+     * stream, if given, and to the number of objects seen so far otherwise.
+     *
+     * @param source Data source
+     * @param expected Expected number of objects in the stream, 0 if unknown
+     * @return New tree
+     */
+    public CFTree newTree(BundleStreamSource source, long expected) {
+      CFTree tree = new CFTree(distance, absorption, threshold, branchingFactor);
+      IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Building tree", LOG) : null;
+      int col = -1;
+      long processed = 0;
+      loop: while(true) {
+        switch(source.nextEvent()){
+        case META_CHANGED: {
+          BundleMeta meta = source.getMeta();
+          col = -1;
+          for(int i = 0; i < meta.size(); i++) {
+            if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(meta.get(i))) {
+              col = i;
+              break;
+            }
+          }
+          if(col < 0) {
+            throw new AbortException("No number vector field in the data stream.");
+          }
+          break;
+        }
+        case NEXT_OBJECT: {
+          tree.insert((NumberVector) source.data(col));
+          ++processed;
+          final double max = maxleaves > 1 ? maxleaves : expected > 0 ? maxleaves * expected : Math.max(maxleaves * processed, branchingFactor);
+          if(tree.leaves > max) {
+            if(LOG.isVerbose()) {
+              LOG.verbose("Compacting CF-tree.");
+            }
+            tree.rebuildTree();
+          }
+          if(prog != null && (processed & 0xFFF) == 0) {
+            prog.setProcessed((int) Math.min(processed, Integer.MAX_VALUE), LOG);
+          }
+          break;
+        }
+        case END_OF_STREAM:
+          break loop;
+        }
+      }
+      if(prog != null) {
+        prog.setProcessed((int) Math.min(processed, Integer.MAX_VALUE), LOG);
+      }
+      LOG.setCompleted(prog);
+      if(tree.root == null) {
+        throw new AbortException("The data stream did not contain any objects.");
+      }
+      return tree;
+    }
+
     /**
      * Parameterization class for CFTrees.
      *
@@ -696,6 +898,11 @@ public class CFTree {
        */
       public static final OptionID MAXLEAVES_ID = new OptionID("cftree.maxleaves", "Maximum number of leaves (if less than 1, the values is assumed to be relative)");
 
+      /**
+       * Number of shards for parallel construction.
+       */
+      public static final OptionID SHARDS_ID = new OptionID("cftree.shards", "Number of data shards to build partial trees for in parallel, which are then merged.");
+
       /**
        * BIRCH distance function to use
        */
@@ -721,6 +928,11 @@ public class CFTree {
        */
       double maxleaves;
 
+      /**
+       * Number of shards to build partial trees for in parallel.
+       */
+      int shards = 1;
+
       @Override
       public void configure(Parameterization config) {
         new ObjectParameter<BIRCHDistance>(DISTANCE_ID, BIRCHDistance.class, VarianceIncreaseDistance.class) //
@@ -739,11 +951,14 @@ public class CFTree {
             .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
             .setDefaultValue(0.05) //
             .grab(config, x -> maxleaves = x);
+        new IntParameter(SHARDS_ID, 1) //
+            .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+            .grab(config, x -> shards = x);
       }
 
       @Override
       public CFTree.Factory make() {
-        return new CFTree.Factory(distance, absorption, threshold, branchingFactor, maxleaves);
+        return new CFTree.Factory(distance, absorption, threshold, branchingFactor, maxleaves, shards);
       }
     }
   }
@@ -142,6 +142,25 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
     return means;
   }
 
+  @Override
+  public Clustering<M> run(Relation<V> relation) {
+    return run(relation, initialMeans(relation));
+  }
+
+  /**
+   * Run k-means from the given initial means, instead of the initializer.
+   * <p>
+   * This allows choosing the initial means of multiple runs in a fixed order,
+   * and then running them concurrently.
+   *
+   * @param relation Relation
+   * @param means Initial means, as chosen by {@link #initialMeans}
+   * @return Clustering
+   */
+  public Clustering<M> run(Relation<V> relation, double[][] means) {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support running from given initial means.");
+  }
+
   /**
    * Returns the mean vectors of the given clusters in the given database.
    *
@@ -343,7 +362,7 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
     /**
      * Cluster means.
      */
-    double[][] means;
+    protected double[][] means;
 
     /**
      * Store the elements per cluster.
@@ -731,7 +750,7 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
      *
      * @return Logger
      */
-    abstract Logging getLogger();
+    protected abstract Logging getLogger();
   }
 
   /**
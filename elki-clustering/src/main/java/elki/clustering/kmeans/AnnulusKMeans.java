@@ -93,8 +93,8 @@ public class AnnulusKMeans<V extends NumberVector> extends HamerlyKMeans<V> {
   }
 
   @Override
-  public Clustering<KMeansModel> run(Relation<V> relation) {
-    Instance instance = new Instance(relation, distance, initialMeans(relation));
+  public Clustering<KMeansModel> run(Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, distance, means);
     instance.run(maxiter);
     return instance.buildResult(varstat, relation);
   }
@@ -20,6 +20,10 @@
  */
 package elki.clustering.kmeans;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import elki.clustering.kmeans.initialization.KMeansInitialization;
 import elki.clustering.kmeans.quality.KMeansQualityMeasure;
 import elki.data.Clustering;
@@ -30,15 +34,28 @@ import elki.database.relation.Relation;
 import elki.distance.NumberVectorDistance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
+import elki.parallel.ParallelExecutor;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.ChainedParameterization;
+import elki.utilities.optionhandling.parameterization.ListParameterization;
+import elki.utilities.optionhandling.parameterization.MergedParameterization;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.IntParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
+import elki.utilities.optionhandling.parameters.RandomParameter;
+import elki.utilities.random.RandomFactory;
 
 /**
  * Run K-Means multiple times, and keep the best run.
+ * <p>
+ * In concurrent mode, each trial uses its own instance of the k-means
+ * algorithm, with an independent random seed derived from a single seed, and
+ * up to a given number of trials run at the same time. The initial means of
+ * all trials are chosen in order before the trials are started, and the best
+ * run is chosen as if the trials were run in order, so the result does not
+ * depend on the number of threads.
  *
  * @author Stephan Baier
  * @author Erich Schubert
@@ -66,6 +83,16 @@ public class BestOfMultipleKMeans<V extends NumberVector, M extends MeanModel> i
    */
   private KMeans<V, M> innerkMeans;
 
+  /**
+   * Separate k-means instances for each trial, for concurrent mode.
+   */
+  private List<? extends KMeans<V, M>> trialkMeans;
+
+  /**
+   * Maximum number of trials to run at the same time.
+   */
+  private int concurrent;
+
   /**
    * Quality measure which should be used.
    */
@@ -85,6 +112,19 @@ public class BestOfMultipleKMeans<V extends NumberVector, M extends MeanModel> i
     this.qualityMeasure = qualityMeasure;
   }
 
+  /**
+   * Constructor for concurrent mode.
+   *
+   * @param trialkMeans Separately seeded k-means instances, one per trial
+   * @param qualityMeasure Quality measure
+   * @param concurrent Maximum number of trials to run at the same time
+   */
+  public BestOfMultipleKMeans(List<? extends KMeans<V, M>> trialkMeans, KMeansQualityMeasure<? super V> qualityMeasure, int concurrent) {
+    this(trialkMeans.size(), trialkMeans.get(0), qualityMeasure);
+    this.trialkMeans = trialkMeans;
+    this.concurrent = concurrent;
+  }
+
   @Override
   public TypeInformation[] getInputTypeRestriction() {
     return innerkMeans.getInputTypeRestriction();
@@ -94,6 +134,9 @@ public class BestOfMultipleKMeans<V extends NumberVector, M extends MeanModel> i
   public Clustering<M> run(Relation<V> relation) {
     @SuppressWarnings("unchecked")
     NumberVectorDistance<? super NumberVector> df = (NumberVectorDistance<? super NumberVector>) innerkMeans.getDistance();
+    if(trialkMeans != null) {
+      return runConcurrent(relation, df);
+    }
 
     Clustering<M> bestResult = null;
     double bestCost = Double.NaN;
@@ -115,6 +158,91 @@ public class BestOfMultipleKMeans<V extends NumberVector, M extends MeanModel> i
     return bestResult;
   }
 
+  /**
+   * Run the separately seeded trials concurrently.
+   *
+   * @param relation Data relation
+   * @param df Distance function
+   * @return Best clustering
+   */
+  private Clustering<M> runConcurrent(Relation<V> relation, NumberVectorDistance<? super NumberVector> df) {
+    // Choose the initial means in trial order before forking, as the trials
+    // may share an initializer, and with it a random generator.
+    double[][][] initial = new double[trials][][];
+    for(int i = 0; i < trials; i++) {
+      KMeans<V, M> kmeans = trialkMeans.get(i);
+      if(kmeans instanceof AbstractKMeans) {
+        AbstractKMeans<V, M> akmeans = (AbstractKMeans<V, M>) kmeans;
+        initial[i] = akmeans.initialMeans(relation);
+      }
+    }
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("K-means iterations", trials, LOG) : null;
+    // Only the best result so far is kept, to bound memory usage.
+    Best best = new Best();
+    ParallelExecutor.runTasks(trials, concurrent, i -> {
+      Clustering<M> currentCandidate = runTrial(trialkMeans.get(i), initial[i], relation);
+      initial[i] = null; // Release memory
+      double currentCost = qualityMeasure.quality(currentCandidate, df, relation);
+      if(LOG.isVerbose()) {
+        LOG.verbose("Cost of candidate " + i + ": " + currentCost);
+      }
+      best.offer(i, currentCandidate, currentCost);
+      LOG.incrementProcessed(prog);
+    });
+    LOG.ensureCompleted(prog);
+    return best.result;
+  }
+
+  /**
+   * Run a single trial, with predefined initial means if available.
+   *
+   * @param kmeans k-means instance of the trial
+   * @param means Initial means, may be {@code null}
+   * @param relation Data relation
+   * @return Clustering
+   */
+  private Clustering<M> runTrial(KMeans<V, M> kmeans, double[][] means, Relation<V> relation) {
+    return means == null ? kmeans.run(relation) : ((AbstractKMeans<V, M>) kmeans).run(relation, means);
+  }
+
+  /**
+   * Best result so far, chosen as if the trials were run in order.
+   *
+   * @author Erich Schubert
+   */
+  private class Best {
+    /**
+     * Best result
+     */
+    Clustering<M> result;
+
+    /**
+     * Cost of the best result
+     */
+    double cost = Double.NaN;
+
+    /**
+     * Trial of the best result
+     */
+    int trial = Integer.MAX_VALUE;
+
+    /**
+     * Offer a new result.
+     *
+     * @param i Trial number
+     * @param candidate Result
+     * @param candcost Cost of the result
+     */
+    synchronized void offer(int i, Clustering<M> candidate, double candcost) {
+      // Equally good results: keep the earlier trial
+      if(qualityMeasure.isBetter(candcost, cost) || (i < trial && !qualityMeasure.isBetter(cost, candcost))) {
+        result = candidate;
+        cost = candcost;
+        trial = i;
+      }
+    }
+  }
+
   @Override
   public NumberVectorDistance<? super V> getDistance() {
     return innerkMeans.getDistance();
@@ -122,16 +250,35 @@ public class BestOfMultipleKMeans<V extends NumberVector, M extends MeanModel> i
 
   @Override
   public void setK(int k) {
+    if(trialkMeans != null) {
+      for(KMeans<V, M> kmeans : trialkMeans) {
+        kmeans.setK(k);
+      }
+      return;
+    }
     innerkMeans.setK(k);
   }
 
   @Override
   public void setDistance(NumberVectorDistance<? super V> distance) {
+    if(trialkMeans != null) {
+      for(KMeans<V, M> kmeans : trialkMeans) {
+        kmeans.setDistance(distance);
+      }
+      return;
+    }
     innerkMeans.setDistance(distance);
   }
 
   @Override
   public void setInitializer(KMeansInitialization init) {
+    if(trialkMeans != null) {
+      // Shared by the trials, but only used before forking.
+      for(KMeans<V, M> kmeans : trialkMeans) {
+        kmeans.setInitializer(init);
+      }
+      return;
+    }
     innerkMeans.setInitializer(init);
   }
 
@@ -162,6 +309,16 @@ public class BestOfMultipleKMeans<V extends NumberVector, M extends MeanModel> i
      */
     public static final OptionID QUALITYMEASURE_ID = new OptionID("kmeans.qualitymeasure", "Quality measure variant for deciding which run to keep.");
 
+    /**
+     * Parameter to run the trials concurrently.
+     */
+    public static final OptionID CONCURRENT_ID = new OptionID("kmeans.trials.concurrent", "Run the trials concurrently, with at most this many at the same time. Each trial then uses a separate instance of the k-means variant, with its own seed.");
+
+    /**
+     * Seed for the trials in concurrent mode.
+     */
+    public static final OptionID SEED_ID = new OptionID("kmeans.trials.seed", "Random generator seed to derive the seeds of the concurrent trials from.");
+
     /**
      * Number of trials to perform.
      */
@@ -172,6 +329,21 @@ public class BestOfMultipleKMeans<V extends NumberVector, M extends MeanModel> i
      */
     protected KMeans<V, M> kMeansVariant;
 
+    /**
+     * Separately seeded instances, for concurrent mode.
+     */
+    protected List<KMeans<V, M>> trialkMeans;
+
+    /**
+     * Maximum number of trials to run at the same time.
+     */
+    protected int concurrent;
+
+    /**
+     * Random generator for the trial seeds.
+     */
+    protected RandomFactory rnd;
+
     /**
      * Quality measure.
      */
@@ -182,15 +354,47 @@ public class BestOfMultipleKMeans<V extends NumberVector, M extends MeanModel> i
       new IntParameter(TRIALS_ID) //
           .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
           .grab(config, x -> trials = x);
-      new ObjectParameter<KMeans<V, M>>(KMEANS_ID, KMeans.class) //
-          .grab(config, x -> kMeansVariant = x);
+      new IntParameter(CONCURRENT_ID) //
+          .setOptional(true) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> concurrent = x);
+      if(concurrent > 0) {
+        new RandomParameter(SEED_ID).grab(config, x -> rnd = x);
+      }
+      ObjectParameter<KMeans<V, M>> kMeansP = new ObjectParameter<>(KMEANS_ID, KMeans.class);
+      if(config.grab(kMeansP)) {
+        if(concurrent > 0 && rnd != null && trials > 0) {
+          // Instantiate the variant once per trial, with a different seed.
+          MergedParameterization merged = new MergedParameterization(config);
+          Random random = rnd.getSingleThreadedRandom();
+          trialkMeans = new ArrayList<>(trials);
+          for(int i = 0; i < trials; i++) {
+            merged.rewind();
+            ChainedParameterization trialConfig = new ChainedParameterization(new ListParameterization() //
+                .addParameter(KMeans.SEED_ID, random.nextLong()), merged);
+            trialConfig.errorsTo(config);
+            KMeans<V, M> trial = kMeansP.instantiateClass(trialConfig);
+            if(i > 0 && trial == trialkMeans.get(0)) {
+              // Given as an instance, cannot be run concurrently.
+              kMeansVariant = trial;
+              trialkMeans = null;
+              break;
+            }
+            trialkMeans.add(trial);
+          }
+        }
+        else {
+          kMeansVariant = kMeansP.instantiateClass(config);
+        }
+      }
       new ObjectParameter<KMeansQualityMeasure<V>>(QUALITYMEASURE_ID, KMeansQualityMeasure.class) //
           .grab(config, x -> qualityMeasure = x);
     }
 
     @Override
     public BestOfMultipleKMeans<V, M> make() {
-      return new BestOfMultipleKMeans<>(trials, kMeansVariant, qualityMeasure);
+      return trialkMeans != null ? new BestOfMultipleKMeans<>(trialkMeans, qualityMeasure, concurrent) //
+          : new BestOfMultipleKMeans<>(trials, kMeansVariant, qualityMeasure);
     }
   }
 }
@@ -78,8 +78,8 @@ public class ElkanKMeans<V extends NumberVector> extends SimplifiedElkanKMeans<V
   }
 
   @Override
-  public Clustering<KMeansModel> run(Relation<V> relation) {
-    Instance instance = new Instance(relation, distance, initialMeans(relation));
+  public Clustering<KMeansModel> run(Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, distance, means);
     instance.run(maxiter);
     return instance.buildResult(varstat, relation);
   }
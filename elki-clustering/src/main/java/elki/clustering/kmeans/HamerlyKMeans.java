@@ -85,8 +85,8 @@ public class HamerlyKMeans<V extends NumberVector> extends AbstractKMeans<V, KMe
   }
 
   @Override
-  public Clustering<KMeansModel> run(Relation<V> relation) {
-    Instance instance = new Instance(relation, distance, initialMeans(relation));
+  public Clustering<KMeansModel> run(Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, distance, means);
     instance.run(maxiter);
     return instance.buildResult(varstat, relation);
   }
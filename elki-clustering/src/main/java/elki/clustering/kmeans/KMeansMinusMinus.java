@@ -102,8 +102,8 @@ public class KMeansMinusMinus<V extends NumberVector> extends AbstractKMeans<V,
   }
 
   @Override
-  public Clustering<KMeansModel> run(Relation<V> relation) {
-    Instance instance = new Instance(relation, distance, initialMeans(relation));
+  public Clustering<KMeansModel> run(Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, distance, means);
     instance.run(maxiter);
     return instance.buildResultWithNoise();
   }
@@ -78,8 +78,8 @@ public class KMediansLloyd<V extends NumberVector> extends AbstractKMeans<V, Mea
   }
 
   @Override
-  public Clustering<MeanModel> run(Relation<V> relation) {
-    Instance instance = new Instance(relation, distance, initialMeans(relation));
+  public Clustering<MeanModel> run(Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, distance, means);
     instance.run(maxiter);
     return instance.buildMediansResult();
   }
@@ -0,0 +1,340 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans;
+
+import java.util.Random;
+
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.ids.*;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.statistics.DoubleStatistic;
+import elki.logging.statistics.LongStatistic;
+import elki.parallel.ParallelExecutor;
+import elki.result.Metadata;
+import elki.utilities.documentation.Reference;
+import elki.utilities.documentation.Title;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.constraints.GreaterConstraint;
+import elki.utilities.optionhandling.constraints.LessEqualConstraint;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.RandomParameter;
+import elki.utilities.random.RandomFactory;
+
+import net.jafama.FastMath;
+
+/**
+ * Mini-batch k-means, which updates the means with gradient steps computed
+ * from small random samples of the data set, instead of full passes.
+ * <p>
+ * Each center has its own learning rate \(1/n_c^\kappa\), where \(n_c\) is the
+ * number of samples assigned to this center so far. With \(\kappa=1\), this
+ * is the running mean of all samples assigned to the center, as proposed by
+ * Sculley. The algorithm stops after the given maximum number of mini-batches,
+ * or when the exponentially smoothed cost of the mini-batches did not improve
+ * for a number of mini-batches. A final (parallel) pass assigns all objects to
+ * their nearest center.
+ * <p>
+ * Reference:
+ * <p>
+ * D. Sculley<br>
+ * Web-scale k-means clustering<br>
+ * Proc. 19th Int. Conf. on World Wide Web (WWW 2010)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @navassoc - - - KMeansModel
+ *
+ * @param <V> vector datatype
+ */
+@Title("Mini-batch k-Means")
+@Reference(authors = "D. Sculley", //
+    title = "Web-scale k-means clustering", //
+    booktitle = "Proc. 19th Int. Conf. on World Wide Web (WWW 2010)", //
+    url = "https://doi.org/10.1145/1772690.1772862", //
+    bibkey = "DBLP:conf/www/Sculley10")
+public class MiniBatchKMeans<V extends NumberVector> extends AbstractKMeans<V, KMeansModel> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(MiniBatchKMeans.class);
+
+  /**
+   * Key for statistics logging.
+   */
+  private static final String KEY = MiniBatchKMeans.class.getName();
+
+  /**
+   * Minimum number of objects per block in parallel assignment.
+   */
+  private static final int MIN_BLOCKSIZE = 256;
+
+  /**
+   * Maximum number of blocks in parallel assignment.
+   */
+  private static final int MAX_BLOCKS = 1024;
+
+  /**
+   * Number of samples per mini-batch.
+   */
+  protected int batchsize;
+
+  /**
+   * Decay exponent of the learning rate.
+   */
+  protected double decay;
+
+  /**
+   * Number of mini-batches without improvement before stopping.
+   */
+  protected int patience;
+
+  /**
+   * Random generator for sampling.
+   */
+  protected RandomFactory random;
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maximum number of mini-batches
+   * @param initializer Initialization method
+   * @param batchsize Number of samples per mini-batch
+   * @param decay Decay exponent of the learning rate
+   * @param patience Number of mini-batches without improvement before
+   *        stopping
+   * @param random Random generator for sampling
+   */
+  public MiniBatchKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, int batchsize, double decay, int patience, RandomFactory random) {
+    super(distance, k, maxiter, initializer);
+    this.batchsize = batchsize;
+    this.decay = decay;
+    this.patience = patience;
+    this.random = random;
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation, double[][] means) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size(), b = Math.min(batchsize, size);
+    final Random rnd = random.getSingleThreadedRandom();
+    ArrayModifiableDBIDs batch = DBIDUtil.newArray(b);
+    int[] nearest = new int[b];
+    double[] varsum = new double[k];
+    long[] counts = new long[k];
+    // Smoothing of the batch costs, over roughly one pass over the data
+    final double alpha = Math.min(1., 2. * b / (size + 1.));
+    double smoothed = Double.NaN, best = Double.POSITIVE_INFINITY;
+    int iteration = 0, stall = 0;
+    IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Mini-batch") : null;
+    DBIDArrayIter it = ids.iter();
+    while(iteration < maxiter) {
+      ++iteration;
+      LOG.incrementProcessed(prog);
+      batch.clear();
+      for(int i = 0; i < b; i++) {
+        batch.add(it.seek(rnd.nextInt(size)));
+      }
+      final double cost = assignToNearest(relation, batch, means, nearest, varsum) / b;
+      // Gradient step, with a separate learning rate for each center:
+      int j = 0;
+      for(DBIDIter bi = batch.iter(); bi.valid(); bi.advance(), j++) {
+        final int c = nearest[j];
+        final double eta = decay == 1. ? 1. / ++counts[c] : FastMath.pow(++counts[c], -decay);
+        final NumberVector fv = relation.get(bi);
+        final double[] mean = means[c];
+        for(int d = 0; d < mean.length; d++) {
+          mean[d] += eta * (fv.doubleValue(d) - mean[d]);
+        }
+      }
+      // Convergence detection:
+      smoothed = iteration == 1 ? cost : (1 - alpha) * smoothed + alpha * cost;
+      if(LOG.isStatistics()) {
+        LOG.statistics(new DoubleStatistic(KEY + "." + iteration + ".batch-cost", cost));
+      }
+      if(smoothed < best) {
+        best = smoothed;
+        stall = 0;
+      }
+      else if(++stall >= patience) {
+        break;
+      }
+    }
+    LOG.setCompleted(prog);
+    LOG.statistics(new LongStatistic(KEY + ".iterations", iteration));
+
+    // Final assignment of all objects.
+    int[] assignment = new int[size];
+    double cost = assignToNearest(relation, ids, means, assignment, varsum);
+    LOG.statistics(new DoubleStatistic(KEY + ".variance-sum", cost));
+    ArrayModifiableDBIDs[] clusters = new ArrayModifiableDBIDs[k];
+    for(int i = 0; i < k; i++) {
+      clusters[i] = DBIDUtil.newArray();
+    }
+    for(it.seek(0); it.valid(); it.advance()) {
+      clusters[assignment[it.getOffset()]].add(it);
+    }
+    Clustering<KMeansModel> result = new Clustering<>();
+    Metadata.of(result).setLongName("Mini-batch k-Means Clustering");
+    for(int i = 0; i < k; i++) {
+      if(clusters[i].isEmpty()) {
+        continue;
+      }
+      result.addToplevelCluster(new Cluster<>(clusters[i], new KMeansModel(means[i], varsum[i])));
+    }
+    return result;
+  }
+
+  /**
+   * Assign objects to their nearest mean, in parallel.
+   *
+   * @param relation Data relation
+   * @param ids Objects to assign
+   * @param means Current means
+   * @param nearest Output array of nearest means, by offset
+   * @param varsum Output array of the sum of squared distances, by cluster
+   * @return Total sum of squared distances
+   */
+  protected double assignToNearest(Relation<V> relation, ArrayDBIDs ids, double[][] means, int[] nearest, double[] varsum) {
+    final boolean issquared = distance.isSquared();
+    final int size = ids.size();
+    final int blocksize = Math.max(MIN_BLOCKSIZE, (size + MAX_BLOCKS - 1) / MAX_BLOCKS);
+    final double[][] partial = new double[(size + blocksize - 1) / blocksize][];
+    final DoubleVector[] vmeans = new DoubleVector[k];
+    for(int i = 0; i < k; i++) {
+      vmeans[i] = DoubleVector.wrap(means[i]);
+    }
+    ParallelExecutor.runBlocks(ids, blocksize, (ids2, start, end) -> {
+      double[] psum = new double[k];
+      for(DBIDArrayIter it = ids2.iter().seek(start); it.getOffset() < end; it.advance()) {
+        final V fv = relation.get(it);
+        double mindist = distance.distance(fv, vmeans[0]);
+        int minIndex = 0;
+        for(int i = 1; i < k; i++) {
+          final double dist = distance.distance(fv, vmeans[i]);
+          if(dist < mindist) {
+            minIndex = i;
+            mindist = dist;
+          }
+        }
+        nearest[it.getOffset()] = minIndex;
+        psum[minIndex] += issquared ? mindist : (mindist * mindist);
+      }
+      partial[start / blocksize] = psum;
+    });
+    // Merge in a deterministic order:
+    double total = 0.;
+    for(int i = 0; i < k; i++) {
+      double s = 0.;
+      for(double[] psum : partial) {
+        s += psum[i];
+      }
+      total += varsum[i] = s;
+    }
+    return total;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par<V extends NumberVector> extends AbstractKMeans.Par<V> {
+    /**
+     * Number of samples per mini-batch.
+     */
+    public static final OptionID BATCHSIZE_ID = new OptionID("kmeans.minibatch.size", "Number of samples in each mini-batch.");
+
+    /**
+     * Decay exponent of the learning rate.
+     */
+    public static final OptionID DECAY_ID = new OptionID("kmeans.minibatch.decay", "Decay exponent of the learning rate 1/n^decay of each center, where n is the number of samples assigned so far. 1 yields the running mean of all assigned samples; smaller values put more weight on recent samples.");
+
+    /**
+     * Number of mini-batches without improvement before stopping.
+     */
+    public static final OptionID PATIENCE_ID = new OptionID("kmeans.minibatch.patience", "Stop when the smoothed cost of the mini-batches did not improve for this many mini-batches.");
+
+    /**
+     * Random generator for sampling.
+     */
+    public static final OptionID RANDOM_ID = new OptionID("kmeans.minibatch.seed", "Random generator seed for sampling the mini-batches.");
+
+    /**
+     * Number of samples per mini-batch.
+     */
+    protected int batchsize;
+
+    /**
+     * Decay exponent of the learning rate.
+     */
+    protected double decay;
+
+    /**
+     * Number of mini-batches without improvement before stopping.
+     */
+    protected int patience;
+
+    /**
+     * Random generator for sampling.
+     */
+    protected RandomFactory random;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new IntParameter(BATCHSIZE_ID, 1000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> batchsize = x);
+      new DoubleParameter(DECAY_ID, 1.) //
+          .addConstraint(new GreaterConstraint(0.5)) //
+          .addConstraint(new LessEqualConstraint(1.)) //
+          .grab(config, x -> decay = x);
+      new IntParameter(PATIENCE_ID, 10) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> patience = x);
+      new RandomParameter(RANDOM_ID).grab(config, x -> random = x);
+    }
+
+    @Override
+    public MiniBatchKMeans<V> make() {
+      return new MiniBatchKMeans<>(distance, k, maxiter, initializer, batchsize, decay, patience, random);
+    }
+  }
+}
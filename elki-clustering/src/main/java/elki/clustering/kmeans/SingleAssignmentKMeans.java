@@ -57,8 +57,8 @@ public class SingleAssignmentKMeans<V extends NumberVector> extends AbstractKMea
   }
 
   @Override
-  public Clustering<KMeansModel> run(Relation<V> relation) {
-    Instance instance = new Instance(relation, distance, initialMeans(relation));
+  public Clustering<KMeansModel> run(Relation<V> relation, double[][] means) {
+    Instance instance = new Instance(relation, distance, means);
     instance.run(1);
     return instance.buildResult();
   }
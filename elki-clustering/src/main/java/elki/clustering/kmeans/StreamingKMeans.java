@@ -0,0 +1,463 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans;
+
+import elki.clustering.ClusteringAlgorithm;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.clustering.kmeans.initialization.RandomlyChosen;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.data.type.SimpleTypeInformation;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.ModifiableDBIDs;
+import elki.database.relation.MaterializedRelation;
+import elki.database.relation.Relation;
+import elki.datasource.bundle.BundleMeta;
+import elki.datasource.bundle.BundleStreamSource;
+import elki.distance.NumberVectorDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.statistics.LongStatistic;
+import elki.result.Metadata;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.constraints.GreaterConstraint;
+import elki.utilities.optionhandling.constraints.LessEqualConstraint;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+import net.jafama.FastMath;
+
+/**
+ * One-pass streaming k-means, which consumes a {@link BundleStreamSource}
+ * without materializing a database.
+ * <p>
+ * The first objects of the stream are buffered, and used to choose the initial
+ * means with the usual {@link KMeansInitialization} methods. Afterwards, each
+ * object is assigned to its nearest mean, which is then moved towards the
+ * object with learning rate \(1/n_c^\kappa\), i.e., with \(\kappa=1\) this is
+ * MacQueen's online update of the running mean.
+ * <p>
+ * Because the data is never stored, the clusters obtained from a stream only
+ * carry their {@link KMeansModel}, but no object ids. To obtain a partitioning,
+ * assign the data to the returned means in a second pass. When run on a
+ * relation, this second pass is performed automatically.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @navassoc - - - KMeansModel
+ * @has - - - BundleStreamSource
+ */
+public class StreamingKMeans implements ClusteringAlgorithm<Clustering<KMeansModel>> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(StreamingKMeans.class);
+
+  /**
+   * Distance function used.
+   */
+  protected NumberVectorDistance<?> distance;
+
+  /**
+   * Number of cluster centers.
+   */
+  protected int k;
+
+  /**
+   * Method to choose initial means.
+   */
+  protected KMeansInitialization initializer;
+
+  /**
+   * Number of objects to buffer for initialization.
+   */
+  protected int initsize;
+
+  /**
+   * Decay exponent of the learning rate.
+   */
+  protected double decay;
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k Number of cluster centers
+   * @param initializer Initialization method
+   * @param initsize Number of objects to buffer for initialization
+   * @param decay Decay exponent of the learning rate
+   */
+  public StreamingKMeans(NumberVectorDistance<?> distance, int k, KMeansInitialization initializer, int initsize, double decay) {
+    super();
+    this.distance = distance;
+    this.k = k;
+    this.initializer = initializer;
+    this.initsize = Math.max(k, initsize);
+    this.decay = decay;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(distance.getInputTypeRestriction());
+  }
+
+  /**
+   * Run k-means in a single pass over a relation, then assign all objects to
+   * the final means.
+   *
+   * @param relation Data relation
+   * @return Clustering result
+   */
+  public Clustering<KMeansModel> run(Relation<? extends NumberVector> relation) {
+    Instance inst = new Instance(relation.getDataTypeInformation());
+    IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Streaming k-means", LOG) : null;
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      inst.add(relation.get(it), prog);
+    }
+    inst.finish(prog);
+    // Second pass: assign all objects to the final means.
+    ModifiableDBIDs[] clusters = new ModifiableDBIDs[k];
+    for(int i = 0; i < k; i++) {
+      clusters[i] = DBIDUtil.newArray();
+    }
+    double[] varsum = new double[k];
+    final boolean issquared = distance.isSquared();
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      final NumberVector fv = relation.get(it);
+      double mindist = distance.distance(fv, inst.vmeans[0]);
+      int minIndex = 0;
+      for(int i = 1; i < k; i++) {
+        final double dist = distance.distance(fv, inst.vmeans[i]);
+        if(dist < mindist) {
+          minIndex = i;
+          mindist = dist;
+        }
+      }
+      clusters[minIndex].add(it);
+      varsum[minIndex] += issquared ? mindist : (mindist * mindist);
+    }
+    Clustering<KMeansModel> result = new Clustering<>();
+    Metadata.of(result).setLongName("Streaming k-Means Clustering");
+    for(int i = 0; i < k; i++) {
+      if(clusters[i].size() > 0) {
+        result.addToplevelCluster(new Cluster<>(clusters[i], new KMeansModel(inst.means[i], varsum[i])));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Run k-means on a data stream.
+   *
+   * @param source Data source
+   * @return Clustering with the final means (clusters do not contain objects)
+   */
+  public Clustering<KMeansModel> run(BundleStreamSource source) {
+    Instance inst = null;
+    int col = -1;
+    IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Streaming k-means", LOG) : null;
+    loop: while(true) {
+      switch(source.nextEvent()){
+      case META_CHANGED: {
+        BundleMeta meta = source.getMeta();
+        col = -1;
+        for(int i = 0; i < meta.size(); i++) {
+          if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(meta.get(i))) {
+            col = i;
+            inst = inst != null ? inst : new Instance(meta.get(i));
+            break;
+          }
+        }
+        if(col < 0) {
+          throw new AbortException("No number vector field in the data stream.");
+        }
+        break;
+      }
+      case NEXT_OBJECT:
+        inst.add((NumberVector) source.data(col), prog);
+        break;
+      case END_OF_STREAM:
+        break loop;
+      }
+    }
+    if(inst == null) {
+      throw new AbortException("The data stream contained no objects.");
+    }
+    inst.finish(prog);
+    Clustering<KMeansModel> result = new Clustering<>();
+    Metadata.of(result).setLongName("Streaming k-Means Clustering");
+    for(int i = 0; i < k; i++) {
+      if(inst.counts[i] > 0) {
+        result.addToplevelCluster(new Cluster<>(DBIDUtil.EMPTYDBIDS, new KMeansModel(inst.means[i], inst.varsum[i])));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * State of a single pass.
+   *
+   * @author Erich Schubert
+   */
+  private class Instance {
+    /**
+     * Vector type, for initialization.
+     */
+    SimpleTypeInformation<?> type;
+
+    /**
+     * Buffer for initialization, {@code null} after initialization.
+     */
+    NumberVector[] buffer = new NumberVector[initsize];
+
+    /**
+     * Number of buffered objects.
+     */
+    int buffered = 0;
+
+    /**
+     * Current means, {@code null} before initialization.
+     */
+    double[][] means;
+
+    /**
+     * Means wrapped as vectors.
+     */
+    DoubleVector[] vmeans;
+
+    /**
+     * Sum of squared distances.
+     */
+    double[] varsum;
+
+    /**
+     * Number of assigned objects.
+     */
+    long[] counts;
+
+    /**
+     * Number of objects processed.
+     */
+    long processed = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param type Vector type
+     */
+    Instance(SimpleTypeInformation<?> type) {
+      this.type = type;
+    }
+
+    /**
+     * Process the next object.
+     *
+     * @param fv Object
+     * @param prog Progress
+     */
+    void add(NumberVector fv, IndefiniteProgress prog) {
+      ++processed;
+      if(prog != null && (processed & 0xFFF) == 0) {
+        prog.setProcessed((int) Math.min(processed, Integer.MAX_VALUE), LOG);
+      }
+      if(means != null) {
+        update(fv, means, vmeans, varsum, counts, distance.isSquared());
+        return;
+      }
+      buffer[buffered++] = fv;
+      if(buffered == initsize) {
+        initializeMeans();
+      }
+    }
+
+    /**
+     * Finish the pass, initializing from the buffer for short streams.
+     *
+     * @param prog Progress
+     */
+    void finish(IndefiniteProgress prog) {
+      if(prog != null) {
+        prog.setProcessed((int) Math.min(processed, Integer.MAX_VALUE), LOG);
+      }
+      LOG.setCompleted(prog);
+      LOG.statistics(new LongStatistic(StreamingKMeans.class.getName() + ".objects", processed));
+      if(means == null) {
+        // Short stream, never initialized.
+        if(buffered < k) {
+          throw new AbortException("The data stream contained only " + buffered + " objects, too few for k=" + k);
+        }
+        initializeMeans();
+      }
+    }
+
+    /**
+     * Choose the initial means, and process the buffered objects.
+     */
+    private void initializeMeans() {
+      means = initialize(type, buffer, buffered);
+      vmeans = wrap(means);
+      varsum = new double[k];
+      counts = new long[k];
+      final boolean issquared = distance.isSquared();
+      for(int i = 0; i < buffered; i++) {
+        update(buffer[i], means, vmeans, varsum, counts, issquared);
+      }
+      buffer = null;
+    }
+  }
+
+  /**
+   * Choose the initial means from the buffered objects.
+   *
+   * @param type Vector type
+   * @param buffer Buffered objects
+   * @param size Number of buffered objects
+   * @return Initial means
+   */
+  @SuppressWarnings("unchecked")
+  private double[][] initialize(SimpleTypeInformation<?> type, NumberVector[] buffer, int size) {
+    DBIDRange ids = DBIDUtil.generateStaticDBIDRange(size);
+    MaterializedRelation<NumberVector> rel = new MaterializedRelation<>((SimpleTypeInformation<NumberVector>) type, ids);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      rel.insert(it, buffer[it.getOffset()]);
+    }
+    return initializer.chooseInitialMeans(rel, k, distance);
+  }
+
+  /**
+   * Wrap the means as vectors, for the distance function.
+   *
+   * @param means Means
+   * @return Wrapped means, sharing the arrays
+   */
+  private static DoubleVector[] wrap(double[][] means) {
+    DoubleVector[] vmeans = new DoubleVector[means.length];
+    for(int i = 0; i < means.length; i++) {
+      vmeans[i] = DoubleVector.wrap(means[i]);
+    }
+    return vmeans;
+  }
+
+  /**
+   * Assign an object to the nearest mean, and update this mean.
+   *
+   * @param fv Object
+   * @param means Means (updated)
+   * @param vmeans Wrapped means
+   * @param varsum Sum of squared distances (updated)
+   * @param counts Number of assigned objects (updated)
+   * @param issquared Distance is squared
+   */
+  private void update(NumberVector fv, double[][] means, DoubleVector[] vmeans, double[] varsum, long[] counts, boolean issquared) {
+    double mindist = distance.distance(fv, vmeans[0]);
+    int minIndex = 0;
+    for(int i = 1; i < k; i++) {
+      final double dist = distance.distance(fv, vmeans[i]);
+      if(dist < mindist) {
+        minIndex = i;
+        mindist = dist;
+      }
+    }
+    final long n = ++counts[minIndex];
+    final double eta = decay == 1. ? 1. / n : FastMath.pow(n, -decay);
+    final double[] mean = means[minIndex];
+    for(int d = 0; d < mean.length; d++) {
+      mean[d] += eta * (fv.doubleValue(d) - mean[d]);
+    }
+    // Online estimate, using the distance before the update:
+    varsum[minIndex] += issquared ? mindist : (mindist * mindist);
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par implements Parameterizer {
+    /**
+     * Number of objects to buffer for initialization.
+     */
+    public static final OptionID INITSIZE_ID = new OptionID("kmeans.streaming.initsize", "Number of objects at the beginning of the stream to buffer for choosing the initial means.");
+
+    /**
+     * Distance function used.
+     */
+    protected NumberVectorDistance<?> distance;
+
+    /**
+     * Number of cluster centers.
+     */
+    protected int k;
+
+    /**
+     * Method to choose initial means.
+     */
+    protected KMeansInitialization initializer;
+
+    /**
+     * Number of objects to buffer for initialization.
+     */
+    protected int initsize;
+
+    /**
+     * Decay exponent of the learning rate.
+     */
+    protected double decay;
+
+    @Override
+    public void configure(Parameterization config) {
+      new IntParameter(KMeans.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> k = x);
+      new ObjectParameter<KMeansInitialization>(KMeans.INIT_ID, KMeansInitialization.class, RandomlyChosen.class) //
+          .grab(config, x -> initializer = x);
+      new ObjectParameter<NumberVectorDistance<?>>(KMeans.DISTANCE_FUNCTION_ID, NumberVectorDistance.class, SquaredEuclideanDistance.class) //
+          .grab(config, x -> distance = x);
+      new IntParameter(INITSIZE_ID, 1000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> initsize = x);
+      new DoubleParameter(MiniBatchKMeans.Par.DECAY_ID, 1.) //
+          .addConstraint(new GreaterConstraint(0.5)) //
+          .addConstraint(new LessEqualConstraint(1.)) //
+          .grab(config, x -> decay = x);
+    }
+
+    @Override
+    public StreamingKMeans make() {
+      return new StreamingKMeans(distance, k, initializer, initsize, decay);
+    }
+  }
+}
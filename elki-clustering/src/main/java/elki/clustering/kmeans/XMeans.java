@@ -24,6 +24,7 @@ import static elki.math.linearalgebra.VMath.normalize;
 import static elki.math.linearalgebra.VMath.timesEquals;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
@@ -48,6 +49,7 @@ import elki.logging.progress.MutableProgress;
 import elki.logging.statistics.LongStatistic;
 import elki.logging.statistics.StringStatistic;
 import elki.math.MathUtil;
+import elki.parallel.ParallelExecutor;
 import elki.result.Metadata;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.OptionID;
@@ -55,6 +57,7 @@ import elki.utilities.optionhandling.WrongParameterValueException;
 import elki.utilities.optionhandling.constraints.CommonConstraints;
 import elki.utilities.optionhandling.parameterization.ChainedParameterization;
 import elki.utilities.optionhandling.parameterization.ListParameterization;
+import elki.utilities.optionhandling.parameterization.MergedParameterization;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.IntParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
@@ -69,6 +72,11 @@ import elki.utilities.random.RandomFactory;
  * acceleration. Also note that kmax is not a hard threshold - the algorithm
  * can return up to 2*kmax clusters!
  * <p>
+ * The candidate splits of each round can be evaluated concurrently, using
+ * separate instances of the inner k-means. The split centroids are chosen in
+ * cluster order beforehand, and every instance evaluates a fixed subset of the
+ * splits, so the result does not depend on the number of threads.
+ * <p>
  * Reference:
  * <p>
  * D. Pelleg, A. Moore<br>
@@ -107,6 +115,17 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
    */
   private KMeans<V, M> innerKMeans;
 
+  /**
+   * Inner k-means instances for evaluating splits concurrently, the first is
+   * {@link #innerKMeans}.
+   */
+  private List<? extends KMeans<V, M>> splitKMeans;
+
+  /**
+   * Initializers of the instances for evaluating splits.
+   */
+  private Predefined[] splitInitializers;
+
   /**
    * Effective number of clusters, minimum and maximum.
    */
@@ -140,32 +159,66 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
    * @param random Random factory
    */
   public XMeans(NumberVectorDistance<? super V> distance, int k_min, int k_max, int maxiter, KMeans<V, M> innerKMeans, KMeansInitialization initializer, KMeansQualityMeasure<V> informationCriterion, RandomFactory random) {
+    this(distance, k_min, k_max, maxiter, Collections.singletonList(innerKMeans), initializer, informationCriterion, random);
+  }
+
+  /**
+   * Constructor for evaluating splits concurrently.
+   *
+   * @param distance Distance function
+   * @param k_min k_min parameter - minimum number of result clusters
+   * @param k_max k_max parameter - maximum number of result clusters
+   * @param maxiter Maximum number of iterations each.
+   * @param splitKMeans Separate instances of the K-Means variant to use
+   *        inside, as many as splits may be evaluated at the same time.
+   * @param informationCriterion The information criterion used for the
+   *        splitting step
+   * @param random Random factory
+   */
+  public XMeans(NumberVectorDistance<? super V> distance, int k_min, int k_max, int maxiter, List<? extends KMeans<V, M>> splitKMeans, KMeansInitialization initializer, KMeansQualityMeasure<V> informationCriterion, RandomFactory random) {
     super(distance, k_min, maxiter, initializer);
     this.k_min = k_min;
     this.k_max = k_max;
     this.k = k_min;
-    this.innerKMeans = innerKMeans;
-    this.splitInitializer = new Predefined((double[][]) null);
-    this.innerKMeans.setInitializer(this.splitInitializer);
-    this.innerKMeans.setDistance(distance);
+    this.innerKMeans = splitKMeans.get(0);
+    this.splitKMeans = splitKMeans;
+    this.splitInitializers = new Predefined[splitKMeans.size()];
+    for(int i = 0; i < splitInitializers.length; i++) {
+      splitInitializers[i] = new Predefined((double[][]) null);
+      splitKMeans.get(i).setInitializer(splitInitializers[i]);
+      splitKMeans.get(i).setDistance(distance);
+    }
+    this.splitInitializer = splitInitializers[0];
     this.informationCriterion = informationCriterion;
     this.rnd = random;
   }
 
+  /**
+   * Choose the k_min initial means.
+   *
+   * @param relation Relation
+   * @return Means
+   */
+  @Override
+  protected double[][] initialMeans(Relation<V> relation) {
+    LOG.statistics(new StringStatistic(KEY + ".initialization", initializer.toString()));
+    return initializer.chooseInitialMeans(relation, k_min, distance);
+  }
+
   /**
    * Run the algorithm on a database and relation.
    *
    * @param relation Data relation
+   * @param means Initial k_min means
    * @return Clustering result.
    */
   @Override
-  public Clustering<M> run(Relation<V> relation) {
+  public Clustering<M> run(Relation<V> relation, double[][] means) {
     MutableProgress prog = LOG.isVerbose() ? new MutableProgress("X-means number of clusters", k_max, LOG) : null;
 
     // Run initial k-means to find at least k_min clusters
     innerKMeans.setK(k_min);
-    LOG.statistics(new StringStatistic(KEY + ".initialization", initializer.toString()));
-    splitInitializer.setInitialMeans(initializer.chooseInitialMeans(relation, k_min, distance));
+    splitInitializer.setInitialMeans(means);
     Clustering<M> clustering = innerKMeans.run(relation);
 
     if(prog != null) {
@@ -175,10 +228,9 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
     ArrayList<Cluster<M>> clusters = new ArrayList<>(clustering.getAllClusters());
     while(clusters.size() <= k_max) {
       // Improve-Structure:
+      List<List<Cluster<M>>> childClusterLists = splitClusters(clusters, relation);
       ArrayList<Cluster<M>> nextClusters = new ArrayList<>();
-      for(Cluster<M> cluster : clusters) {
-        // Try to split this cluster:
-        List<Cluster<M>> childClusterList = splitCluster(cluster, relation);
+      for(List<Cluster<M>> childClusterList : childClusterLists) {
         nextClusters.addAll(childClusterList);
         if(childClusterList.size() > 1) {
           k += childClusterList.size() - 1;
@@ -212,15 +264,45 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
     return result;
   }
 
+  /**
+   * Try to split all clusters, evaluating the splits concurrently.
+   *
+   * @param clusters Clusters to split
+   * @param relation Data relation
+   * @return For each cluster, the parent cluster or the child clusters
+   */
+  protected List<List<Cluster<M>>> splitClusters(List<Cluster<M>> clusters, Relation<V> relation) {
+    final int size = clusters.size();
+    // Choose the random split centroids in order, for reproducible results.
+    double[][][] splitMeans = new double[size][][];
+    for(int i = 0; i < size; i++) {
+      if(clusters.get(i).size() > 1) {
+        splitMeans[i] = splitCentroid(clusters.get(i), relation);
+      }
+    }
+    List<List<Cluster<M>>> childClusterLists = new ArrayList<>(Collections.nCopies(size, null));
+    // Each instance evaluates a fixed subset of the splits in order, so that
+    // randomized inner k-means variants do not depend on the scheduling.
+    final int instances = Math.min(splitKMeans.size(), size);
+    ParallelExecutor.runTasks(instances, instances, j -> {
+      for(int i = j; i < size; i += instances) {
+        childClusterLists.set(i, splitCluster(clusters.get(i), splitMeans[i], j, relation));
+      }
+    });
+    return childClusterLists;
+  }
+
   /**
    * Conditionally splits the clusters based on the information criterion.
    *
    * @param parentCluster Cluster to split
+   * @param splitMeans Initial centroids of the split
+   * @param instance Inner k-means instance to use
    * @param relation Data relation
    * @return Parent cluster when split decreases clustering quality or child
    *         clusters when split improves clustering.
    */
-  protected List<Cluster<M>> splitCluster(Cluster<M> parentCluster, Relation<V> relation) {
+  protected List<Cluster<M>> splitCluster(Cluster<M> parentCluster, double[][] splitMeans, int instance, Relation<V> relation) {
     // Transform parent cluster into a clustering
     ArrayList<Cluster<M>> parentClusterList = new ArrayList<Cluster<M>>(1);
     parentClusterList.add(parentCluster);
@@ -229,9 +311,10 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
       return parentClusterList;
     }
     Clustering<M> parentClustering = new Clustering<>(parentClusterList);
-    splitInitializer.setInitialMeans(splitCentroid(parentCluster, relation));
-    innerKMeans.setK(2);
-    Clustering<M> childClustering = innerKMeans.run(new ProxyView<V>(parentCluster.getIDs(), relation));
+    splitInitializers[instance].setInitialMeans(splitMeans);
+    KMeans<V, M> kmeans = splitKMeans.get(instance);
+    kmeans.setK(2);
+    Clustering<M> childClustering = kmeans.run(new ProxyView<V>(parentCluster.getIDs(), relation));
 
     double parentEvaluation = informationCriterion.quality(parentClustering, distance, relation);
     double childrenEvaluation = informationCriterion.quality(childClustering, distance, relation);
@@ -320,10 +403,15 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
      */
     public static final OptionID INFORMATION_CRITERION_ID = new OptionID("xmeans.quality", "The quality measure to evaluate splits (e.g. AIC, BIC)");
 
+    /**
+     * Number of splits to evaluate at the same time.
+     */
+    public static final OptionID CONCURRENT_ID = new OptionID("xmeans.concurrent", "Number of cluster splits to evaluate at the same time, each with a separate instance of the inner k-means.");
+
     /**
      * Variant of kMeans
      */
-    protected KMeans<V, M> innerKMeans;
+    protected List<KMeans<V, M>> innerKMeans;
 
     /**
      * Information criterion.
@@ -340,6 +428,11 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
      */
     private RandomFactory random;
 
+    /**
+     * Number of splits to evaluate at the same time.
+     */
+    protected int concurrent = 1;
+
     @Override
     public void configure(Parameterization config) {
       // Do NOT invoke super.makeOptions to hide the "k" parameter.
@@ -359,18 +452,31 @@ public class XMeans<V extends NumberVector, M extends MeanModel> extends Abstrac
       getParameterDistance(config);
 
       new RandomParameter(SEED_ID).grab(config, x -> random = x);
+      new IntParameter(CONCURRENT_ID, 1) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> concurrent = x);
       ObjectParameter<KMeans<V, M>> innerKMeansP = new ObjectParameter<>(INNER_KMEANS_ID, KMeans.class, LloydKMeans.class);
       if(config.grab(innerKMeansP)) {
-        ChainedParameterization combinedConfig = new ChainedParameterization(new ListParameterization() //
-            .addParameter(KMeans.K_ID, k_min) //
-            .addParameter(KMeans.INIT_ID, new Predefined((double[][]) null)) //
-            .addParameter(KMeans.MAXITER_ID, maxiter) //
-            // Setting the distance to null if undefined at this point will
-            // cause validation errors later. So fall back to the default.
-            .addParameter(KMeans.DISTANCE_FUNCTION_ID, distance != null ? //
-                distance : SquaredEuclideanDistance.STATIC), config);
-        combinedConfig.errorsTo(config);
-        innerKMeans = innerKMeansP.instantiateClass(combinedConfig);
+        // Instantiate the inner k-means once for each concurrent split.
+        MergedParameterization merged = new MergedParameterization(config);
+        innerKMeans = new ArrayList<>(concurrent);
+        for(int i = 0; i < concurrent; i++) {
+          merged.rewind();
+          ChainedParameterization combinedConfig = new ChainedParameterization(new ListParameterization() //
+              .addParameter(KMeans.K_ID, k_min) //
+              .addParameter(KMeans.INIT_ID, new Predefined((double[][]) null)) //
+              .addParameter(KMeans.MAXITER_ID, maxiter) //
+              // Setting the distance to null if undefined at this point will
+              // cause validation errors later. So fall back to the default.
+              .addParameter(KMeans.DISTANCE_FUNCTION_ID, distance != null ? //
+                  distance : SquaredEuclideanDistance.STATIC), merged);
+          combinedConfig.errorsTo(config);
+          KMeans<V, M> inner = innerKMeansP.instantiateClass(combinedConfig);
+          if(i > 0 && inner == innerKMeans.get(0)) {
+            break; // Given as an instance, cannot be copied.
+          }
+          innerKMeans.add(inner);
+        }
       }
 
       new ObjectParameter<KMeansQualityMeasure<V>>(INFORMATION_CRITERION_ID, KMeansQualityMeasure.class, BayesianInformationCriterionXMeans.class) //
@@ -26,15 +26,13 @@ import java.util.Random;
 
 import elki.clustering.kmedoids.initialization.KMedoidsInitialization;
 import elki.data.NumberVector;
-import elki.database.datastore.DataStoreFactory;
-import elki.database.datastore.DataStoreUtil;
-import elki.database.datastore.WritableDoubleDataStore;
 import elki.database.ids.*;
 import elki.database.query.distance.DistanceQuery;
 import elki.database.relation.Relation;
 import elki.distance.NumberVectorDistance;
 import elki.logging.Logging;
 import elki.logging.statistics.LongStatistic;
+import elki.parallel.ParallelExecutor;
 import elki.utilities.documentation.Reference;
 import elki.utilities.random.RandomFactory;
 
@@ -90,21 +88,35 @@ public class KMeansPlusPlus<O> extends AbstractKMeansInitialization implements K
 
   /**
    * Abstract instance implementing the weight handling.
+   * <p>
+   * The weight updates are processed in blocks, in parallel unless disabled;
+   * the partial weight sums are merged in block order, so the result does not
+   * depend on the number of threads.
    *
    * @author Erich Schubert
    *
    * @param <T> Object type handled
    */
   protected abstract static class Instance<T> {
+    /**
+     * Minimum number of objects per block.
+     */
+    private static final int MIN_BLOCKSIZE = 256;
+
+    /**
+     * Maximum number of blocks.
+     */
+    private static final int MAX_BLOCKS = 128;
+
     /**
      * Object IDs
      */
-    protected DBIDs ids;
+    protected ArrayDBIDs ids;
 
     /**
-     * Weights
+     * Weights, by offset in ids
      */
-    protected WritableDoubleDataStore weights;
+    protected double[] weights;
 
     /**
      * Count the number of distance computations.
@@ -116,6 +128,26 @@ public class KMeansPlusPlus<O> extends AbstractKMeansInitialization implements K
      */
     protected Random random;
 
+    /**
+     * Process the blocks in parallel.
+     */
+    protected boolean parallel = true;
+
+    /**
+     * Block size for parallel processing.
+     */
+    private int blocksize;
+
+    /**
+     * Partial weight sums, by block.
+     */
+    private double[] partialsums;
+
+    /**
+     * Partial distance computation counts, by block.
+     */
+    private long[] partialcounts;
+
     /**
      * Constructor.
      *
@@ -123,13 +155,19 @@ public class KMeansPlusPlus<O> extends AbstractKMeansInitialization implements K
      * @param rnd Random generator
      */
     public Instance(DBIDs ids, RandomFactory rnd) {
-      this.ids = ids;
+      this.ids = DBIDUtil.ensureArray(ids);
       this.random = rnd.getSingleThreadedRandom();
-      this.weights = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, 0.);
+      this.weights = new double[ids.size()];
+      this.blocksize = Math.max(MIN_BLOCKSIZE, (ids.size() + MAX_BLOCKS - 1) / MAX_BLOCKS);
+      final int numblocks = (ids.size() + blocksize - 1) / blocksize;
+      this.partialsums = new double[numblocks];
+      this.partialcounts = new long[numblocks];
     }
 
     /**
      * Compute the distance of two objects.
+     * <p>
+     * Must be thread-safe, unless parallel processing is disabled.
      *
      * @param a First object
      * @param b Second object
@@ -144,14 +182,7 @@ public class KMeansPlusPlus<O> extends AbstractKMeansInitialization implements K
      * @return Weight sum
      */
     protected double initialWeights(T first) {
-      double weightsum = 0.;
-      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
-        // Distance will usually already be squared
-        double weight = distance(first, it);
-        weights.putDouble(it, weight);
-        weightsum += weight;
-      }
-      return weightsum;
+      return computeWeights(first, true);
     }
 
     /**
@@ -161,21 +192,60 @@ public class KMeansPlusPlus<O> extends AbstractKMeansInitialization implements K
      * @return Weight sum
      */
     protected double updateWeights(T latest) {
+      return computeWeights(latest, false);
+    }
+
+    /**
+     * Compute or update the weights, block by block.
+     *
+     * @param latest Added ID
+     * @param initial Initialize all weights
+     * @return Weight sum
+     */
+    private double computeWeights(T latest, boolean initial) {
+      if(parallel) {
+        ParallelExecutor.runBlocks(ids, blocksize, (ids2, start, end) -> computeWeights(latest, initial, start, end));
+      }
+      else {
+        for(int start = 0, size = ids.size(); start < size; start += blocksize) {
+          computeWeights(latest, initial, start, Math.min(start + blocksize, size));
+        }
+      }
       double weightsum = 0.;
-      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
-        double weight = weights.doubleValue(it);
-        if(weight <= 0.) {
+      for(int i = 0; i < partialsums.length; i++) {
+        weightsum += partialsums[i];
+        diststat += partialcounts[i];
+      }
+      return weightsum;
+    }
+
+    /**
+     * Compute or update the weights of a single block.
+     *
+     * @param latest Added ID
+     * @param initial Initialize all weights
+     * @param start Block start
+     * @param end Block end
+     */
+    private void computeWeights(T latest, boolean initial, int start, int end) {
+      double weightsum = 0.;
+      long count = 0;
+      for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+        final int off = it.getOffset();
+        double weight = weights[off];
+        if(!initial && weight <= 0.) {
           continue; // Duplicate, or already chosen.
         }
         // Distances are assumed to be squared already
         double newweight = distance(latest, it);
-        if(newweight < weight) {
-          weights.putDouble(it, newweight);
-          weight = newweight;
+        ++count;
+        if(initial || newweight < weight) {
+          weights[off] = weight = newweight;
         }
         weightsum += weight;
       }
-      return weightsum;
+      partialsums[start / blocksize] = weightsum;
+      partialcounts[start / blocksize] = count;
     }
 
     protected double nextDouble(double weightsum) {
@@ -228,14 +298,12 @@ public class KMeansPlusPlus<O> extends AbstractKMeansInitialization implements K
       NumberVector firstvec = relation.get(DBIDUtil.randomSample(ids, random));
       means.add(firstvec);
       chooseRemaining(k, means, initialWeights(firstvec));
-      weights.destroy();
       LOG.statistics(new LongStatistic(KMeansPlusPlus.class.getName() + ".distance-computations", diststat));
       return unboxVectors(means);
     }
 
     @Override
     protected double distance(NumberVector a, DBIDRef b) {
-      ++diststat;
       return distance.distance(a, relation.get(b));
     }
 
@@ -255,9 +323,9 @@ public class KMeansPlusPlus<O> extends AbstractKMeansInitialization implements K
           LOG.warning("Could not choose a reasonable mean - to few unique data points?");
         }
         double r = nextDouble(weightsum);
-        DBIDIter it = ids.iter();
+        DBIDArrayIter it = ids.iter();
         while(it.valid()) {
-          if((r -= weights.doubleValue(it)) <= 0) {
+          if((r -= weights[it.getOffset()]) <= 0) {
             break;
           }
           it.advance();
@@ -273,7 +341,7 @@ public class KMeansPlusPlus<O> extends AbstractKMeansInitialization implements K
           break;
         }
         // Update weights:
-        weights.putDouble(it, 0.);
+        weights[it.getOffset()] = 0.;
         weightsum = updateWeights(newmean);
       }
     }
@@ -281,6 +349,9 @@ public class KMeansPlusPlus<O> extends AbstractKMeansInitialization implements K
 
   /**
    * Instance for k-medoids.
+   * <p>
+   * The weights are computed serially, as distance queries (for example the
+   * caching queries used by CLARA) are not necessarily thread-safe.
    *
    * @author Erich Schubert
    */
@@ -293,6 +364,7 @@ public class KMeansPlusPlus<O> extends AbstractKMeansInitialization implements K
     public MedoidsInstance(DBIDs ids, DistanceQuery<?> distQ, RandomFactory rnd) {
       super(ids, rnd);
       this.distQ = distQ;
+      this.parallel = false;
     }
 
     public DBIDs run(int k) {
@@ -301,14 +373,12 @@ public class KMeansPlusPlus<O> extends AbstractKMeansInitialization implements K
       DBIDRef first = DBIDUtil.randomSample(ids, random);
       means.add(first);
       chooseRemaining(k, means, initialWeights(first));
-      weights.destroy();
       LOG.statistics(new LongStatistic(KMeansPlusPlus.class.getName() + ".distance-computations", diststat));
       return means;
     }
 
     @Override
     protected double distance(DBIDRef a, DBIDRef b) {
-      ++diststat;
       return distQ.distance(a, b);
     }
 
@@ -326,11 +396,14 @@ public class KMeansPlusPlus<O> extends AbstractKMeansInitialization implements K
         }
         if(weightsum < Double.MIN_NORMAL) {
           LOG.warning("Could not choose a reasonable mean - to few unique data points?");
+          // Pad with random objects not chosen yet, to avoid duplicate medoids.
+          means.addDBIDs(DBIDUtil.randomSample(DBIDUtil.difference(ids, means), k - means.size(), random));
+          return;
         }
         double r = nextDouble(weightsum);
-        DBIDIter it = ids.iter();
+        DBIDArrayIter it = ids.iter();
         while(it.valid()) {
-          if((r -= weights.doubleValue(it)) <= 0) {
+          if((r -= weights[it.getOffset()]) <= 0) {
             break;
           }
           it.advance();
@@ -345,7 +418,7 @@ public class KMeansPlusPlus<O> extends AbstractKMeansInitialization implements K
           break;
         }
         // Update weights:
-        weights.putDouble(it, 0.);
+        weights[it.getOffset()] = 0.;
         weightsum = updateWeights(it);
       }
     }
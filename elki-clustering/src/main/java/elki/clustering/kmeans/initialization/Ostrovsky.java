@@ -136,7 +136,6 @@ public class Ostrovsky extends AbstractKMeansInitialization {
       // as for picking all the remaining vectors, so we can use the inherited
       // code from our k-means++ implementation.
       chooseRemaining(k, means, initialWeights(firstvec));
-      weights.destroy();
       LOG.statistics(new LongStatistic(KMeansPlusPlus.class.getName() + ".distance-computations", diststat));
       return unboxVectors(means);
     }
@@ -0,0 +1,421 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.initialization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import elki.data.NumberVector;
+import elki.database.ids.*;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.logging.statistics.LongStatistic;
+import elki.parallel.ParallelExecutor;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.random.FastNonThreadsafeRandom;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Scalable k-means++ initialization, also known as k-means||.
+ * <p>
+ * Instead of choosing one center per pass over the data as in
+ * {@link KMeansPlusPlus}, this oversamples \(\ell\) candidates per round,
+ * each object independently with probability proportional to its squared
+ * distance to the nearest candidate so far. After a few rounds, the
+ * candidates are weighted by the number of objects closest to them, and
+ * reclustered to k centers with weighted k-means++.
+ * <p>
+ * Sampling and distance updates are processed in parallel blocks. Each block
+ * uses its own random generator, seeded from the round and block position, so
+ * the result does not depend on the number of threads.
+ * <p>
+ * Reference:
+ * <p>
+ * B. Bahmani, B. Moseley, A. Vattani, R. Kumar, S. Vassilvitskii<br>
+ * Scalable K-Means++<br>
+ * Proc. VLDB Endowment 5(7)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+@Reference(authors = "B. Bahmani, B. Moseley, A. Vattani, R. Kumar, S. Vassilvitskii", //
+    title = "Scalable K-Means++", //
+    booktitle = "Proc. VLDB Endowment 5(7)", //
+    url = "https://doi.org/10.14778/2180912.2180915", //
+    bibkey = "DBLP:journals/pvldb/BahmaniMVKV12")
+public class ScalableKMeansPlusPlus extends AbstractKMeansInitialization {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ScalableKMeansPlusPlus.class);
+
+  /**
+   * Minimum number of objects per block.
+   */
+  private static final int MIN_BLOCKSIZE = 256;
+
+  /**
+   * Maximum number of blocks.
+   */
+  private static final int MAX_BLOCKS = 128;
+
+  /**
+   * Oversampling factor, relative to k.
+   */
+  protected double oversampling;
+
+  /**
+   * Number of sampling rounds.
+   */
+  protected int rounds;
+
+  /**
+   * Constructor.
+   *
+   * @param rnd Random generator.
+   * @param oversampling Oversampling factor, relative to k
+   * @param rounds Number of sampling rounds
+   */
+  public ScalableKMeansPlusPlus(RandomFactory rnd, double oversampling, int rounds) {
+    super(rnd);
+    this.oversampling = oversampling;
+    this.rounds = rounds;
+  }
+
+  @Override
+  public double[][] chooseInitialMeans(Relation<? extends NumberVector> relation, int k, NumberVectorDistance<?> distance) {
+    if(relation.size() < k) {
+      throw new IllegalArgumentException("Cannot choose k=" + k + " means from N=" + relation.size() + " < k objects.");
+    }
+    return new Instance(relation, distance, rnd).run(k);
+  }
+
+  /**
+   * Instance for a single run.
+   *
+   * @author Erich Schubert
+   */
+  protected class Instance {
+    /**
+     * Data relation.
+     */
+    protected Relation<? extends NumberVector> relation;
+
+    /**
+     * Distance function
+     */
+    protected NumberVectorDistance<?> distance;
+
+    /**
+     * Object IDs
+     */
+    protected ArrayDBIDs ids;
+
+    /**
+     * Distance to the nearest candidate, by offset
+     */
+    protected double[] dist;
+
+    /**
+     * Nearest candidate, by offset
+     */
+    protected int[] nearest;
+
+    /**
+     * Candidate centers
+     */
+    protected List<NumberVector> candidates = new ArrayList<>();
+
+    /**
+     * Random generator
+     */
+    protected Random random;
+
+    /**
+     * Block size for parallel processing.
+     */
+    protected int blocksize;
+
+    /**
+     * Partial sums, by block.
+     */
+    protected double[] partialsums;
+
+    /**
+     * Partial samples, by block.
+     */
+    protected ArrayModifiableDBIDs[] partialsamples;
+
+    /**
+     * Count the number of distance computations.
+     */
+    protected long diststat;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param distance Distance function
+     * @param rnd Random generator
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> distance, RandomFactory rnd) {
+      this.relation = relation;
+      this.distance = distance;
+      this.ids = DBIDUtil.ensureArray(relation.getDBIDs());
+      this.random = rnd.getSingleThreadedRandom();
+      final int size = ids.size();
+      this.dist = new double[size];
+      this.nearest = new int[size];
+      Arrays.fill(dist, Double.POSITIVE_INFINITY);
+      this.blocksize = Math.max(MIN_BLOCKSIZE, (size + MAX_BLOCKS - 1) / MAX_BLOCKS);
+      final int numblocks = (size + blocksize - 1) / blocksize;
+      this.partialsums = new double[numblocks];
+      this.partialsamples = new ArrayModifiableDBIDs[numblocks];
+    }
+
+    /**
+     * Run the initialization.
+     *
+     * @param k Number of means to choose
+     * @return Initial means
+     */
+    public double[][] run(int k) {
+      final double l = oversampling * k;
+      candidates.add(relation.get(DBIDUtil.randomSample(ids, random)));
+      double cost = updateNearest(0);
+      for(int round = 0; round < rounds && cost > 0; round++) {
+        final int before = candidates.size();
+        sample(l / cost, random.nextLong());
+        cost = updateNearest(before);
+      }
+      // Too few candidates; add more by k-means++ sampling, which never chooses
+      // an object identical to a previous candidate.
+      while(candidates.size() < k && cost > 0) {
+        double r = random.nextDouble() * cost;
+        int chosen = -1;
+        for(int off = 0; off < dist.length; off++) {
+          if(dist[off] > 0) {
+            chosen = off;
+            if((r -= dist[off]) <= 0) {
+              break;
+            }
+          }
+        }
+        candidates.add(relation.get(ids.iter().seek(chosen)));
+        cost = updateNearest(candidates.size() - 1);
+      }
+      if(candidates.size() < k) {
+        // Too few distinct objects, duplicates cannot be avoided.
+        LOG.warning("Only " + candidates.size() + " distinct candidates were found - too few unique data points?");
+        for(DBIDIter it = DBIDUtil.randomSample(ids, k - candidates.size(), random).iter(); it.valid(); it.advance()) {
+          candidates.add(relation.get(it));
+        }
+        LOG.statistics(new LongStatistic(ScalableKMeansPlusPlus.class.getName() + ".distance-computations", diststat));
+        return unboxVectors(candidates);
+      }
+      // Weight the candidates by the number of objects closest to them.
+      double[] weights = new double[candidates.size()];
+      for(int c : nearest) {
+        weights[c] += 1;
+      }
+      List<NumberVector> means = recluster(k, weights);
+      LOG.statistics(new LongStatistic(ScalableKMeansPlusPlus.class.getName() + ".candidates", candidates.size()));
+      LOG.statistics(new LongStatistic(ScalableKMeansPlusPlus.class.getName() + ".distance-computations", diststat));
+      return unboxVectors(means);
+    }
+
+    /**
+     * Update the distances to the nearest candidate, in parallel.
+     *
+     * @param from First new candidate
+     * @return Sum of distances
+     */
+    protected double updateNearest(int from) {
+      final int to = candidates.size();
+      ParallelExecutor.runBlocks(ids, blocksize, (ids2, start, end) -> {
+        double sum = 0.;
+        for(DBIDArrayIter it = ids2.iter().seek(start); it.getOffset() < end; it.advance()) {
+          final int off = it.getOffset();
+          final NumberVector fv = relation.get(it);
+          double min = dist[off];
+          for(int c = from; c < to; c++) {
+            // Distances are assumed to be squared already
+            final double d = distance.distance(fv, candidates.get(c));
+            if(d < min) {
+              min = d;
+              nearest[off] = c;
+            }
+          }
+          sum += dist[off] = min;
+        }
+        partialsums[start / blocksize] = sum;
+      });
+      diststat += (to - from) * (long) ids.size();
+      double sum = 0.;
+      for(double s : partialsums) {
+        sum += s;
+      }
+      return sum;
+    }
+
+    /**
+     * Sample new candidates, in parallel.
+     *
+     * @param scale Scaling factor of the distances to probabilities
+     * @param seed Random seed for this round
+     */
+    protected void sample(double scale, long seed) {
+      ParallelExecutor.runBlocks(ids, blocksize, (ids2, start, end) -> {
+        Random rnd = new FastNonThreadsafeRandom(seed + start);
+        ArrayModifiableDBIDs sample = DBIDUtil.newArray();
+        for(DBIDArrayIter it = ids2.iter().seek(start); it.getOffset() < end; it.advance()) {
+          final double d = dist[it.getOffset()];
+          if(d > 0 && rnd.nextDouble() < d * scale) {
+            sample.add(it);
+          }
+        }
+        partialsamples[start / blocksize] = sample;
+      });
+      for(int i = 0; i < partialsamples.length; i++) {
+        for(DBIDIter it = partialsamples[i].iter(); it.valid(); it.advance()) {
+          candidates.add(relation.get(it));
+        }
+        partialsamples[i] = null;
+      }
+    }
+
+    /**
+     * Recluster the weighted candidates with weighted k-means++.
+     *
+     * @param k Number of means to choose
+     * @param weights Candidate weights
+     * @return Chosen means
+     */
+    protected List<NumberVector> recluster(int k, double[] weights) {
+      final int m = candidates.size();
+      List<NumberVector> means = new ArrayList<>(k);
+      double[] mindist = new double[m];
+      Arrays.fill(mindist, Double.POSITIVE_INFINITY);
+      // The first mean is chosen proportionally to the weights only.
+      double weightsum = 0.;
+      for(double w : weights) {
+        weightsum += w;
+      }
+      int chosen = choose(weights, null, weightsum);
+      while(true) {
+        final NumberVector newmean = candidates.get(chosen);
+        means.add(newmean);
+        if(means.size() >= k) {
+          break;
+        }
+        weightsum = 0.;
+        for(int i = 0; i < m; i++) {
+          if(mindist[i] > 0.) {
+            final double d = distance.distance(newmean, candidates.get(i));
+            mindist[i] = d < mindist[i] ? d : mindist[i];
+          }
+          weightsum += weights[i] * mindist[i];
+        }
+        diststat += m;
+        if(weightsum < Double.MIN_NORMAL) {
+          LOG.warning("Could not choose a reasonable mean - to few unique data points?");
+        }
+        chosen = choose(weights, mindist, weightsum);
+      }
+      return means;
+    }
+
+    /**
+     * Choose a candidate proportionally to its weight.
+     *
+     * @param weights Candidate weights
+     * @param mindist Distance factors, may be {@code null}
+     * @param weightsum Sum of the weights
+     * @return Chosen candidate
+     */
+    private int choose(double[] weights, double[] mindist, double weightsum) {
+      double r = random.nextDouble() * weightsum;
+      int last = -1;
+      for(int i = 0; i < weights.length; i++) {
+        final double w = mindist != null ? weights[i] * mindist[i] : weights[i];
+        if(w > 0) {
+          last = i;
+          if((r -= w) <= 0) {
+            return i;
+          }
+        }
+      }
+      // Due to floating point math, or no positive weight left.
+      return last >= 0 ? last : random.nextInt(weights.length);
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par extends AbstractKMeansInitialization.Par {
+    /**
+     * Oversampling factor, relative to k.
+     */
+    public static final OptionID OVERSAMPLING_ID = new OptionID("kmeans.scalable.oversampling", "Expected number of candidates sampled in each round, relative to k.");
+
+    /**
+     * Number of sampling rounds.
+     */
+    public static final OptionID ROUNDS_ID = new OptionID("kmeans.scalable.rounds", "Number of sampling rounds.");
+
+    /**
+     * Oversampling factor, relative to k.
+     */
+    protected double oversampling;
+
+    /**
+     * Number of sampling rounds.
+     */
+    protected int rounds;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new DoubleParameter(OVERSAMPLING_ID, 2.) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .grab(config, x -> oversampling = x);
+      new IntParameter(ROUNDS_ID, 5) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> rounds = x);
+    }
+
+    @Override
+    public ScalableKMeansPlusPlus make() {
+      return new ScalableKMeansPlusPlus(rnd, oversampling, rounds);
+    }
+  }
+}
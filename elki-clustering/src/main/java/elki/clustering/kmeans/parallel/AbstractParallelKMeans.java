@@ -0,0 +1,389 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import java.util.Arrays;
+
+import elki.clustering.kmeans.AbstractKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.math.linearalgebra.VMath;
+import elki.parallel.ParallelExecutor;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+
+/**
+ * Abstract base class for parallel k-means variants that maintain bounds for
+ * each object, such as Elkan's or Hamerly's algorithm.
+ * <p>
+ * The data is split into a fixed number of blocks, independent of the number
+ * of threads. Each block keeps its own partial cluster sums, sizes, and
+ * statistics, which are merged in block order once per iteration. Because the
+ * decisions for each object only depend on the current means and the bounds of
+ * this object, the results are deterministic, and the same as those of the
+ * serial algorithms up to floating point rounding in the mean computation.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <V> vector datatype
+ */
+public abstract class AbstractParallelKMeans<V extends NumberVector> extends AbstractKMeans<V, KMeansModel> {
+  /**
+   * Flag whether to compute the final variance statistic.
+   */
+  protected boolean varstat = false;
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public AbstractParallelKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer);
+    this.varstat = varstat;
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation, double[][] means) {
+    return makeInstance(relation, distance, means).run(maxiter, varstat);
+  }
+
+  /**
+   * Make the algorithm instance.
+   *
+   * @param relation Data relation
+   * @param distance Distance function
+   * @param means Initial means
+   * @return Instance
+   */
+  protected abstract Instance makeInstance(Relation<V> relation, NumberVectorDistance<? super V> distance, double[][] means);
+
+  /**
+   * Inner instance, storing state for a single data set.
+   * <p>
+   * Per-object state is stored in arrays indexed by the offset of the object
+   * in {@link #ids}, which can be written concurrently by different blocks.
+   *
+   * @author Erich Schubert
+   */
+  protected abstract static class Instance extends AbstractKMeans.Instance {
+    /**
+     * Minimum number of objects in a block.
+     */
+    private static final int MIN_BLOCKSIZE = 256;
+
+    /**
+     * Maximum number of blocks; this bounds the memory used for the partial
+     * sums.
+     */
+    private static final int MAX_BLOCKS = 128;
+
+    /**
+     * Object ids, in processing order.
+     */
+    protected ArrayDBIDs ids;
+
+    /**
+     * Cluster assignment, by offset.
+     */
+    protected int[] assigned;
+
+    /**
+     * Sums of clusters.
+     */
+    protected double[][] sums;
+
+    /**
+     * Cluster sizes.
+     */
+    protected int[] sizes;
+
+    /**
+     * Scratch space for new means.
+     */
+    protected double[][] newmeans;
+
+    /**
+     * Distance function.
+     */
+    private NumberVectorDistance<?> df;
+
+    /**
+     * Use the inlined squared Euclidean distance.
+     */
+    private boolean sqeuclidean;
+
+    /**
+     * Number of objects per block.
+     */
+    private int blocksize;
+
+    /**
+     * Partial results, by block.
+     */
+    private Partial[] partials;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+      this.df = df;
+      this.sqeuclidean = df.getClass() == SquaredEuclideanDistance.class;
+      this.ids = DBIDUtil.ensureArray(relation.getDBIDs());
+      final int size = ids.size(), dim = means[0].length;
+      this.assigned = new int[size];
+      Arrays.fill(assigned, -1);
+      this.sums = new double[k][dim];
+      this.sizes = new int[k];
+      this.newmeans = new double[k][dim];
+      this.blocksize = Math.max(MIN_BLOCKSIZE, (size + MAX_BLOCKS - 1) / MAX_BLOCKS);
+      this.partials = new Partial[(size + blocksize - 1) / blocksize];
+    }
+
+    @Override
+    protected int iterate(int iteration) {
+      final boolean initial = iteration == 1;
+      if(initial) {
+        initialSeparation();
+      }
+      else {
+        meansFromSums(newmeans, sums);
+        updateMeans();
+      }
+      ParallelExecutor.runBlocks(ids, blocksize, (ids, start, end) -> {
+        Partial p = new Partial();
+        for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+          if(initial) {
+            initialAssign(it, it.getOffset(), p);
+          }
+          else {
+            reassign(it, it.getOffset(), p);
+          }
+        }
+        partials[start / blocksize] = p;
+      });
+      // Merge the partial results, in a deterministic order
+      int changed = 0;
+      for(int b = 0; b < partials.length; b++) {
+        Partial p = partials[b];
+        for(int i = 0; i < k; i++) {
+          if(p.sums[i] != null) {
+            VMath.plusEquals(sums[i], p.sums[i]);
+          }
+          sizes[i] += p.sizes[i];
+        }
+        changed += p.changed;
+        diststat += p.diststat;
+        partials[b] = null;
+      }
+      return initial ? ids.size() : changed;
+    }
+
+    /**
+     * Compute the initial separation of the means.
+     */
+    protected abstract void initialSeparation();
+
+    /**
+     * Update the means from {@link #newmeans}, and update the data needed for
+     * the bounds such as the distance moved and the separation of the means.
+     * <p>
+     * This is executed serially, before each assignment pass.
+     */
+    protected abstract void updateMeans();
+
+    /**
+     * Perform the initial cluster assignment of a single object.
+     *
+     * @param id Object
+     * @param off Offset of the object
+     * @param p Partial result
+     */
+    protected abstract void initialAssign(DBIDRef id, int off, Partial p);
+
+    /**
+     * Reassign a single object, but avoid unnecessary computations based on
+     * its bounds.
+     *
+     * @param id Object
+     * @param off Offset of the object
+     * @param p Partial result
+     */
+    protected abstract void reassign(DBIDRef id, int off, Partial p);
+
+    @Override
+    protected void meansFromSums(double[][] dst, double[][] sums) {
+      for(int i = 0; i < k; i++) {
+        VMath.overwriteTimes(dst[i], sums[i], 1. / sizes[i]);
+      }
+    }
+
+    /**
+     * Run the clustering, and build the result.
+     *
+     * @param maxiter Maximum number of iterations
+     * @param varstat Compute the variance statistic
+     * @return Clustering result
+     */
+    protected Clustering<KMeansModel> run(int maxiter, boolean varstat) {
+      run(maxiter);
+      buildClusters();
+      return buildResult(varstat, relation);
+    }
+
+    /**
+     * Build the final clusters from the assignment.
+     */
+    protected void buildClusters() {
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        final int c = assigned[it.getOffset()];
+        clusters.get(c).add(it);
+        assignment.putInt(it, c);
+      }
+    }
+
+    /**
+     * Partial aggregates of a single block.
+     *
+     * @author Erich Schubert
+     */
+    protected class Partial {
+      /**
+       * Partial cluster sums, allocated on demand.
+       */
+      double[][] sums = new double[k][];
+
+      /**
+       * Change in cluster sizes.
+       */
+      int[] sizes = new int[k];
+
+      /**
+       * Number of reassigned objects.
+       */
+      int changed = 0;
+
+      /**
+       * Number of distance computations.
+       */
+      long diststat = 0;
+
+      /**
+       * Compute a distance, and count the distance computations.
+       *
+       * @param x First vector
+       * @param y Second vector
+       * @return Distance
+       */
+      protected double distance(NumberVector x, double[] y) {
+        ++diststat;
+        if(sqeuclidean) {
+          if(y.length != x.getDimensionality()) {
+            throw new IllegalArgumentException("Objects do not have the same dimensionality.");
+          }
+          double v = 0;
+          for(int i = 0; i < y.length; i++) {
+            double d = x.doubleValue(i) - y[i];
+            v += d * d;
+          }
+          return v;
+        }
+        return df.distance(x, DoubleVector.wrap(y));
+      }
+
+      /**
+       * Add an object to a cluster.
+       *
+       * @param c Cluster
+       * @param fv Object
+       */
+      protected void add(int c, NumberVector fv) {
+        plusEquals(sum(c), fv);
+        ++sizes[c];
+      }
+
+      /**
+       * Move an object to a different cluster.
+       *
+       * @param from Previous cluster
+       * @param to New cluster
+       * @param fv Object
+       */
+      protected void move(int from, int to, NumberVector fv) {
+        plusMinusEquals(sum(to), sum(from), fv);
+        ++sizes[to];
+        --sizes[from];
+        ++changed;
+      }
+
+      /**
+       * Get the partial sum of a cluster.
+       *
+       * @param c Cluster
+       * @return Partial sum
+       */
+      private double[] sum(int c) {
+        double[] s = sums[c];
+        return s != null ? s : (sums[c] = new double[newmeans[c].length]);
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public abstract static class Par<V extends NumberVector> extends AbstractKMeans.Par<V> {
+    @Override
+    protected boolean needsMetric() {
+      return true;
+    }
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      super.getParameterVarstat(config);
+    }
+
+    @Override
+    public abstract AbstractParallelKMeans<V> make();
+  }
+}
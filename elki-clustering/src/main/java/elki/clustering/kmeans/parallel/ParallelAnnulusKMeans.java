@@ -0,0 +1,256 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import java.util.Arrays;
+
+import elki.clustering.kmeans.AnnulusKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.NumberVector;
+import elki.database.ids.DBIDRef;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.logging.Logging;
+import elki.math.linearalgebra.VMath;
+import elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of the Annulus k-means algorithm, see
+ * {@link AnnulusKMeans}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <V> vector datatype
+ */
+public class ParallelAnnulusKMeans<V extends NumberVector> extends ParallelHamerlyKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelAnnulusKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public ParallelAnnulusKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer, varstat);
+  }
+
+  @Override
+  protected Instance makeInstance(Relation<V> relation, NumberVectorDistance<? super V> distance, double[][] means) {
+    return new Instance(relation, distance, means);
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends ParallelHamerlyKMeans.Instance {
+    /**
+     * Second nearest cluster, by offset.
+     */
+    int[] second;
+
+    /**
+     * Norms of the cluster centers, sorted.
+     */
+    double[] cnorm;
+
+    /**
+     * Cluster centers, sorted by norm.
+     */
+    int[] cnum;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+      second = new int[ids.size()];
+      Arrays.fill(second, -1);
+      cnorm = new double[k];
+      cnum = new int[k];
+    }
+
+    @Override
+    protected void updateMeans() {
+      cdist = null; // Only needed initially
+      delta = movedDistance(means, newmeans, move);
+      copyMeans(newmeans, means);
+      orderMeans();
+    }
+
+    @Override
+    protected void initialAssign(DBIDRef it, int off, Partial p) {
+      NumberVector fv = relation.get(it);
+      // Find closest center, and distance to two closest centers
+      double min1 = p.distance(fv, means[0]), min2 = p.distance(fv, means[1]);
+      int minIndex = 0, secIndex = 1;
+      if(min2 < min1) {
+        double tmp = min1;
+        min1 = min2;
+        min2 = tmp;
+        minIndex = 1;
+        secIndex = 0;
+      }
+      for(int i = 2; i < k; i++) {
+        if(min2 > cdist[minIndex][i]) {
+          double dist = p.distance(fv, means[i]);
+          if(dist < min1) {
+            secIndex = minIndex;
+            minIndex = i;
+            min2 = min1;
+            min1 = dist;
+          }
+          else if(dist < min2) {
+            secIndex = i;
+            min2 = dist;
+          }
+        }
+      }
+      // Assign to nearest cluster.
+      assigned[off] = minIndex;
+      second[off] = secIndex;
+      p.add(minIndex, fv);
+      upper[off] = isSquared ? FastMath.sqrt(min1) : min1;
+      lower[off] = isSquared ? FastMath.sqrt(min2) : min2;
+    }
+
+    /**
+     * Recompute the separation of cluster means, and sort the means by norm.
+     */
+    protected void orderMeans() {
+      Arrays.fill(sep, Double.POSITIVE_INFINITY);
+      for(int i = 0; i < k; i++) {
+        double[] mi = means[i];
+        cnorm[i] = VMath.euclideanLength(mi);
+        cnum[i] = i;
+        for(int j = 0; j < i; j++) {
+          double d = distance(mi, means[j]);
+          d = 0.5 * (isSquared ? FastMath.sqrt(d) : d);
+          sep[i] = (d < sep[i]) ? d : sep[i];
+          sep[j] = (d < sep[j]) ? d : sep[j];
+        }
+      }
+      DoubleIntegerArrayQuickSort.sort(cnorm, cnum, k);
+    }
+
+    @Override
+    protected void reassign(DBIDRef it, int off, Partial p) {
+      final int cur = assigned[off];
+      // Update the bounds for the movement of the means:
+      double u = upper[off] += move[cur];
+      final double z = lower[off] -= delta;
+      final double sa = sep[cur];
+      if(u <= z || u <= sa) {
+        return;
+      }
+      // Update the upper bound
+      NumberVector fv = relation.get(it);
+      double curd2 = p.distance(fv, means[cur]);
+      upper[off] = u = isSquared ? FastMath.sqrt(curd2) : curd2;
+      if(u <= z || u <= sa) {
+        return;
+      }
+      final int sec = second[off];
+      double secd2 = p.distance(fv, means[sec]);
+      double secd = isSquared ? FastMath.sqrt(secd2) : secd2;
+      double r = u > secd ? u : secd;
+      final double norm = EuclideanDistance.STATIC.norm(fv);
+      // Find closest center, and distance to two closest centers
+      double min1 = curd2, min2 = secd2;
+      int minIndex = cur, secIndex = sec;
+      if(curd2 > secd2) {
+        min1 = secd2;
+        min2 = curd2;
+        minIndex = sec;
+        secIndex = cur;
+      }
+      for(int i = 0; i < k; i++) {
+        int c = cnum[i];
+        if(c == cur || c == sec) {
+          continue;
+        }
+        double d = cnorm[i] - norm;
+        if(-d > r) {
+          continue; // Not yet a candidate
+        }
+        if(d > r) {
+          break; // No longer a candidate
+        }
+        double dist = p.distance(fv, means[c]);
+        if(dist < min1) {
+          secIndex = minIndex;
+          minIndex = c;
+          min2 = min1;
+          min1 = dist;
+        }
+        else if(dist < min2) {
+          secIndex = c;
+          min2 = dist;
+        }
+      }
+      if(minIndex != cur) {
+        assigned[off] = minIndex;
+        second[off] = secIndex;
+        p.move(cur, minIndex, fv);
+        upper[off] = min1 == curd2 ? u : isSquared ? FastMath.sqrt(min1) : min1;
+      }
+      lower[off] = min2 == curd2 ? u : isSquared ? FastMath.sqrt(min2) : min2;
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par<V extends NumberVector> extends ParallelHamerlyKMeans.Par<V> {
+    @Override
+    public ParallelAnnulusKMeans<V> make() {
+      return new ParallelAnnulusKMeans<>(distance, k, maxiter, initializer, varstat);
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import elki.clustering.kmeans.ElkanKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.NumberVector;
+import elki.database.ids.DBIDRef;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.math.linearalgebra.VMath;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of Elkan's k-means, see {@link ElkanKMeans}.
+ * <p>
+ * This variant needs O(n*k) additional memory to store bounds.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <V> vector datatype
+ */
+public class ParallelElkanKMeans<V extends NumberVector> extends ParallelSimplifiedElkanKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelElkanKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public ParallelElkanKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer, varstat);
+  }
+
+  @Override
+  protected Instance makeInstance(Relation<V> relation, NumberVectorDistance<? super V> distance, double[][] means) {
+    return new Instance(relation, distance, means);
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends ParallelSimplifiedElkanKMeans.Instance {
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+      cdist = new double[k][k];
+    }
+
+    @Override
+    protected void initialSeparation() {
+      initialSeperation(cdist);
+    }
+
+    @Override
+    protected void updateMeans() {
+      movedDistance(means, newmeans, move);
+      copyMeans(newmeans, means);
+      recomputeSeperation(sep, cdist); // #1
+    }
+
+    @Override
+    protected void initialAssign(DBIDRef it, int off, Partial p) {
+      NumberVector fv = relation.get(it);
+      double[] l = lower[off];
+      // Check all (other) means:
+      double best = p.distance(fv, means[0]);
+      l[0] = best = isSquared ? FastMath.sqrt(best) : best;
+      int minIndex = 0;
+      for(int j = 1; j < k; j++) {
+        if(best > cdist[minIndex][j]) {
+          double dist = p.distance(fv, means[j]);
+          l[j] = dist = isSquared ? FastMath.sqrt(dist) : dist;
+          if(dist < best) {
+            minIndex = j;
+            best = dist;
+          }
+        }
+      }
+      for(int j = 1; j < k; j++) {
+        if(l[j] == 0. && j != minIndex) {
+          l[j] = 2 * cdist[minIndex][j] - best;
+        }
+      }
+      // Assign to nearest cluster.
+      assigned[off] = minIndex;
+      upper[off] = best;
+      p.add(minIndex, fv);
+    }
+
+    @Override
+    protected void reassign(DBIDRef it, int off, Partial p) {
+      final int orig = assigned[off];
+      // Update the bounds for the movement of the means:
+      double u = upper[off] += move[orig];
+      double[] l = VMath.minusEquals(lower[off], move);
+      // Upper bound check (#2):
+      if(u <= sep[orig]) {
+        return;
+      }
+      boolean recompute_u = true; // Elkan's r(x)
+      NumberVector fv = relation.get(it);
+      // Check all (other) means:
+      int cur = orig;
+      for(int j = 0; j < k; j++) {
+        if(orig == j || u <= l[j] || u <= cdist[cur][j]) {
+          continue; // Condition #3 i-iii not satisfied
+        }
+        if(recompute_u) { // Need to update bound? #3a
+          u = p.distance(fv, means[cur]);
+          upper[off] = u = isSquared ? FastMath.sqrt(u) : u;
+          recompute_u = false; // Once only
+          if(u <= l[j] || u <= cdist[cur][j]) { // #3b
+            continue;
+          }
+        }
+        double dist = p.distance(fv, means[j]);
+        dist = isSquared ? FastMath.sqrt(dist) : dist;
+        l[j] = dist;
+        if(dist < u) {
+          cur = j;
+          u = dist;
+        }
+      }
+      // Object is to be reassigned.
+      if(cur != orig) {
+        upper[off] = u; // Remember bound.
+        assigned[off] = cur;
+        p.move(orig, cur, fv);
+      }
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par<V extends NumberVector> extends ParallelSimplifiedElkanKMeans.Par<V> {
+    @Override
+    public ParallelElkanKMeans<V> make() {
+      return new ParallelElkanKMeans<>(distance, k, maxiter, initializer, varstat);
+    }
+  }
+}
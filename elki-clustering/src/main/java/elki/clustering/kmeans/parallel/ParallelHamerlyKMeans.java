@@ -0,0 +1,256 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import java.util.Arrays;
+
+import elki.clustering.kmeans.HamerlyKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.NumberVector;
+import elki.database.ids.DBIDRef;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of Hamerly's fast k-means, see {@link HamerlyKMeans}.
+ * <p>
+ * The bound maintenance and reassignment of objects is split across workers;
+ * the computation of the new means and their separation is serial.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <V> vector datatype
+ */
+public class ParallelHamerlyKMeans<V extends NumberVector> extends AbstractParallelKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelHamerlyKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public ParallelHamerlyKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer, varstat);
+  }
+
+  @Override
+  protected Instance makeInstance(Relation<V> relation, NumberVectorDistance<? super V> distance, double[][] means) {
+    return new Instance(relation, distance, means);
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends AbstractParallelKMeans.Instance {
+    /**
+     * Separation of means.
+     */
+    double[] sep;
+
+    /**
+     * Distance moved by each mean.
+     */
+    double[] move;
+
+    /**
+     * Maximum distance moved by any mean.
+     */
+    double delta;
+
+    /**
+     * Half the distances of the initial means, for the initial assignment.
+     */
+    double[][] cdist;
+
+    /**
+     * Upper bounding distance, by offset.
+     */
+    double[] upper;
+
+    /**
+     * Lower bounding distance, by offset.
+     */
+    double[] lower;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+      upper = new double[ids.size()];
+      Arrays.fill(upper, Double.POSITIVE_INFINITY);
+      lower = new double[ids.size()];
+      sep = new double[k];
+      move = new double[k];
+    }
+
+    @Override
+    protected void initialSeparation() {
+      computeSquaredSeparation(cdist = new double[k][k]);
+    }
+
+    @Override
+    protected void updateMeans() {
+      cdist = null; // Only needed initially
+      delta = movedDistance(means, newmeans, move);
+      copyMeans(newmeans, means);
+      recomputeSeperation(means, sep);
+    }
+
+    @Override
+    protected void initialAssign(DBIDRef it, int off, Partial p) {
+      NumberVector fv = relation.get(it);
+      // Find closest center, and distance to two closest centers
+      double min1 = p.distance(fv, means[0]), min2 = p.distance(fv, means[1]);
+      int minIndex = 0;
+      if(min2 < min1) {
+        double tmp = min1;
+        min1 = min2;
+        min2 = tmp;
+        minIndex = 1;
+      }
+      for(int i = 2; i < k; i++) {
+        if(min2 > cdist[minIndex][i]) {
+          double dist = p.distance(fv, means[i]);
+          if(dist < min1) {
+            minIndex = i;
+            min2 = min1;
+            min1 = dist;
+          }
+          else if(dist < min2) {
+            min2 = dist;
+          }
+        }
+      }
+      // Assign to nearest cluster.
+      assigned[off] = minIndex;
+      p.add(minIndex, fv);
+      upper[off] = isSquared ? FastMath.sqrt(min1) : min1;
+      lower[off] = isSquared ? FastMath.sqrt(min2) : min2;
+    }
+
+    @Override
+    protected void reassign(DBIDRef it, int off, Partial p) {
+      final int cur = assigned[off];
+      // Update the bounds for the movement of the means:
+      double u = upper[off] += move[cur];
+      final double z = lower[off] -= delta;
+      final double sa = sep[cur];
+      if(u <= z || u <= sa) {
+        return;
+      }
+      // Update the upper bound
+      NumberVector fv = relation.get(it);
+      double curd2 = p.distance(fv, means[cur]);
+      upper[off] = u = isSquared ? FastMath.sqrt(curd2) : curd2;
+      if(u <= z || u <= sa) {
+        return;
+      }
+      // Find closest center, and distance to two closest centers
+      double min1 = curd2, min2 = Double.POSITIVE_INFINITY;
+      int minIndex = cur;
+      for(int i = 0; i < k; i++) {
+        if(i == cur) {
+          continue;
+        }
+        double dist = p.distance(fv, means[i]);
+        if(dist < min1) {
+          minIndex = i;
+          min2 = min1;
+          min1 = dist;
+        }
+        else if(dist < min2) {
+          min2 = dist;
+        }
+      }
+      if(minIndex != cur) {
+        assigned[off] = minIndex;
+        p.move(cur, minIndex, fv);
+        upper[off] = min1 == curd2 ? u : isSquared ? FastMath.sqrt(min1) : min1;
+      }
+      lower[off] = min2 == curd2 ? u : isSquared ? FastMath.sqrt(min2) : min2;
+    }
+
+    /**
+     * Recompute the separation of cluster means.
+     *
+     * @param means Means
+     * @param sep Output array of separation (half-sqrt scaled)
+     */
+    protected void recomputeSeperation(double[][] means, double[] sep) {
+      final int k = means.length;
+      assert sep.length == k;
+      Arrays.fill(sep, Double.POSITIVE_INFINITY);
+      for(int i = 1; i < k; i++) {
+        double[] m1 = means[i];
+        for(int j = 0; j < i; j++) {
+          double d = distance(m1, means[j]);
+          sep[i] = (d < sep[i]) ? d : sep[i];
+          sep[j] = (d < sep[j]) ? d : sep[j];
+        }
+      }
+      // We need half the Euclidean distance
+      final boolean issquared = isSquared();
+      for(int i = 0; i < k; i++) {
+        sep[i] = .5 * (issquared ? FastMath.sqrt(sep[i]) : sep[i]);
+      }
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par<V extends NumberVector> extends AbstractParallelKMeans.Par<V> {
+    @Override
+    public ParallelHamerlyKMeans<V> make() {
+      return new ParallelHamerlyKMeans<>(distance, k, maxiter, initializer, varstat);
+    }
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import java.util.Arrays;
+
+import elki.clustering.kmeans.SimplifiedElkanKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.NumberVector;
+import elki.database.ids.DBIDRef;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.math.linearalgebra.VMath;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of the simplified Elkan k-means, see
+ * {@link SimplifiedElkanKMeans}.
+ * <p>
+ * This variant needs O(n*k) additional memory to store bounds.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <V> vector datatype
+ */
+public class ParallelSimplifiedElkanKMeans<V extends NumberVector> extends AbstractParallelKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelSimplifiedElkanKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public ParallelSimplifiedElkanKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer, varstat);
+  }
+
+  @Override
+  protected Instance makeInstance(Relation<V> relation, NumberVectorDistance<? super V> distance, double[][] means) {
+    return new Instance(relation, distance, means);
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author Erich Schubert
+   */
+  protected static class Instance extends AbstractParallelKMeans.Instance {
+    /**
+     * Upper bounds, by offset.
+     */
+    double[] upper;
+
+    /**
+     * Lower bounds, by offset.
+     */
+    double[][] lower;
+
+    /**
+     * Cluster separation.
+     */
+    double[] sep;
+
+    /**
+     * Distance moved by each mean.
+     */
+    double[] move;
+
+    /**
+     * Cluster center distances.
+     */
+    double[][] cdist;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+      upper = new double[ids.size()];
+      Arrays.fill(upper, Double.POSITIVE_INFINITY);
+      lower = new double[ids.size()][k]; // Filled with 0.
+      sep = new double[k];
+      move = new double[k];
+    }
+
+    @Override
+    protected void initialSeparation() {
+      initialSeperation(cdist = new double[k][k]);
+    }
+
+    @Override
+    protected void updateMeans() {
+      cdist = null; // Only needed initially
+      movedDistance(means, newmeans, move);
+      copyMeans(newmeans, means);
+    }
+
+    @Override
+    protected void initialAssign(DBIDRef it, int off, Partial p) {
+      NumberVector fv = relation.get(it);
+      double[] l = lower[off];
+      // Check all (other) means:
+      double best = p.distance(fv, means[0]);
+      l[0] = best = isSquared ? FastMath.sqrt(best) : best;
+      int minIndex = 0;
+      for(int j = 1; j < k; j++) {
+        if(best > cdist[minIndex][j]) {
+          double dist = p.distance(fv, means[j]);
+          l[j] = dist = isSquared ? FastMath.sqrt(dist) : dist;
+          if(dist < best) {
+            minIndex = j;
+            best = dist;
+          }
+        }
+      }
+      for(int j = 1; j < k; j++) {
+        if(l[j] == 0. && j != minIndex) {
+          l[j] = 2 * sep[j] - best;
+        }
+      }
+      // Assign to nearest cluster.
+      assigned[off] = minIndex;
+      upper[off] = best;
+      p.add(minIndex, fv);
+    }
+
+    @Override
+    protected void reassign(DBIDRef it, int off, Partial p) {
+      final int orig = assigned[off];
+      // Update the bounds for the movement of the means:
+      double u = upper[off] += move[orig];
+      double[] l = VMath.minusEquals(lower[off], move);
+      boolean recompute_u = true; // Elkan's r(x)
+      NumberVector fv = relation.get(it);
+      // Check all (other) means:
+      int cur = orig;
+      for(int j = 0; j < k; j++) {
+        if(orig == j || u <= l[j]) {
+          continue; // Condition #3 i-iii not satisfied
+        }
+        if(recompute_u) { // Need to update bound? #3a
+          u = p.distance(fv, means[cur]);
+          upper[off] = u = isSquared ? FastMath.sqrt(u) : u;
+          recompute_u = false; // Once only
+          if(u <= l[j]) { // #3b
+            continue;
+          }
+        }
+        double dist = p.distance(fv, means[j]);
+        dist = isSquared ? FastMath.sqrt(dist) : dist;
+        l[j] = dist;
+        if(dist < u) {
+          cur = j;
+          u = dist;
+        }
+      }
+      // Object is to be reassigned.
+      if(cur != orig) {
+        upper[off] = u; // Remember bound.
+        assigned[off] = cur;
+        p.move(orig, cur, fv);
+      }
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par<V extends NumberVector> extends AbstractParallelKMeans.Par<V> {
+    @Override
+    public ParallelSimplifiedElkanKMeans<V> make() {
+      return new ParallelSimplifiedElkanKMeans<>(distance, k, maxiter, initializer, varstat);
+    }
+  }
+}
@@ -38,6 +38,8 @@ import elki.distance.Distance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.logging.statistics.DoubleStatistic;
+import elki.parallel.ParallelCore;
+import elki.parallel.ParallelExecutor;
 import elki.result.Metadata;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.OptionID;
@@ -59,6 +61,9 @@ import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
  * TODO: use a triangular distance matrix, rather than a hash-map based cache,
  * for a bit better performance and less memory.
  * <p>
+ * When independent samples are drawn, the samples are optimized in parallel,
+ * with the same result as sequential processing.
+ * <p>
  * Reference:
  * <p>
  * L. Kaufman, P. J. Rousseeuw<br>
@@ -141,36 +146,76 @@ public class CLARA<V> extends PAM<V> {
       LOG.warning("The sampling size is set to a very small value, it should be much larger than k.");
     }
 
-    CachedDistanceQuery<V> cachedQ = new CachedDistanceQuery<V>(distQ, (samplesize * (samplesize - 1)) >> 1);
-
     double best = Double.POSITIVE_INFINITY;
     ArrayModifiableDBIDs bestmedoids = null;
     WritableIntegerDataStore bestclusters = null;
 
     Random rnd = random.getSingleThreadedRandom();
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Processing random samples", numsamples, LOG) : null;
-    for(int j = 0; j < numsamples; j++) {
-      DBIDs rids = randomSample(ids, samplesize, rnd, keepmed ? bestmedoids : null);
-      cachedQ.clear(); // TODO: an actual matrix would be better.
-
-      // Choose initial medoids
-      ArrayModifiableDBIDs medoids = DBIDUtil.newArray(initializer.chooseInitialMedoids(k, rids, cachedQ));
-      // Setup cluster assignment store
-      WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
-      double score = new /* PAM */Instance(cachedQ, rids, assignment).run(medoids, maxiter) //
-          + assignRemainingToNearestCluster(medoids, ids, rids, assignment, distQ);
-      if(LOG.isStatistics()) {
-        LOG.statistics(new DoubleStatistic(getClass().getName() + ".sample-" + j + ".cost", score));
-      }
-      if(score < best) {
-        best = score;
-        bestmedoids = medoids;
-        bestclusters = assignment;
+    if(keepmed) {
+      // Samples depend on the previous best medoids, process sequentially.
+      CachedDistanceQuery<V> cachedQ = new CachedDistanceQuery<V>(distQ, (samplesize * (samplesize - 1)) >> 1);
+      for(int j = 0; j < numsamples; j++) {
+        DBIDs rids = randomSample(ids, samplesize, rnd, bestmedoids);
+        cachedQ.clear(); // TODO: an actual matrix would be better.
+
+        // Choose initial medoids
+        ArrayModifiableDBIDs medoids = DBIDUtil.newArray(initializer.chooseInitialMedoids(k, rids, cachedQ));
+        // Setup cluster assignment store
+        WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+        double score = runSample(cachedQ, rids, medoids, assignment) //
+            + assignRemainingToNearestCluster(medoids, ids, rids, assignment, distQ);
+        if(LOG.isStatistics()) {
+          LOG.statistics(new DoubleStatistic(getClass().getName() + ".sample-" + j + ".cost", score));
+        }
+        if(score < best) {
+          best = score;
+          bestmedoids = medoids;
+          bestclusters = assignment;
+        }
+        if(cachedQ.hasUncachedQueries()) {
+          LOG.warning("Some distance queries were not cached; maybe the initialization is not optimized for k-medoids.");
+        }
+        LOG.incrementProcessed(prog);
       }
-      if(cachedQ.hasUncachedQueries()) {
-        LOG.warning("Some distance queries were not cached; maybe the initialization is not optimized for k-medoids.");
+    }
+    else {
+      // Draw the samples and choose the initial medoids sequentially, for
+      // reproducibility, as the initialization may use randomness.
+      DBIDs[] rids = new DBIDs[numsamples];
+      ArrayModifiableDBIDs[] initial = new ArrayModifiableDBIDs[numsamples];
+      CachedDistanceQuery<V> initQ = new CachedDistanceQuery<V>(distQ, (samplesize * (samplesize - 1)) >> 1);
+      for(int j = 0; j < numsamples; j++) {
+        rids[j] = randomSample(ids, samplesize, rnd, null);
+        initQ.clear();
+        initial[j] = DBIDUtil.newArray(initializer.chooseInitialMedoids(k, rids[j], initQ));
+        if(initQ.hasUncachedQueries()) {
+          LOG.warning("Some distance queries were not cached; maybe the initialization is not optimized for k-medoids.");
+        }
       }
-      LOG.incrementProcessed(prog);
+      initQ = null; // Release memory
+      // Optimize the independent samples in parallel, each with its own cache
+      final IndependentSamples samples = new IndependentSamples();
+      ParallelExecutor.runTasks(numsamples, Math.min(numsamples, ParallelCore.getCore().getParallelism()), j -> {
+        CachedDistanceQuery<V> cachedQ = new CachedDistanceQuery<V>(distQ, (samplesize * (samplesize - 1)) >> 1);
+        ArrayModifiableDBIDs medoids = initial[j];
+        initial[j] = null;
+        WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+        double score = runSample(cachedQ, rids[j], medoids, assignment) //
+            + assignRemainingToNearestCluster(medoids, ids, rids[j], assignment, distQ);
+        rids[j] = null; // Release memory
+        if(LOG.isStatistics()) {
+          LOG.statistics(new DoubleStatistic(getClass().getName() + ".sample-" + j + ".cost", score));
+        }
+        if(cachedQ.hasUncachedQueries()) {
+          LOG.warning("Some distance queries were not cached; maybe the initialization is not optimized for k-medoids.");
+        }
+        samples.update(j, score, medoids, assignment);
+        LOG.incrementProcessed(prog);
+      });
+      best = samples.best;
+      bestmedoids = samples.bestmedoids;
+      bestclusters = samples.bestclusters;
     }
     LOG.ensureCompleted(prog);
     if(LOG.isStatistics()) {
@@ -192,6 +237,21 @@ public class CLARA<V> extends PAM<V> {
     return result;
   }
 
+  /**
+   * Run PAM on a single sample.
+   *
+   * @param cachedQ Distance query, with a cache that is not thread-safe
+   * @param rids Sample
+   * @param medoids Initial medoids, will be updated
+   * @param assignment Cluster assignment output
+   * @return Cost of the sample
+   */
+  protected double runSample(CachedDistanceQuery<V> cachedQ, DBIDs rids, ArrayModifiableDBIDs medoids, WritableIntegerDataStore assignment) {
+    Instance instance = new Instance(cachedQ, rids, assignment);
+    instance.parallel = false; // The cache is not thread-safe.
+    return instance.run(medoids, maxiter);
+  }
+
   /**
    * Draw a random sample of the desired size.
    * 
@@ -353,6 +413,59 @@ public class CLARA<V> extends PAM<V> {
     }
   }
 
+  /**
+   * Best result of independent samples processed in parallel.
+   * <p>
+   * Only the best result is kept, preferring the earlier sample on ties. This
+   * yields the same result as sequential processing.
+   *
+   * @author Erich Schubert
+   */
+  static class IndependentSamples {
+    /**
+     * Index of the best sample.
+     */
+    private int bestsample = -1;
+
+    /**
+     * Cost of the best sample.
+     */
+    double best = Double.POSITIVE_INFINITY;
+
+    /**
+     * Medoids of the best sample.
+     */
+    ArrayModifiableDBIDs bestmedoids;
+
+    /**
+     * Cluster assignment of the best sample.
+     */
+    WritableIntegerDataStore bestclusters;
+
+    /**
+     * Keep the result of a sample, if it is the best so far.
+     *
+     * @param j Sample number
+     * @param score Cost of the sample
+     * @param medoids Medoids
+     * @param assignment Cluster assignment
+     */
+    synchronized void update(int j, double score, ArrayModifiableDBIDs medoids, WritableIntegerDataStore assignment) {
+      if(score < best || (score == best && j < bestsample)) {
+        if(bestclusters != null) {
+          bestclusters.destroy();
+        }
+        best = score;
+        bestsample = j;
+        bestmedoids = medoids;
+        bestclusters = assignment;
+      }
+      else {
+        assignment.destroy();
+      }
+    }
+  }
+
   /**
    * Parameterization class.
    *
@@ -41,6 +41,8 @@ import elki.distance.Distance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.logging.statistics.DoubleStatistic;
+import elki.parallel.ParallelCore;
+import elki.parallel.ParallelExecutor;
 import elki.result.Metadata;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.OptionID;
@@ -60,6 +62,8 @@ import elki.utilities.random.RandomFactory;
  * TODO: use a triangular distance matrix, rather than a hash-map based cache,
  * for a bit better performance and less memory.
  * <p>
+ * As in {@link CLARA}, independent samples are optimized in parallel.
+ * <p>
  * Reference:
  * <p>
  * Erich Schubert, Peter J. Rousseeuw<br>
@@ -134,36 +138,76 @@ public class FastCLARA<V> extends FastPAM<V> {
       LOG.warning("The sampling size is set to a very small value, it should be much larger than k.");
     }
 
-    CLARA.CachedDistanceQuery<V> cachedQ = new CLARA.CachedDistanceQuery<V>(distQ, (samplesize * (samplesize - 1)) >> 1);
-
     double best = Double.POSITIVE_INFINITY;
     ArrayModifiableDBIDs bestmedoids = null;
     WritableIntegerDataStore bestclusters = null;
 
     Random rnd = random.getSingleThreadedRandom();
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Processing random samples", numsamples, LOG) : null;
-    for(int j = 0; j < numsamples; j++) {
-      DBIDs rids = CLARA.randomSample(ids, samplesize, rnd, keepmed ? bestmedoids : null);
-      cachedQ.clear(); // TODO: an actual matrix would be better.
-
-      // Choose initial medoids
-      ArrayModifiableDBIDs medoids = DBIDUtil.newArray(initializer.chooseInitialMedoids(k, rids, cachedQ));
-      // Setup cluster assignment store
-      WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
-      double score = new /* PAM */Instance(cachedQ, rids, assignment, fasttol).run(medoids, maxiter) //
-          + CLARA.assignRemainingToNearestCluster(medoids, ids, rids, assignment, distQ);
-      if(LOG.isStatistics()) {
-        LOG.statistics(new DoubleStatistic(getClass().getName() + ".sample-" + j + ".cost", score));
-      }
-      if(score < best) {
-        best = score;
-        bestmedoids = medoids;
-        bestclusters = assignment;
+    if(keepmed) {
+      // Samples depend on the previous best medoids, process sequentially.
+      CLARA.CachedDistanceQuery<V> cachedQ = new CLARA.CachedDistanceQuery<V>(distQ, (samplesize * (samplesize - 1)) >> 1);
+      for(int j = 0; j < numsamples; j++) {
+        DBIDs rids = CLARA.randomSample(ids, samplesize, rnd, bestmedoids);
+        cachedQ.clear(); // TODO: an actual matrix would be better.
+
+        // Choose initial medoids
+        ArrayModifiableDBIDs medoids = DBIDUtil.newArray(initializer.chooseInitialMedoids(k, rids, cachedQ));
+        // Setup cluster assignment store
+        WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+        double score = runSample(cachedQ, rids, medoids, assignment) //
+            + CLARA.assignRemainingToNearestCluster(medoids, ids, rids, assignment, distQ);
+        if(LOG.isStatistics()) {
+          LOG.statistics(new DoubleStatistic(getClass().getName() + ".sample-" + j + ".cost", score));
+        }
+        if(score < best) {
+          best = score;
+          bestmedoids = medoids;
+          bestclusters = assignment;
+        }
+        if(cachedQ.hasUncachedQueries()) {
+          LOG.warning("Some distance queries were not cached; maybe the initialization is not optimized for k-medoids.");
+        }
+        LOG.incrementProcessed(prog);
       }
-      if(cachedQ.hasUncachedQueries()) {
-        LOG.warning("Some distance queries were not cached; maybe the initialization is not optimized for k-medoids.");
+    }
+    else {
+      // Draw the samples and choose the initial medoids sequentially, for
+      // reproducibility, as the initialization may use randomness.
+      DBIDs[] rids = new DBIDs[numsamples];
+      ArrayModifiableDBIDs[] initial = new ArrayModifiableDBIDs[numsamples];
+      CLARA.CachedDistanceQuery<V> initQ = new CLARA.CachedDistanceQuery<V>(distQ, (samplesize * (samplesize - 1)) >> 1);
+      for(int j = 0; j < numsamples; j++) {
+        rids[j] = CLARA.randomSample(ids, samplesize, rnd, null);
+        initQ.clear();
+        initial[j] = DBIDUtil.newArray(initializer.chooseInitialMedoids(k, rids[j], initQ));
+        if(initQ.hasUncachedQueries()) {
+          LOG.warning("Some distance queries were not cached; maybe the initialization is not optimized for k-medoids.");
+        }
       }
-      LOG.incrementProcessed(prog);
+      initQ = null; // Release memory
+      // Optimize the independent samples in parallel, each with its own cache
+      final CLARA.IndependentSamples samples = new CLARA.IndependentSamples();
+      ParallelExecutor.runTasks(numsamples, Math.min(numsamples, ParallelCore.getCore().getParallelism()), j -> {
+        CLARA.CachedDistanceQuery<V> cachedQ = new CLARA.CachedDistanceQuery<V>(distQ, (samplesize * (samplesize - 1)) >> 1);
+        ArrayModifiableDBIDs medoids = initial[j];
+        initial[j] = null;
+        WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, -1);
+        double score = runSample(cachedQ, rids[j], medoids, assignment) //
+            + CLARA.assignRemainingToNearestCluster(medoids, ids, rids[j], assignment, distQ);
+        rids[j] = null; // Release memory
+        if(LOG.isStatistics()) {
+          LOG.statistics(new DoubleStatistic(getClass().getName() + ".sample-" + j + ".cost", score));
+        }
+        if(cachedQ.hasUncachedQueries()) {
+          LOG.warning("Some distance queries were not cached; maybe the initialization is not optimized for k-medoids.");
+        }
+        samples.update(j, score, medoids, assignment);
+        LOG.incrementProcessed(prog);
+      });
+      best = samples.best;
+      bestmedoids = samples.bestmedoids;
+      bestclusters = samples.bestclusters;
     }
     LOG.ensureCompleted(prog);
     if(LOG.isStatistics()) {
@@ -185,6 +229,21 @@ public class FastCLARA<V> extends FastPAM<V> {
     return result;
   }
 
+  /**
+   * Run FastPAM on a single sample.
+   *
+   * @param cachedQ Distance query, with a cache that is not thread-safe
+   * @param rids Sample
+   * @param medoids Initial medoids, will be updated
+   * @param assignment Cluster assignment output
+   * @return Cost of the sample
+   */
+  protected double runSample(CLARA.CachedDistanceQuery<V> cachedQ, DBIDs rids, ArrayModifiableDBIDs medoids, WritableIntegerDataStore assignment) {
+    Instance instance = new Instance(cachedQ, rids, assignment, fasttol);
+    instance.parallel = false; // The cache is not thread-safe.
+    return instance.run(medoids, maxiter);
+  }
+
   /**
    * Parameterization class.
    *
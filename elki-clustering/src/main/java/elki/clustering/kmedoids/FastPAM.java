@@ -170,12 +170,12 @@ public class FastPAM<V> extends FastPAM1<V> {
       DBIDArrayIter m = medoids.iter();
       ArrayModifiableDBIDs bestids = DBIDUtil.newArray(k);
       DBIDVar bestid = DBIDUtil.newVar();
-      double[] best = new double[k], cost = new double[k];
+      double[] best = new double[k];
       int iteration = 0;
       while(iteration < maxiter || maxiter <= 0) {
         ++iteration;
         LOG.incrementProcessed(prog);
-        findBestSwaps(m, bestids, best, cost);
+        findBestSwaps(medoids, bestids, best);
         // Convergence check
         int min = argmin(best);
         if(!(best[min] < -1e-12 * tc)) {
@@ -225,30 +225,60 @@ public class FastPAM<V> extends FastPAM1<V> {
 
     /**
      * Find the best swaps.
+     * <p>
+     * The candidates are evaluated in parallel blocks, and the best swaps of
+     * each block are combined in block order, for the same result as with
+     * serial processing.
      *
-     * @param m Medoids
+     * @param medoids Medoids
      * @param bestids Storage for best non-medois
      * @param best Storage for best cost
-     * @param cost Scratch space for cost
      */
-    protected void findBestSwaps(DBIDArrayIter m, ArrayModifiableDBIDs bestids, double[] best, double[] cost) {
+    protected void findBestSwaps(ArrayDBIDs medoids, ArrayModifiableDBIDs bestids, double[] best) {
+      final int k = best.length;
+      // Best swaps of each block:
+      final double[][] bbest = new double[numBlocks()][];
+      final int[][] bh = new int[bbest.length][];
+      runBlocks((block, start, end) -> {
+        final DBIDArrayIter m = medoids.iter();
+        final double[] lbest = new double[k], cost = new double[k];
+        final int[] lh = new int[k];
+        Arrays.fill(lbest, Double.POSITIVE_INFINITY);
+        // Iterate over all non-medoids:
+        for(DBIDArrayIter h = block.iter().seek(start); h.getOffset() < end; h.advance()) {
+          // Compare object to its own medoid.
+          if(DBIDUtil.equal(m.seek(assignment.intValue(h) & 0x7FFF), h)) {
+            continue; // This is a medoid.
+          }
+          // The cost we get back by making the non-medoid h medoid.
+          Arrays.fill(cost, -nearest.doubleValue(h));
+          computeReassignmentCost(h, cost);
+
+          // Find the best possible swap for each medoid:
+          for(int i = 0; i < k; i++) {
+            final double costi = cost[i];
+            if(costi < lbest[i]) {
+              lbest[i] = costi;
+              lh[i] = h.getOffset();
+            }
+          }
+        }
+        final int b = start / SWAP_BLOCKSIZE;
+        bbest[b] = lbest;
+        bh[b] = lh;
+      });
+      // Combine in block order, preferring the first on ties:
       Arrays.fill(best, Double.POSITIVE_INFINITY);
-      // Iterate over all non-medoids:
-      for(DBIDIter h = ids.iter(); h.valid(); h.advance()) {
-        // Compare object to its own medoid.
-        if(DBIDUtil.equal(m.seek(assignment.intValue(h) & 0x7FFF), h)) {
-          continue; // This is a medoid.
+      DBIDArrayIter it = ids.iter();
+      for(int b = 0; b < bbest.length; b++) {
+        final double[] lbest = bbest[b];
+        if(lbest == null) {
+          continue;
         }
-        // The cost we get back by making the non-medoid h medoid.
-        Arrays.fill(cost, -nearest.doubleValue(h));
-        computeReassignmentCost(h, cost);
-
-        // Find the best possible swap for each medoid:
-        for(int i = 0; i < cost.length; i++) {
-          final double costi = cost[i];
-          if(costi < best[i]) {
-            best[i] = costi;
-            bestids.set(i, h);
+        for(int i = 0; i < k; i++) {
+          if(lbest[i] < best[i]) {
+            best[i] = lbest[i];
+            bestids.set(i, it.seek(bh[b][i]));
           }
         }
       }
@@ -129,32 +129,54 @@ public class FastPAM1<V> extends PAM<V> {
       // Swap phase
       DBIDVar bestid = DBIDUtil.newVar();
       DBIDArrayIter m = medoids.iter();
-      double[] cost = new double[k];
+      // Best swap of each block:
+      final int numblocks = numBlocks();
+      final double[] bbest = new double[numblocks];
+      final int[] bh = new int[numblocks], bc = new int[numblocks];
       int iteration = 0;
       while(iteration < maxiter || maxiter <= 0) {
         ++iteration;
         LOG.incrementProcessed(prog);
-        double best = Double.POSITIVE_INFINITY;
-        int bestcluster = -1;
-        // Iterate over all non-medoids:
-        for(DBIDIter h = ids.iter(); h.valid(); h.advance()) {
-          // Compare object to its own medoid.
-          if(DBIDUtil.equal(m.seek(assignment.intValue(h) & 0x7FFF), h)) {
-            continue; // This is a medoid.
-          }
-          // The cost we get back by making the non-medoid h medoid.
-          Arrays.fill(cost, -nearest.doubleValue(h));
-          computeReassignmentCost(h, cost);
+        Arrays.fill(bc, -1);
+        runBlocks((block, start, end) -> {
+          final DBIDArrayIter mi = medoids.iter();
+          final double[] cost = new double[k];
+          double best = Double.POSITIVE_INFINITY;
+          int besth = -1, bestcluster = -1;
+          // Iterate over all non-medoids:
+          for(DBIDArrayIter h = block.iter().seek(start); h.getOffset() < end; h.advance()) {
+            // Compare object to its own medoid.
+            if(DBIDUtil.equal(mi.seek(assignment.intValue(h) & 0x7FFF), h)) {
+              continue; // This is a medoid.
+            }
+            // The cost we get back by making the non-medoid h medoid.
+            Arrays.fill(cost, -nearest.doubleValue(h));
+            computeReassignmentCost(h, cost);
 
-          // Find the best possible swap for h:
-          for(int i = 0; i < k; i++) {
-            final double costi = cost[i];
-            if(costi < best) {
-              best = costi;
-              bestid.set(h);
-              bestcluster = i;
+            // Find the best possible swap for h:
+            for(int i = 0; i < k; i++) {
+              final double costi = cost[i];
+              if(costi < best) {
+                best = costi;
+                besth = h.getOffset();
+                bestcluster = i;
+              }
             }
           }
+          final int b = start / SWAP_BLOCKSIZE;
+          bbest[b] = best;
+          bh[b] = besth;
+          bc[b] = bestcluster;
+        });
+        // Combine in block order, preferring the first on ties:
+        double best = Double.POSITIVE_INFINITY;
+        int bestcluster = -1;
+        for(int b = 0; b < numblocks; b++) {
+          if(bc[b] >= 0 && bbest[b] < best) {
+            best = bbest[b];
+            ids.assignVar(bh[b], bestid);
+            bestcluster = bc[b];
+          }
         }
         if(!(best < -1e-12 * tc)) {
           break; // Converged
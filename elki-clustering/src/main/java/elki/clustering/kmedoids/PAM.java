@@ -20,6 +20,8 @@
  */
 package elki.clustering.kmedoids;
 
+import java.util.Arrays;
+
 import elki.Algorithm;
 import elki.clustering.ClusteringAlgorithm;
 import elki.clustering.ClusteringAlgorithmUtil;
@@ -47,6 +49,8 @@ import elki.logging.statistics.DoubleStatistic;
 import elki.logging.statistics.Duration;
 import elki.logging.statistics.LongStatistic;
 import elki.logging.statistics.StringStatistic;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.ParallelExecutor.BlockProcessor;
 import elki.result.Metadata;
 import elki.utilities.Priority;
 import elki.utilities.documentation.Reference;
@@ -217,14 +221,23 @@ public class PAM<O> implements ClusteringAlgorithm<Clustering<MedoidModel>> {
    * Note: we experimented with not caching the distance to nearest and second
    * nearest, but only the assignments. The matrix lookup was more expensive, so
    * this is probably worth the 2*n doubles in storage.
+   * <p>
+   * The swap candidates are evaluated in parallel blocks. The best swap of each
+   * block is combined in block order, which yields the same swap as serial
+   * processing.
    *
    * @author Erich Schubert
    */
   protected static class Instance {
+    /**
+     * Number of swap candidates per parallel block.
+     */
+    protected static final int SWAP_BLOCKSIZE = 64;
+
     /**
      * Ids to process.
      */
-    DBIDs ids;
+    ArrayDBIDs ids;
 
     /**
      * Distance function to use.
@@ -246,6 +259,12 @@ public class PAM<O> implements ClusteringAlgorithm<Clustering<MedoidModel>> {
      */
     WritableIntegerDataStore assignment;
 
+    /**
+     * Evaluate swap candidates in parallel. This requires a thread-safe
+     * distance query.
+     */
+    boolean parallel = true;
+
     /**
      * Constructor.
      *
@@ -255,7 +274,7 @@ public class PAM<O> implements ClusteringAlgorithm<Clustering<MedoidModel>> {
      */
     public Instance(DistanceQuery<?> distQ, DBIDs ids, WritableIntegerDataStore assignment) {
       this.distQ = distQ;
-      this.ids = ids;
+      this.ids = DBIDUtil.ensureArray(ids);
       this.assignment = assignment;
       this.nearest = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
       this.second = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
@@ -283,33 +302,54 @@ public class PAM<O> implements ClusteringAlgorithm<Clustering<MedoidModel>> {
       IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("PAM iteration", LOG) : null;
       // Swap phase
       DBIDVar bestid = DBIDUtil.newVar();
-      DBIDArrayIter m = medoids.iter();
+      // Best swap of each block:
+      final int numblocks = numBlocks();
+      final double[] bbest = new double[numblocks];
+      final int[] bh = new int[numblocks], bc = new int[numblocks];
       int iteration = 0;
       while(iteration < maxiter || maxiter <= 0) {
         ++iteration;
         LOG.incrementProcessed(prog);
         // Try to swap a non-medoid with a medoid member:
+        Arrays.fill(bc, -1);
+        runBlocks((block, start, end) -> {
+          final DBIDArrayIter m = medoids.iter();
+          double best = Double.POSITIVE_INFINITY;
+          int besth = -1, bestcluster = -1;
+          // Iterate over all non-medoids:
+          for(DBIDArrayIter h = block.iter().seek(start); h.getOffset() < end; h.advance()) {
+            // Compare object to its own medoid.
+            if(DBIDUtil.equal(m.seek(assignment.intValue(h)), h)) {
+              continue; // This is a medoid.
+            }
+            final double hdist = nearest.doubleValue(h); // Current cost of h.
+            if(metric && hdist <= 0.) {
+              continue; // Duplicate of a medoid.
+            }
+            // Find the best possible swap for h:
+            for(int pi = 0; pi < k; pi++) {
+              // hdist is the cost we get back by making the non-medoid h medoid.
+              final double cpi = computeReassignmentCost(h, pi) - hdist;
+              if(cpi < best) {
+                best = cpi;
+                besth = h.getOffset();
+                bestcluster = pi;
+              }
+            }
+          }
+          final int b = start / SWAP_BLOCKSIZE;
+          bbest[b] = best;
+          bh[b] = besth;
+          bc[b] = bestcluster;
+        });
+        // Combine in block order, preferring the first on ties:
         double best = Double.POSITIVE_INFINITY;
         int bestcluster = -1;
-        // Iterate over all non-medoids:
-        for(DBIDIter h = ids.iter(); h.valid(); h.advance()) {
-          // Compare object to its own medoid.
-          if(DBIDUtil.equal(m.seek(assignment.intValue(h)), h)) {
-            continue; // This is a medoid.
-          }
-          final double hdist = nearest.doubleValue(h); // Current cost of h.
-          if(metric && hdist <= 0.) {
-            continue; // Duplicate of a medoid.
-          }
-          // Find the best possible swap for h:
-          for(int pi = 0; pi < k; pi++) {
-            // hdist is the cost we get back by making the non-medoid h medoid.
-            final double cpi = computeReassignmentCost(h, pi) - hdist;
-            if(cpi < best) {
-              best = cpi;
-              bestid.set(h);
-              bestcluster = pi;
-            }
+        for(int b = 0; b < numblocks; b++) {
+          if(bc[b] >= 0 && bbest[b] < best) {
+            best = bbest[b];
+            ids.assignVar(bh[b], bestid);
+            bestcluster = bc[b];
           }
         }
         if(!(best < -1e-12 * tc)) {
@@ -339,6 +379,31 @@ public class PAM<O> implements ClusteringAlgorithm<Clustering<MedoidModel>> {
       return tc;
     }
 
+    /**
+     * Number of blocks used by {@link #runBlocks}.
+     *
+     * @return Number of blocks
+     */
+    protected int numBlocks() {
+      return (ids.size() + SWAP_BLOCKSIZE - 1) / SWAP_BLOCKSIZE;
+    }
+
+    /**
+     * Process the objects in blocks of {@link #SWAP_BLOCKSIZE}, in parallel
+     * unless disabled. The block number is {@code start / SWAP_BLOCKSIZE}.
+     *
+     * @param proc Block processor
+     */
+    protected void runBlocks(BlockProcessor proc) {
+      if(parallel) {
+        ParallelExecutor.runBlocks(ids, SWAP_BLOCKSIZE, proc);
+        return;
+      }
+      for(int start = 0, size = ids.size(); start < size; start += SWAP_BLOCKSIZE) {
+        proc.process(ids, start, Math.min(start + SWAP_BLOCKSIZE, size));
+      }
+    }
+
     /**
      * Compute the reassignment cost of one swap.
      *
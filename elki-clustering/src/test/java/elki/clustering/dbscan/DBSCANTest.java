@@ -27,6 +27,7 @@ import elki.data.Clustering;
 import elki.data.DoubleVector;
 import elki.data.model.Model;
 import elki.database.Database;
+import elki.parallel.ParallelCore;
 import elki.utilities.ELKIBuilder;
 
 /**
@@ -70,4 +71,20 @@ public class DBSCANTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, result, 0.954382);
     assertClusterSizes(result, new int[] { 11, 200, 203, 224 });
   }
+
+  /**
+   * Run DBSCAN with parallel range queries, the result must be the same.
+   */
+  @Test
+  public void testDBSCANParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    DBSCAN<DoubleVector> dbscan = new ELKIBuilder<DBSCAN<DoubleVector>>(DBSCAN.class) //
+        .with(DBSCAN.Par.EPSILON_ID, 11.5) //
+        .with(DBSCAN.Par.MINPTS_ID, 120) //
+        .with(DBSCAN.Par.PARALLEL_ID) //
+        .build();
+    Clustering<Model> result = new ParallelCore(4).compute(() -> dbscan.autorun(db));
+    assertFMeasure(db, result, 0.954382);
+    assertClusterSizes(result, new int[] { 11, 200, 203, 224 });
+  }
 }
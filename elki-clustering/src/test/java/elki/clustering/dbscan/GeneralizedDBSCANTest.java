@@ -23,10 +23,19 @@ package elki.clustering.dbscan;
 import org.junit.Test;
 
 import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.correlation.COPAC;
+import elki.clustering.dbscan.predicates.COPACNeighborPredicate;
+import elki.clustering.dbscan.predicates.MinPtsCorePredicate;
+import elki.clustering.dbscan.predicates.PreDeConCorePredicate;
+import elki.clustering.dbscan.predicates.PreDeConNeighborPredicate;
 import elki.clustering.dbscan.predicates.SimilarityNeighborPredicate;
+import elki.clustering.subspace.PreDeCon;
 import elki.data.Clustering;
 import elki.data.model.Model;
 import elki.database.Database;
+import elki.math.linearalgebra.pca.PCARunner;
+import elki.math.linearalgebra.pca.filter.PercentageEigenPairFilter;
+import elki.parallel.ParallelCore;
 import elki.similarity.kernel.RadialBasisFunctionKernel;
 import elki.utilities.ELKIBuilder;
 
@@ -79,4 +88,81 @@ public class GeneralizedDBSCANTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, result, 0.992897);
     assertClusterSizes(result, new int[] { 28, 50, 102, 150 });
   }
+
+  /**
+   * Run Generalized DBSCAN in parallel mode, the result must be the same.
+   */
+  @Test
+  public void testDBSCANParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    GeneralizedDBSCAN gdbscan = new ELKIBuilder<>(GeneralizedDBSCAN.class) //
+        .with(DBSCAN.Par.EPSILON_ID, 0.04) //
+        .with(DBSCAN.Par.MINPTS_ID, 20) //
+        .with(GeneralizedDBSCAN.Par.PARALLEL_ID) //
+        .build();
+    Clustering<Model> result = new ParallelCore(4).compute(() -> gdbscan.autorun(db));
+    assertFMeasure(db, result, 0.996413);
+    assertClusterSizes(result, new int[] { 29, 50, 101, 150 });
+  }
+
+  /**
+   * Run Generalized DBSCAN with a similarity function, in parallel mode.
+   */
+  @Test
+  public void testSimilarityDBSCANParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    GeneralizedDBSCAN gdbscan = new ELKIBuilder<>(GeneralizedDBSCAN.class) //
+        .with(GeneralizedDBSCAN.Par.NEIGHBORHOODPRED_ID, SimilarityNeighborPredicate.class) //
+        .with(SimilarityNeighborPredicate.Par.SIMILARITY_FUNCTION_ID, RadialBasisFunctionKernel.class) //
+        .with(SimilarityNeighborPredicate.Par.EPSILON_ID, 0.999) //
+        .with(DBSCAN.Par.MINPTS_ID, 20) //
+        .with(GeneralizedDBSCAN.Par.PARALLEL_ID) //
+        .build();
+    Clustering<Model> result = new ParallelCore(4).compute(() -> gdbscan.autorun(db));
+    assertFMeasure(db, result, 0.992897);
+    assertClusterSizes(result, new int[] { 28, 50, 102, 150 });
+  }
+
+  /**
+   * Run Generalized DBSCAN with the COPAC predicate, serially and in parallel
+   * mode; the results must be the same.
+   */
+  @Test
+  public void testCOPACPredicateParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "correlation-hierarchy.csv", 450);
+    COPAC.Settings settings = new COPAC.Settings();
+    settings.k = 15;
+    settings.pca = new ELKIBuilder<>(PCARunner.class).build();
+    settings.filter = new ELKIBuilder<>(PercentageEigenPairFilter.class).build();
+    settings.epsilon = 0.02;
+    settings.minpts = 50;
+    for(boolean parallel : new boolean[] { false, true }) {
+      GeneralizedDBSCAN gdbscan = new GeneralizedDBSCAN(new COPACNeighborPredicate<>(settings), new MinPtsCorePredicate(settings.minpts), false, parallel);
+      Clustering<Model> result = new ParallelCore(4).compute(() -> gdbscan.autorun(db));
+      assertFMeasure(db, result, 0.8484056);
+      assertClusterSizes(result, new int[] { 54, 196, 200 });
+    }
+  }
+
+  /**
+   * Run Generalized DBSCAN with the PreDeCon predicates, serially and in
+   * parallel mode; the results must be the same.
+   */
+  @Test
+  public void testPreDeConPredicateParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "subspace-overlapping-3-4d.ascii", 850);
+    PreDeCon.Settings settings = new ELKIBuilder<>(PreDeCon.Settings.class) //
+        .with(DBSCAN.Par.EPSILON_ID, 0.3) //
+        .with(DBSCAN.Par.MINPTS_ID, 10) //
+        .with(PreDeCon.Settings.Par.DELTA_ID, 0.012) //
+        .with(PreDeCon.Settings.Par.KAPPA_ID, 10.) //
+        .with(PreDeCon.Settings.Par.LAMBDA_ID, 2) //
+        .build();
+    for(boolean parallel : new boolean[] { false, true }) {
+      GeneralizedDBSCAN gdbscan = new GeneralizedDBSCAN(new PreDeConNeighborPredicate<>(settings), new PreDeConCorePredicate(settings), false, parallel);
+      Clustering<Model> result = new ParallelCore(4).compute(() -> gdbscan.autorun(db));
+      assertFMeasure(db, result, 0.74982899);
+      assertClusterSizes(result, new int[] { 356, 494 });
+    }
+  }
 }
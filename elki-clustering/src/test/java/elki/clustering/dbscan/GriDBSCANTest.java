@@ -20,6 +20,12 @@
  */
 package elki.clustering.dbscan;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import org.junit.Test;
 
 import elki.clustering.AbstractClusterAlgorithmTest;
@@ -27,6 +33,7 @@ import elki.data.Clustering;
 import elki.data.DoubleVector;
 import elki.data.model.Model;
 import elki.database.Database;
+import elki.parallel.ParallelCore;
 import elki.utilities.ELKIBuilder;
 
 /**
@@ -83,4 +90,66 @@ public class GriDBSCANTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, result, 0.954382);
     assertClusterSizes(result, new int[] { 11, 200, 203, 224 });
   }
+
+  /**
+   * Run DBSCAN with fixed parameters, processing the grid cells as parallel
+   * tasks.
+   */
+  @Test
+  public void testGriDBSCANParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    GriDBSCAN<DoubleVector> gridbscan = new ELKIBuilder<GriDBSCAN<DoubleVector>>(GriDBSCAN.class) //
+        .with(DBSCAN.Par.EPSILON_ID, 0.04) //
+        .with(DBSCAN.Par.MINPTS_ID, 20) //
+        .with(GriDBSCAN.Par.GRID_ID, 0.08) //
+        .with(GriDBSCAN.Par.PARALLEL_ID) //
+        .build();
+    Clustering<Model> result = new ParallelCore(4).compute(() -> gridbscan.autorun(db));
+    assertFMeasure(db, result, 0.996413);
+    assertClusterSizes(result, new int[] { 29, 50, 101, 150 });
+  }
+
+  /**
+   * Run DBSCAN with fixed parameters, spilling the grid cells to disk.
+   */
+  @Test
+  public void testGriDBSCANSpill() throws IOException {
+    Path dir = Files.createTempDirectory("ELKIUnitTest");
+    dir.toFile().deleteOnExit();
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<Model> result = new ELKIBuilder<GriDBSCAN<DoubleVector>>(GriDBSCAN.class) //
+        .with(DBSCAN.Par.EPSILON_ID, 11.5) //
+        .with(DBSCAN.Par.MINPTS_ID, 120) //
+        .with(GriDBSCAN.Par.GRID_ID, 25.) //
+        .with(GriDBSCAN.Par.PARALLEL_ID) //
+        .with(GriDBSCAN.Par.SPILL_ID, dir) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.954382);
+    assertClusterSizes(result, new int[] { 11, 200, 203, 224 });
+    assertEquals("Spill files not removed.", 0, dir.toFile().list().length);
+  }
+
+  /**
+   * Run DBSCAN spilling many small grid cells, more than the number of spill
+   * buffers kept in memory; the result must be the same as serially.
+   */
+  @Test
+  public void testGriDBSCANSpillManyCells() throws IOException {
+    Path dir = Files.createTempDirectory("ELKIUnitTest");
+    dir.toFile().deleteOnExit();
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    for(boolean parallel : new boolean[] { false, true }) {
+      GriDBSCAN<DoubleVector> gridbscan = new ELKIBuilder<GriDBSCAN<DoubleVector>>(GriDBSCAN.class) //
+          .with(DBSCAN.Par.EPSILON_ID, 1.) //
+          .with(DBSCAN.Par.MINPTS_ID, 10) //
+          .with(GriDBSCAN.Par.GRID_ID, 2.) //
+          .with(GriDBSCAN.Par.PARALLEL_ID, parallel) //
+          .with(GriDBSCAN.Par.SPILL_ID, parallel ? dir : null) //
+          .build();
+      Clustering<Model> result = new ParallelCore(4).compute(() -> gridbscan.autorun(db));
+      assertFMeasure(db, result, 0.6342839);
+      assertClusterSizes(result, new int[] { 9, 116, 173, 200, 502 });
+    }
+    assertEquals("Spill files not removed.", 0, dir.toFile().list().length);
+  }
 }
@@ -27,6 +27,7 @@ import elki.clustering.kmeans.KMeans;
 import elki.data.Clustering;
 import elki.data.DoubleVector;
 import elki.database.Database;
+import elki.parallel.ParallelCore;
 import elki.utilities.ELKIBuilder;
 
 /**
@@ -162,4 +163,76 @@ public class EMTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, result, 0.9357286);
     assertClusterSizes(result, new int[] { 103, 104, 208, 295 });
   }
+
+  @Test
+  public void testEMMLEMultivariateParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    // The result must not depend on the number of threads:
+    for(int threads : new int[] { 1, 2, 4 }) {
+      EM<DoubleVector, ?> em = new ELKIBuilder<EM<DoubleVector, ?>>(EM.class) //
+          .with(KMeans.SEED_ID, 0) //
+          .with(EM.Par.K_ID, 6) //
+          .with(EM.Par.PARALLEL_ID) //
+          .build();
+      Clustering<?> result = new ParallelCore(threads).compute(() -> em.autorun(db));
+      assertFMeasure(db, result, 0.967410486);
+      assertClusterSizes(result, new int[] { 3, 5, 91, 98, 200, 313 });
+    }
+  }
+
+  @Test
+  public void testEMMLETwoPassParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    EM<DoubleVector, ?> em = new ELKIBuilder<EM<DoubleVector, ?>>(EM.class) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(EM.Par.K_ID, 6) //
+        .with(EM.Par.INIT_ID, TwoPassMultivariateGaussianModelFactory.class) //
+        .with(EM.Par.PARALLEL_ID) //
+        .build();
+    Clustering<?> result = new ParallelCore(4).compute(() -> em.autorun(db));
+    assertFMeasure(db, result, 0.967410486);
+    assertClusterSizes(result, new int[] { 3, 5, 91, 98, 200, 313 });
+  }
+
+  @Test
+  public void testEMMLETextbookParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    EM<DoubleVector, ?> em = new ELKIBuilder<EM<DoubleVector, ?>>(EM.class) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(EM.Par.K_ID, 6) //
+        .with(EM.Par.INIT_ID, TextbookMultivariateGaussianModelFactory.class) //
+        .with(EM.Par.PARALLEL_ID) //
+        .build();
+    Clustering<?> result = new ParallelCore(4).compute(() -> em.autorun(db));
+    assertFMeasure(db, result, 0.967410486);
+    assertClusterSizes(result, new int[] { 3, 5, 91, 98, 200, 313 });
+  }
+
+  @Test
+  public void testEMMLEDiagonalParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    EM<DoubleVector, ?> em = new ELKIBuilder<EM<DoubleVector, ?>>(EM.class) //
+        .with(KMeans.SEED_ID, 3) //
+        .with(EM.Par.K_ID, 5) //
+        .with(EM.Par.INIT_ID, DiagonalGaussianModelFactory.class) //
+        .with(EM.Par.PARALLEL_ID) //
+        .build();
+    Clustering<?> result = new ParallelCore(4).compute(() -> em.autorun(db));
+    assertFMeasure(db, result, 0.9681384);
+    assertClusterSizes(result, new int[] { 7, 91, 99, 200, 313 });
+  }
+
+  @Test
+  public void testEMMLESphericalParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    EM<DoubleVector, ?> em = new ELKIBuilder<EM<DoubleVector, ?>>(EM.class) //
+        .with(KMeans.SEED_ID, 1) //
+        .with(EM.Par.K_ID, 4) //
+        .with(EM.Par.INIT_ID, SphericalGaussianModelFactory.class) //
+        .with(EM.Par.PARALLEL_ID) //
+        .build();
+    Clustering<?> result = new ParallelCore(4).compute(() -> em.autorun(db));
+    assertFMeasure(db, result, 0.811247176);
+    assertClusterSizes(result, new int[] { 8, 95, 198, 409 });
+  }
 }
@@ -0,0 +1,117 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.hierarchical.linkage.*;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.datastore.DBIDDataStore;
+import elki.database.datastore.DoubleDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDVar;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.parallel.ParallelCore;
+
+/**
+ * Compare the parallel processing of the matrix paradigm to serial
+ * processing, by lowering the threshold for parallel processing.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class MatrixParadigmTest extends AbstractClusterAlgorithmTest {
+  /**
+   * Linkages to test.
+   */
+  private static final Linkage[] LINKAGES = { SingleLinkage.STATIC, CompleteLinkage.STATIC, GroupAverageLinkage.STATIC, WardLinkage.STATIC, CentroidLinkage.STATIC };
+
+  @Test
+  public void testAGNES() {
+    Relation<NumberVector> rel = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638).getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    for(Linkage linkage : LINKAGES) {
+      for(boolean isfloat : new boolean[] { false, true }) {
+        compare(() -> new AGNES<NumberVector>(EuclideanDistance.STATIC, linkage, isfloat).run(rel));
+      }
+    }
+  }
+
+  @Test
+  public void testAnderberg() {
+    Relation<NumberVector> rel = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638).getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    for(Linkage linkage : LINKAGES) {
+      for(boolean isfloat : new boolean[] { false, true }) {
+        compare(() -> new Anderberg<NumberVector>(EuclideanDistance.STATIC, linkage, isfloat).run(rel));
+      }
+    }
+  }
+
+  @Test
+  public void testNNChain() {
+    Relation<NumberVector> rel = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638).getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    for(Linkage linkage : LINKAGES) {
+      for(boolean isfloat : new boolean[] { false, true }) {
+        compare(() -> new NNChain<NumberVector>(EuclideanDistance.STATIC, linkage, isfloat).run(rel));
+      }
+    }
+  }
+
+  @Test
+  public void testTriangleSize() {
+    assertEquals("Int and long positions differ.", MatrixParadigm.triangleSize(0x10000), MatrixParadigm.triangleSizeLong(0x10000));
+    assertEquals("Long position overflow.", 4999950000L, MatrixParadigm.triangleSizeLong(100000));
+  }
+
+  /**
+   * Run the algorithm serially and with small parallel blocks, and compare
+   * the merges.
+   *
+   * @param run Algorithm run
+   */
+  private static void compare(Supplier<PointerHierarchyRepresentationResult> run) {
+    PointerHierarchyRepresentationResult serial = new ParallelCore(1).compute(run);
+    PointerHierarchyRepresentationResult parallel;
+    MatrixParadigm.setParallelThreshold(0, 64);
+    try {
+      parallel = new ParallelCore(4).compute(run);
+    }
+    finally {
+      MatrixParadigm.setParallelThreshold(MatrixParadigm.PARALLEL_THRESHOLD, MatrixParadigm.PARALLEL_BLOCKSIZE);
+    }
+    DBIDDataStore sp = serial.getParentStore(), pp = parallel.getParentStore();
+    DoubleDataStore sd = serial.getParentDistanceStore(), pd = parallel.getParentDistanceStore();
+    DBIDVar v1 = DBIDUtil.newVar(), v2 = DBIDUtil.newVar();
+    for(DBIDIter it = serial.getDBIDs().iter(); it.valid(); it.advance()) {
+      assertTrue("Parent differs.", DBIDUtil.equal(sp.assignVar(it, v1), pp.assignVar(it, v2)));
+      assertEquals("Merge distance differs.", sd.doubleValue(it), pd.doubleValue(it), 0.);
+    }
+  }
+}
@@ -20,11 +20,26 @@
  */
 package elki.clustering.hierarchical.birch;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Test;
 
 import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.data.Cluster;
 import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.model.MeanModel;
+import elki.data.type.TypeUtil;
 import elki.database.Database;
+import elki.database.relation.Relation;
+import elki.datasource.parser.NumberVectorLabelParser;
 import elki.utilities.ELKIBuilder;
 
 /**
@@ -126,4 +141,47 @@ public class BIRCHLeafClusteringTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, clustering, 0.89558);
     assertClusterSizes(clustering, new int[] { 65, 156, 198, 219 });
   }
+
+  @Test
+  public void testSharded() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(BIRCHLeafClustering.class) //
+        .with(CFTree.Factory.Par.ABSORPTION_ID, DiameterCriterion.class) //
+        .with(CFTree.Factory.Par.MAXLEAVES_ID, 4) //
+        .with(CFTree.Factory.Par.SHARDS_ID, 4) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.87183);
+    assertClusterSizes(clustering, new int[] { 105, 118, 200, 215 });
+  }
+
+  @Test
+  public void testStreaming() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    BIRCHLeafClustering birch = new ELKIBuilder<>(BIRCHLeafClustering.class) //
+        .with(CFTree.Factory.Par.ABSORPTION_ID, DiameterCriterion.class) //
+        .with(CFTree.Factory.Par.MAXLEAVES_ID, 4) //
+        .build();
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    List<? extends Cluster<MeanModel>> expected = birch.run(rel).getAllClusters();
+    try (InputStream in = open(UNITTEST + "single-link-effect.ascii")) {
+      NumberVectorLabelParser<DoubleVector> parser = new NumberVectorLabelParser<>(DoubleVector.FACTORY);
+      parser.initStream(in);
+      List<? extends Cluster<MeanModel>> clusters = birch.run(parser).getAllClusters();
+      // Same insertion order, hence the same leaves as on the relation:
+      assertEquals("Number of clusters does not match.", expected.size(), clusters.size());
+      for(Cluster<MeanModel> c : clusters) {
+        assertEquals("Clusters must not contain objects.", 0, c.size());
+        boolean found = false;
+        for(Cluster<MeanModel> e : expected) {
+          found |= Arrays.equals(e.getModel().getMean(), c.getModel().getMean());
+        }
+        if(!found) {
+          fail("Streaming BIRCH produced a different leaf.");
+        }
+      }
+    }
+    catch(IOException e) {
+      fail("Test data not found.");
+    }
+  }
 }
@@ -20,12 +20,27 @@
  */
 package elki.clustering.hierarchical.birch;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
 import org.junit.Test;
 
 import elki.clustering.AbstractClusterAlgorithmTest;
 import elki.clustering.kmeans.AbstractKMeans;
+import elki.data.Cluster;
 import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.data.type.TypeUtil;
 import elki.database.Database;
+import elki.database.relation.Relation;
+import elki.datasource.parser.NumberVectorLabelParser;
 import elki.utilities.ELKIBuilder;
 
 /**
@@ -46,4 +61,64 @@ public class BIRCHLloydKMeansTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, clustering, 0.84944);
     assertClusterSizes(clustering, new int[] { 96, 104, 211, 227 });
   }
+
+  @Test
+  public void testSharded() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Clustering<?> clustering = new ELKIBuilder<>(BIRCHLloydKMeans.class) //
+        .with(CFTree.Factory.Par.ABSORPTION_ID, EuclideanDistanceCriterion.class) //
+        .with(CFTree.Factory.Par.MAXLEAVES_ID, 50) //
+        .with(CFTree.Factory.Par.SHARDS_ID, 4) //
+        .with(AbstractKMeans.K_ID, 4) //
+        .with(AbstractKMeans.SEED_ID, 0) //
+        .build().autorun(db);
+    assertFMeasure(db, clustering, 0.92255);
+    assertClusterSizes(clustering, new int[] { 70, 161, 200, 207 });
+  }
+
+  @Test
+  public void testStreaming() {
+    Database db = makeSimpleDatabase(UNITTEST + "single-link-effect.ascii", 638);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    List<? extends Cluster<KMeansModel>> expected = makeStreamingBIRCH().run(rel).getAllClusters();
+    // With the expected size, the relative maximum number of leaves is the
+    // same, and we get the same tree and means as on the relation:
+    try (InputStream in = open(UNITTEST + "single-link-effect.ascii")) {
+      NumberVectorLabelParser<DoubleVector> parser = new NumberVectorLabelParser<>(DoubleVector.FACTORY);
+      parser.initStream(in);
+      List<? extends Cluster<KMeansModel>> clusters = makeStreamingBIRCH().run(parser, rel.size()).getAllClusters();
+      assertEquals("Number of clusters does not match.", expected.size(), clusters.size());
+      for(int i = 0; i < clusters.size(); i++) {
+        final KMeansModel e = expected.get(i).getModel(), c = clusters.get(i).getModel();
+        assertEquals("Clusters must not contain objects.", 0, clusters.get(i).size());
+        assertArrayEquals("Streaming BIRCH produced a different mean.", e.getMean(), c.getMean(), 1e-10);
+      }
+    }
+    catch(IOException e) {
+      fail("Test data not found.");
+    }
+    // Without, the maximum number of leaves grows with the stream:
+    try (InputStream in = open(UNITTEST + "single-link-effect.ascii")) {
+      NumberVectorLabelParser<DoubleVector> parser = new NumberVectorLabelParser<>(DoubleVector.FACTORY);
+      parser.initStream(in);
+      assertEquals("Number of clusters does not match.", 4, makeStreamingBIRCH().run(parser).getAllClusters().size());
+    }
+    catch(IOException e) {
+      fail("Test data not found.");
+    }
+  }
+
+  /**
+   * Make a BIRCH k-means instance with a relative maximum number of leaves.
+   *
+   * @return New instance, with a fresh random generator
+   */
+  private static BIRCHLloydKMeans<?> makeStreamingBIRCH() {
+    return new ELKIBuilder<>(BIRCHLloydKMeans.class) //
+        .with(CFTree.Factory.Par.ABSORPTION_ID, EuclideanDistanceCriterion.class) //
+        .with(CFTree.Factory.Par.MAXLEAVES_ID, 0.1) //
+        .with(AbstractKMeans.K_ID, 4) //
+        .with(AbstractKMeans.SEED_ID, 0) //
+        .build();
+  }
 }
@@ -0,0 +1,98 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.initialization.KMeansPlusPlus;
+import elki.clustering.kmeans.quality.WithinClusterVariance;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.model.KMeansModel;
+import elki.database.Database;
+import elki.parallel.ParallelCore;
+import elki.utilities.ELKIBuilder;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Regression test for running k-means multiple times.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class BestOfMultipleKMeansTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testBestOfMultiple() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Clustering<?> result = new ELKIBuilder<BestOfMultipleKMeans<DoubleVector, KMeansModel>>(BestOfMultipleKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(KMeans.INIT_ID, KMeansPlusPlus.class) //
+        .with(BestOfMultipleKMeans.Par.TRIALS_ID, 5) //
+        .with(BestOfMultipleKMeans.Par.KMEANS_ID, LloydKMeans.class) //
+        .with(BestOfMultipleKMeans.Par.QUALITYMEASURE_ID, WithinClusterVariance.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.998005);
+    assertClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
+  }
+
+  @Test
+  public void testBestOfMultipleConcurrent() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    // The result must not depend on the number of threads:
+    for(int threads : new int[] { 1, 4 }) {
+      BestOfMultipleKMeans<DoubleVector, KMeansModel> kmeans = new ELKIBuilder<BestOfMultipleKMeans<DoubleVector, KMeansModel>>(BestOfMultipleKMeans.class) //
+          .with(KMeans.K_ID, 5) //
+          .with(KMeans.INIT_ID, KMeansPlusPlus.class) //
+          .with(BestOfMultipleKMeans.Par.TRIALS_ID, 5) //
+          .with(BestOfMultipleKMeans.Par.CONCURRENT_ID, 3) //
+          .with(BestOfMultipleKMeans.Par.SEED_ID, 0) //
+          .with(BestOfMultipleKMeans.Par.KMEANS_ID, LloydKMeans.class) //
+          .with(BestOfMultipleKMeans.Par.QUALITYMEASURE_ID, WithinClusterVariance.class) //
+          .build();
+      Clustering<?> result = new ParallelCore(threads).compute(() -> kmeans.autorun(db));
+      assertFMeasure(db, result, 0.998005);
+      assertClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
+    }
+  }
+
+  @Test
+  public void testBestOfMultipleSharedInitializer() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    // All trials share one initializer, the result must still not depend on
+    // the number of threads:
+    for(int threads : new int[] { 1, 4 }) {
+      BestOfMultipleKMeans<DoubleVector, KMeansModel> kmeans = new ELKIBuilder<BestOfMultipleKMeans<DoubleVector, KMeansModel>>(BestOfMultipleKMeans.class) //
+          .with(KMeans.K_ID, 5) //
+          .with(KMeans.INIT_ID, new KMeansPlusPlus<>(RandomFactory.get(0L))) //
+          .with(BestOfMultipleKMeans.Par.TRIALS_ID, 5) //
+          .with(BestOfMultipleKMeans.Par.CONCURRENT_ID, 3) //
+          .with(BestOfMultipleKMeans.Par.SEED_ID, 0) //
+          .with(BestOfMultipleKMeans.Par.KMEANS_ID, LloydKMeans.class) //
+          .with(BestOfMultipleKMeans.Par.QUALITYMEASURE_ID, WithinClusterVariance.class) //
+          .build();
+      Clustering<?> result = new ParallelCore(threads).compute(() -> kmeans.autorun(db));
+      assertFMeasure(db, result, 0.998005);
+      assertClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.initialization.KMeansPlusPlus;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.relation.Relation;
+import elki.datasource.parser.NumberVectorLabelParser;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for streaming k-means.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class StreamingKMeansTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testStreamingKMeans() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Clustering<?> result = new ELKIBuilder<>(StreamingKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(KMeans.INIT_ID, KMeansPlusPlus.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.998005);
+    assertClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
+  }
+
+  @Test
+  public void testStream() {
+    dotestStream(500);
+  }
+
+  @Test
+  public void testShortStream() {
+    // Fewer objects than the initialization buffer:
+    dotestStream(2000);
+  }
+
+  /**
+   * Process the data as stream, and compare the means to processing the
+   * relation.
+   *
+   * @param initsize Size of the initialization buffer
+   */
+  private void dotestStream(int initsize) {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    List<? extends Cluster<KMeansModel>> expected = makeKMeans(initsize).run(rel).getAllClusters();
+    try (InputStream in = open(UNITTEST + "different-densities-2d-no-noise.ascii")) {
+      NumberVectorLabelParser<DoubleVector> parser = new NumberVectorLabelParser<>(DoubleVector.FACTORY);
+      parser.initStream(in);
+      // Use a new instance, for the same random initialization:
+      List<? extends Cluster<KMeansModel>> clusters = makeKMeans(initsize).run(parser).getAllClusters();
+      // Same order of objects, hence the same means:
+      assertEquals("Number of clusters does not match.", 5, clusters.size());
+      assertEquals("Number of clusters does not match.", expected.size(), clusters.size());
+      for(int i = 0; i < clusters.size(); i++) {
+        assertEquals("Clusters must not contain objects.", 0, clusters.get(i).size());
+        assertArrayEquals("Means differ.", expected.get(i).getModel().getMean(), clusters.get(i).getModel().getMean(), 1e-15);
+      }
+    }
+    catch(IOException e) {
+      fail("Test data not found.");
+    }
+  }
+
+  /**
+   * Build a streaming k-means instance.
+   *
+   * @param initsize Size of the initialization buffer
+   * @return Algorithm
+   */
+  private static StreamingKMeans makeKMeans(int initsize) {
+    return new ELKIBuilder<>(StreamingKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(KMeans.INIT_ID, KMeansPlusPlus.class) //
+        .with(StreamingKMeans.Par.INITSIZE_ID, initsize) //
+        .build();
+  }
+}
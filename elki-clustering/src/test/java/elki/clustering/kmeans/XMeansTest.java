@@ -26,6 +26,7 @@ import elki.clustering.AbstractClusterAlgorithmTest;
 import elki.data.Clustering;
 import elki.data.DoubleVector;
 import elki.database.Database;
+import elki.parallel.ParallelCore;
 import elki.utilities.ELKIBuilder;
 
 /**
@@ -52,4 +53,46 @@ public class XMeansTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, result, 0.959044);
     assertClusterSizes(result, new int[] { 1, 1, 2, 2, 2, 2, 2, 3, 5, 51, 106, 153 });
   }
+
+  /**
+   * Evaluate the splits concurrently, the result must not change.
+   */
+  @Test
+  public void testXMeansConcurrent() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    XMeans<DoubleVector, ?> xmeans = new ELKIBuilder<XMeans<DoubleVector, ?>>(XMeans.class) //
+        .with(XMeans.Par.K_MIN_ID, 2) //
+        .with(KMeans.K_ID, 20) //
+        .with(XMeans.Par.INNER_KMEANS_ID, ExponionKMeans.class) //
+        .with(XMeans.Par.CONCURRENT_ID, 3) //
+        .with(KMeans.SEED_ID, 0) // // Initializer seed
+        .with(XMeans.Par.SEED_ID, 0) // // X-means seed
+        .build();
+    Clustering<?> result = new ParallelCore(4).compute(() -> xmeans.autorun(db));
+    assertFMeasure(db, result, 0.959044);
+    assertClusterSizes(result, new int[] { 1, 1, 2, 2, 2, 2, 2, 3, 5, 51, 106, 153 });
+  }
+
+  /**
+   * Evaluate the splits concurrently with a randomized inner k-means, the
+   * result must not depend on the number of threads.
+   */
+  @Test
+  public void testXMeansConcurrentRandomized() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    for(int threads : new int[] { 1, 4 }) {
+      XMeans<DoubleVector, ?> xmeans = new ELKIBuilder<XMeans<DoubleVector, ?>>(XMeans.class) //
+          .with(XMeans.Par.K_MIN_ID, 2) //
+          .with(KMeans.K_ID, 20) //
+          .with(XMeans.Par.INNER_KMEANS_ID, MiniBatchKMeans.class) //
+          .with(MiniBatchKMeans.Par.RANDOM_ID, 0) //
+          .with(XMeans.Par.CONCURRENT_ID, 3) //
+          .with(KMeans.SEED_ID, 0) // // Initializer seed
+          .with(XMeans.Par.SEED_ID, 0) // // X-means seed
+          .build();
+      Clustering<?> result = new ParallelCore(threads).compute(() -> xmeans.autorun(db));
+      assertFMeasure(db, result, 0.9322056);
+      assertClusterSizes(result, new int[] { 6, 57, 113, 154 });
+    }
+  }
 }
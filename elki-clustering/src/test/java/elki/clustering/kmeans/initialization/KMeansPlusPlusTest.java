@@ -20,6 +20,8 @@
  */
 package elki.clustering.kmeans.initialization;
 
+import static org.junit.Assert.assertEquals;
+
 import org.junit.Test;
 
 import elki.clustering.AbstractClusterAlgorithmTest;
@@ -28,8 +30,20 @@ import elki.clustering.kmeans.SingleAssignmentKMeans;
 import elki.clustering.kmedoids.CLARA;
 import elki.data.Clustering;
 import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
 import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDs;
+import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.parallel.ParallelCore;
 import elki.utilities.ELKIBuilder;
+import elki.utilities.random.RandomFactory;
 
 /**
  * Performs a single assignment with different k-means initializations.
@@ -73,4 +87,46 @@ public class KMeansPlusPlusTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, result, 0.99602);
     assertClusterSizes(result, new int[] { 198, 200, 200, 200, 202 });
   }
+
+  /**
+   * Run CLARA with samples larger than a single block; the caching distance
+   * query of CLARA is not thread-safe, so the result must not depend on the
+   * number of threads.
+   */
+  @Test
+  public void testKMeansPlusPlusMedoidsLargeSample() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    for(int threads : new int[] { 1, 4 }) {
+      CLARA<DoubleVector> clara = new ELKIBuilder<CLARA<DoubleVector>>(CLARA.class) //
+          .with(KMeans.K_ID, 5) //
+          .with(KMeans.SEED_ID, 3) //
+          .with(KMeans.INIT_ID, KMeansPlusPlus.class) //
+          .with(KMeans.MAXITER_ID, 1) //
+          .with(CLARA.Par.NUMSAMPLES_ID, 2) //
+          .with(CLARA.Par.SAMPLESIZE_ID, 600) //
+          .with(CLARA.Par.RANDOM_ID, 0) //
+          .build();
+      Clustering<?> result = new ParallelCore(threads).compute(() -> clara.autorun(db));
+      assertFMeasure(db, result, 1.0);
+      assertClusterSizes(result, new int[] { 200, 200, 200, 200, 200 });
+    }
+  }
+
+  /**
+   * Choose more medoids than there are distinct objects; the medoids must
+   * still be different objects.
+   */
+  @Test
+  public void testKMeansPlusPlusMedoidsDuplicates() {
+    double[][] data = new double[20][];
+    for(int i = 0; i < data.length; i++) {
+      data[i] = new double[] { i % 2 };
+    }
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data));
+    db.initialize();
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    DistanceQuery<NumberVector> dq = new QueryBuilder<>(rel, SquaredEuclideanDistance.STATIC).distanceQuery();
+    DBIDs medoids = new KMeansPlusPlus<NumberVector>(new RandomFactory(0L)).chooseInitialMedoids(5, rel.getDBIDs(), dq);
+    assertEquals("Duplicate medoids chosen.", 5, DBIDUtil.newHashSet(medoids).size());
+  }
 }
@@ -28,6 +28,7 @@ import elki.data.Clustering;
 import elki.data.DoubleVector;
 import elki.data.model.MedoidModel;
 import elki.database.Database;
+import elki.parallel.ParallelCore;
 import elki.utilities.ELKIBuilder;
 
 /**
@@ -49,4 +50,23 @@ public class FastCLARATest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, result, 0.998005);
     assertClusterSizes(result, new int[] { 199, 200, 200, 200, 201 });
   }
+
+  @Test
+  public void testCLARAIndependentParallel() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    // The result must not depend on the number of threads:
+    for(int threads : new int[] { 1, 2, 4 }) {
+      FastCLARA<DoubleVector> clara = new ELKIBuilder<FastCLARA<DoubleVector>>(FastCLARA.class) //
+          .with(KMeans.K_ID, 5) //
+          .with(KMeans.SEED_ID, 0) //
+          .with(CLARA.Par.RANDOM_ID, 1) //
+          .with(CLARA.Par.NUMSAMPLES_ID, 6) //
+          .with(CLARA.Par.SAMPLESIZE_ID, 30) //
+          .with(CLARA.Par.NOKEEPMED_ID) //
+          .build();
+      Clustering<MedoidModel> result = new ParallelCore(threads).compute(() -> clara.autorun(db));
+      assertFMeasure(db, result, 0.99602008);
+      assertClusterSizes(result, new int[] { 198, 200, 200, 200, 202 });
+    }
+  }
 }
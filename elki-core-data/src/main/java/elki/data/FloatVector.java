@@ -63,12 +63,15 @@ public class FloatVector implements NumberVector {
   private final float[] values;
 
   /**
-   * Private constructor. NOT for public use.
+   * Constructor. NOT for public use.
+   * <p>
+   * Subclasses providing views on other storage may pass {@code null} values,
+   * but then must override all accessors.
    * 
    * @param values Data values
    * @param nocopy Flag to re-use the values array
    */
-  private FloatVector(float[] values, boolean nocopy) {
+  protected FloatVector(float[] values, boolean nocopy) {
     this.values = nocopy ? values : values.clone();
   }
 
@@ -201,17 +204,17 @@ public class FloatVector implements NumberVector {
 
     @Override
     public void toByteBuffer(ByteBuffer buffer, FloatVector vec) throws IOException {
-      assert (vec.values.length < Byte.MAX_VALUE) : "This serializer only supports a maximum dimensionality of " + Byte.MAX_VALUE + "!";
-      assert (buffer.remaining() >= ByteArrayUtil.SIZE_FLOAT * vec.values.length);
-      buffer.put((byte) vec.values.length);
-      for(int i = 0; i < vec.values.length; i++) {
-        buffer.putFloat(vec.values[i]);
+      assert (vec.getDimensionality() < Byte.MAX_VALUE) : "This serializer only supports a maximum dimensionality of " + Byte.MAX_VALUE + "!";
+      assert (buffer.remaining() >= ByteArrayUtil.SIZE_FLOAT * vec.getDimensionality());
+      buffer.put((byte) vec.getDimensionality());
+      for(int i = 0; i < vec.getDimensionality(); i++) {
+        buffer.putFloat(vec.floatValue(i));
       }
     }
 
     @Override
     public int getByteSize(FloatVector vec) {
-      assert (vec.values.length < Byte.MAX_VALUE) : "This serializer only supports a maximum dimensionality of " + Byte.MAX_VALUE + "!";
+      assert (vec.getDimensionality() < Byte.MAX_VALUE) : "This serializer only supports a maximum dimensionality of " + Byte.MAX_VALUE + "!";
       return ByteArrayUtil.SIZE_BYTE + ByteArrayUtil.SIZE_FLOAT * vec.getDimensionality();
     }
   }
@@ -239,17 +242,17 @@ public class FloatVector implements NumberVector {
 
     @Override
     public void toByteBuffer(ByteBuffer buffer, FloatVector vec) throws IOException {
-      assert (vec.values.length < Short.MAX_VALUE) : "This serializer only supports a maximum dimensionality of " + Short.MAX_VALUE + "!";
-      assert (buffer.remaining() >= ByteArrayUtil.SIZE_FLOAT * vec.values.length);
-      buffer.putShort((short) vec.values.length);
-      for(int i = 0; i < vec.values.length; i++) {
-        buffer.putFloat(vec.values[i]);
+      assert (vec.getDimensionality() < Short.MAX_VALUE) : "This serializer only supports a maximum dimensionality of " + Short.MAX_VALUE + "!";
+      assert (buffer.remaining() >= ByteArrayUtil.SIZE_FLOAT * vec.getDimensionality());
+      buffer.putShort((short) vec.getDimensionality());
+      for(int i = 0; i < vec.getDimensionality(); i++) {
+        buffer.putFloat(vec.floatValue(i));
       }
     }
 
     @Override
     public int getByteSize(FloatVector vec) {
-      assert (vec.values.length < Short.MAX_VALUE) : "This serializer only supports a maximum dimensionality of " + Short.MAX_VALUE + "!";
+      assert (vec.getDimensionality() < Short.MAX_VALUE) : "This serializer only supports a maximum dimensionality of " + Short.MAX_VALUE + "!";
       return ByteArrayUtil.SIZE_SHORT + ByteArrayUtil.SIZE_FLOAT * vec.getDimensionality();
     }
   }
@@ -275,18 +278,18 @@ public class FloatVector implements NumberVector {
 
     @Override
     public void toByteBuffer(ByteBuffer buffer, FloatVector vec) throws IOException {
-      assert (vec.values.length < Short.MAX_VALUE) : "This serializer only supports a maximum dimensionality of " + Short.MAX_VALUE + "!";
-      assert (buffer.remaining() >= ByteArrayUtil.SIZE_FLOAT * vec.values.length);
-      ByteArrayUtil.writeUnsignedVarint(buffer, vec.values.length);
-      for(int i = 0; i < vec.values.length; i++) {
-        buffer.putFloat(vec.values[i]);
+      assert (vec.getDimensionality() < Short.MAX_VALUE) : "This serializer only supports a maximum dimensionality of " + Short.MAX_VALUE + "!";
+      assert (buffer.remaining() >= ByteArrayUtil.SIZE_FLOAT * vec.getDimensionality());
+      ByteArrayUtil.writeUnsignedVarint(buffer, vec.getDimensionality());
+      for(int i = 0; i < vec.getDimensionality(); i++) {
+        buffer.putFloat(vec.floatValue(i));
       }
     }
 
     @Override
     public int getByteSize(FloatVector vec) {
-      assert (vec.values.length < Short.MAX_VALUE) : "This serializer only supports a maximum dimensionality of " + Short.MAX_VALUE + "!";
-      return ByteArrayUtil.getUnsignedVarintSize(vec.values.length) + ByteArrayUtil.SIZE_FLOAT * vec.values.length;
+      assert (vec.getDimensionality() < Short.MAX_VALUE) : "This serializer only supports a maximum dimensionality of " + Short.MAX_VALUE + "!";
+      return ByteArrayUtil.getUnsignedVarintSize(vec.getDimensionality()) + ByteArrayUtil.SIZE_FLOAT * vec.getDimensionality();
     }
   }
 }
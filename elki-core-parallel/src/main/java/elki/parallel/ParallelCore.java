@@ -21,11 +21,24 @@
 package elki.parallel;
 
 import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
 
 /**
- * Core for parallel processing in ELKI, based on {@link ThreadPoolExecutor}.
+ * Core for parallel processing in ELKI, based on a work-stealing
+ * {@link ForkJoinPool}.
  * <p>
- * TODO: make configurable how many threads are used.
+ * By default, a static core using all available processors is used. To limit
+ * the number of threads, or to isolate concurrent jobs within the same JVM from
+ * each other, create a separate core and run the job using
+ * {@link #run(Runnable)} or {@link #compute(Supplier)}; all parallel
+ * processing started from within the job (as well as from its worker threads)
+ * will then use this core.
  * 
  * @author Erich Schubert
  * @since 0.7.0
@@ -41,10 +54,15 @@ public class ParallelCore {
    */
   private static final ParallelCore STATIC = new ParallelCore(ALL_PROCESSORS);
 
+  /**
+   * Core of the current job, if not the static core.
+   */
+  private static final ThreadLocal<ParallelCore> CURRENT = new ThreadLocal<>();
+
   /**
    * Executor service.
    */
-  private volatile ThreadPoolExecutor executor;
+  private volatile ForkJoinPool executor;
 
   /**
    * Number of connected submitters.
@@ -54,32 +72,131 @@ public class ParallelCore {
   /**
    * Maximum number of processors to use.
    */
-  private int processors;
+  private volatile int processors;
+
+  /**
+   * Partitioning strategy.
+   */
+  private volatile Partitioning partitioning = Partitioning.getDefault();
 
   /**
    * Constructor.
+   *
+   * @param processors Number of threads to use, 0 for all processors
    */
-  protected ParallelCore(int processors) {
+  public ParallelCore(int processors) {
     super();
-    this.processors = processors;
+    this.processors = processors > 0 ? processors : ALL_PROCESSORS;
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param processors Number of threads to use, 0 for all processors
+   * @param partitioning Partitioning strategy
+   */
+  public ParallelCore(int processors, Partitioning partitioning) {
+    this(processors);
+    this.partitioning = partitioning;
   }
 
   /**
-   * Get the static core object.
+   * Get the core of the current job; the static core unless running within
+   * {@link #run(Runnable)} of a different core.
    * 
    * @return Core
    */
   public static ParallelCore getCore() {
+    final Thread thread = Thread.currentThread();
+    if(thread instanceof WorkerThread) {
+      return ((WorkerThread) thread).core;
+    }
+    ParallelCore core = CURRENT.get();
+    return core != null ? core : STATIC;
+  }
+
+  /**
+   * Get the static core object, shared by all jobs not using their own core.
+   *
+   * @return Static core
+   */
+  public static ParallelCore getStaticCore() {
     return STATIC;
   }
 
+  /**
+   * Run a job, using this core for all parallel processing of the job.
+   *
+   * @param job Job to run
+   */
+  public void run(Runnable job) {
+    final ParallelCore prev = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      job.run();
+    }
+    finally {
+      CURRENT.set(prev);
+    }
+  }
+
+  /**
+   * Run a job, using this core for all parallel processing of the job.
+   *
+   * @param job Job to run
+   * @param <T> Result type
+   * @return Job result
+   */
+  public <T> T compute(Supplier<T> job) {
+    final ParallelCore prev = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      return job.get();
+    }
+    finally {
+      CURRENT.set(prev);
+    }
+  }
+
   /**
    * Get desired level of parallelism
    * 
    * @return Number of threads to run in parallel
    */
   public int getParallelism() {
-    return executor != null ? executor.getMaximumPoolSize() : processors;
+    final ForkJoinPool executor = this.executor;
+    return executor != null ? executor.getParallelism() : processors;
+  }
+
+  /**
+   * Set the desired level of parallelism. If the core is currently in use,
+   * this will only take effect once all submitters have disconnected.
+   * <p>
+   * The worker pool is kept alive between jobs, and recreated with the new
+   * level of parallelism on the next connect.
+   *
+   * @param processors Number of threads to use, 0 for all processors
+   */
+  public synchronized void setParallelism(int processors) {
+    this.processors = processors > 0 ? processors : ALL_PROCESSORS;
+  }
+
+  /**
+   * Get the partitioning strategy used by the {@link ParallelExecutor}.
+   *
+   * @return Partitioning strategy
+   */
+  public Partitioning getPartitioning() {
+    return partitioning;
+  }
+
+  /**
+   * Set the partitioning strategy used by the {@link ParallelExecutor}.
+   *
+   * @param partitioning Partitioning strategy
+   */
+  public void setPartitioning(Partitioning partitioning) {
+    this.partitioning = partitioning;
   }
 
   /**
@@ -93,27 +210,100 @@ public class ParallelCore {
     return executor.submit(task);
   }
 
+  /**
+   * Submit a fork-join task to the executor core.
+   *
+   * @param task Submitted task
+   * 
+   * @return Future to observe completion
+   */
+  public <T> ForkJoinTask<T> submit(ForkJoinTask<T> task) {
+    return executor.submit(task);
+  }
+
   /**
    * Connect to the executor.
    */
   public synchronized void connect() {
-    if(executor == null) {
-      executor = new ThreadPoolExecutor(0, processors, 10L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
-      executor.allowCoreThreadTimeOut(true);
+    if(executor != null && connected == 0 && executor.getParallelism() != processors) {
+      executor.shutdown(); // Parallelism was changed.
+      executor = null;
     }
-    if(++connected == 1) {
-      executor.allowCoreThreadTimeOut(false);
-      executor.setCorePoolSize(executor.getMaximumPoolSize());
+    if(executor == null) {
+      // The pool is kept; idle worker threads expire after the keepalive of
+      // the fork-join pool, and are restarted on demand.
+      executor = new ForkJoinPool(processors, pool -> new WorkerThread(pool, this), null, false);
     }
+    ++connected;
   }
 
   /**
    * Disconnect to the executor.
    */
   public synchronized void disconnect() {
-    if(--connected == 0) {
-      executor.allowCoreThreadTimeOut(true);
-      executor.setCorePoolSize(0);
+    --connected;
+  }
+
+  /**
+   * Shut down the worker pool, if no submitters are connected. It will be
+   * recreated on demand.
+   */
+  public synchronized void shutdown() {
+    if(connected == 0 && executor != null) {
+      executor.shutdown();
+      executor = null;
+    }
+  }
+
+  /**
+   * Worker thread, which remembers the core it belongs to.
+   *
+   * @author Erich Schubert
+   */
+  private static class WorkerThread extends ForkJoinWorkerThread {
+    /**
+     * Core this thread belongs to.
+     */
+    final ParallelCore core;
+
+    /**
+     * Constructor.
+     *
+     * @param pool Pool
+     * @param core Core
+     */
+    WorkerThread(ForkJoinPool pool, ParallelCore core) {
+      super(pool);
+      this.core = core;
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par implements Parameterizer {
+    /**
+     * Number of threads to use for parallel processing.
+     */
+    public static final OptionID PARALLELISM_ID = new OptionID("parallelism", "Number of threads to use for parallel processing, 0 to use all available processors.");
+
+    /**
+     * Number of threads.
+     */
+    protected int parallelism = 0;
+
+    @Override
+    public void configure(Parameterization config) {
+      new IntParameter(PARALLELISM_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .grab(config, x -> parallelism = x);
+    }
+
+    @Override
+    public ParallelCore make() {
+      return parallelism > 0 ? new ParallelCore(parallelism) : getStaticCore();
     }
   }
 }
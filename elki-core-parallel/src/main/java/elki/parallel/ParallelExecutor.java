@@ -23,9 +23,10 @@ package elki.parallel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import elki.database.ids.ArrayDBIDs;
 import elki.database.ids.DBIDArrayIter;
@@ -37,6 +38,17 @@ import elki.parallel.variables.SharedVariable.Instance;
 
 /**
  * Class to run processors in parallel, on all available cores.
+ * <p>
+ * By default, the core of the current job is used, see
+ * {@link ParallelCore#getCore()}.
+ * <p>
+ * The data is partitioned into blocks according to the {@link Partitioning}
+ * strategy of the core, and processed on a work-stealing fork-join pool. Each
+ * block task uses its own {@link BlockArrayRunner}, i.e., its own processor
+ * and shared variable instances, which are cleaned up when the block is done.
+ * Because no instances are shared between tasks, processors may safely run
+ * nested parallel jobs, even if the worker thread executes other blocks of the
+ * outer job while waiting.
  *
  * TODO: add progress
  *
@@ -45,8 +57,24 @@ import elki.parallel.variables.SharedVariable.Instance;
  *
  * @has - - - BlockArrayRunner
  * @assoc - - - ParallelCore
+ * @assoc - - - Partitioning
  */
 public final class ParallelExecutor {
+  /**
+   * Minimum block size for adaptive partitioning.
+   */
+  private static final int MIN_BLOCKSIZE = 16;
+
+  /**
+   * Number of blocks per thread to allow at most with adaptive partitioning.
+   */
+  private static final int BLOCKS_PER_THREAD = 64;
+
+  /**
+   * Number of surplus tasks in the local queue below which we keep splitting.
+   */
+  private static final int SURPLUS_THRESHOLD = 2;
+
   /**
    * Private constructor. Static methods only.
    */
@@ -55,39 +83,155 @@ public final class ParallelExecutor {
   }
 
   /**
-   * Run a task on all available CPUs.
+   * Run a task on all available CPUs of the current core.
    *
    * @param ids IDs to process
    * @param procs Processors to run
    */
   public static void run(DBIDs ids, Processor... procs) {
-    ParallelCore core = ParallelCore.getCore();
+    run(ParallelCore.getCore(), ids, procs);
+  }
+
+  /**
+   * Run a task on the given core.
+   *
+   * @param core Parallel core to use
+   * @param ids IDs to process
+   * @param procs Processors to run
+   */
+  public static void run(ParallelCore core, DBIDs ids, Processor... procs) {
     core.connect();
+    ForkJoinTask<Void> root = null;
     try {
-      // TODO: try different strategies anyway!
       ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
       final int size = aids.size();
-      int numparts = core.getParallelism();
-      // TODO: are there better heuristics for choosing this?
-      numparts = (size > numparts * numparts * 16) ? numparts * Math.max(1, numparts - 1) : numparts;
+      final int parallelism = core.getParallelism();
+      switch(core.getPartitioning()){
+      case STATIC_BLOCKS: {
+        int numparts = parallelism;
+        // TODO: are there better heuristics for choosing this?
+        numparts = (size > numparts * numparts * 16) ? numparts * Math.max(1, numparts - 1) : numparts;
+        root = new StaticBlocksTask(aids, procs, numparts);
+        break;
+      }
+      case ADAPTIVE:
+      default: {
+        final int minblock = Math.max(MIN_BLOCKSIZE, size / (parallelism * BLOCKS_PER_THREAD));
+        root = new AdaptiveBlockTask(aids, procs, 0, size, minblock, null);
+        break;
+      }
+      }
+      core.submit(root).get();
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      root.cancel(true);
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+  }
 
-      final int blocksize = (size + (numparts - 1)) / numparts;
-      List<Future<ArrayDBIDs>> parts = new ArrayList<>(numparts);
-      for(int i = 0; i < numparts; i++) {
-        final int start = i * blocksize;
-        final int end = Math.min(start + blocksize, size);
-        Callable<ArrayDBIDs> run = new BlockArrayRunner(aids, start, end, procs);
-        parts.add(core.submit(run));
+  /**
+   * Process the data in blocks of (at most) the given size, on all available
+   * CPUs of the current core.
+   * <p>
+   * This is meant for kernels that benefit from processing multiple objects at
+   * once, such as cache-blocked distance computations. Blocks are always
+   * aligned to multiples of the block size, independent of the partitioning
+   * strategy of the core.
+   *
+   * @param ids IDs to process
+   * @param blocksize Block size
+   * @param proc Block processor
+   */
+  public static void runBlocks(ArrayDBIDs ids, int blocksize, BlockProcessor proc) {
+    runBlocks(ParallelCore.getCore(), ids, blocksize, proc);
+  }
+
+  /**
+   * Process the data in blocks of (at most) the given size, on the given core.
+   *
+   * @param core Parallel core to use
+   * @param ids IDs to process
+   * @param blocksize Block size
+   * @param proc Block processor
+   */
+  public static void runBlocks(ParallelCore core, ArrayDBIDs ids, int blocksize, BlockProcessor proc) {
+    final int size = ids.size();
+    final int numblocks = (size + blocksize - 1) / blocksize;
+    if(numblocks <= 1 || core.getParallelism() <= 1) {
+      for(int start = 0; start < size; start += blocksize) {
+        proc.process(ids, start, Math.min(start + blocksize, size));
       }
+      return;
+    }
+    core.connect();
+    ForkJoinTask<Void> root = null;
+    try {
+      root = new BlockTask(ids, blocksize, proc, 0, numblocks);
+      core.submit(root).get();
+    }
+    catch(ExecutionException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    catch(InterruptedException e) {
+      root.cancel(true);
+      throw new RuntimeException("Parallel execution interrupted.");
+    }
+    finally {
+      core.disconnect();
+    }
+  }
 
-      for(Future<ArrayDBIDs> fut : parts) {
-        fut.get();
+  /**
+   * Run independent tasks, with at most the given number running at the same
+   * time, on all available CPUs of the current core.
+   * <p>
+   * This is meant for coarse-grained jobs such as restarts of an algorithm,
+   * where the limit bounds the memory used by concurrently running tasks.
+   * Tasks are started in order of their index; callers that need
+   * reproducible results should store results by task index.
+   *
+   * @param numtasks Number of tasks
+   * @param concurrent Maximum number of tasks running at the same time
+   * @param proc Task processor
+   */
+  public static void runTasks(int numtasks, int concurrent, TaskProcessor proc) {
+    runTasks(ParallelCore.getCore(), numtasks, concurrent, proc);
+  }
+
+  /**
+   * Run independent tasks, with at most the given number running at the same
+   * time, on the given core.
+   *
+   * @param core Parallel core to use
+   * @param numtasks Number of tasks
+   * @param concurrent Maximum number of tasks running at the same time
+   * @param proc Task processor
+   */
+  public static void runTasks(ParallelCore core, int numtasks, int concurrent, TaskProcessor proc) {
+    final int workers = Math.min(Math.min(numtasks, concurrent), core.getParallelism());
+    if(workers <= 1) {
+      for(int i = 0; i < numtasks; i++) {
+        proc.process(i);
       }
+      return;
+    }
+    core.connect();
+    ForkJoinTask<Void> root = null;
+    try {
+      root = new TaskWorker(new AtomicInteger(), numtasks, proc, workers);
+      core.submit(root).get();
     }
     catch(ExecutionException e) {
       throw new RuntimeException("Processor execution failed.", e);
     }
     catch(InterruptedException e) {
+      root.cancel(true);
       throw new RuntimeException("Parallel execution interrupted.");
     }
     finally {
@@ -96,18 +240,115 @@ public final class ParallelExecutor {
   }
 
   /**
-   * Run for an array part, without step size.
+   * Process a range with a new runner, and clean it up.
+   *
+   * @param ids IDs to process
+   * @param procs Processors to run
+   * @param start Starting position
+   * @param end End position
+   */
+  private static void process(ArrayDBIDs ids, Processor[] procs, int start, int end) {
+    BlockArrayRunner runner = new BlockArrayRunner(ids, procs);
+    runner.process(start, end);
+    runner.cleanup();
+  }
+
+  /**
+   * Process a fixed number of equally sized blocks.
    *
    * @author Erich Schubert
+   */
+  private static class StaticBlocksTask extends RecursiveAction {
+    /**
+     * Serialization version
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Array IDs to process
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * The processor masters that own the instances.
+     */
+    private Processor[] procs;
+
+    /**
+     * Number of blocks.
+     */
+    private int numparts;
+
+    /**
+     * Start position, -1 for the root task.
+     */
+    private int start = -1;
+
+    /**
+     * End position
+     */
+    private int end;
+
+    /**
+     * Constructor for the root task.
+     *
+     * @param ids IDs to process
+     * @param procs Processors to run
+     * @param numparts Number of blocks
+     */
+    StaticBlocksTask(ArrayDBIDs ids, Processor[] procs, int numparts) {
+      super();
+      this.ids = ids;
+      this.procs = procs;
+      this.numparts = numparts;
+    }
+
+    @Override
+    protected void compute() {
+      if(start >= 0) {
+        process(ids, procs, start, end);
+        return;
+      }
+      final int size = ids.size();
+      final int blocksize = (size + (numparts - 1)) / numparts;
+      List<StaticBlocksTask> parts = new ArrayList<>(numparts);
+      for(int i = 0; i < numparts; i++) {
+        StaticBlocksTask part = new StaticBlocksTask(ids, procs, numparts);
+        part.start = Math.min(i * blocksize, size);
+        part.end = Math.min(part.start + blocksize, size);
+        parts.add(part);
+      }
+      invokeAll(parts);
+    }
+  }
+
+  /**
+   * Recursive binary splitting with work stealing.
+   * <p>
+   * The upper half of the range is forked off while the local queue is nearly
+   * empty (i.e., other workers may be able to steal work), and the range is
+   * larger than the minimum block size. This adapts the block size to skewed
+   * per-object costs, while avoiding excessive splitting when all workers are
+   * busy anyway.
    *
-   * @assoc - - - Processor
+   * @author Erich Schubert
    */
-  protected static class BlockArrayRunner implements Callable<ArrayDBIDs>, Executor {
+  private static class AdaptiveBlockTask extends RecursiveAction {
+    /**
+     * Serialization version
+     */
+    private static final long serialVersionUID = 1L;
+
     /**
      * Array IDs to process
      */
     private ArrayDBIDs ids;
 
+    /**
+     * The processor masters that own the instances.
+     */
+    private Processor[] procs;
+
     /**
      * Start position
      */
@@ -118,11 +359,236 @@ public final class ParallelExecutor {
      */
     private int end;
 
+    /**
+     * Minimum block size.
+     */
+    private int minblock;
+
+    /**
+     * Next forked task, to join.
+     */
+    private AdaptiveBlockTask next;
+
+    /**
+     * Constructor.
+     *
+     * @param ids IDs to process
+     * @param procs Processors to run
+     * @param start Starting position
+     * @param end End position
+     * @param minblock Minimum block size
+     * @param next Next forked task, to join
+     */
+    AdaptiveBlockTask(ArrayDBIDs ids, Processor[] procs, int start, int end, int minblock, AdaptiveBlockTask next) {
+      super();
+      this.ids = ids;
+      this.procs = procs;
+      this.start = start;
+      this.end = end;
+      this.minblock = minblock;
+      this.next = next;
+    }
+
+    @Override
+    protected void compute() {
+      int e = end;
+      AdaptiveBlockTask forked = null;
+      while(e - start > minblock << 1 && getSurplusQueuedTaskCount() <= SURPLUS_THRESHOLD) {
+        final int mid = (start + e) >>> 1;
+        (forked = new AdaptiveBlockTask(ids, procs, mid, e, minblock, forked)).fork();
+        e = mid;
+      }
+      process(ids, procs, start, e);
+      // Join in reverse order; if not stolen, this will process them locally.
+      for(; forked != null; forked = forked.next) {
+        forked.join();
+      }
+    }
+  }
+
+  /**
+   * Process aligned blocks of a fixed size, by recursive binary splitting.
+   *
+   * @author Erich Schubert
+   */
+  private static class BlockTask extends RecursiveAction {
+    /**
+     * Serialization version
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Array IDs to process
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Block size
+     */
+    private int blocksize;
+
+    /**
+     * Block processor
+     */
+    private BlockProcessor proc;
+
+    /**
+     * First block (inclusive) and last block (exclusive).
+     */
+    private int first, last;
+
+    /**
+     * Constructor.
+     *
+     * @param ids IDs to process
+     * @param blocksize Block size
+     * @param proc Block processor
+     * @param first First block
+     * @param last Last block (exclusive)
+     */
+    BlockTask(ArrayDBIDs ids, int blocksize, BlockProcessor proc, int first, int last) {
+      super();
+      this.ids = ids;
+      this.blocksize = blocksize;
+      this.proc = proc;
+      this.first = first;
+      this.last = last;
+    }
+
+    @Override
+    protected void compute() {
+      if(last - first > 1) {
+        final int mid = (first + last) >>> 1;
+        invokeAll(new BlockTask(ids, blocksize, proc, first, mid), new BlockTask(ids, blocksize, proc, mid, last));
+        return;
+      }
+      final int start = first * blocksize;
+      proc.process(ids, start, Math.min(start + blocksize, ids.size()));
+    }
+  }
+
+  /**
+   * Worker that takes tasks from a shared counter until all have been started.
+   *
+   * @author Erich Schubert
+   */
+  private static class TaskWorker extends RecursiveAction {
+    /**
+     * Serialization version
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Next task to start
+     */
+    private AtomicInteger next;
+
+    /**
+     * Number of tasks
+     */
+    private int numtasks;
+
+    /**
+     * Task processor
+     */
+    private TaskProcessor proc;
+
+    /**
+     * Number of workers to spawn (including this one)
+     */
+    private int workers;
+
+    /**
+     * Constructor.
+     *
+     * @param next Next task to start
+     * @param numtasks Number of tasks
+     * @param proc Task processor
+     * @param workers Number of workers to spawn (including this one)
+     */
+    TaskWorker(AtomicInteger next, int numtasks, TaskProcessor proc, int workers) {
+      super();
+      this.next = next;
+      this.numtasks = numtasks;
+      this.proc = proc;
+      this.workers = workers;
+    }
+
+    @Override
+    protected void compute() {
+      if(workers > 1) {
+        final int half = workers >>> 1;
+        invokeAll(new TaskWorker(next, numtasks, proc, half), new TaskWorker(next, numtasks, proc, workers - half));
+        return;
+      }
+      for(int i = next.getAndIncrement(); i < numtasks; i = next.getAndIncrement()) {
+        proc.process(i);
+      }
+    }
+  }
+
+  /**
+   * Processor for a block of objects.
+   * <p>
+   * Implementations must be thread-safe, as different blocks are processed
+   * concurrently.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  public interface BlockProcessor {
+    /**
+     * Process a block of the array.
+     *
+     * @param ids IDs
+     * @param start Starting position
+     * @param end End position (exclusive)
+     */
+    void process(ArrayDBIDs ids, int start, int end);
+  }
+
+  /**
+   * Processor for independent tasks.
+   * <p>
+   * Implementations must be thread-safe, as different tasks are processed
+   * concurrently.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  public interface TaskProcessor {
+    /**
+     * Process a single task.
+     *
+     * @param task Task index
+     */
+    void process(int task);
+  }
+
+  /**
+   * Runner for array parts, without step size, used for the blocks of a single
+   * task.
+   *
+   * @author Erich Schubert
+   *
+   * @assoc - - - Processor
+   */
+  protected static class BlockArrayRunner implements Executor {
+    /**
+     * Array IDs to process
+     */
+    private ArrayDBIDs ids;
+
     /**
      * The processor masters that own the instances.
      */
     private Processor[] procs;
 
+    /**
+     * The processor instances, created lazily.
+     */
+    private Processor.Instance[] instances;
+
     /**
      * Variables map.
      */
@@ -132,33 +598,44 @@ public final class ParallelExecutor {
      * Constructor.
      *
      * @param ids IDs to process
-     * @param start Starting position
-     * @param end End position
      * @param procs Processors to run
      */
-    protected BlockArrayRunner(ArrayDBIDs ids, int start, int end, Processor[] procs) {
+    protected BlockArrayRunner(ArrayDBIDs ids, Processor[] procs) {
       super();
       this.ids = ids;
-      this.start = start;
-      this.end = end;
       this.procs = procs;
     }
 
-    @Override
-    public ArrayDBIDs call() {
-      Processor.Instance[] instances = new Processor.Instance[procs.length];
-      for(int i = 0; i < procs.length; i++) {
-        instances[i] = procs[i].instantiate(this);
+    /**
+     * Process a block of the array.
+     *
+     * @param start Starting position
+     * @param end End position
+     */
+    public void process(int start, int end) {
+      if(instances == null) {
+        instances = new Processor.Instance[procs.length];
+        for(int i = 0; i < procs.length; i++) {
+          instances[i] = procs[i].instantiate(this);
+        }
       }
       for(DBIDArrayIter iter = ids.iter().seek(start); iter.valid() && iter.getOffset() < end; iter.advance()) {
         for(int i = 0; i < instances.length; i++) {
           instances[i].map(iter);
         }
       }
+    }
+
+    /**
+     * Cleanup the processor instances.
+     */
+    public void cleanup() {
+      if(instances == null) {
+        return;
+      }
       for(int i = 0; i < instances.length; i++) {
         procs[i].cleanup(instances[i]);
       }
-      return ids;
     }
 
     @Override
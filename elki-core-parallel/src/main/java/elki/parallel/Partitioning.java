@@ -0,0 +1,63 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.parallel;
+
+/**
+ * Strategies to partition the data for the {@link ParallelExecutor}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public enum Partitioning {
+  /**
+   * Split the data into a fixed number of equally sized blocks.
+   * <p>
+   * This works well if the cost per object is homogeneous, but a single
+   * expensive block may then dominate the run time.
+   */
+  STATIC_BLOCKS,
+  /**
+   * Recursive binary splitting with work stealing.
+   * <p>
+   * Blocks are only split further while other workers may run out of work,
+   * so that the block size adapts to skewed per-object costs.
+   */
+  ADAPTIVE;
+
+  /**
+   * Default partitioning strategy, which can be set with the system property
+   * <code>elki.parallel.partitioning</code>. Unknown values are ignored.
+   *
+   * @return Default strategy
+   */
+  static Partitioning getDefault() {
+    String s = System.getProperty("elki.parallel.partitioning");
+    if(s != null && !s.isEmpty()) {
+      try {
+        return valueOf(s.trim().toUpperCase());
+      }
+      catch(IllegalArgumentException e) {
+        // Fall back to the default, as this is used during static init.
+      }
+    }
+    return ADAPTIVE;
+  }
+}
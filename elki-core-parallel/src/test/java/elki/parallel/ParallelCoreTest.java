@@ -0,0 +1,94 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.parallel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Test the parallel core and its worker pool.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelCoreTest {
+  @Test
+  public void testDefaultCore() {
+    assertSame("Default parallelism should use the static core.", ParallelCore.getStaticCore(), new ELKIBuilder<>(ParallelCore.class).build());
+    ParallelCore core = new ELKIBuilder<>(ParallelCore.class).with(ParallelCore.Par.PARALLELISM_ID, 2).build();
+    assertNotSame(ParallelCore.getStaticCore(), core);
+    assertEquals(2, core.getParallelism());
+  }
+
+  @Test
+  public void testCurrentCore() {
+    ParallelCore core = new ParallelCore(2);
+    assertSame(ParallelCore.getStaticCore(), ParallelCore.getCore());
+    assertSame(core, core.compute(ParallelCore::getCore));
+    assertSame(ParallelCore.getStaticCore(), ParallelCore.getCore());
+  }
+
+  @Test
+  public void testShutdown() throws InterruptedException {
+    ParallelCore core = new ParallelCore(2);
+    Set<Thread> workers = ConcurrentHashMap.newKeySet();
+    core.run(() -> ParallelExecutor.runTasks(4, 2, t -> workers.add(Thread.currentThread())));
+    core.shutdown();
+    for(Thread t : workers) {
+      t.join(10000);
+      assertFalse("Worker thread still running after shutdown.", t.isAlive());
+    }
+    // The pool is recreated on demand:
+    workers.clear();
+    core.run(() -> ParallelExecutor.runTasks(4, 2, t -> workers.add(Thread.currentThread())));
+    assertEquals(2, core.getParallelism());
+    assertFalse(workers.isEmpty());
+    core.shutdown();
+  }
+
+  @Test
+  public void testInvalidPartitioning() {
+    String prev = System.getProperty("elki.parallel.partitioning");
+    try {
+      System.setProperty("elki.parallel.partitioning", "static_blocks");
+      assertSame(Partitioning.STATIC_BLOCKS, Partitioning.getDefault());
+      System.setProperty("elki.parallel.partitioning", "no-such-strategy");
+      assertSame(Partitioning.ADAPTIVE, Partitioning.getDefault());
+    }
+    finally {
+      if(prev != null) {
+        System.setProperty("elki.parallel.partitioning", prev);
+      }
+      else {
+        System.clearProperty("elki.parallel.partitioning");
+      }
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.parallel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.parallel.processor.Processor;
+
+/**
+ * Test the block and task processing of the parallel executor.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ParallelExecutorTest {
+  @Test
+  public void testBlocksSerial() {
+    ArrayDBIDs ids = DBIDUtil.generateStaticDBIDRange(105);
+    StringBuilder buf = new StringBuilder();
+    new ParallelCore(1).run(() -> ParallelExecutor.runBlocks(ids, 10, (i, start, end) -> buf.append(start).append('-').append(end).append(' ')));
+    assertEquals("Blocks not in order.", "0-10 10-20 20-30 30-40 40-50 50-60 60-70 70-80 80-90 90-100 100-105 ", buf.toString());
+  }
+
+  @Test
+  public void testBlocksParallel() {
+    ArrayDBIDs ids = DBIDUtil.generateStaticDBIDRange(1005);
+    AtomicIntegerArray seen = new AtomicIntegerArray(ids.size());
+    AtomicInteger misaligned = new AtomicInteger();
+    ParallelCore core = new ParallelCore(4);
+    core.run(() -> ParallelExecutor.runBlocks(ids, 10, (i, start, end) -> {
+      if(start % 10 != 0 || end != Math.min(start + 10, i.size())) {
+        misaligned.incrementAndGet();
+      }
+      for(int j = start; j < end; j++) {
+        seen.incrementAndGet(j);
+      }
+    }));
+    core.shutdown();
+    assertEquals("Blocks not aligned to the block size.", 0, misaligned.get());
+    for(int j = 0; j < seen.length(); j++) {
+      assertEquals("Object not processed exactly once: " + j, 1, seen.get(j));
+    }
+  }
+
+  @Test
+  public void testTasks() {
+    final int numtasks = 50, concurrent = 3;
+    AtomicIntegerArray seen = new AtomicIntegerArray(numtasks);
+    AtomicInteger running = new AtomicInteger(), maxrunning = new AtomicInteger();
+    ParallelCore core = new ParallelCore(8);
+    core.run(() -> ParallelExecutor.runTasks(numtasks, concurrent, t -> {
+      maxrunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      assertSame("Task not run on the core of the job.", core, ParallelCore.getCore());
+      seen.incrementAndGet(t);
+      Thread.yield();
+      running.decrementAndGet();
+    }));
+    core.shutdown();
+    assertTrue("Too many concurrent tasks: " + maxrunning.get(), maxrunning.get() <= concurrent);
+    for(int j = 0; j < numtasks; j++) {
+      assertEquals("Task not processed exactly once: " + j, 1, seen.get(j));
+    }
+  }
+
+  @Test
+  public void testTasksSerial() {
+    StringBuilder buf = new StringBuilder();
+    ParallelExecutor.runTasks(new ParallelCore(1), 5, 4, t -> buf.append(t));
+    assertEquals("Tasks not in order.", "01234", buf.toString());
+  }
+
+  @Test
+  public void testNested() {
+    ArrayDBIDs outer = DBIDUtil.generateStaticDBIDRange(200);
+    ArrayDBIDs inner = DBIDUtil.generateStaticDBIDRange(500);
+    AtomicInteger mapped = new AtomicInteger(), nested = new AtomicInteger(), reentered = new AtomicInteger();
+    Processor counter = new Processor() {
+      @Override
+      public Instance instantiate(Executor executor) {
+        return id -> nested.incrementAndGet();
+      }
+
+      @Override
+      public void cleanup(Instance inst) {
+        // Nothing to do.
+      }
+    };
+    Processor proc = new Processor() {
+      @Override
+      public Instance instantiate(Executor executor) {
+        return new Instance() {
+          boolean busy = false;
+
+          @Override
+          public void map(DBIDRef id) {
+            if(busy) {
+              reentered.incrementAndGet();
+            }
+            busy = true;
+            // While waiting, the worker may process blocks of the outer job.
+            ParallelExecutor.run(inner, counter);
+            mapped.incrementAndGet();
+            busy = false;
+          }
+        };
+      }
+
+      @Override
+      public void cleanup(Instance inst) {
+        // Nothing to do.
+      }
+    };
+    ParallelCore core = new ParallelCore(4);
+    core.run(() -> ParallelExecutor.run(outer, proc));
+    core.shutdown();
+    assertEquals("Processor instance used by nested blocks.", 0, reentered.get());
+    assertEquals("Not all objects processed.", outer.size(), mapped.get());
+    assertEquals("Not all nested objects processed.", outer.size() * inner.size(), nested.get());
+  }
+}
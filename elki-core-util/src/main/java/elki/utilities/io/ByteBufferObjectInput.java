@@ -0,0 +1,233 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.utilities.io;
+
+import java.io.EOFException;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+ * Read {@link Externalizable} objects directly from a {@link ByteBuffer},
+ * as written by {@link ByteBufferObjectOutput}.
+ * <p>
+ * Reading beyond the limit of the buffer causes a
+ * {@link java.nio.BufferUnderflowException}, except for the methods that are
+ * specified to throw {@link EOFException} or return -1.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - ByteBuffer
+ */
+public class ByteBufferObjectInput implements ObjectInput {
+  /**
+   * The buffer to read from.
+   */
+  private ByteBuffer buffer;
+
+  /**
+   * Constructor.
+   *
+   * @param buffer Buffer to read from
+   */
+  public ByteBufferObjectInput(ByteBuffer buffer) {
+    super();
+    this.buffer = buffer;
+  }
+
+  /**
+   * Get the buffer read from.
+   *
+   * @return Buffer
+   */
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  @Override
+  public void readFully(byte[] b) throws IOException {
+    readFully(b, 0, b.length);
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    if(len > buffer.remaining()) {
+      throw new EOFException();
+    }
+    buffer.get(b, off, len);
+  }
+
+  @Override
+  public int skipBytes(int n) {
+    final int skip = Math.max(0, Math.min(n, buffer.remaining()));
+    buffer.position(buffer.position() + skip);
+    return skip;
+  }
+
+  @Override
+  public boolean readBoolean() {
+    return buffer.get() != 0;
+  }
+
+  @Override
+  public byte readByte() {
+    return buffer.get();
+  }
+
+  @Override
+  public int readUnsignedByte() {
+    return buffer.get() & 0xFF;
+  }
+
+  @Override
+  public short readShort() {
+    return buffer.getShort();
+  }
+
+  @Override
+  public int readUnsignedShort() {
+    return buffer.getShort() & 0xFFFF;
+  }
+
+  @Override
+  public char readChar() {
+    return buffer.getChar();
+  }
+
+  @Override
+  public int readInt() {
+    return buffer.getInt();
+  }
+
+  @Override
+  public long readLong() {
+    return buffer.getLong();
+  }
+
+  @Override
+  public float readFloat() {
+    return buffer.getFloat();
+  }
+
+  @Override
+  public double readDouble() {
+    return buffer.getDouble();
+  }
+
+  @Override
+  public String readLine() {
+    if(!buffer.hasRemaining()) {
+      return null;
+    }
+    StringBuilder buf = new StringBuilder();
+    while(buffer.hasRemaining()) {
+      final char c = (char) (buffer.get() & 0xFF);
+      if(c == '\n') {
+        break;
+      }
+      if(c == '\r') {
+        if(buffer.hasRemaining() && buffer.get(buffer.position()) == '\n') {
+          buffer.get();
+        }
+        break;
+      }
+      buf.append(c);
+    }
+    return buf.toString();
+  }
+
+  @Override
+  public String readUTF() throws IOException {
+    return ByteArrayUtil.readString(buffer);
+  }
+
+  @Override
+  public Object readObject() throws ClassNotFoundException, IOException {
+    final byte type = buffer.get();
+    switch(type){
+    case ByteBufferObjectOutput.NULL_OBJECT:
+      return null;
+    case ByteBufferObjectOutput.EXTERNALIZABLE_OBJECT: {
+      final String name = ByteArrayUtil.readString(buffer);
+      final Externalizable obj;
+      try {
+        obj = (Externalizable) Class.forName(name).getDeclaredConstructor().newInstance();
+      }
+      catch(ReflectiveOperationException | ClassCastException e) {
+        throw new InvalidClassException(name, e.toString());
+      }
+      obj.readExternal(this);
+      return obj;
+    }
+    case ByteBufferObjectOutput.SERIALIZABLE_OBJECT: {
+      final int len = buffer.getInt();
+      final ByteBuffer sub = buffer.slice();
+      sub.limit(len);
+      buffer.position(buffer.position() + len);
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteBufferInputStream(sub))) {
+        return ois.readObject();
+      }
+    }
+    default:
+      throw new StreamCorruptedException("Unknown object type: " + type);
+    }
+  }
+
+  @Override
+  public int read() {
+    return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+  }
+
+  @Override
+  public int read(byte[] b) {
+    return read(b, 0, b.length);
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if(len == 0) {
+      return 0;
+    }
+    final int maxread = Math.min(len, buffer.remaining());
+    buffer.get(b, off, maxread);
+    return maxread == 0 ? -1 : maxread;
+  }
+
+  @Override
+  public long skip(long n) {
+    return skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+  }
+
+  @Override
+  public int available() {
+    return buffer.remaining();
+  }
+
+  @Override
+  public void close() {
+    // Nothing to do.
+  }
+}
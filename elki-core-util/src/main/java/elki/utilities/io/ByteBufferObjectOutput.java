@@ -0,0 +1,195 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.utilities.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Write {@link Externalizable} objects directly into a {@link ByteBuffer},
+ * without the overhead of an {@link ObjectOutputStream}.
+ * <p>
+ * Primitive values are written in the byte order of the buffer. Strings are
+ * written with {@link ByteArrayUtil#writeString}. Nested externalizable
+ * objects are written as class name and contents; other serializable objects
+ * fall back to Java serialization. Use {@link ByteBufferObjectInput} to read
+ * the data back.
+ * <p>
+ * Writing beyond the limit of the buffer causes a
+ * {@link java.nio.BufferOverflowException}.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - ByteBuffer
+ */
+public class ByteBufferObjectOutput implements ObjectOutput {
+  /**
+   * Marker for {@code null} objects.
+   */
+  static final byte NULL_OBJECT = 0;
+
+  /**
+   * Marker for externalizable objects.
+   */
+  static final byte EXTERNALIZABLE_OBJECT = 1;
+
+  /**
+   * Marker for serializable objects.
+   */
+  static final byte SERIALIZABLE_OBJECT = 2;
+
+  /**
+   * The buffer to write to.
+   */
+  private ByteBuffer buffer;
+
+  /**
+   * Constructor.
+   *
+   * @param buffer Buffer to write to
+   */
+  public ByteBufferObjectOutput(ByteBuffer buffer) {
+    super();
+    this.buffer = buffer;
+  }
+
+  /**
+   * Get the buffer written to.
+   *
+   * @return Buffer
+   */
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  @Override
+  public void write(int b) {
+    buffer.put((byte) b);
+  }
+
+  @Override
+  public void write(byte[] b) {
+    buffer.put(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    buffer.put(b, off, len);
+  }
+
+  @Override
+  public void writeBoolean(boolean v) {
+    buffer.put(v ? (byte) 1 : (byte) 0);
+  }
+
+  @Override
+  public void writeByte(int v) {
+    buffer.put((byte) v);
+  }
+
+  @Override
+  public void writeShort(int v) {
+    buffer.putShort((short) v);
+  }
+
+  @Override
+  public void writeChar(int v) {
+    buffer.putChar((char) v);
+  }
+
+  @Override
+  public void writeInt(int v) {
+    buffer.putInt(v);
+  }
+
+  @Override
+  public void writeLong(long v) {
+    buffer.putLong(v);
+  }
+
+  @Override
+  public void writeFloat(float v) {
+    buffer.putFloat(v);
+  }
+
+  @Override
+  public void writeDouble(double v) {
+    buffer.putDouble(v);
+  }
+
+  @Override
+  public void writeBytes(String s) {
+    for(int i = 0; i < s.length(); i++) {
+      buffer.put((byte) s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeChars(String s) {
+    for(int i = 0; i < s.length(); i++) {
+      buffer.putChar(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeUTF(String s) throws IOException {
+    ByteArrayUtil.writeString(buffer, s);
+  }
+
+  @Override
+  public void writeObject(Object obj) throws IOException {
+    if(obj == null) {
+      buffer.put(NULL_OBJECT);
+    }
+    else if(obj instanceof Externalizable) {
+      buffer.put(EXTERNALIZABLE_OBJECT);
+      ByteArrayUtil.writeString(buffer, obj.getClass().getName());
+      ((Externalizable) obj).writeExternal(this);
+    }
+    else if(obj instanceof Serializable) {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+        oos.writeObject(obj);
+      }
+      buffer.put(SERIALIZABLE_OBJECT).putInt(baos.size()).put(baos.toByteArray());
+    }
+    else {
+      throw new NotSerializableException(obj.getClass().getName());
+    }
+  }
+
+  @Override
+  public void flush() {
+    // Nothing to do.
+  }
+
+  @Override
+  public void close() {
+    // Nothing to do.
+  }
+}
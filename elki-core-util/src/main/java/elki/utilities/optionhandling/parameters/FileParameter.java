@@ -43,7 +43,8 @@ import elki.utilities.optionhandling.parameterization.Parameterization;
 public class FileParameter extends AbstractParameter<FileParameter, Path> {
   /**
    * Available file types: {@link #INPUT_FILE} denotes an input file,
-   * {@link #OUTPUT_FILE} denotes an output file.
+   * {@link #OUTPUT_FILE} denotes an output file, {@link #DIRECTORY} denotes an
+   * existing directory.
    */
   public enum FileType {
     /**
@@ -53,7 +54,11 @@ public class FileParameter extends AbstractParameter<FileParameter, Path> {
     /**
      * Output files
      */
-    OUTPUT_FILE
+    OUTPUT_FILE,
+    /**
+     * Directories (must exist)
+     */
+    DIRECTORY
   }
 
   /**
@@ -111,17 +116,28 @@ public class FileParameter extends AbstractParameter<FileParameter, Path> {
         throw new WrongParameterValueException("Given file \"" + obj + "\" cannot be read, access denied!\n" + e.getMessage());
       }
     }
+    if(fileType.equals(FileType.DIRECTORY)) {
+      try {
+        if(Files.isDirectory(obj)) {
+          return true;
+        }
+        throw new WrongParameterValueException("Given path " + obj + " for parameter \"" + getOptionID().getName() + "\" is not a directory!\n");
+      }
+      catch(SecurityException e) {
+        throw new WrongParameterValueException("Given directory \"" + obj + "\" cannot be read, access denied!\n" + e.getMessage());
+      }
+    }
     return true;
   }
 
   /**
    * Returns a string representation of the parameter's type.
    * 
-   * @return &quot;&lt;file_&gt;&quot;
+   * @return &quot;&lt;file&gt;&quot; or &quot;&lt;directory&gt;&quot;
    */
   @Override
   public String getSyntax() {
-    return "<file>";
+    return fileType.equals(FileType.DIRECTORY) ? "<directory>" : "<file>";
   }
 
   /**
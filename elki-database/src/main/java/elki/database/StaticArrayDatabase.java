@@ -22,19 +22,30 @@ package elki.database;
 
 import java.util.Collection;
 
+import elki.data.DoubleVector;
+import elki.data.FloatVector;
+import elki.data.NumberVector;
 import elki.data.type.SimpleTypeInformation;
+import elki.data.type.VectorFieldTypeInformation;
 import elki.database.datastore.DataStoreFactory;
 import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableDataStore;
 import elki.database.ids.ArrayStaticDBIDs;
 import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRange;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
+import elki.database.relation.ContiguousDoubleVectorRelation;
+import elki.database.relation.ContiguousFloatVectorRelation;
+import elki.database.relation.ContiguousVectorRelation;
+import elki.database.relation.ContiguousVectorRelation.Layout;
 import elki.database.relation.DBIDView;
+import elki.database.relation.MappedVectorRelation;
 import elki.database.relation.MaterializedRelation;
 import elki.database.relation.Relation;
 import elki.datasource.DatabaseConnection;
 import elki.datasource.FileBasedDatabaseConnection;
+import elki.datasource.MappedVectorList;
 import elki.datasource.bundle.MultipleObjectsBundle;
 import elki.index.Index;
 import elki.index.IndexFactory;
@@ -50,6 +61,10 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * This database class uses array-based storage and thus does not allow for
  * dynamic insert, delete and update operations. However, array access is
  * expected to be faster and use less memory.
+ * <p>
+ * Dense double and float vector fields are stored in a single contiguous array
+ * each, see {@link ContiguousVectorRelation}. Memory-mapped vectors are used
+ * without copying, see {@link MappedVectorRelation}.
  *
  * @author Arthur Zimek
  * @author Erich Schubert
@@ -150,11 +165,16 @@ public class StaticArrayDatabase extends AbstractDatabase {
       SimpleTypeInformation<?> meta = bundle.meta(i);
       @SuppressWarnings("unchecked")
       SimpleTypeInformation<Object> ometa = (SimpleTypeInformation<Object>) meta;
-      WritableDataStore<Object> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, ometa.getRestrictionClass());
-      for(it.seek(0); it.valid(); it.advance()) {
-        store.put(it, bundle.data(it.getOffset(), i));
+      Relation<?> relation = bundle.getColumn(i) instanceof MappedVectorList && ids instanceof DBIDRange ? //
+          new MappedVectorRelation<>(null, (MappedVectorList<?>) bundle.getColumn(i), (DBIDRange) ids) : //
+          makeContiguousRelation(ometa, bundle, i);
+      if(relation == null) {
+        WritableDataStore<Object> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, ometa.getRestrictionClass());
+        for(it.seek(0); it.valid(); it.advance()) {
+          store.put(it, bundle.data(it.getOffset(), i));
+        }
+        relation = new MaterializedRelation<>(null, ometa, ids, store);
       }
-      Relation<?> relation = new MaterializedRelation<>(null, ometa, ids, store);
       relations.add(relation);
       Metadata.hierarchyOf(this).addChild(relation);
 
@@ -180,6 +200,43 @@ public class StaticArrayDatabase extends AbstractDatabase {
     eventManager.fireObjectsInserted(ids);
   }
 
+  /**
+   * Store dense double and float vector fields in a single contiguous array,
+   * rather than as one object per vector.
+   *
+   * @param meta Type information
+   * @param bundle Data bundle
+   * @param col Column in the bundle
+   * @return Relation, or {@code null} if not applicable
+   */
+  @SuppressWarnings("unchecked")
+  private ContiguousVectorRelation<?> makeContiguousRelation(SimpleTypeInformation<?> meta, MultipleObjectsBundle bundle, int col) {
+    if(!(ids instanceof DBIDRange) || !(meta instanceof VectorFieldTypeInformation)) {
+      return null;
+    }
+    final VectorFieldTypeInformation<?> vmeta = (VectorFieldTypeInformation<?>) meta;
+    if(vmeta.mindim() != vmeta.maxdim() || (long) vmeta.mindim() * ids.size() > Integer.MAX_VALUE) {
+      return null;
+    }
+    final DBIDRange range = (DBIDRange) ids;
+    final Class<?> cls = meta.getRestrictionClass();
+    ContiguousVectorRelation<?> relation = //
+        cls == DoubleVector.class ? new ContiguousDoubleVectorRelation(null, (VectorFieldTypeInformation<DoubleVector>) meta, range, Layout.ROW_MAJOR) : //
+            cls == FloatVector.class ? new ContiguousFloatVectorRelation(null, (VectorFieldTypeInformation<FloatVector>) meta, range, Layout.ROW_MAJOR) : //
+                null;
+    if(relation == null) {
+      return null;
+    }
+    for(DBIDArrayIter it = range.iter(); it.valid(); it.advance()) {
+      final Object obj = bundle.data(it.getOffset(), col);
+      if(!(obj instanceof NumberVector) || ((NumberVector) obj).getDimensionality() != vmeta.mindim()) {
+        return null; // Fall back to object storage
+      }
+      relation.set(it, (NumberVector) obj);
+    }
+    return relation;
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
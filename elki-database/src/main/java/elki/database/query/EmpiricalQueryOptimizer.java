@@ -33,12 +33,14 @@ import elki.database.query.knn.KNNSearcher;
 import elki.database.query.range.RangeSearcher;
 import elki.database.relation.Relation;
 import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
 import elki.distance.minkowski.LPNormDistance;
 import elki.distance.minkowski.SquaredEuclideanDistance;
 import elki.index.*;
 import elki.logging.Logging;
 import elki.result.Metadata;
 import elki.utilities.Alias;
+import elki.utilities.datastructures.iterator.It;
 
 /**
  * Class to automatically add indexes to a database.
@@ -77,6 +79,11 @@ public class EmpiricalQueryOptimizer implements QueryOptimizer {
    */
   private final Constructor<? extends Index> kdIndex;
 
+  /**
+   * Blocked linear scan index class.
+   */
+  private final Constructor<? extends Index> blockedIndex;
+
   /**
    * Constructor.
    */
@@ -133,6 +140,19 @@ public class EmpiricalQueryOptimizer implements QueryOptimizer {
       LOG.exception(e);
     }
     this.kdIndex = kdIndex;
+    //
+    Constructor<? extends Index> blockedIndex = null;
+    try {
+      Class<?> cls = this.getClass().getClassLoader().loadClass("elki.index.linearscan.BlockedEuclideanScan");
+      blockedIndex = (Constructor<? extends Index>) cls.getConstructor(Relation.class);
+    }
+    catch(ClassNotFoundException e) {
+      LOG.verbose("BlockedEuclideanScan is not available, and cannot be automatically used for optimization.");
+    }
+    catch(NoSuchMethodException | SecurityException e) {
+      LOG.exception(e);
+    }
+    this.blockedIndex = blockedIndex;
   }
 
   @Override
@@ -153,7 +173,10 @@ public class EmpiricalQueryOptimizer implements QueryOptimizer {
   @Override
   @SuppressWarnings("unchecked")
   public <O> KNNSearcher<O> kNNByObject(Relation<? extends O> relation, DistanceQuery<O> distanceQuery, int maxk, int flags) {
-    KNNIndex<O> idx = makeCoverTree(relation, distanceQuery.getDistance());
+    KNNIndex<O> idx = makeBlockedScan(relation, distanceQuery.getDistance());
+    if(idx == null) {
+      idx = makeCoverTree(relation, distanceQuery.getDistance());
+    }
     if(idx == null) { // Try k-d-tree for squared Euclidean mostly
       idx = makeKDTree(relation, distanceQuery.getDistance());
     }
@@ -195,7 +218,13 @@ public class EmpiricalQueryOptimizer implements QueryOptimizer {
   @Override
   @SuppressWarnings("unchecked")
   public <O> KNNSearcher<DBIDRef> kNNByDBID(Relation<? extends O> relation, DistanceQuery<O> distanceQuery, int maxk, int flags) {
-    KNNIndex<O> idx = makeCoverTree(relation, distanceQuery.getDistance());
+    if((flags & QueryBuilder.FLAG_SHARED_KNN) != 0) {
+      return sharedKNN(relation, distanceQuery, maxk, flags);
+    }
+    KNNIndex<O> idx = makeBlockedScan(relation, distanceQuery.getDistance());
+    if(idx == null) {
+      idx = makeCoverTree(relation, distanceQuery.getDistance());
+    }
     if(idx == null) { // Try k-d-tree for squared Euclidean mostly
       idx = makeKDTree(relation, distanceQuery.getDistance());
     }
@@ -237,9 +266,61 @@ public class EmpiricalQueryOptimizer implements QueryOptimizer {
     return null;
   }
 
+  /**
+   * Materialize the kNN of all objects at the maximum k, or reuse an existing
+   * materialization with at least this k. Smaller k are served as prefixes of
+   * the same lists.
+   *
+   * @param relation Relation
+   * @param distanceQuery Distance query
+   * @param maxk Maximum k
+   * @param flags Query flags
+   * @return kNN searcher, or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  private <O> KNNSearcher<DBIDRef> sharedKNN(Relation<? extends O> relation, DistanceQuery<O> distanceQuery, int maxk, int flags) {
+    if(knnIndex == null || maxk == Integer.MAX_VALUE) {
+      return null;
+    }
+    for(It<KNNIndex<O>> it = Metadata.hierarchyOf(relation).iterChildrenReverse().filter(KNNIndex.class); it.valid(); it.advance()) {
+      if(!knnIndex.getDeclaringClass().isInstance(it.get())) {
+        continue; // Only reuse materialized kNN
+      }
+      KNNSearcher<DBIDRef> q = it.get().kNNByDBID(distanceQuery, maxk, flags);
+      if(q != null) {
+        LOG.verbose("Optimizer: reusing the shared kNN of " + it.get().getClass().getSimpleName());
+        return q;
+      }
+    }
+    final int k = Math.min(maxk, relation.size());
+    long freeMemory = getFreeMemory();
+    // 12 bytes per neighbor, plus the overhead of each list
+    final long msize = (k * 12L + 64L) * relation.size();
+    if(msize > 0.8 * freeMemory) {
+      LOG.warning("Sharing the kNN would need about " + formatMemory(msize) + " memory, only " + formatMemory(freeMemory) + " are available.");
+      return null;
+    }
+    try {
+      KNNIndex<O> idx = (KNNIndex<O>) knnIndex.newInstance(relation, distanceQuery, k, false);
+      LOG.verbose("Optimizer: materializing the shared kNN for k=" + k + ".");
+      idx.initialize();
+      // Strong reference, to keep it for later queries:
+      Metadata.hierarchyOf(relation).addChild(idx);
+      return idx.kNNByDBID(distanceQuery, k, flags);
+    }
+    catch(InstantiationException | IllegalAccessException
+        | IllegalArgumentException | InvocationTargetException e) {
+      LOG.exception("Shared knn preprocessor creation failed.", e);
+    }
+    return null;
+  }
+
   @Override
   public <O> RangeSearcher<O> rangeByObject(Relation<? extends O> relation, DistanceQuery<O> distanceQuery, double maxrange, int flags) {
-    RangeIndex<O> idx = makeCoverTree(relation, distanceQuery.getDistance());
+    RangeIndex<O> idx = makeBlockedScan(relation, distanceQuery.getDistance());
+    if(idx == null) {
+      idx = makeCoverTree(relation, distanceQuery.getDistance());
+    }
     if(idx == null) { // Try k-d-tree for squared Euclidean mostly
       idx = makeKDTree(relation, distanceQuery.getDistance());
     }
@@ -254,7 +335,10 @@ public class EmpiricalQueryOptimizer implements QueryOptimizer {
 
   @Override
   public <O> RangeSearcher<DBIDRef> rangeByDBID(Relation<? extends O> relation, DistanceQuery<O> distanceQuery, double maxrange, int flags) {
-    RangeIndex<O> idx = makeCoverTree(relation, distanceQuery.getDistance());
+    RangeIndex<O> idx = makeBlockedScan(relation, distanceQuery.getDistance());
+    if(idx == null) {
+      idx = makeCoverTree(relation, distanceQuery.getDistance());
+    }
     if(idx == null) { // Try k-d-tree for squared Euclidean mostly
       idx = makeKDTree(relation, distanceQuery.getDistance());
     }
@@ -304,11 +388,12 @@ public class EmpiricalQueryOptimizer implements QueryOptimizer {
   }
 
   private <O> DistancePriorityIndex<O> makeMatrixIndex(Relation<? extends O> relation, Distance<? super O> distance) {
-    if(matrixIndex == null || relation.size() > 65536) {
+    if(matrixIndex == null) {
       return null;
     }
     long freeMemory = getFreeMemory();
-    final long msize = relation.size() * 4L * relation.size();
+    // Upper triangle of n * (n-1) / 2 doubles, in segmented storage.
+    final long msize = relation.size() * 4L * (relation.size() - 1);
     if(msize > 0.8 * freeMemory) {
       LOG.warning("An automatic distance matrix would need about " + formatMemory(msize) + " memory, only " + formatMemory(freeMemory) + " are available.");
       return null;
@@ -373,6 +458,48 @@ public class EmpiricalQueryOptimizer implements QueryOptimizer {
     return null;
   }
 
+  /**
+   * Make a blocked linear scan for Euclidean distance on high-dimensional
+   * data, where the k-d-tree is not used, and tree indexes are usually not
+   * effective anymore.
+   *
+   * @param <O> Object type
+   * @param <I> Index type
+   * @param relation Data relation
+   * @param distance Distance function
+   * @return Index, or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  private <O, I extends KNNIndex<O> & RangeIndex<O>> I makeBlockedScan(Relation<? extends O> relation, Distance<? super O> distance) {
+    TypeInformation type = relation.getDataTypeInformation();
+    if(blockedIndex == null // not available
+        || !TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(type) //
+        || !(EuclideanDistance.STATIC.equals(distance) || SquaredEuclideanDistance.STATIC.equals(distance))) {
+      return null;
+    }
+    final int dim = ((FieldTypeInformation) type).getDimensionality();
+    if(dim <= 20 || (long) dim * relation.size() > Integer.MAX_VALUE) {
+      return null;
+    }
+    long freeMemory = getFreeMemory();
+    final long msize = (dim + 2L) * 8L * relation.size();
+    if(msize > 0.8 * freeMemory) {
+      LOG.warning("A blocked linear scan would need about " + formatMemory(msize) + " memory, only " + formatMemory(freeMemory) + " are available.");
+      return null;
+    }
+    try {
+      I idx = (I) blockedIndex.newInstance(relation);
+      LOG.verbose("Optimizer: automatically adding a blocked linear scan.");
+      idx.initialize();
+      return idx;
+    }
+    catch(InstantiationException | IllegalAccessException
+        | IllegalArgumentException | InvocationTargetException e) {
+      LOG.exception("Automatic blocked linear scan creation failed.", e);
+    }
+    return null;
+  }
+
   /**
    * Get the currently free amount of memory.
    *
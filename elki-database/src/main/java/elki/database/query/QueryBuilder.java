@@ -99,6 +99,12 @@ public class QueryBuilder<O> {
    */
   public static final int FLAG_PRECOMPUTE = 0b10_0000;
 
+  /**
+   * Flag to materialize the kNN once at the maximum k, and share them with all
+   * later kNN queries on the same relation and distance.
+   */
+  public static final int FLAG_SHARED_KNN = 0b100_0000;
+
   /**
    * Flags that do not allow the optimizer to run.
    */
@@ -107,7 +113,7 @@ public class QueryBuilder<O> {
   /**
    * Flags that are not inherited to nested distanceQuery calls.
    */
-  public static final int FLAGS_NO_INHERIT = FLAG_PRECOMPUTE;
+  public static final int FLAGS_NO_INHERIT = FLAG_PRECOMPUTE | FLAG_SHARED_KNN;
 
   /**
    * Global query optimizer, populated at startup.
@@ -257,6 +263,24 @@ public class QueryBuilder<O> {
     return this;
   }
 
+  /**
+   * Materialize the k nearest neighbors of all objects once, at the maximum k
+   * requested, and attach them to the relation, such that subsequent kNN
+   * queries with the same distance (and any k up to this maximum) are answered
+   * from the same lists. Because the materialization is kept with the
+   * relation, this is meant for applications that run many kNN-based methods
+   * on the same data, not for individual algorithms.
+   * <p>
+   * This only applies to queries by DBID, and falls back to the usual query
+   * when the lists would not fit into the available memory.
+   * 
+   * @return query builder, for chaining
+   */
+  public QueryBuilder<O> sharedKNN() {
+    this.flags |= FLAG_SHARED_KNN;
+    return this;
+  }
+
   /**
    * Build a distance query.
    *
@@ -396,6 +420,14 @@ public class QueryBuilder<O> {
     flags ^= precompute; // Mask
     DistanceQuery<O> distanceQuery = distanceQuery();
     flags ^= precompute; // Restore
+    // Shared materialization requested, reuses an existing one if possible:
+    if((flags & FLAG_SHARED_KNN) != 0 && (flags & FLAGS_NO_OPTIMIZER) == 0) {
+      KNNSearcher<DBIDRef> q = OPTIMIZER.kNNByDBID(relation, distanceQuery, maxk, flags);
+      if(q != null) {
+        return q;
+      }
+      flags &= ~FLAG_SHARED_KNN; // Not possible, use the regular query.
+    }
     for(It<KNNIndex<O>> it = Metadata.hierarchyOf(relation).iterChildrenReverse().filter(KNNIndex.class); it.valid(); it.advance()) {
       KNNSearcher<DBIDRef> q = it.get().kNNByDBID(distanceQuery, maxk, flags);
       logUsing(it.get(), "kNN", q != null);
@@ -419,9 +451,9 @@ public class QueryBuilder<O> {
       final PrimitiveDistanceQuery<O> pdq = (PrimitiveDistanceQuery<O>) distanceQuery;
       if(EuclideanDistance.STATIC.equals(pdq.getDistance())) {
         final PrimitiveDistanceQuery<NumberVector> ndq = (PrimitiveDistanceQuery<NumberVector>) pdq;
-        return WrappedKNNDBIDByLookup.wrap(ndq.getRelation(), new LinearScanEuclideanKNNByObject<>(ndq));
+        return new LinearScanEuclideanKNNByDBID<>(ndq);
       }
-      return WrappedKNNDBIDByLookup.wrap(pdq.getRelation(), new LinearScanPrimitiveKNNByObject<>(pdq));
+      return new LinearScanPrimitiveKNNByDBID<>(pdq);
     }
     return new LinearScanKNNByDBID<>(distanceQuery);
   }
@@ -0,0 +1,124 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.knn;
+
+import java.util.function.Supplier;
+
+import elki.database.datastore.DataStore;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
+import elki.database.ids.*;
+import elki.parallel.ParallelExecutor;
+
+/**
+ * kNN searcher that can process a batch of queries at once.
+ * <p>
+ * The default implementation processes the queries in parallel, using the
+ * current {@link elki.parallel.ParallelCore}. This is only valid for searchers
+ * that are thread-safe; searchers with internal state (e.g., reused heaps) must
+ * override {@link #getKNNs} and use {@link #parallel} with a factory for
+ * separate instances.
+ * <p>
+ * Searchers usually share a single
+ * {@link elki.database.query.distance.DistanceQuery} across all blocks, so
+ * batch processing also requires the distance query to be thread-safe. This
+ * holds for the queries of stateless distance functions and for precomputed
+ * distance matrices, but not for distance caches without synchronization;
+ * searchers using such a query must not implement this interface, or must
+ * process batches serially.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public interface BatchKNNSearcher extends KNNSearcher<DBIDRef> {
+  /**
+   * Get the k nearest neighbors for a batch of query objects.
+   * <p>
+   * The queries may be processed concurrently, see the class documentation
+   * for the thread-safety requirements.
+   *
+   * @param queries Query objects
+   * @param k Number of neighbors requested
+   * @return kNN lists for each query
+   */
+  default DataStore<KNNList> getKNNs(DBIDs queries, int k) {
+    return parallel(() -> this, queries, k);
+  }
+
+  /**
+   * Process a batch of queries in parallel, using one searcher per block.
+   *
+   * @param searchers Factory for searchers
+   * @param queries Query objects
+   * @param k Number of neighbors requested
+   * @return kNN lists for each query
+   */
+  static DataStore<KNNList> parallel(Supplier<? extends KNNSearcher<DBIDRef>> searchers, DBIDs queries, int k) {
+    final ArrayDBIDs aids = DBIDUtil.ensureArray(queries);
+    final KNNList[] knns = new KNNList[aids.size()];
+    ParallelExecutor.runBlocks(aids, 256, (ids, start, end) -> {
+      final KNNSearcher<DBIDRef> knnq = searchers.get();
+      for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+        knns[it.getOffset()] = knnq.getKNN(it, k);
+      }
+    });
+    return toStore(aids, knns);
+  }
+
+  /**
+   * Get the k nearest neighbors for a batch of query objects, using the batch
+   * interface if supported, and serial processing otherwise.
+   *
+   * @param knnq kNN searcher
+   * @param queries Query objects
+   * @param k Number of neighbors requested
+   * @return kNN lists for each query
+   */
+  static DataStore<KNNList> getKNNs(KNNSearcher<DBIDRef> knnq, DBIDs queries, int k) {
+    if(knnq instanceof BatchKNNSearcher) {
+      return ((BatchKNNSearcher) knnq).getKNNs(queries, k);
+    }
+    WritableDataStore<KNNList> store = DataStoreUtil.makeStorage(queries, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, KNNList.class);
+    for(DBIDIter it = queries.iter(); it.valid(); it.advance()) {
+      store.put(it, knnq.getKNN(it, k));
+    }
+    return store;
+  }
+
+  /**
+   * Store the results of a batch, indexed by the offsets of the query array.
+   * <p>
+   * The results are collected in an array first, as not all data stores
+   * support concurrent writes.
+   *
+   * @param ids Query objects
+   * @param knns kNN lists, in the same order
+   * @return Data store
+   */
+  static DataStore<KNNList> toStore(ArrayDBIDs ids, KNNList[] knns) {
+    WritableDataStore<KNNList> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, KNNList.class);
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      store.put(it, knns[it.getOffset()]);
+    }
+    return store;
+  }
+}
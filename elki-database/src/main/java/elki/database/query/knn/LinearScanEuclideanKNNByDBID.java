@@ -0,0 +1,67 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.knn;
+
+import elki.data.NumberVector;
+import elki.database.ids.KNNHeap;
+import elki.database.ids.KNNList;
+import elki.database.query.distance.PrimitiveDistanceQuery;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+
+/**
+ * Instance of this query for a particular database.
+ * <p>
+ * This is a subtle optimization: for primitive queries, it is clearly faster to
+ * retrieve the query object from the relation only once, and to first find the
+ * nearest neighbors with squared Euclidean distances, then only compute the
+ * square root for the results.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @assoc - - - PrimitiveDistanceQuery
+ * @assoc - - - EuclideanDistance
+ * @assoc - - - SquaredEuclideanDistance
+ *
+ * @param <O> relation object type
+ */
+public class LinearScanEuclideanKNNByDBID<O extends NumberVector> extends LinearScanPrimitiveKNNByDBID<O> {
+  /**
+   * Constructor.
+   *
+   * @param distanceQuery Distance function to use
+   */
+  public LinearScanEuclideanKNNByDBID(PrimitiveDistanceQuery<O> distanceQuery) {
+    super(distanceQuery);
+    assert (EuclideanDistance.STATIC.equals(distanceQuery.getDistance()));
+  }
+
+  @Override
+  protected double rankingDistance(O a, O b) {
+    return SquaredEuclideanDistance.STATIC.distance(a, b);
+  }
+
+  @Override
+  protected KNNList toKNNList(KNNHeap heap) {
+    return heap.toKNNListSqrt();
+  }
+}
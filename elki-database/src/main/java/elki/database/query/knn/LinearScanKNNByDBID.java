@@ -20,12 +20,18 @@
  */
 package elki.database.query.knn;
 
+import elki.database.datastore.DataStore;
 import elki.database.ids.*;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.distance.DistanceQuery;
+import elki.parallel.ParallelExecutor;
 
 /**
  * Instance of this query for a particular database.
+ * <p>
+ * Batches of queries are processed in parallel, and cache-blocked: each block
+ * of queries is compared to a block of data objects at a time. All blocks use
+ * the same distance query, which hence must be thread-safe for batches.
  *
  * @author Erich Schubert
  * @since 0.4.0
@@ -34,7 +40,17 @@ import elki.database.query.distance.DistanceQuery;
  * 
  * @param <O> relation object type
  */
-public class LinearScanKNNByDBID<O> implements KNNSearcher<DBIDRef>, LinearScanQuery {
+public class LinearScanKNNByDBID<O> implements BatchKNNSearcher, LinearScanQuery {
+  /**
+   * Number of queries processed at once.
+   */
+  private static final int QUERY_BLOCKSIZE = 64;
+
+  /**
+   * Number of data objects processed at once.
+   */
+  private static final int DATA_BLOCKSIZE = 1024;
+
   /**
    * Hold the distance function to be used.
    */
@@ -43,7 +59,8 @@ public class LinearScanKNNByDBID<O> implements KNNSearcher<DBIDRef>, LinearScanQ
   /**
    * Constructor.
    *
-   * @param distanceQuery Distance function to use
+   * @param distanceQuery Distance function to use, must be thread-safe when
+   *        used with {@link #getKNNs}
    */
   public LinearScanKNNByDBID(DistanceQuery<O> distanceQuery) {
     super();
@@ -61,4 +78,39 @@ public class LinearScanKNNByDBID<O> implements KNNSearcher<DBIDRef>, LinearScanQ
     }
     return heap.toKNNList();
   }
+
+  @Override
+  public DataStore<KNNList> getKNNs(DBIDs queries, int k) {
+    final DistanceQuery<O> dq = distanceQuery;
+    final ArrayDBIDs data = DBIDUtil.ensureArray(dq.getRelation().getDBIDs());
+    final ArrayDBIDs aids = DBIDUtil.ensureArray(queries);
+    final KNNList[] knns = new KNNList[aids.size()];
+    ParallelExecutor.runBlocks(aids, QUERY_BLOCKSIZE, (ids, start, end) -> {
+      final int n = end - start, size = data.size();
+      final KNNHeap[] heaps = new KNNHeap[n];
+      final double[] max = new double[n];
+      for(int i = 0; i < n; i++) {
+        heaps[i] = DBIDUtil.newHeap(k);
+        max[i] = Double.POSITIVE_INFINITY;
+      }
+      DBIDArrayIter qi = ids.iter(), di = data.iter();
+      for(int dstart = 0; dstart < size; dstart += DATA_BLOCKSIZE) {
+        final int dend = Math.min(dstart + DATA_BLOCKSIZE, size);
+        qi.seek(start);
+        for(int i = 0; i < n; i++, qi.advance()) {
+          final KNNHeap heap = heaps[i];
+          double m = max[i];
+          for(di.seek(dstart); di.getOffset() < dend; di.advance()) {
+            final double dist = dq.distance(qi, di);
+            m = dist <= m ? heap.insert(dist, di) : m;
+          }
+          max[i] = m;
+        }
+      }
+      for(int i = 0; i < n; i++) {
+        knns[start + i] = heaps[i].toKNNList();
+      }
+    });
+    return BatchKNNSearcher.toStore(aids, knns);
+  }
 }
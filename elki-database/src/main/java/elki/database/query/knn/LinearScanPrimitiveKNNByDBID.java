@@ -0,0 +1,158 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.knn;
+
+import elki.database.datastore.DataStore;
+import elki.database.ids.*;
+import elki.database.query.LinearScanQuery;
+import elki.database.query.distance.PrimitiveDistanceQuery;
+import elki.database.relation.Relation;
+import elki.distance.PrimitiveDistance;
+import elki.parallel.ParallelExecutor;
+
+/**
+ * Instance of this query for a particular database.
+ * <p>
+ * This is a subtle optimization: for primitive queries, it is clearly faster to
+ * retrieve the query object from the relation only once!
+ * <p>
+ * Batches of queries are processed in parallel, and cache-blocked: each block
+ * of query objects is compared to a block of data objects at a time, such that
+ * each object is retrieved from the relation only once per block.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @assoc - - - PrimitiveDistanceQuery
+ * @assoc - - - PrimitiveDistance
+ *
+ * @param <O> relation object type
+ */
+public class LinearScanPrimitiveKNNByDBID<O> implements BatchKNNSearcher, LinearScanQuery {
+  /**
+   * Number of queries processed at once.
+   */
+  private static final int QUERY_BLOCKSIZE = 64;
+
+  /**
+   * Number of data objects processed at once.
+   */
+  private static final int DATA_BLOCKSIZE = 1024;
+
+  /**
+   * Unboxed distance function.
+   */
+  protected PrimitiveDistance<? super O> rawdist;
+
+  /**
+   * Relation to query.
+   */
+  protected Relation<? extends O> relation;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceQuery Distance function to use
+   */
+  public LinearScanPrimitiveKNNByDBID(PrimitiveDistanceQuery<O> distanceQuery) {
+    super();
+    rawdist = distanceQuery.getDistance();
+    relation = distanceQuery.getRelation();
+  }
+
+  @Override
+  public KNNList getKNN(DBIDRef id, int k) {
+    final Relation<? extends O> relation = this.relation;
+    final O obj = relation.get(id);
+    KNNHeap heap = DBIDUtil.newHeap(k);
+    double max = Double.POSITIVE_INFINITY;
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+      final double dist = rankingDistance(obj, relation.get(iter));
+      max = dist <= max ? heap.insert(dist, iter) : max;
+    }
+    return toKNNList(heap);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public DataStore<KNNList> getKNNs(DBIDs queries, int k) {
+    final Relation<? extends O> relation = this.relation;
+    final ArrayDBIDs data = DBIDUtil.ensureArray(relation.getDBIDs());
+    final ArrayDBIDs aids = DBIDUtil.ensureArray(queries);
+    final KNNList[] knns = new KNNList[aids.size()];
+    ParallelExecutor.runBlocks(aids, QUERY_BLOCKSIZE, (ids, start, end) -> {
+      final int n = end - start, size = data.size();
+      final O[] qobjs = (O[]) new Object[n];
+      final KNNHeap[] heaps = new KNNHeap[n];
+      final double[] max = new double[n];
+      DBIDArrayIter qi = ids.iter().seek(start), di = data.iter();
+      for(int i = 0; i < n; i++, qi.advance()) {
+        qobjs[i] = relation.get(qi);
+        heaps[i] = DBIDUtil.newHeap(k);
+        max[i] = Double.POSITIVE_INFINITY;
+      }
+      final O[] dobjs = (O[]) new Object[Math.min(DATA_BLOCKSIZE, size)];
+      for(int dstart = 0; dstart < size; dstart += DATA_BLOCKSIZE) {
+        final int m = Math.min(DATA_BLOCKSIZE, size - dstart);
+        di.seek(dstart);
+        for(int j = 0; j < m; j++, di.advance()) {
+          dobjs[j] = relation.get(di);
+        }
+        for(int i = 0; i < n; i++) {
+          final O obj = qobjs[i];
+          final KNNHeap heap = heaps[i];
+          double mx = max[i];
+          di.seek(dstart);
+          for(int j = 0; j < m; j++, di.advance()) {
+            final double dist = rankingDistance(obj, dobjs[j]);
+            mx = dist <= mx ? heap.insert(dist, di) : mx;
+          }
+          max[i] = mx;
+        }
+      }
+      for(int i = 0; i < n; i++) {
+        knns[start + i] = toKNNList(heaps[i]);
+      }
+    });
+    return BatchKNNSearcher.toStore(aids, knns);
+  }
+
+  /**
+   * Distance used for ranking the neighbors.
+   *
+   * @param a First object
+   * @param b Second object
+   * @return Distance
+   */
+  protected double rankingDistance(O a, O b) {
+    return rawdist.distance(a, b);
+  }
+
+  /**
+   * Produce the final kNN list from the heap.
+   *
+   * @param heap Heap
+   * @return kNN list
+   */
+  protected KNNList toKNNList(KNNHeap heap) {
+    return heap.toKNNList();
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.relation;
+
+import elki.data.FloatVector;
+import elki.data.NumberVector;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDRef;
+
+/**
+ * Static relation of dense float vectors, stored in a single contiguous
+ * {@code float[]} array.
+ * <p>
+ * The vectors returned are flyweight {@link FloatVector} views onto the shared
+ * array. This needs only half the memory of double precision storage.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - View
+ */
+public class ContiguousFloatVectorRelation extends ContiguousVectorRelation<FloatVector> {
+  /**
+   * Data storage.
+   */
+  private final float[] data;
+
+  /**
+   * Constructor.
+   *
+   * @param name Relation name
+   * @param type Type information
+   * @param ids DBIDs
+   * @param layout Memory layout
+   */
+  public ContiguousFloatVectorRelation(String name, VectorFieldTypeInformation<FloatVector> type, DBIDRange ids, Layout layout) {
+    super(name, type, ids, layout);
+    this.data = new float[dim * ids.size()];
+  }
+
+  @Override
+  public void set(DBIDRef id, NumberVector vec) {
+    assert vec.getDimensionality() == dim : "Dimensionality mismatch.";
+    final int off = ids.getOffset(id);
+    for(int d = 0; d < dim; d++) {
+      data[index(off, d)] = vec.floatValue(d);
+    }
+  }
+
+  @Override
+  public FloatVector get(DBIDRef id) {
+    return new View(data, base(id), stride(), dim);
+  }
+
+  /**
+   * Get a single value.
+   *
+   * @param id Object id
+   * @param d Dimension
+   * @return Value
+   */
+  public float floatValue(DBIDRef id, int d) {
+    return data[index(ids.getOffset(id), d)];
+  }
+
+  /**
+   * Get the raw data array, in the layout of this relation.
+   * <p>
+   * Do not modify the array!
+   *
+   * @return Data array
+   */
+  public float[] getRawData() {
+    return data;
+  }
+
+  /**
+   * Flyweight vector view onto the shared array.
+   *
+   * @author Erich Schubert
+   */
+  public static class View extends FloatVector {
+    /**
+     * Shared data array.
+     */
+    private final float[] data;
+
+    /**
+     * Position of the first value, distance of consecutive values, and
+     * dimensionality.
+     */
+    private final int base, stride, dim;
+
+    /**
+     * Constructor.
+     *
+     * @param data Data array
+     * @param base Position of the first value
+     * @param stride Distance of consecutive values
+     * @param dim Dimensionality
+     */
+    protected View(float[] data, int base, int stride, int dim) {
+      super(null, true);
+      this.data = data;
+      this.base = base;
+      this.stride = stride;
+      this.dim = dim;
+    }
+
+    @Override
+    public int getDimensionality() {
+      return dim;
+    }
+
+    @Deprecated
+    @Override
+    public Float getValue(int dimension) {
+      return floatValue(dimension);
+    }
+
+    @Override
+    public double doubleValue(int dimension) {
+      return floatValue(dimension);
+    }
+
+    @Override
+    public float floatValue(int dimension) {
+      assert dimension < dim : "Dimension out of range.";
+      return data[base + dimension * stride];
+    }
+
+    @Override
+    public long longValue(int dimension) {
+      return (long) floatValue(dimension);
+    }
+
+    @Override
+    public double[] toArray() {
+      final double[] values = new double[dim];
+      for(int d = 0, i = base; d < dim; d++, i += stride) {
+        values[d] = data[i];
+      }
+      return values;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder featureLine = new StringBuilder();
+      for(int d = 0; d < dim; d++) {
+        featureLine.append(floatValue(d));
+        if(d + 1 < dim) {
+          featureLine.append(ATTRIBUTE_SEPARATOR);
+        }
+      }
+      return featureLine.toString();
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.relation;
+
+import elki.data.NumberVector;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDRef;
+
+/**
+ * Static relation for dense vectors of fixed dimensionality, stored in a single
+ * contiguous primitive array rather than one object per vector.
+ * <p>
+ * This avoids the object header and array header of each vector, and keeps the
+ * data in one block of memory, which makes scans cache and prefetch friendly.
+ * The vectors returned by {@link #get} are lightweight views, created on
+ * demand; they are thus not identical across calls.
+ * <p>
+ * The data can be stored in row-major layout (the values of one vector are
+ * adjacent, best for distance computations) or column-major layout (the values
+ * of one attribute are adjacent, best for attribute-wise processing).
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <V> Vector type
+ */
+public abstract class ContiguousVectorRelation<V extends NumberVector> implements Relation<V> {
+  /**
+   * Memory layout of the data.
+   *
+   * @author Erich Schubert
+   */
+  public enum Layout {
+    /** Values of each vector are adjacent. */
+    ROW_MAJOR,
+    /** Values of each attribute are adjacent. */
+    COLUMN_MAJOR
+  }
+
+  /**
+   * Type information.
+   */
+  protected final VectorFieldTypeInformation<V> type;
+
+  /**
+   * The DBIDs of the relation.
+   */
+  protected final DBIDRange ids;
+
+  /**
+   * Dimensionality.
+   */
+  protected final int dim;
+
+  /**
+   * Memory layout.
+   */
+  protected final Layout layout;
+
+  /**
+   * The relation name.
+   */
+  private String name;
+
+  /**
+   * Constructor.
+   *
+   * @param name Relation name
+   * @param type Type information
+   * @param ids DBIDs
+   * @param layout Memory layout
+   */
+  protected ContiguousVectorRelation(String name, VectorFieldTypeInformation<V> type, DBIDRange ids, Layout layout) {
+    super();
+    this.name = name;
+    this.type = type;
+    this.ids = ids;
+    this.dim = type.getDimensionality();
+    this.layout = layout;
+    if((long) dim * ids.size() > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too much data for a single array: " + ids.size() + " x " + dim);
+    }
+  }
+
+  /**
+   * Set the values of a vector.
+   *
+   * @param id Object id
+   * @param vec Values
+   */
+  public abstract void set(DBIDRef id, NumberVector vec);
+
+  /**
+   * Position of the first value of a vector in the array.
+   *
+   * @param id Object id
+   * @return Array position
+   */
+  protected int base(DBIDRef id) {
+    final int off = ids.getOffset(id);
+    return layout == Layout.ROW_MAJOR ? off * dim : off;
+  }
+
+  /**
+   * Distance of consecutive values of a vector in the array.
+   *
+   * @return Stride
+   */
+  protected int stride() {
+    return layout == Layout.ROW_MAJOR ? 1 : ids.size();
+  }
+
+  /**
+   * Position of a value in the array.
+   *
+   * @param offset Object offset
+   * @param d Dimension
+   * @return Array position
+   */
+  protected int index(int offset, int d) {
+    return layout == Layout.ROW_MAJOR ? offset * dim + d : d * ids.size() + offset;
+  }
+
+  /**
+   * Get the memory layout.
+   *
+   * @return Layout
+   */
+  public Layout getLayout() {
+    return layout;
+  }
+
+  /**
+   * Get the dimensionality.
+   *
+   * @return Dimensionality
+   */
+  public int getDimensionality() {
+    return dim;
+  }
+
+  @Override
+  public VectorFieldTypeInformation<V> getDataTypeInformation() {
+    return type;
+  }
+
+  @Override
+  public DBIDRange getDBIDs() {
+    return ids;
+  }
+
+  @Override
+  public DBIDIter iterDBIDs() {
+    return ids.iter();
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  @Override
+  public String getLongName() {
+    return name != null ? name : type.toString();
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.relation;
+
+import elki.data.NumberVector;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDRef;
+import elki.datasource.MappedVectorList;
+
+/**
+ * Static relation for dense vectors stored in a memory-mapped file, see
+ * {@link elki.datasource.MappedVectorDatabaseConnection}.
+ * <p>
+ * The vectors are read from the file on demand, without copying the data into
+ * the Java heap. The vectors returned by {@link #get} are lightweight views,
+ * and thus not identical across calls.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @composed - - - MappedVectorList
+ *
+ * @param <V> Vector type
+ */
+public class MappedVectorRelation<V extends NumberVector> implements Relation<V> {
+  /**
+   * Vector data.
+   */
+  private final MappedVectorList<V> data;
+
+  /**
+   * Type information.
+   */
+  private final VectorFieldTypeInformation<V> type;
+
+  /**
+   * The DBIDs of the relation.
+   */
+  private final DBIDRange ids;
+
+  /**
+   * The relation name.
+   */
+  private String name;
+
+  /**
+   * Constructor.
+   *
+   * @param name Relation name
+   * @param data Vector data
+   * @param ids DBIDs
+   */
+  public MappedVectorRelation(String name, MappedVectorList<V> data, DBIDRange ids) {
+    super();
+    if(data.size() != ids.size()) {
+      throw new IllegalArgumentException("Number of vectors does not match the number of DBIDs.");
+    }
+    this.name = name;
+    this.data = data;
+    this.type = data.getType();
+    this.ids = ids;
+  }
+
+  @Override
+  public V get(DBIDRef id) {
+    return data.get(ids.getOffset(id));
+  }
+
+  /**
+   * Get the underlying vector data.
+   *
+   * @return Vector data
+   */
+  public MappedVectorList<V> getData() {
+    return data;
+  }
+
+  @Override
+  public VectorFieldTypeInformation<V> getDataTypeInformation() {
+    return type;
+  }
+
+  @Override
+  public DBIDRange getDBIDs() {
+    return ids;
+  }
+
+  @Override
+  public DBIDIter iterDBIDs() {
+    return ids.iter();
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  @Override
+  public String getLongName() {
+    return name != null ? name : type.toString();
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.FloatVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDUtil;
+import elki.database.relation.ContiguousVectorRelation.Layout;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+
+/**
+ * Unit test for the contiguous vector relations.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class ContiguousVectorRelationTest {
+  @Test
+  public void testStaticArrayDatabase() {
+    double[][] data = randomData(100, 5);
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data));
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    assertTrue("Not using contiguous storage.", rel instanceof ContiguousDoubleVectorRelation);
+    assertEquals("Dimensionality", 5, RelationUtil.dimensionality(rel));
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      DoubleVector v = rel.get(it);
+      assertEquals("Dimensionality", 5, v.getDimensionality());
+      for(int d = 0; d < 5; d++) {
+        assertEquals("Value differs", data[i][d], v.doubleValue(d), 0.);
+      }
+    }
+  }
+
+  @Test
+  public void testLayouts() {
+    double[][] data = randomData(50, 7);
+    DBIDRange ids = DBIDUtil.generateStaticDBIDRange(data.length);
+    for(Layout layout : Layout.values()) {
+      ContiguousDoubleVectorRelation drel = new ContiguousDoubleVectorRelation(null, new VectorFieldTypeInformation<>(DoubleVector.FACTORY, 7), ids, layout);
+      ContiguousFloatVectorRelation frel = new ContiguousFloatVectorRelation(null, new VectorFieldTypeInformation<>(FloatVector.FACTORY, 7), ids, layout);
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+        drel.set(it, DoubleVector.wrap(data[ids.getOffset(it)]));
+        frel.set(it, DoubleVector.wrap(data[ids.getOffset(it)]));
+      }
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+        final double[] expect = data[ids.getOffset(it)];
+        NumberVector dv = drel.get(it), fv = frel.get(it);
+        for(int d = 0; d < 7; d++) {
+          assertEquals("Value differs", expect[d], dv.doubleValue(d), 0.);
+          assertEquals("Value differs", expect[d], drel.doubleValue(it, d), 0.);
+          assertEquals("Value differs", (float) expect[d], fv.doubleValue(d), 0.);
+        }
+        assertEquals("toArray differs", expect[3], dv.toArray()[3], 0.);
+      }
+    }
+  }
+
+  private static double[][] randomData(int size, int dim) {
+    Random rnd = new Random(0L);
+    double[][] data = new double[size][dim];
+    for(int i = 0; i < size; i++) {
+      for(int d = 0; d < dim; d++) {
+        data[i][d] = rnd.nextDouble();
+      }
+    }
+    return data;
+  }
+}
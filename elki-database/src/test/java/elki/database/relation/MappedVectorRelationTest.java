@@ -0,0 +1,81 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.relation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDIter;
+import elki.datasource.MappedVectorDatabaseConnection;
+import elki.datasource.parser.NumberVectorLabelParser;
+
+/**
+ * Unit test for memory-mapped vector relations.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class MappedVectorRelationTest {
+  @Test
+  public void testImport() throws IOException {
+    Path in = Files.createTempFile("ELKIUnitTest", ".csv");
+    in.toFile().deleteOnExit();
+    Path file = Files.createTempFile("ELKIUnitTest", null);
+    file.toFile().deleteOnExit();
+    Random rnd = new Random(0L);
+    double[][] data = new double[100][3];
+    StringBuilder buf = new StringBuilder();
+    for(double[] row : data) {
+      for(int d = 0; d < row.length; d++) {
+        row[d] = rnd.nextInt(1000) * .25;
+        buf.append(d > 0 ? "," : "").append(row[d]);
+      }
+      buf.append(",label\n");
+    }
+    Files.write(in, buf.toString().getBytes());
+
+    Database db = new StaticArrayDatabase(new MappedVectorDatabaseConnection(file, in, new NumberVectorLabelParser<>(DoubleVector.FACTORY), false, null));
+    db.initialize();
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    assertTrue("Not memory-mapped.", rel instanceof MappedVectorRelation);
+    assertEquals("Size", data.length, rel.size());
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      NumberVector v = rel.get(it);
+      assertEquals("Dimensionality", 3, v.getDimensionality());
+      for(int d = 0; d < 3; d++) {
+        assertEquals("Value differs", data[i][d], v.doubleValue(d), 0.);
+      }
+    }
+  }
+}
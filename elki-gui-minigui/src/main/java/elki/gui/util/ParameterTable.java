@@ -41,6 +41,7 @@ import javax.swing.InputMap;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
+import javax.swing.JFileChooser;
 import javax.swing.JPanel;
 import javax.swing.JTable;
 import javax.swing.JTextField;
@@ -399,6 +400,11 @@ public class ParameterTable extends JTable {
      */
     int mode = FileDialog.LOAD;
 
+    /**
+     * Select a directory instead of a file.
+     */
+    boolean directory = false;
+
     /**
      * Default path.
      */
@@ -422,6 +428,10 @@ public class ParameterTable extends JTable {
      */
     @Override
     public void actionPerformed(ActionEvent e) {
+      if(directory) {
+        chooseDirectory();
+        return;
+      }
       FileDialog fc = new FileDialog(frame);
       fc.setDirectory(defaultpath);
       fc.setMode(mode);
@@ -440,6 +450,21 @@ public class ParameterTable extends JTable {
       fireEditingStopped();
     }
 
+    /**
+     * Show a directory selector, as the AWT file dialog cannot choose
+     * directories portably.
+     */
+    private void chooseDirectory() {
+      final String curr = textfield.getText();
+      JFileChooser fc = new JFileChooser(curr != null && curr.length() > 0 ? curr : defaultpath);
+      fc.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+      if(fc.showDialog(frame, "Select") == JFileChooser.APPROVE_OPTION) {
+        textfield.setText(fc.getSelectedFile().getPath());
+      }
+      textfield.requestFocus();
+      fireEditingStopped();
+    }
+
     @Override
     public void keyTyped(KeyEvent e) {
       // Ignore
@@ -480,6 +505,7 @@ public class ParameterTable extends JTable {
         Parameter<?> option = parameters.getNode(row).param;
         if(option instanceof FileParameter) {
           FileParameter fp = (FileParameter) option;
+          directory = FileParameter.FileType.DIRECTORY.equals(fp.getFileType());
           mode = FileParameter.FileType.INPUT_FILE.equals(fp.getFileType()) ? FileDialog.LOAD : FileDialog.SAVE;
           textfield.setText(fp.isDefined() ? fp.getValue().toString() : "");
         }
@@ -83,7 +83,7 @@ class MkMaxLeafEntry extends MTreeLeafEntry implements MkMaxEntry {
   @Override
   public void writeExternal(ObjectOutput out) throws IOException {
     super.writeExternal(out);
-    out.writeObject(knnDistance);
+    out.writeDouble(knnDistance);
   }
 
   /**
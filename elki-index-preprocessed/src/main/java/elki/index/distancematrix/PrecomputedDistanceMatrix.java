@@ -36,12 +36,14 @@ import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.logging.statistics.Duration;
 import elki.logging.statistics.LongStatistic;
+import elki.parallel.ParallelExecutor;
 import elki.utilities.datastructures.QuickSelect;
 import elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
 import elki.utilities.exceptions.AbortException;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -49,10 +51,13 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * <p>
  * This class uses a linear memory layout (not a ragged array), and assumes
  * symmetry as well as strictness. This way, it only stores the upper triangle
- * matrix with double precision. It has to store (n-1) * (n-2) distance values
- * in memory, requiring 8 * (n-1) * (n-2) bytes. Since Java has a size limit of
- * arrays of 31 bits (signed integer), we can store at most \(2^16\) objects
- * (precisely, 65536 objects) in a single array, which needs about 16 GB of RAM.
+ * matrix, with double or (optionally) float precision. It has to store
+ * n * (n-1) / 2 distance values in memory, requiring 4 * n * (n-1) bytes with
+ * double precision, and half of that with float precision. Because Java arrays
+ * are limited to 31 bits, the matrix is split into multiple arrays for large
+ * data sets.
+ * <p>
+ * The matrix is computed in parallel, in blocks of rows.
  *
  * @author Erich Schubert
  * @since 0.7.0
@@ -79,10 +84,25 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
    */
   protected final Distance<? super O> distance;
 
+  /**
+   * Number of rows processed in one parallel block.
+   */
+  private static final int ROW_BLOCKSIZE = 64;
+
+  /**
+   * Number of columns processed at a time, for cache locality.
+   */
+  private static final int COLUMN_TILE = 1024;
+
   /**
    * Distance matrix.
    */
-  private double[] matrix = null;
+  private Storage matrix = null;
+
+  /**
+   * Store float values only.
+   */
+  private boolean useFloat;
 
   /**
    * DBID range.
@@ -97,10 +117,23 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
    * @param distance Distance function
    */
   public PrecomputedDistanceMatrix(Relation<O> relation, DBIDRange range, Distance<? super O> distance) {
+    this(relation, range, distance, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param range DBID range
+   * @param distance Distance function
+   * @param useFloat Store float precision only, to halve memory
+   */
+  public PrecomputedDistanceMatrix(Relation<O> relation, DBIDRange range, Distance<? super O> distance, boolean useFloat) {
     super();
     this.refrelation = new WeakReference<>(relation);
     this.ids = range;
     this.distance = distance;
+    this.useFloat = useFloat;
 
     if(!distance.isSymmetric()) {
       throw new AbortException("Distance matrixes currently only support symmetric distance functions (Patches welcome).");
@@ -109,28 +142,33 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
 
   @Override
   public void initialize() {
-    if(ids.size() > 65536) {
-      throw new AbortException("Distance matrixes currently have a limit of 65536 objects (~16 GB). After this, the array size exceeds the Java integer range, and a different data structure needs to be used.");
-    }
-    DistanceQuery<O> distanceQuery = distance.instantiate(refrelation.get());
-
-    final int msize = triangleSize(ids.size());
-    matrix = new double[msize];
-    DBIDArrayIter ix = ids.iter(), iy = ids.iter();
+    final Relation<O> relation = refrelation.get();
+    final long msize = triangleSize(ids.size());
+    matrix = useFloat ? new FloatStorage(msize) : new DoubleStorage(msize);
 
     Duration timer = LOG.newDuration(getClass().getName() + ".precomputation-time").begin();
-    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Precomputing distance matrix", msize, LOG) : null;
-    int pos = 0;
-    for(ix.seek(0); ix.valid(); ix.advance()) {
-      // y < x -- must match {@link #getOffset}!
-      for(iy.seek(0); iy.getOffset() < ix.getOffset(); iy.advance()) {
-        matrix[pos] = distanceQuery.distance(ix, iy);
-        pos++;
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Precomputing distance matrix", ids.size(), LOG) : null;
+    ParallelExecutor.runBlocks(ids, ROW_BLOCKSIZE, (bids, start, end) -> {
+      DistanceQuery<O> distanceQuery = distance.instantiate(relation);
+      DBIDArrayIter ix = bids.iter(), iy = bids.iter();
+      // Process rows [start;end) in tiles of columns, y < x -- must match
+      // {@link #getOffset}!
+      for(int ystart = 0; ystart < end - 1; ystart += COLUMN_TILE) {
+        final int yend = Math.min(ystart + COLUMN_TILE, end - 1);
+        for(int x = Math.max(start, ystart + 1); x < end; x++) {
+          ix.seek(x);
+          long pos = triangleSize(x) + ystart;
+          for(int y = ystart, ymax = Math.min(yend, x); y < ymax; y++, pos++) {
+            matrix.set(pos, distanceQuery.distance(ix, iy.seek(y)));
+          }
+        }
       }
       if(prog != null) {
-        prog.setProcessed(prog.getProcessed() + ix.getOffset(), LOG);
+        for(int x = start; x < end; x++) {
+          prog.incrementProcessed(LOG);
+        }
       }
-    }
+    });
     LOG.ensureCompleted(prog);
     LOG.statistics(timer.end());
   }
@@ -141,7 +179,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
    * @param x Offset
    * @return Size of complete triangle
    */
-  protected static int triangleSize(int x) {
+  protected static long triangleSize(long x) {
     return (x * (x - 1)) >>> 1;
   }
 
@@ -152,14 +190,14 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
    * @param y Y parameter
    * @return Array offset
    */
-  private int getOffset(int x, int y) {
+  private static long getOffset(int x, int y) {
     return (y < x) ? (triangleSize(x) + y) : (triangleSize(y) + x);
   }
 
   @Override
   public void logStatistics() {
     if(matrix != null) {
-      LOG.statistics(new LongStatistic(this.getClass().getName() + ".matrix-size", matrix.length));
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".matrix-size", matrix.size()));
     }
   }
 
@@ -207,7 +245,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
     @Override
     public double distance(DBIDRef id1, DBIDRef id2) {
       final int x = ids.getOffset(id1), y = ids.getOffset(id2);
-      return (x != y) ? matrix[getOffset(x, y)] : 0.;
+      return (x != y) ? matrix.get(getOffset(x, y)) : 0.;
     }
 
     @Override
@@ -237,9 +275,9 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       result.add(0., id);
       final int x = ids.getOffset(id);
       // Case y < x: triangleSize(x) + y
-      int pos = triangleSize(x);
+      long pos = triangleSize(x);
       for(int y = 0; y < x; y++, pos++) {
-        final double dist = matrix[pos];
+        final double dist = matrix.get(pos);
         if(dist <= range) {
           result.add(dist, it.seek(y));
         }
@@ -248,7 +286,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       // Case y > x: triangleSize(y) + x
       pos = triangleSize(x + 1) + x;
       for(int y = x + 1, size = ids.size(); y < size; pos += y++) {
-        final double dist = matrix[pos];
+        final double dist = matrix.get(pos);
         if(dist <= range) {
           result.add(dist, it.seek(y));
         }
@@ -275,16 +313,16 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       double max = Double.POSITIVE_INFINITY;
       final int x = ids.getOffset(id);
       // Case y < x: triangleSize(x) + y
-      int pos = triangleSize(x);
+      long pos = triangleSize(x);
       for(int y = 0; y < x; y++, pos++) {
-        final double dist = matrix[pos];
+        final double dist = matrix.get(pos);
         max = dist <= max ? heap.insert(dist, it.seek(y)) : max;
       }
       assert (pos == triangleSize(x + 1));
       // Case y > x: triangleSize(y) + x
       pos = triangleSize(x + 1) + x;
       for(int y = x + 1, size = ids.size(); y < size; pos += y++) {
-        final double dist = matrix[pos];
+        final double dist = matrix.get(pos);
         max = dist <= max ? heap.insert(dist, it.seek(y)) : max;
       }
       return heap.toKNNList();
@@ -337,7 +375,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       off = 0;
       threshold = Double.POSITIVE_INFINITY;
       int x = ids.getOffset(query);
-      int pos = triangleSize(x);
+      long pos = triangleSize(x);
       // Initialize ids:
       idx[0] = x;
       for(int y = 0; y < x; y++) {
@@ -348,10 +386,12 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       }
       // Initialize distances:
       dists[0] = 0;
-      System.arraycopy(matrix, pos, dists, 1, x);
+      for(int y = 0; y < x; y++, pos++) {
+        dists[y + 1] = matrix.get(pos);
+      }
       pos = triangleSize(x + 1) + x;
       for(int y = x + 1, size = dists.length; y < size; pos += y++) {
-        dists[y] = matrix[pos];
+        dists[y] = matrix.get(pos);
       }
       sorted = 1;
       return this;
@@ -431,6 +471,151 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
     }
   }
 
+  /**
+   * Storage of the distance values, split into multiple arrays if necessary.
+   *
+   * @author Erich Schubert
+   */
+  private abstract static class Storage {
+    /**
+     * Number of values per array (as power of two).
+     */
+    static final int SHIFT = 30;
+
+    /**
+     * Mask for the position within an array.
+     */
+    static final long MASK = (1L << SHIFT) - 1;
+
+    /**
+     * Number of values.
+     */
+    final long size;
+
+    /**
+     * Constructor.
+     *
+     * @param size Number of values
+     */
+    Storage(long size) {
+      this.size = size;
+    }
+
+    /**
+     * Number of arrays needed.
+     *
+     * @return Number of arrays
+     */
+    int numSegments() {
+      return (int) ((size + MASK) >>> SHIFT);
+    }
+
+    /**
+     * Length of an array.
+     *
+     * @param i Array number
+     * @return Length
+     */
+    int segmentLength(int i) {
+      return (int) Math.min(MASK + 1, size - (((long) i) << SHIFT));
+    }
+
+    /**
+     * Get a value.
+     *
+     * @param pos Position
+     * @return Value
+     */
+    abstract double get(long pos);
+
+    /**
+     * Set a value.
+     *
+     * @param pos Position
+     * @param v Value
+     */
+    abstract void set(long pos, double v);
+
+    /**
+     * Number of values.
+     *
+     * @return Size
+     */
+    long size() {
+      return size;
+    }
+  }
+
+  /**
+   * Double precision storage.
+   *
+   * @author Erich Schubert
+   */
+  private static final class DoubleStorage extends Storage {
+    /**
+     * Data arrays.
+     */
+    final double[][] data;
+
+    /**
+     * Constructor.
+     *
+     * @param size Number of values
+     */
+    DoubleStorage(long size) {
+      super(size);
+      data = new double[numSegments()][];
+      for(int i = 0; i < data.length; i++) {
+        data[i] = new double[segmentLength(i)];
+      }
+    }
+
+    @Override
+    double get(long pos) {
+      return data[(int) (pos >>> SHIFT)][(int) (pos & MASK)];
+    }
+
+    @Override
+    void set(long pos, double v) {
+      data[(int) (pos >>> SHIFT)][(int) (pos & MASK)] = v;
+    }
+  }
+
+  /**
+   * Single precision storage, using half the memory.
+   *
+   * @author Erich Schubert
+   */
+  private static final class FloatStorage extends Storage {
+    /**
+     * Data arrays.
+     */
+    final float[][] data;
+
+    /**
+     * Constructor.
+     *
+     * @param size Number of values
+     */
+    FloatStorage(long size) {
+      super(size);
+      data = new float[numSegments()][];
+      for(int i = 0; i < data.length; i++) {
+        data[i] = new float[segmentLength(i)];
+      }
+    }
+
+    @Override
+    double get(long pos) {
+      return data[(int) (pos >>> SHIFT)][(int) (pos & MASK)];
+    }
+
+    @Override
+    void set(long pos, double v) {
+      data[(int) (pos >>> SHIFT)][(int) (pos & MASK)] = (float) v;
+    }
+  }
+
   /**
    * Factory for the index.
    *
@@ -446,14 +631,30 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
      */
     final protected Distance<? super O> distance;
 
+    /**
+     * Store float precision only.
+     */
+    final protected boolean useFloat;
+
     /**
      * Constructor.
      *
      * @param distance Distance function
      */
     public Factory(Distance<? super O> distance) {
+      this(distance, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param distance Distance function
+     * @param useFloat Store float precision only, to halve memory
+     */
+    public Factory(Distance<? super O> distance, boolean useFloat) {
       super();
       this.distance = distance;
+      this.useFloat = useFloat;
     }
 
     @Override
@@ -462,7 +663,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
       if(!(rids instanceof DBIDRange)) {
         throw new AbortException("Distance matrixes are currently only supported for DBID ranges (as used by static databases; not on modifiable databases) for performance reasons (Patches welcome).");
       }
-      return new PrecomputedDistanceMatrix<>(relation, (DBIDRange) rids, distance);
+      return new PrecomputedDistanceMatrix<>(relation, (DBIDRange) rids, distance, useFloat);
     }
 
     @Override
@@ -485,20 +686,31 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, RangeInde
        */
       public static final OptionID DISTANCE_ID = new OptionID("matrix.distance", "Distance function for the precomputed distance matrix.");
 
+      /**
+       * Flag to store float precision only.
+       */
+      public static final OptionID FLOAT_ID = new OptionID("matrix.float", "Store distances with float precision only, to halve the memory usage.");
+
       /**
        * Nested distance function.
        */
       protected Distance<? super O> distanceFunction;
 
+      /**
+       * Store float precision only.
+       */
+      protected boolean useFloat;
+
       @Override
       public void configure(Parameterization config) {
         new ObjectParameter<Distance<? super O>>(DISTANCE_ID, Distance.class) //
             .grab(config, x -> distanceFunction = x);
+        new Flag(FLOAT_ID).grab(config, x -> useFloat = x);
       }
 
       @Override
       public Factory<O> make() {
-        return new Factory<>(distanceFunction);
+        return new Factory<>(distanceFunction, useFloat);
       }
     }
   }
@@ -22,9 +22,11 @@ package elki.index.preprocessed.knn;
 
 import javax.swing.event.EventListenerList;
 
+import elki.database.datastore.DataStore;
 import elki.database.ids.*;
 import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.BatchKNNSearcher;
 import elki.database.query.knn.KNNSearcher;
 import elki.database.query.knn.PreprocessorKNNQuery;
 import elki.database.relation.Relation;
@@ -114,6 +116,21 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
     }
     Duration duration = log.isStatistics() ? log.newDuration(this.getClass().getName() + ".precomputation-time").begin() : null;
     FiniteProgress progress = getLogger().isVerbose() ? new FiniteProgress("Materializing k nearest neighbors (k=" + k + ")", ids.size(), getLogger()) : null;
+    if(knnQuery instanceof BatchKNNSearcher) {
+      // Batch processing, usually in parallel
+      DataStore<KNNList> knns = ((BatchKNNSearcher) knnQuery).getKNNs(ids, k);
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        storage.put(iter, knns.get(iter));
+      }
+      if(progress != null) {
+        progress.setProcessed(ids.size(), log);
+      }
+      log.ensureCompleted(progress);
+      if(duration != null) {
+        log.statistics(duration.end());
+      }
+      return;
+    }
     // Try bulk
     final boolean ismetric = getDistanceQuery().getDistance().isMetric();
     for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
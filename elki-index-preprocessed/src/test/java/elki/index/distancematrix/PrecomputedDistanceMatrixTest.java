@@ -20,6 +20,7 @@
  */
 package elki.index.distancematrix;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -29,9 +30,12 @@ import elki.data.DoubleVector;
 import elki.data.type.TypeUtil;
 import elki.database.Database;
 import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
 import elki.database.ids.DBIDRef;
 import elki.database.query.PrioritySearcher;
 import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
 import elki.database.relation.Relation;
 import elki.distance.CosineDistance;
 import elki.distance.minkowski.EuclideanDistance;
@@ -88,4 +92,20 @@ public class PrecomputedDistanceMatrixTest extends AbstractIndexStructureTest {
         .with(PrecomputedDistanceMatrix.Factory.Par.DISTANCE_ID, CosineDistance.class).build();
     assertExactCosine(factory, PrecomputedDistanceMatrix.PrecomputedKNNQuery.class, PrecomputedDistanceMatrix.PrecomputedRangeQuery.class, true);
   }
+
+  @Test
+  public void testFloat() {
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase(dataset, shoulds);
+    Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    PrecomputedDistanceMatrix<DoubleVector> idx = new PrecomputedDistanceMatrix<>(relation, (DBIDRange) relation.getDBIDs(), EuclideanDistance.STATIC, true);
+    idx.initialize();
+    DistanceQuery<DoubleVector> exact = EuclideanDistance.STATIC.instantiate(relation);
+    DistanceQuery<DoubleVector> approx = idx.getDistanceQuery(EuclideanDistance.STATIC);
+    for(DBIDIter a = relation.iterDBIDs(); a.valid(); a.advance()) {
+      for(DBIDIter b = relation.iterDBIDs(); b.valid(); b.advance()) {
+        final double d = exact.distance(a, b);
+        assertEquals("Distance differs", d, approx.distance(a, b), d * 1e-7);
+      }
+    }
+  }
 }
@@ -36,6 +36,7 @@ import elki.data.NumberVector;
 import elki.data.VectorUtil;
 import elki.data.type.TypeUtil;
 import elki.database.AbstractDatabase;
+import elki.database.Database;
 import elki.database.HashmapDatabase;
 import elki.database.UpdatableDatabase;
 import elki.database.ids.*;
@@ -43,6 +44,7 @@ import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
 import elki.database.query.knn.KNNSearcher;
 import elki.database.query.knn.LinearScanKNNByDBID;
+import elki.database.query.knn.PreprocessorKNNQuery;
 import elki.database.relation.Relation;
 import elki.database.relation.RelationUtil;
 import elki.datasource.InputStreamDatabaseConnection;
@@ -142,6 +144,38 @@ public class MaterializedKNNPreprocessorTest {
     testKNNQueries(relation, lin_knn_query, preproc_knn_query, k);
   }
 
+  @Test
+  public void testSharedKNN() {
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase(dataset, shoulds);
+    Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> distanceQuery = new QueryBuilder<>(relation, EuclideanDistance.STATIC).distanceQuery();
+    KNNSearcher<DBIDRef> lin_knn_query = new LinearScanKNNByDBID<>(distanceQuery);
+
+    KNNSearcher<DBIDRef> shared = new QueryBuilder<>(relation, EuclideanDistance.STATIC).sharedKNN().kNNByDBID(k);
+    assertTrue("Not a shared preprocessor: " + shared.getClass(), shared instanceof PreprocessorKNNQuery);
+    // Later queries with smaller k must reuse the same materialization.
+    KNNSearcher<DBIDRef> prefix = new QueryBuilder<>(relation, EuclideanDistance.STATIC).kNNByDBID(k / 2);
+    assertTrue("Not a shared preprocessor: " + prefix.getClass(), prefix instanceof PreprocessorKNNQuery);
+    assertSame("Preprocessor not shared.", ((PreprocessorKNNQuery<?>) shared).getPreprocessor(), ((PreprocessorKNNQuery<?>) prefix).getPreprocessor());
+    KNNSearcher<DBIDRef> again = new QueryBuilder<>(relation, EuclideanDistance.STATIC).sharedKNN().kNNByDBID(k - 1);
+    assertSame("Preprocessor not shared.", ((PreprocessorKNNQuery<?>) shared).getPreprocessor(), ((PreprocessorKNNQuery<?>) again).getPreprocessor());
+
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+      KNNList lin_knn = lin_knn_query.getKNN(iter, k);
+      KNNList pre_knn = shared.getKNN(iter, k);
+      assertEquals("kNN sizes do not agree.", lin_knn.size(), pre_knn.size());
+      for(DoubleDBIDListIter lin = lin_knn.iter(), pre = pre_knn.iter(); lin.valid(); lin.advance(), pre.advance()) {
+        // Optimized Euclidean searches may differ in the last digits
+        assertEquals("Neighbor distances do not agree.", lin.doubleValue(), pre.doubleValue(), 1e-15);
+      }
+      KNNList sub_knn = prefix.getKNN(iter, k / 2);
+      assertEquals("Prefix does not agree.", pre_knn.subList(k / 2).size(), sub_knn.size());
+      for(DoubleDBIDListIter pre = pre_knn.iter(), sub = sub_knn.iter(); sub.valid(); pre.advance(), sub.advance()) {
+        assertTrue("Prefix does not agree.", DBIDUtil.equal(pre, sub));
+      }
+    }
+  }
+
   public static void testKNNQueries(Relation<DoubleVector> rep, KNNSearcher<DBIDRef> lin_knn_query, KNNSearcher<DBIDRef> preproc_knn_query, int k) {
     assertNotEquals("Preprocessor knn query class incorrect.", lin_knn_query.getClass(), preproc_knn_query.getClass());
     for(DBIDIter iter = rep.iterDBIDs(); iter.valid(); iter.advance()) {
@@ -0,0 +1,542 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.linearscan;
+
+import elki.data.NumberVector;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStore;
+import elki.database.ids.*;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.BatchKNNSearcher;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.query.range.RangeSearcher;
+import elki.database.relation.Relation;
+import elki.database.relation.RelationUtil;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.index.IndexFactory;
+import elki.index.KNNIndex;
+import elki.index.RangeIndex;
+import elki.logging.Logging;
+import elki.parallel.ParallelExecutor;
+import elki.utilities.Alias;
+
+/**
+ * Cache-blocked linear scan for (squared) Euclidean distance.
+ * <p>
+ * The data is copied into a single contiguous {@code double[]} array, and the
+ * squared norms of all vectors are precomputed. Candidates are first pruned
+ * with the lower bound \((\|q\|-\|x\|)^2\), then filtered using the expansion
+ * \(\|q-x\|^2=\|q\|^2+\|x\|^2-2\langle q,x\rangle\), and only the remaining
+ * candidates are verified with the exact distance, such that the results are
+ * exact.
+ * <p>
+ * Batches of kNN queries are processed in parallel, and each block of queries
+ * is compared to a tile of the data at a time, which fits into the CPU cache.
+ * This reduces memory traffic considerably for all-kNN workloads.
+ * <p>
+ * This index needs about the same memory as the data itself, and does not
+ * support dynamic updates.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - BlockedKNNDBIDSearcher
+ * @has - - - BlockedRangeDBIDSearcher
+ *
+ * @param <O> Vector type
+ */
+public class BlockedEuclideanScan<O extends NumberVector> implements KNNIndex<O>, RangeIndex<O> {
+  /**
+   * Number of queries processed at once.
+   */
+  private static final int QUERY_BLOCKSIZE = 64;
+
+  /**
+   * Number of values per data tile (64 KB).
+   */
+  private static final int TILE_SIZE = 8192;
+
+  /**
+   * Minimum number of vectors per data tile.
+   */
+  private static final int MIN_TILE_ROWS = 16;
+
+  /**
+   * Maximum number of values in the data array.
+   */
+  private static final long MAX_VALUES = Integer.MAX_VALUE - 8;
+
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(BlockedEuclideanScan.class);
+
+  /**
+   * The representation we are bound to.
+   */
+  protected final Relation<O> relation;
+
+  /**
+   * Object ids, in the order of the data array.
+   */
+  protected ArrayDBIDs ids;
+
+  /**
+   * Dimensionality.
+   */
+  protected int dim;
+
+  /**
+   * Data vectors, in row-major order; {@code null} if too large.
+   */
+  protected double[] data;
+
+  /**
+   * Squared norms of the data vectors.
+   */
+  protected double[] norms;
+
+  /**
+   * Norms of the data vectors.
+   */
+  protected double[] lens;
+
+  /**
+   * Relative tolerance for numerical errors of the expansion.
+   */
+  protected double slack;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation to index
+   */
+  public BlockedEuclideanScan(Relation<O> relation) {
+    super();
+    this.relation = relation;
+  }
+
+  @Override
+  public void initialize() {
+    ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    dim = RelationUtil.dimensionality(relation);
+    final int size = ids.size();
+    final long values = (long) size * dim;
+    if(values > MAX_VALUES) {
+      LOG.warning("Data set too large for a blocked linear scan (" + values + " values), using the default linear scan.");
+      data = norms = lens = null;
+      return;
+    }
+    data = new double[(int) values];
+    norms = new double[size];
+    lens = new double[size];
+    int off = 0, i = 0;
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance(), i++) {
+      final NumberVector vec = relation.get(it);
+      double sum = 0.;
+      for(int d = 0; d < dim; d++, off++) {
+        final double v = data[off] = vec.doubleValue(d);
+        sum += v * v;
+      }
+      norms[i] = sum;
+      lens[i] = Math.sqrt(sum);
+    }
+    // Rounding error bound of dot product and sums, with some safety margin:
+    slack = Math.ulp(1.) * (dim + 4);
+  }
+
+  @Override
+  public KNNSearcher<O> kNNByObject(DistanceQuery<O> distanceQuery, int maxk, int flags) {
+    return isSupported(distanceQuery) ? new BlockedKNNObjectSearcher(isSquared(distanceQuery)) : null;
+  }
+
+  @Override
+  public KNNSearcher<DBIDRef> kNNByDBID(DistanceQuery<O> distanceQuery, int maxk, int flags) {
+    return isSupported(distanceQuery) ? new BlockedKNNDBIDSearcher(isSquared(distanceQuery)) : null;
+  }
+
+  @Override
+  public RangeSearcher<O> rangeByObject(DistanceQuery<O> distanceQuery, double maxrange, int flags) {
+    return isSupported(distanceQuery) ? new BlockedRangeObjectSearcher(isSquared(distanceQuery)) : null;
+  }
+
+  @Override
+  public RangeSearcher<DBIDRef> rangeByDBID(DistanceQuery<O> distanceQuery, double maxrange, int flags) {
+    return isSupported(distanceQuery) ? new BlockedRangeDBIDSearcher(isSquared(distanceQuery)) : null;
+  }
+
+  /**
+   * Test if the distance query is supported, and the data was not too large.
+   *
+   * @param distanceQuery Distance query
+   * @return {@code true} when supported
+   */
+  private boolean isSupported(DistanceQuery<O> distanceQuery) {
+    final Distance<? super O> df = distanceQuery.getDistance();
+    return data != null && distanceQuery.getRelation() == relation && //
+        (EuclideanDistance.STATIC.equals(df) || SquaredEuclideanDistance.STATIC.equals(df));
+  }
+
+  /**
+   * Test if the distance is squared Euclidean.
+   *
+   * @param distanceQuery Distance query
+   * @return {@code true} for squared Euclidean
+   */
+  private static boolean isSquared(DistanceQuery<?> distanceQuery) {
+    return SquaredEuclideanDistance.STATIC.equals(distanceQuery.getDistance());
+  }
+
+  /**
+   * Copy a vector into a query buffer.
+   *
+   * @param vec Vector
+   * @param buf Buffer
+   * @param off Offset in buffer
+   * @return Squared norm
+   */
+  private double copy(NumberVector vec, double[] buf, int off) {
+    double sum = 0.;
+    for(int d = 0; d < dim; d++) {
+      final double v = buf[off + d] = vec.doubleValue(d);
+      sum += v * v;
+    }
+    return sum;
+  }
+
+  /**
+   * Process a tile of the data for a block of queries.
+   *
+   * @param qbuf Query vectors
+   * @param qnorms Squared norms of the queries
+   * @param nq Number of queries
+   * @param tstart First data vector of the tile
+   * @param tend End of the tile (exclusive)
+   * @param heaps kNN heaps of the queries
+   * @param max Current kNN distance (squared) of the queries
+   * @param di Iterator over the data
+   */
+  private void knnTile(double[] qbuf, double[] qnorms, int nq, int tstart, int tend, KNNHeap[] heaps, double[] max, DBIDArrayIter di) {
+    final double[] data = this.data, norms = this.norms, lens = this.lens;
+    final int dim = this.dim;
+    for(int i = 0, qoff = 0; i < nq; i++, qoff += dim) {
+      final double qn = qnorms[i], ql = Math.sqrt(qn);
+      double m = max[i];
+      for(int j = tstart, xoff = tstart * dim; j < tend; j++, xoff += dim) {
+        final double tol = slack * (qn + norms[j]), lb = ql - lens[j];
+        if(lb * lb - tol > m) {
+          continue;
+        }
+        if(qn + norms[j] - 2 * dot(qbuf, qoff, data, xoff, dim) - tol > m) {
+          continue;
+        }
+        final double dist = exactDistance(qbuf, qoff, xoff);
+        m = dist <= m ? heaps[i].insert(dist, di.seek(j)) : m;
+      }
+      max[i] = m;
+    }
+  }
+
+  /**
+   * Range search over all data for a single query.
+   *
+   * @param qbuf Query vector
+   * @param qn Squared norm of the query
+   * @param range Query radius (squared)
+   * @param squared Output squared distances
+   * @param result Output list
+   * @return Output list
+   */
+  private ModifiableDoubleDBIDList rangeScan(double[] qbuf, double qn, double range, boolean squared, ModifiableDoubleDBIDList result) {
+    final double[] data = this.data, norms = this.norms, lens = this.lens;
+    final int dim = this.dim;
+    final double ql = Math.sqrt(qn);
+    DBIDArrayIter di = ids.iter();
+    for(int j = 0, xoff = 0; j < norms.length; j++, xoff += dim) {
+      final double tol = slack * (qn + norms[j]), lb = ql - lens[j];
+      if(lb * lb - tol > range) {
+        continue;
+      }
+      if(qn + norms[j] - 2 * dot(qbuf, 0, data, xoff, dim) - tol > range) {
+        continue;
+      }
+      final double dist = exactDistance(qbuf, 0, xoff);
+      if(dist <= range) {
+        result.add(squared ? dist : Math.sqrt(dist), di.seek(j));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Dot product, with four independent accumulators to avoid stalling on the
+   * latency of floating point additions.
+   *
+   * @param a First array
+   * @param aoff Offset in first array
+   * @param b Second array
+   * @param boff Offset in second array
+   * @param dim Dimensionality
+   * @return Dot product
+   */
+  private static double dot(double[] a, int aoff, double[] b, int boff, int dim) {
+    double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+    int d = 0;
+    for(final int e = dim - 3; d < e; d += 4) {
+      s0 += a[aoff + d] * b[boff + d];
+      s1 += a[aoff + d + 1] * b[boff + d + 1];
+      s2 += a[aoff + d + 2] * b[boff + d + 2];
+      s3 += a[aoff + d + 3] * b[boff + d + 3];
+    }
+    for(; d < dim; d++) {
+      s0 += a[aoff + d] * b[boff + d];
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * Compute the exact squared Euclidean distance.
+   *
+   * @param qbuf Query buffer
+   * @param qoff Query offset
+   * @param xoff Data offset
+   * @return Squared Euclidean distance
+   */
+  private double exactDistance(double[] qbuf, int qoff, int xoff) {
+    final double[] data = this.data;
+    double sum = 0.;
+    for(int d = 0; d < dim; d++) {
+      final double v = qbuf[qoff + d] - data[xoff + d];
+      sum += v * v;
+    }
+    return sum;
+  }
+
+  /**
+   * Run a block of kNN queries.
+   *
+   * @param qbuf Query vectors
+   * @param qnorms Squared norms of the queries
+   * @param nq Number of queries
+   * @param k Number of neighbors
+   * @param squared Return squared distances
+   * @param out Output array
+   * @param outoff Output offset
+   */
+  private void knnBlock(double[] qbuf, double[] qnorms, int nq, int k, boolean squared, KNNList[] out, int outoff) {
+    final int size = norms.length;
+    final int tilerows = Math.max(MIN_TILE_ROWS, TILE_SIZE / Math.max(1, dim));
+    final KNNHeap[] heaps = new KNNHeap[nq];
+    final double[] max = new double[nq];
+    for(int i = 0; i < nq; i++) {
+      heaps[i] = DBIDUtil.newHeap(k);
+      max[i] = Double.POSITIVE_INFINITY;
+    }
+    final DBIDArrayIter di = ids.iter();
+    for(int tstart = 0; tstart < size; tstart += tilerows) {
+      knnTile(qbuf, qnorms, nq, tstart, Math.min(tstart + tilerows, size), heaps, max, di);
+    }
+    for(int i = 0; i < nq; i++) {
+      out[outoff + i] = squared ? heaps[i].toKNNList() : heaps[i].toKNNListSqrt();
+    }
+  }
+
+  /**
+   * Run a single kNN query.
+   *
+   * @param obj Query object
+   * @param k Number of neighbors
+   * @param squared Return squared distances
+   * @return kNN list
+   */
+  private KNNList knnSingle(NumberVector obj, int k, boolean squared) {
+    final double[] qbuf = new double[dim];
+    final double[] qnorms = new double[] { copy(obj, qbuf, 0) };
+    final KNNList[] out = new KNNList[1];
+    knnBlock(qbuf, qnorms, 1, k, squared, out, 0);
+    return out[0];
+  }
+
+  /**
+   * Run a single range query.
+   *
+   * @param obj Query object
+   * @param range Query radius
+   * @param squared Squared Euclidean distance
+   * @param result Output list
+   * @return Output list
+   */
+  private ModifiableDoubleDBIDList rangeSingle(NumberVector obj, double range, boolean squared, ModifiableDoubleDBIDList result) {
+    final double[] qbuf = new double[dim];
+    final double qn = copy(obj, qbuf, 0);
+    return rangeScan(qbuf, qn, squared ? range : range * range, squared, result);
+  }
+
+  /**
+   * kNN searcher by object.
+   *
+   * @author Erich Schubert
+   */
+  public class BlockedKNNObjectSearcher implements KNNSearcher<O> {
+    /**
+     * Use squared Euclidean distance.
+     */
+    private boolean squared;
+
+    /**
+     * Constructor.
+     *
+     * @param squared Use squared Euclidean distance
+     */
+    public BlockedKNNObjectSearcher(boolean squared) {
+      super();
+      this.squared = squared;
+    }
+
+    @Override
+    public KNNList getKNN(O obj, int k) {
+      return knnSingle(obj, k, squared);
+    }
+  }
+
+  /**
+   * kNN searcher by DBID, with support for parallel batch queries.
+   *
+   * @author Erich Schubert
+   */
+  public class BlockedKNNDBIDSearcher implements BatchKNNSearcher {
+    /**
+     * Use squared Euclidean distance.
+     */
+    private boolean squared;
+
+    /**
+     * Constructor.
+     *
+     * @param squared Use squared Euclidean distance
+     */
+    public BlockedKNNDBIDSearcher(boolean squared) {
+      super();
+      this.squared = squared;
+    }
+
+    @Override
+    public KNNList getKNN(DBIDRef id, int k) {
+      return knnSingle(relation.get(id), k, squared);
+    }
+
+    @Override
+    public DataStore<KNNList> getKNNs(DBIDs queries, int k) {
+      final ArrayDBIDs aids = DBIDUtil.ensureArray(queries);
+      final KNNList[] knns = new KNNList[aids.size()];
+      ParallelExecutor.runBlocks(aids, QUERY_BLOCKSIZE, (qids, start, end) -> {
+        final int nq = end - start;
+        final double[] qbuf = new double[nq * dim], qnorms = new double[nq];
+        DBIDArrayIter qi = qids.iter().seek(start);
+        for(int i = 0; i < nq; i++, qi.advance()) {
+          qnorms[i] = copy(relation.get(qi), qbuf, i * dim);
+        }
+        knnBlock(qbuf, qnorms, nq, k, squared, knns, start);
+      });
+      return BatchKNNSearcher.toStore(aids, knns);
+    }
+  }
+
+  /**
+   * Range searcher by object.
+   *
+   * @author Erich Schubert
+   */
+  public class BlockedRangeObjectSearcher implements RangeSearcher<O> {
+    /**
+     * Use squared Euclidean distance.
+     */
+    private boolean squared;
+
+    /**
+     * Constructor.
+     *
+     * @param squared Use squared Euclidean distance
+     */
+    public BlockedRangeObjectSearcher(boolean squared) {
+      super();
+      this.squared = squared;
+    }
+
+    @Override
+    public ModifiableDoubleDBIDList getRange(O obj, double range, ModifiableDoubleDBIDList result) {
+      return rangeSingle(obj, range, squared, result);
+    }
+  }
+
+  /**
+   * Range searcher by DBID.
+   *
+   * @author Erich Schubert
+   */
+  public class BlockedRangeDBIDSearcher implements RangeSearcher<DBIDRef> {
+    /**
+     * Use squared Euclidean distance.
+     */
+    private boolean squared;
+
+    /**
+     * Constructor.
+     *
+     * @param squared Use squared Euclidean distance
+     */
+    public BlockedRangeDBIDSearcher(boolean squared) {
+      super();
+      this.squared = squared;
+    }
+
+    @Override
+    public ModifiableDoubleDBIDList getRange(DBIDRef id, double range, ModifiableDoubleDBIDList result) {
+      return rangeSingle(relation.get(id), range, squared, result);
+    }
+  }
+
+  /**
+   * Index factory.
+   *
+   * @author Erich Schubert
+   *
+   * @stereotype factory
+   * @has - - - BlockedEuclideanScan
+   *
+   * @param <O> Vector type
+   */
+  @Alias("blockedscan")
+  public static class Factory<O extends NumberVector> implements IndexFactory<O> {
+    @Override
+    public BlockedEuclideanScan<O> instantiate(Relation<O> relation) {
+      return new BlockedEuclideanScan<>(relation);
+    }
+
+    @Override
+    public TypeInformation getInputTypeRestriction() {
+      return TypeUtil.NUMBER_VECTOR_FIELD;
+    }
+  }
+}
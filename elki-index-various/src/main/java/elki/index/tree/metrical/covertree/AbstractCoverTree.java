@@ -29,7 +29,8 @@ import elki.index.Index;
 import elki.index.IndexFactory;
 import elki.logging.Logging;
 import elki.logging.LoggingUtil;
-import elki.logging.statistics.LongStatistic;
+import elki.logging.statistics.AtomicLongCounter;
+import elki.logging.statistics.Counter;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.constraints.CommonConstraints;
@@ -82,9 +83,9 @@ public abstract class AbstractCoverTree<O> implements Index {
   private DistanceQuery<O> distanceQuery;
 
   /**
-   * Distance computations performed.
+   * Distance computations performed, may be {@code null}.
    */
-  protected long distComputations = 0L;
+  protected final Counter distComputations;
 
   /**
    * Stop refining the tree at this size, but build a leaf.
@@ -108,6 +109,8 @@ public abstract class AbstractCoverTree<O> implements Index {
     this.expansion = expansion;
     this.invLogExpansion = 1. / FastMath.log(expansion);
     this.scaleBottom = (int) Math.ceil(FastMath.log(Double.MIN_NORMAL) * invLogExpansion);
+    // Atomic, as the batch searchers use the tree from multiple threads.
+    this.distComputations = getLogger().isStatistics() ? new AtomicLongCounter(this.getClass().getName() + ".distance-computations") : null;
   }
 
   /**
@@ -153,7 +156,9 @@ public abstract class AbstractCoverTree<O> implements Index {
    * @return Distance
    */
   protected double distance(DBIDRef a, DBIDRef b) {
-    ++distComputations;
+    if(distComputations != null) {
+      distComputations.increment();
+    }
     return distanceQuery.distance(a, b);
   }
 
@@ -165,7 +170,9 @@ public abstract class AbstractCoverTree<O> implements Index {
    * @return Distance
    */
   protected double distance(O a, DBIDRef b) {
-    ++distComputations;
+    if(distComputations != null) {
+      distComputations.increment();
+    }
     return distanceQuery.distance(a, b);
   }
 
@@ -214,7 +221,9 @@ public abstract class AbstractCoverTree<O> implements Index {
 
   @Override
   public void logStatistics() {
-    getLogger().statistics(new LongStatistic(this.getClass().getName() + ".distance-computations", distComputations));
+    if(distComputations != null) {
+      getLogger().statistics(distComputations);
+    }
   }
 
   /**
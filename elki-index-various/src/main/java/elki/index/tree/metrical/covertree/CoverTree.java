@@ -24,9 +24,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import elki.database.datastore.DataStore;
 import elki.database.ids.*;
 import elki.database.query.PrioritySearcher;
 import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.BatchKNNSearcher;
 import elki.database.query.knn.KNNSearcher;
 import elki.database.query.range.RangeSearcher;
 import elki.database.relation.Relation;
@@ -567,7 +569,7 @@ public class CoverTree<O> extends AbstractCoverTree<O> implements DistancePriori
    *
    * @author Erich Schubert
    */
-  public class CoverTreeKNNDBIDSearcher extends CoverTreeKNNSearcher implements KNNSearcher<DBIDRef> {
+  public class CoverTreeKNNDBIDSearcher extends CoverTreeKNNSearcher implements BatchKNNSearcher {
     /**
      * Query reference.
      */
@@ -579,6 +581,12 @@ public class CoverTree<O> extends AbstractCoverTree<O> implements DistancePriori
       return doSearch(k);
     }
 
+    @Override
+    public DataStore<KNNList> getKNNs(DBIDs queries, int k) {
+      // Searchers are not thread-safe, use one per block.
+      return BatchKNNSearcher.parallel(CoverTreeKNNDBIDSearcher::new, queries, k);
+    }
+
     @Override
     protected double queryDistance(DBIDRef it) {
       return distance(query, it);
@@ -26,6 +26,7 @@ import elki.data.type.TypeUtil;
 import elki.database.ids.*;
 import elki.database.query.PrioritySearcher;
 import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.BatchKNNSearcher;
 import elki.database.query.knn.KNNSearcher;
 import elki.database.query.range.RangeSearcher;
 import elki.database.relation.Relation;
@@ -38,6 +39,7 @@ import elki.distance.minkowski.SquaredEuclideanDistance;
 import elki.index.DistancePriorityIndex;
 import elki.index.IndexFactory;
 import elki.logging.Logging;
+import elki.logging.statistics.AtomicLongCounter;
 import elki.logging.statistics.Counter;
 import elki.utilities.Alias;
 import elki.utilities.datastructures.heap.ComparableMinHeap;
@@ -127,8 +129,9 @@ public class SmallMemoryKDTree<O extends NumberVector> implements DistancePriori
     assert (leafsize >= 1);
     if(LOG.isStatistics()) {
       String prefix = this.getClass().getName();
-      this.objaccess = LOG.newCounter(prefix + ".objaccess");
-      this.distcalc = LOG.newCounter(prefix + ".distancecalcs");
+      // Atomic, as the batch searchers use the tree from multiple threads.
+      this.objaccess = new AtomicLongCounter(prefix + ".objaccess");
+      this.distcalc = new AtomicLongCounter(prefix + ".distancecalcs");
     }
     else {
       this.objaccess = null;
@@ -227,6 +230,12 @@ public class SmallMemoryKDTree<O extends NumberVector> implements DistancePriori
     return null;
   }
 
+  @Override
+  public KNNSearcher<DBIDRef> kNNByDBID(DistanceQuery<O> distanceQuery, int maxk, int flags) {
+    KNNSearcher<O> inner = kNNByObject(distanceQuery, maxk, flags);
+    return inner != null ? new KDTreeKNNDBIDSearcher(inner) : null;
+  }
+
   @Override
   public RangeSearcher<O> rangeByObject(DistanceQuery<O> distanceQuery, double maxrange, int flags) {
     Distance<? super O> df = distanceQuery.getDistance();
@@ -378,6 +387,37 @@ public class SmallMemoryKDTree<O extends NumberVector> implements DistancePriori
     }
   }
 
+  /**
+   * kNN query for the k-d-tree by DBID, supporting batch queries.
+   * <p>
+   * The object searcher does not have internal state, hence it can be shared
+   * by multiple threads. The statistics counters of the tree are atomic, so
+   * no counts are lost in batch queries.
+   *
+   * @author Erich Schubert
+   */
+  public class KDTreeKNNDBIDSearcher implements BatchKNNSearcher {
+    /**
+     * Object searcher.
+     */
+    private KNNSearcher<O> inner;
+
+    /**
+     * Constructor.
+     *
+     * @param inner Object searcher
+     */
+    public KDTreeKNNDBIDSearcher(KNNSearcher<O> inner) {
+      super();
+      this.inner = inner;
+    }
+
+    @Override
+    public KNNList getKNN(DBIDRef id, int k) {
+      return inner.getKNN(relation.get(id), k);
+    }
+  }
+
   /**
    * Range query for the k-d-tree.
    *
@@ -23,9 +23,9 @@ package elki.index;
 import org.junit.Test;
 
 import elki.database.query.distance.LinearScanEuclideanPrioritySearcher;
+import elki.database.query.knn.LinearScanEuclideanKNNByDBID;
 import elki.database.query.knn.LinearScanEuclideanKNNByObject;
 import elki.database.query.knn.LinearScanPrimitiveKNNByObject;
-import elki.database.query.knn.WrappedKNNDBIDByLookup;
 import elki.database.query.range.LinearScanEuclideanRangeByObject;
 import elki.database.query.range.LinearScanPrimitiveDistanceRangeByObject;
 import elki.database.query.range.WrappedRangeDBIDByLookup;
@@ -44,7 +44,7 @@ public class LinearScanReferenceTest extends AbstractIndexStructureTest {
   public void testExact() {
     assertExactEuclidean(null, LinearScanEuclideanKNNByObject.class, LinearScanEuclideanRangeByObject.class);
     assertPrioritySearchEuclidean(null, LinearScanEuclideanPrioritySearcher.class);
-    assertSinglePoint(null, WrappedKNNDBIDByLookup.Linear.class, WrappedRangeDBIDByLookup.Linear.class);
+    assertSinglePoint(null, LinearScanEuclideanKNNByDBID.class, WrappedRangeDBIDByLookup.Linear.class);
   }
 
   /**
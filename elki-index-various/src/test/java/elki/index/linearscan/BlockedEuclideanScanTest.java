@@ -0,0 +1,87 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.index.linearscan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.index.AbstractIndexStructureTest;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the {@link BlockedEuclideanScan} index.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class BlockedEuclideanScanTest extends AbstractIndexStructureTest {
+  @Test
+  public void testBlockedEuclideanScan() {
+    BlockedEuclideanScan.Factory<?> factory = new ELKIBuilder<>(BlockedEuclideanScan.Factory.class).build();
+    assertExactEuclidean(factory, BlockedEuclideanScan.BlockedKNNObjectSearcher.class, BlockedEuclideanScan.BlockedRangeObjectSearcher.class);
+    assertSinglePoint(factory, BlockedEuclideanScan.BlockedKNNDBIDSearcher.class, BlockedEuclideanScan.BlockedRangeDBIDSearcher.class);
+  }
+
+  /**
+   * The query optimizer uses the blocked scan on data with more than 20
+   * dimensions.
+   */
+  @Test
+  public void testOptimizer() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[500][25];
+    for(double[] row : data) {
+      for(int d = 0; d < row.length; d++) {
+        row[d] = rnd.nextDouble();
+      }
+    }
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data));
+    db.initialize();
+    Relation<NumberVector> relation = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    KNNSearcher<DBIDRef> knnq = new QueryBuilder<>(relation, EuclideanDistance.STATIC).kNNByDBID(10);
+    assertTrue("Optimizer did not use the blocked scan: " + knnq.getClass(), knnq instanceof BlockedEuclideanScan.BlockedKNNDBIDSearcher);
+    KNNSearcher<DBIDRef> linq = new QueryBuilder<>(relation, EuclideanDistance.STATIC).linearOnly().kNNByDBID(10);
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      KNNList expect = linq.getKNN(it, 10), actual = knnq.getKNN(it, 10);
+      assertEquals("Wrong number of neighbors", expect.size(), actual.size());
+      for(DoubleDBIDListIter e = expect.iter(), a = actual.iter(); e.valid(); e.advance(), a.advance()) {
+        assertEquals("Neighbor distance does not match", e.doubleValue(), a.doubleValue(), 1e-15);
+      }
+    }
+  }
+}
@@ -22,7 +22,6 @@ package elki.index.tree.spatial.kd;
 
 import org.junit.Test;
 
-import elki.database.query.knn.WrappedKNNDBIDByLookup;
 import elki.database.query.range.WrappedRangeDBIDByLookup;
 import elki.index.AbstractIndexStructureTest;
 import elki.utilities.ELKIBuilder;
@@ -39,6 +38,6 @@ public class MinimalisticMemoryKDTreeTest extends AbstractIndexStructureTest {
     MinimalisticMemoryKDTree.Factory<?> factory = new ELKIBuilder<>(MinimalisticMemoryKDTree.Factory.class).build();
     assertExactEuclidean(factory, MinimalisticMemoryKDTree.KDTreeKNNSearcher.class, MinimalisticMemoryKDTree.KDTreeRangeSearcher.class);
     assertPrioritySearchEuclidean(factory, MinimalisticMemoryKDTree.KDTreePrioritySearcher.class);
-    assertSinglePoint(factory, WrappedKNNDBIDByLookup.class, WrappedRangeDBIDByLookup.class);
+    assertSinglePoint(factory, MinimalisticMemoryKDTree.KDTreeKNNDBIDSearcher.class, WrappedRangeDBIDByLookup.class);
   }
 }
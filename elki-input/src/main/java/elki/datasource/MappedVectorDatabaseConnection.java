@@ -0,0 +1,251 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.datasource.bundle.BundleMeta;
+import elki.datasource.bundle.BundleStreamSource;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.datasource.filter.ObjectFilter;
+import elki.datasource.parser.NumberVectorLabelParser;
+import elki.datasource.parser.StreamingParser;
+import elki.logging.Logging;
+import elki.logging.statistics.Duration;
+import elki.logging.statistics.LongStatistic;
+import elki.persistent.MappedVectorFile;
+import elki.utilities.documentation.Description;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.io.FileUtil;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.FileParameter;
+import elki.utilities.optionhandling.parameters.Flag;
+
+/**
+ * Database connection for dense vectors stored in a memory-mapped
+ * {@link MappedVectorFile}, for data sets larger than the Java heap.
+ * <p>
+ * The vectors are not loaded into memory; the database will access them via
+ * the operating system page cache. If an input file is given and the vector
+ * file does not exist yet, the input is parsed as a stream and written to the
+ * vector file first. Labels and other non-vector columns are not stored.
+ * Filters are applied only during this import; use streaming filters to avoid
+ * materializing the data in memory.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @composed - - - MappedVectorFile
+ */
+@Description("Access dense vectors from a memory-mapped file, for data larger than main memory.")
+public class MappedVectorDatabaseConnection extends AbstractDatabaseConnection {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(MappedVectorDatabaseConnection.class);
+
+  /**
+   * Vector file.
+   */
+  private Path file;
+
+  /**
+   * Input file to import, may be {@code null}.
+   */
+  private Path infile;
+
+  /**
+   * Parser for importing.
+   */
+  private StreamingParser parser;
+
+  /**
+   * Store float values instead of double values when importing.
+   */
+  private boolean isfloat;
+
+  /**
+   * Constructor.
+   *
+   * @param file Vector file
+   * @param infile Input file to import if the vector file does not exist, may
+   *        be {@code null}
+   * @param parser Parser for importing
+   * @param isfloat Store float values when importing
+   * @param filters Filters to use when importing
+   */
+  public MappedVectorDatabaseConnection(Path file, Path infile, StreamingParser parser, boolean isfloat, List<? extends ObjectFilter> filters) {
+    super(filters);
+    this.file = file;
+    this.infile = infile;
+    this.parser = parser;
+    this.isfloat = isfloat;
+  }
+
+  @Override
+  public MultipleObjectsBundle loadData() {
+    try {
+      if(infile != null && (!Files.exists(file) || Files.size(file) == 0)) {
+        importData();
+      }
+      MappedVectorFile vecs = MappedVectorFile.open(file, false);
+      if(LOG.isVerbose()) {
+        LOG.verbose("Mapped " + vecs.size() + " vectors of dimensionality " + vecs.getDimensionality() + " in " + vecs.getNumSegments() + " segments.");
+      }
+      MappedVectorList<?> list = MappedVectorList.wrap(vecs);
+      return new MultipleObjectsBundle().appendColumn(list.getType(), list);
+    }
+    catch(IOException e) {
+      throw new UncheckedIOException("Could not map vector file: " + file, e);
+    }
+  }
+
+  /**
+   * Parse the input file and write the vectors to the vector file.
+   *
+   * @throws IOException on IO errors
+   */
+  private void importData() throws IOException {
+    Duration duration = LOG.isStatistics() ? LOG.newDuration(this.getClass().getName() + ".import").begin() : null;
+    MappedVectorFile.Writer writer = null;
+    try (InputStream in = new BufferedInputStream(FileUtil.tryGzipInput(Files.newInputStream(infile)))) {
+      parser.initStream(in);
+      BundleStreamSource stream = invokeStreamFilters(parser);
+      int col = -1;
+      for(BundleStreamSource.Event ev = stream.nextEvent(); ev != BundleStreamSource.Event.END_OF_STREAM; ev = stream.nextEvent()) {
+        switch(ev){
+        case META_CHANGED:
+          BundleMeta meta = stream.getMeta();
+          col = -1;
+          for(int i = 0; i < meta.size(); i++) {
+            if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(meta.get(i))) {
+              col = i;
+              break;
+            }
+          }
+          break;
+        case NEXT_OBJECT:
+          if(col < 0) {
+            throw new AbortException("No vector column found in input file: " + infile);
+          }
+          NumberVector vec = (NumberVector) stream.data(col);
+          if(writer == null) {
+            writer = new MappedVectorFile.Writer(file, vec.getDimensionality(), isfloat);
+          }
+          writer.append(vec.toArray());
+          break;
+        default:
+          break;
+        }
+      }
+      if(writer == null) {
+        writer = new MappedVectorFile.Writer(file, 1, isfloat);
+      }
+      // Only write the header once all data was imported successfully.
+      writer.close();
+    }
+    catch(IOException | RuntimeException e) {
+      // Do not leave a partial file behind, it would be mapped on the next run.
+      if(writer != null) {
+        writer.abort();
+      }
+      Files.deleteIfExists(file);
+      throw e;
+    }
+    finally {
+      parser.cleanup();
+    }
+    if(LOG.isStatistics()) {
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".imported", writer.size()));
+      LOG.statistics(duration.end());
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   */
+  public static class Par extends AbstractDatabaseConnection.Par {
+    /**
+     * Vector file to map.
+     */
+    public static final OptionID FILE_ID = new OptionID("dbc.mmap", "Memory-mapped vector file. Will be created if it does not exist and an input file is given.");
+
+    /**
+     * Input file to import.
+     */
+    public static final OptionID INPUT_ID = new OptionID("dbc.mmap.in", "Input file to import if the vector file does not exist yet.");
+
+    /**
+     * Flag to store float values.
+     */
+    public static final OptionID FLOAT_ID = new OptionID("dbc.mmap.float", "Store float values instead of double values when importing.");
+
+    /**
+     * Vector file.
+     */
+    protected Path file;
+
+    /**
+     * Input file.
+     */
+    protected Path infile;
+
+    /**
+     * Store float values.
+     */
+    protected boolean isfloat;
+
+    @Override
+    public void configure(Parameterization config) {
+      new FileParameter(FILE_ID, FileParameter.FileType.OUTPUT_FILE) //
+          .grab(config, x -> file = x);
+      new FileParameter(INPUT_ID, FileParameter.FileType.INPUT_FILE) //
+          .setOptional(true) //
+          .grab(config, x -> infile = x);
+      if(infile != null) {
+        configParser(config, StreamingParser.class, NumberVectorLabelParser.class);
+        new Flag(FLOAT_ID).grab(config, x -> isfloat = x);
+        configFilters(config);
+      }
+    }
+
+    @Override
+    public MappedVectorDatabaseConnection make() {
+      return new MappedVectorDatabaseConnection(file, infile, (StreamingParser) parser, isfloat, filters);
+    }
+  }
+}
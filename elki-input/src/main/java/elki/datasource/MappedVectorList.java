@@ -0,0 +1,292 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import elki.data.DoubleVector;
+import elki.data.FloatVector;
+import elki.data.NumberVector;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.persistent.MappedVectorFile;
+
+/**
+ * Read-only list view of the vectors in a {@link MappedVectorFile}.
+ * <p>
+ * The vectors are lightweight views reading from the mapped file on demand,
+ * i.e., without copying the data into the Java heap.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @composed - - - MappedVectorFile
+ *
+ * @param <V> Vector type
+ */
+public abstract class MappedVectorList<V extends NumberVector> extends AbstractList<V> implements RandomAccess {
+  /**
+   * Vector file.
+   */
+  protected final MappedVectorFile file;
+
+  /**
+   * Constructor.
+   *
+   * @param file Vector file
+   */
+  protected MappedVectorList(MappedVectorFile file) {
+    super();
+    this.file = file;
+  }
+
+  /**
+   * Make a list view of a vector file.
+   *
+   * @param file Vector file
+   * @return List of {@link DoubleVector} or {@link FloatVector}
+   */
+  public static MappedVectorList<?> wrap(MappedVectorFile file) {
+    return file.isFloat() ? new OfFloat(file) : new OfDouble(file);
+  }
+
+  /**
+   * Get the type information of the vectors.
+   *
+   * @return Type information
+   */
+  public abstract VectorFieldTypeInformation<V> getType();
+
+  /**
+   * Get the underlying file.
+   *
+   * @return Vector file
+   */
+  public MappedVectorFile getFile() {
+    return file;
+  }
+
+  @Override
+  public int size() {
+    return file.size();
+  }
+
+  /**
+   * List of double vectors.
+   *
+   * @author Erich Schubert
+   */
+  private static class OfDouble extends MappedVectorList<DoubleVector> {
+    /**
+     * Constructor.
+     *
+     * @param file Vector file
+     */
+    protected OfDouble(MappedVectorFile file) {
+      super(file);
+    }
+
+    @Override
+    public DoubleVector get(int index) {
+      if(index < 0 || index >= file.size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + " size: " + file.size());
+      }
+      return new DoubleView(file, index);
+    }
+
+    @Override
+    public VectorFieldTypeInformation<DoubleVector> getType() {
+      return new VectorFieldTypeInformation<>(DoubleVector.FACTORY, file.getDimensionality());
+    }
+  }
+
+  /**
+   * List of float vectors.
+   *
+   * @author Erich Schubert
+   */
+  private static class OfFloat extends MappedVectorList<FloatVector> {
+    /**
+     * Constructor.
+     *
+     * @param file Vector file
+     */
+    protected OfFloat(MappedVectorFile file) {
+      super(file);
+    }
+
+    @Override
+    public FloatVector get(int index) {
+      if(index < 0 || index >= file.size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + " size: " + file.size());
+      }
+      return new FloatView(file, index);
+    }
+
+    @Override
+    public VectorFieldTypeInformation<FloatVector> getType() {
+      return new VectorFieldTypeInformation<>(FloatVector.FACTORY, file.getDimensionality());
+    }
+  }
+
+  /**
+   * Flyweight double vector view onto the mapped file.
+   *
+   * @author Erich Schubert
+   */
+  public static class DoubleView extends DoubleVector {
+    /**
+     * Vector file.
+     */
+    private final MappedVectorFile file;
+
+    /**
+     * Record offset.
+     */
+    private final int off;
+
+    /**
+     * Constructor.
+     *
+     * @param file Vector file
+     * @param off Record offset
+     */
+    protected DoubleView(MappedVectorFile file, int off) {
+      super(null, true);
+      this.file = file;
+      this.off = off;
+    }
+
+    @Override
+    public int getDimensionality() {
+      return file.getDimensionality();
+    }
+
+    @Override
+    public double doubleValue(int dimension) {
+      return file.doubleValue(off, dimension);
+    }
+
+    @Override
+    public long longValue(int dimension) {
+      return (long) doubleValue(dimension);
+    }
+
+    @Override
+    public double[] toArray() {
+      final double[] values = new double[file.getDimensionality()];
+      for(int d = 0; d < values.length; d++) {
+        values[d] = file.doubleValue(off, d);
+      }
+      return values;
+    }
+
+    @Override
+    public String toString() {
+      final int dim = file.getDimensionality();
+      StringBuilder featureLine = new StringBuilder();
+      for(int d = 0; d < dim; d++) {
+        featureLine.append(doubleValue(d));
+        if(d + 1 < dim) {
+          featureLine.append(ATTRIBUTE_SEPARATOR);
+        }
+      }
+      return featureLine.toString();
+    }
+  }
+
+  /**
+   * Flyweight float vector view onto the mapped file.
+   *
+   * @author Erich Schubert
+   */
+  public static class FloatView extends FloatVector {
+    /**
+     * Vector file.
+     */
+    private final MappedVectorFile file;
+
+    /**
+     * Record offset.
+     */
+    private final int off;
+
+    /**
+     * Constructor.
+     *
+     * @param file Vector file
+     * @param off Record offset
+     */
+    protected FloatView(MappedVectorFile file, int off) {
+      super(null, true);
+      this.file = file;
+      this.off = off;
+    }
+
+    @Override
+    public int getDimensionality() {
+      return file.getDimensionality();
+    }
+
+    @Deprecated
+    @Override
+    public Float getValue(int dimension) {
+      return floatValue(dimension);
+    }
+
+    @Override
+    public double doubleValue(int dimension) {
+      return file.floatValue(off, dimension);
+    }
+
+    @Override
+    public float floatValue(int dimension) {
+      return file.floatValue(off, dimension);
+    }
+
+    @Override
+    public long longValue(int dimension) {
+      return (long) floatValue(dimension);
+    }
+
+    @Override
+    public double[] toArray() {
+      final double[] values = new double[file.getDimensionality()];
+      for(int d = 0; d < values.length; d++) {
+        values[d] = file.floatValue(off, d);
+      }
+      return values;
+    }
+
+    @Override
+    public String toString() {
+      final int dim = file.getDimensionality();
+      StringBuilder featureLine = new StringBuilder();
+      for(int d = 0; d < dim; d++) {
+        featureLine.append(floatValue(d));
+        if(d + 1 < dim) {
+          featureLine.append(ATTRIBUTE_SEPARATOR);
+        }
+      }
+      return featureLine.toString();
+    }
+  }
+}
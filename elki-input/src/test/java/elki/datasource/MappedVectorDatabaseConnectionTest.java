@@ -0,0 +1,79 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.datasource.parser.NumberVectorLabelParser;
+import elki.utilities.exceptions.AbortException;
+
+/**
+ * Test the import into memory-mapped vector files.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class MappedVectorDatabaseConnectionTest {
+  @Test
+  public void testImport() throws IOException {
+    Path in = Files.createTempFile("ELKIUnitTest", ".csv");
+    in.toFile().deleteOnExit();
+    Files.write(in, "1 2 3\n4 5 6\n7 8 9\n".getBytes(StandardCharsets.UTF_8));
+    Path file = Files.createTempFile("ELKIUnitTest", null);
+    file.toFile().deleteOnExit();
+    MappedVectorDatabaseConnection dbc = new MappedVectorDatabaseConnection(file, in, new NumberVectorLabelParser<>(DoubleVector.FACTORY), false, Collections.emptyList());
+    MultipleObjectsBundle bundle = dbc.loadData();
+    assertEquals("Number of objects", 3, bundle.dataLength());
+    assertEquals("File size", 16 + 3 * 3 * 8, Files.size(file));
+  }
+
+  @Test
+  public void testFailedImport() throws IOException {
+    Path in = Files.createTempFile("ELKIUnitTest", ".csv");
+    in.toFile().deleteOnExit();
+    // Dimensionality changes in the last line:
+    Files.write(in, "1 2 3\n4 5 6\n7 8\n".getBytes(StandardCharsets.UTF_8));
+    Path file = Files.createTempFile("ELKIUnitTest", null);
+    file.toFile().deleteOnExit();
+    MappedVectorDatabaseConnection dbc = new MappedVectorDatabaseConnection(file, in, new NumberVectorLabelParser<>(DoubleVector.FACTORY), false, Collections.emptyList());
+    try {
+      dbc.loadData();
+      fail("Import should have failed.");
+    }
+    catch(AbortException | UncheckedIOException e) {
+      // Expected, the variable dimensionality is rejected.
+    }
+    assertFalse("Partial vector file was not removed.", Files.exists(file));
+  }
+}
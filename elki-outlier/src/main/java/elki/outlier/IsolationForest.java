@@ -0,0 +1,431 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier;
+
+import java.util.Random;
+
+import elki.data.NumberVector;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.*;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.database.relation.RelationUtil;
+import elki.logging.Logging;
+import elki.math.DoubleMinMax;
+import elki.math.MathUtil;
+import elki.math.statistics.distribution.GammaDistribution;
+import elki.parallel.ParallelCore;
+import elki.parallel.ParallelExecutor;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.result.outlier.ProbabilisticOutlierScore;
+import elki.utilities.documentation.Reference;
+import elki.utilities.documentation.Title;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.RandomParameter;
+import elki.utilities.random.RandomFactory;
+
+import net.jafama.FastMath;
+
+/**
+ * Isolation forest: outliers are isolated by fewer random axis-parallel
+ * splits than inliers.
+ * <p>
+ * Every tree is built from an independent subsample. Each tree receives its
+ * own random generator seed drawn upfront, so the trees can be built in
+ * parallel and the result does not depend on the number of threads. The
+ * trees are stored in flat arrays (split dimension, split value or leaf path
+ * length, and the offset of the right child; the left child follows its
+ * parent), and all points are scored block-wise, traversing each tree for the
+ * whole block.
+ * <p>
+ * Reference:
+ * <p>
+ * F. T. Liu, K. M. Ting, Z.-H. Zhou<br>
+ * Isolation-Based Anomaly Detection<br>
+ * ACM Trans. Knowledge Discovery from Data 6(1)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <V> Vector type
+ */
+@Title("Isolation Forest")
+@Reference(authors = "F. T. Liu, K. M. Ting, Z.-H. Zhou", //
+    title = "Isolation-Based Anomaly Detection", //
+    booktitle = "ACM Trans. Knowledge Discovery from Data 6(1)", //
+    url = "https://doi.org/10.1145/2133360.2133363", //
+    bibkey = "DBLP:journals/tkdd/LiuTZ12")
+public class IsolationForest<V extends NumberVector> implements OutlierAlgorithm {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(IsolationForest.class);
+
+  /**
+   * Number of points scored together, traversing each tree once per block.
+   */
+  private static final int BLOCKSIZE = 256;
+
+  /**
+   * Number of trees
+   */
+  protected int numTrees;
+
+  /**
+   * Size of the subsample for each tree
+   */
+  protected int subsampleSize;
+
+  /**
+   * Random generator
+   */
+  protected RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param numTrees Number of trees
+   * @param subsampleSize Subsample size
+   * @param rnd Random generator
+   */
+  public IsolationForest(int numTrees, int subsampleSize, RandomFactory rnd) {
+    super();
+    this.numTrees = numTrees;
+    this.subsampleSize = subsampleSize;
+    this.rnd = rnd;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  /**
+   * Run the isolation forest.
+   *
+   * @param relation Data relation
+   * @return Outlier result
+   */
+  public OutlierResult run(Relation<V> relation) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    if(ids.isEmpty()) {
+      DoubleRelation scoreres = new MaterializedDoubleRelation("Isolation Forest", ids, scores);
+      return new OutlierResult(new ProbabilisticOutlierScore(.5), scoreres);
+    }
+    final int dim = RelationUtil.dimensionality(relation);
+    final int psi = Math.min(subsampleSize, ids.size());
+    // Height limit, and the maximum number of nodes of a tree.
+    final int limit = (int) Math.ceil(MathUtil.log2(psi));
+    final int maxnodes = 2 * psi - 1;
+    if((long) numTrees * maxnodes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many trees of subsample size " + psi + " to store them in a flat array.");
+    }
+
+    // Flat storage of all trees.
+    final int[] dims = new int[numTrees * maxnodes];
+    final double[] vals = new double[numTrees * maxnodes];
+    final int[] rights = new int[numTrees * maxnodes];
+
+    // Draw the seeds sequentially, for reproducible results.
+    final long[] seeds = new long[numTrees];
+    Random random = rnd.getSingleThreadedRandom();
+    for(int t = 0; t < numTrees; t++) {
+      seeds[t] = random.nextLong();
+    }
+    ParallelExecutor.runTasks(numTrees, ParallelCore.getCore().getParallelism(), t -> {
+      new TreeBuilder(relation, dim, psi, limit, new Random(seeds[t]), dims, vals, rights, t * maxnodes).build(ids);
+    });
+    if(LOG.isVerbose()) {
+      LOG.verbose("Built " + numTrees + " trees with subsample size " + psi + " and height limit " + limit + ".");
+    }
+
+    // Score all points, in blocks.
+    final double cpsi = averagePathLength(psi), norm = -1. / (numTrees * cpsi);
+    ParallelExecutor.runBlocks(ids, BLOCKSIZE, (block, start, end) -> {
+      final int size = end - start;
+      double[] buf = new double[size * dim];
+      double[] sums = new double[size];
+      DBIDArrayIter it = block.iter();
+      for(int i = 0, off = 0; i < size; i++, off += dim) {
+        V vec = relation.get(it.seek(start + i));
+        for(int d = 0; d < dim; d++) {
+          buf[off + d] = vec.doubleValue(d);
+        }
+      }
+      for(int t = 0, base = 0; t < numTrees; t++, base += maxnodes) {
+        for(int i = 0, off = 0; i < size; i++, off += dim) {
+          int node = base;
+          while(dims[node] >= 0) {
+            node = buf[off + dims[node]] < vals[node] ? node + 1 : rights[node];
+          }
+          sums[i] += vals[node];
+        }
+      }
+      for(int i = 0; i < size; i++) {
+        scores.putDouble(it.seek(start + i), cpsi > 0 ? FastMath.pow(2., sums[i] * norm) : .5);
+      }
+    });
+    DoubleMinMax minmax = new DoubleMinMax();
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+      minmax.put(scores.doubleValue(it));
+    }
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Isolation Forest", ids, scores);
+    OutlierScoreMeta meta = new ProbabilisticOutlierScore(minmax.getMin(), minmax.getMax(), .5);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  /**
+   * Average path length of an unsuccessful search in a binary search tree,
+   * used to normalize path lengths, and to extend leaves that still contain
+   * several points.
+   *
+   * @param n Number of points
+   * @return Average path length
+   */
+  protected static double averagePathLength(int n) {
+    return n > 2 ? 2. * (FastMath.log(n - 1.) + GammaDistribution.EULERS_CONST) - 2. * (n - 1.) / n : n == 2 ? 1. : 0.;
+  }
+
+  /**
+   * Build a single isolation tree into the flat arrays.
+   *
+   * @author Erich Schubert
+   */
+  private static class TreeBuilder {
+    /**
+     * Data relation
+     */
+    private final Relation<? extends NumberVector> relation;
+
+    /**
+     * Dimensionality
+     */
+    private final int dim;
+
+    /**
+     * Height limit
+     */
+    private final int limit;
+
+    /**
+     * Random generator of this tree
+     */
+    private final Random random;
+
+    /**
+     * Subsample, one row of dim values per point
+     */
+    private final double[] data;
+
+    /**
+     * Rows of the current partitioning
+     */
+    private final int[] rows;
+
+    /**
+     * Scratch buffer for choosing a random non-constant dimension.
+     */
+    private final int[] perm;
+
+    /**
+     * Output arrays.
+     */
+    private final int[] dims, rights;
+
+    /**
+     * Output values: split value, or path length of leaves.
+     */
+    private final double[] vals;
+
+    /**
+     * Next node to write.
+     */
+    private int next;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param dim Dimensionality
+     * @param psi Subsample size
+     * @param limit Height limit
+     * @param random Random generator
+     * @param dims Output split dimensions
+     * @param vals Output split values and leaf path lengths
+     * @param rights Output right child offsets
+     * @param base First node of this tree
+     */
+    TreeBuilder(Relation<? extends NumberVector> relation, int dim, int psi, int limit, Random random, int[] dims, double[] vals, int[] rights, int base) {
+      this.relation = relation;
+      this.dim = dim;
+      this.limit = limit;
+      this.random = random;
+      this.data = new double[psi * dim];
+      this.rows = new int[psi];
+      this.perm = new int[dim];
+      this.dims = dims;
+      this.vals = vals;
+      this.rights = rights;
+      this.next = base;
+    }
+
+    /**
+     * Draw the subsample, and build the tree.
+     *
+     * @param ids Object ids
+     */
+    void build(DBIDs ids) {
+      int i = 0;
+      for(DBIDIter it = DBIDUtil.randomSample(ids, rows.length, random).iter(); it.valid(); it.advance(), i++) {
+        NumberVector vec = relation.get(it);
+        for(int d = 0, off = i * dim; d < dim; d++) {
+          data[off + d] = vec.doubleValue(d);
+        }
+        rows[i] = i;
+      }
+      build(0, rows.length, 0);
+    }
+
+    /**
+     * Build a subtree.
+     *
+     * @param start Start of the rows
+     * @param end End of the rows (exclusive)
+     * @param depth Depth
+     */
+    private void build(int start, int end, int depth) {
+      final int node = next++;
+      if(end - start > 1 && depth < limit) {
+        // Choose a random dimension that is not constant.
+        for(int d = 0; d < dim; d++) {
+          perm[d] = d;
+        }
+        for(int i = 0; i < dim; i++) {
+          final int j = i + random.nextInt(dim - i), d = perm[j];
+          perm[j] = perm[i];
+          perm[i] = d;
+          double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+          for(int r = start; r < end; r++) {
+            final double v = data[rows[r] * dim + d];
+            min = v < min ? v : min;
+            max = v > max ? v : max;
+          }
+          if(!(min < max)) {
+            continue;
+          }
+          double split = min + random.nextDouble() * (max - min);
+          // Rounding may yield min or exceed max; keep both sides non-empty,
+          // or the tree outgrows its 2 psi - 1 nodes.
+          split = split > min ? (split <= max ? split : max) : Math.nextUp(min);
+          // Partition the rows
+          int l = start, r = end - 1;
+          while(l <= r) {
+            if(data[rows[l] * dim + d] < split) {
+              l++;
+            }
+            else {
+              final int tmp = rows[l];
+              rows[l] = rows[r];
+              rows[r--] = tmp;
+            }
+          }
+          dims[node] = d;
+          vals[node] = split;
+          build(start, l, depth + 1);
+          rights[node] = next;
+          build(l, end, depth + 1);
+          return;
+        }
+      }
+      // Leaf: path length, extended by the expected remaining depth.
+      dims[node] = -1;
+      vals[node] = depth + averagePathLength(end - start);
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <V> Vector type
+   */
+  public static class Par<V extends NumberVector> implements Parameterizer {
+    /**
+     * Number of trees.
+     */
+    public static final OptionID NUM_TREES_ID = new OptionID("iforest.numtrees", "Number of trees to use.");
+
+    /**
+     * Subsample size.
+     */
+    public static final OptionID SUBSAMPLE_SIZE_ID = new OptionID("iforest.subsample", "Subsampling size.");
+
+    /**
+     * Parameter to specify the seed to initialize Random.
+     */
+    public static final OptionID SEED_ID = new OptionID("iforest.seed", "The seed to initialize Random.");
+
+    /**
+     * Number of trees
+     */
+    protected int numTrees = 100;
+
+    /**
+     * Size of the subsample for each tree
+     */
+    protected int subsampleSize = 256;
+
+    /**
+     * Random generator
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    public void configure(Parameterization config) {
+      new IntParameter(NUM_TREES_ID, 100) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> numTrees = x);
+      new IntParameter(SUBSAMPLE_SIZE_ID, 256) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> subsampleSize = x);
+      new RandomParameter(SEED_ID).grab(config, x -> rnd = x);
+    }
+
+    @Override
+    public IsolationForest<V> make() {
+      return new IsolationForest<>(numTrees, subsampleSize, rnd);
+    }
+  }
+}
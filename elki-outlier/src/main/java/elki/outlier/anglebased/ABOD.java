@@ -28,6 +28,7 @@ import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableDoubleDataStore;
 import elki.database.ids.ArrayDBIDs;
 import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDIter;
 import elki.database.ids.DBIDRef;
 import elki.database.ids.DBIDUtil;
 import elki.database.query.QueryBuilder;
@@ -38,6 +39,7 @@ import elki.database.relation.Relation;
 import elki.math.DoubleMinMax;
 import elki.math.MeanVariance;
 import elki.outlier.OutlierAlgorithm;
+import elki.parallel.ParallelExecutor;
 import elki.result.outlier.InvertedOutlierScoreMeta;
 import elki.result.outlier.OutlierResult;
 import elki.result.outlier.OutlierScoreMeta;
@@ -59,7 +61,8 @@ import net.jafama.FastMath;
  * <p>
  * Outlier detection using variance analysis on angles, especially for high
  * dimensional data sets. Exact version, which has cubic runtime (see also
- * {@link FastABOD} and {@link LBABOD} for faster versions).
+ * {@link FastABOD} and {@link LBABOD} for faster versions). The points are
+ * processed in parallel.
  * <p>
  * Reference:
  * <p>
@@ -81,6 +84,11 @@ import net.jafama.FastMath;
     url = "https://doi.org/10.1145/1401890.1401946", //
     bibkey = "DBLP:conf/kdd/KriegelSZ08")
 public class ABOD<V extends NumberVector> implements OutlierAlgorithm {
+  /**
+   * Number of points processed per parallel block.
+   */
+  protected static final int BLOCKSIZE = 16;
+
   /**
    * Store the configured Kernel version.
    */
@@ -108,14 +116,17 @@ public class ABOD<V extends NumberVector> implements OutlierAlgorithm {
     KernelMatrix kernelMatrix = new KernelMatrix(sq, relation, ids);
 
     WritableDoubleDataStore abodvalues = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    // The points are independent, and can be processed in parallel.
+    ParallelExecutor.runBlocks(ids, BLOCKSIZE, (block, start, end) -> {
+      MeanVariance s = new MeanVariance();
+      DBIDArrayIter pB = block.iter(), pC = block.iter();
+      for(DBIDArrayIter pA = block.iter().seek(start); pA.getOffset() < end; pA.advance()) {
+        abodvalues.putDouble(pA, computeABOF(kernelMatrix, pA, pB, pC, s));
+      }
+    });
     DoubleMinMax minmaxabod = new DoubleMinMax();
-
-    MeanVariance s = new MeanVariance();
-    DBIDArrayIter pA = ids.iter(), pB = ids.iter(), pC = ids.iter();
-    for(; pA.valid(); pA.advance()) {
-      final double abof = computeABOF(kernelMatrix, pA, pB, pC, s);
-      minmaxabod.put(abof);
-      abodvalues.putDouble(pA, abof);
+    for(DBIDIter pA = ids.iter(); pA.valid(); pA.advance()) {
+      minmaxabod.put(abodvalues.doubleValue(pA));
     }
 
     // Build result representation.
@@ -20,7 +20,11 @@
  */
 package elki.outlier.anglebased;
 
+import java.util.Random;
+import java.util.function.IntConsumer;
+
 import elki.data.NumberVector;
+import elki.data.VectorUtil;
 import elki.data.type.TypeInformation;
 import elki.data.type.TypeUtil;
 import elki.database.datastore.DataStoreFactory;
@@ -29,6 +33,7 @@ import elki.database.datastore.WritableDoubleDataStore;
 import elki.database.ids.*;
 import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.BatchKNNSearcher;
 import elki.database.query.knn.KNNSearcher;
 import elki.database.query.similarity.SimilarityQuery;
 import elki.database.relation.DoubleRelation;
@@ -38,6 +43,7 @@ import elki.distance.minkowski.EuclideanDistance;
 import elki.distance.minkowski.SquaredEuclideanDistance;
 import elki.math.DoubleMinMax;
 import elki.math.MeanVariance;
+import elki.parallel.ParallelExecutor;
 import elki.result.outlier.InvertedOutlierScoreMeta;
 import elki.result.outlier.OutlierResult;
 import elki.result.outlier.OutlierScoreMeta;
@@ -48,9 +54,13 @@ import elki.utilities.documentation.Description;
 import elki.utilities.documentation.Reference;
 import elki.utilities.documentation.Title;
 import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
 import elki.utilities.optionhandling.constraints.GreaterEqualConstraint;
 import elki.utilities.optionhandling.parameterization.Parameterization;
 import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.RandomParameter;
+import elki.utilities.random.RandomFactory;
+import elki.utilities.random.Xoroshiro128NonThreadsafeRandom;
 
 import net.jafama.FastMath;
 
@@ -61,6 +71,18 @@ import net.jafama.FastMath;
  * Note: the minimum k is 3. The 2 nearest neighbors yields one 1 angle, which
  * implies a constant 0 variance everywhere.
  * <p>
+ * The points are processed in parallel. With the linear kernel, no kernel
+ * matrix is built; instead the nearest neighbors are found with the squared
+ * Euclidean distance (using an index, if available), and the scalar products
+ * of each pair of neighbors are computed directly.
+ * <p>
+ * Optionally, only a given number of neighbor pairs is sampled (with
+ * replacement) for each point instead of using all \(k(k-1)/2\) pairs. The
+ * weighted mean and variance of the angles are then estimated from the sample,
+ * with a standard error that decreases with \(1/\sqrt{\text{pairs}}\)
+ * independent of k. Each point uses its own seed, so the result does not depend
+ * on the number of threads.
+ * <p>
  * Reference:
  * <p>
  * Hans-Peter Kriegel, Matthias Schubert, Arthur Zimek<br>
@@ -86,6 +108,16 @@ public class FastABOD<V extends NumberVector> extends ABOD<V> {
    */
   protected int k;
 
+  /**
+   * Number of neighbor pairs to sample, 0 to use all pairs.
+   */
+  protected int pairs;
+
+  /**
+   * Random generator for sampling pairs.
+   */
+  protected RandomFactory rnd;
+
   /**
    * Constructor for Angle-Based Outlier Detection (ABOD).
    *
@@ -93,8 +125,22 @@ public class FastABOD<V extends NumberVector> extends ABOD<V> {
    * @param k Number of nearest neighbors
    */
   public FastABOD(Similarity<? super V> kernelFunction, int k) {
+    this(kernelFunction, k, 0, RandomFactory.DEFAULT);
+  }
+
+  /**
+   * Constructor for Angle-Based Outlier Detection (ABOD).
+   *
+   * @param kernelFunction kernel function to use
+   * @param k Number of nearest neighbors
+   * @param pairs Number of neighbor pairs to sample, 0 to use all pairs
+   * @param rnd Random generator for sampling
+   */
+  public FastABOD(Similarity<? super V> kernelFunction, int k, int pairs, RandomFactory rnd) {
     super(kernelFunction);
     this.k = k;
+    this.pairs = pairs;
+    this.rnd = rnd;
   }
 
   /**
@@ -105,17 +151,18 @@ public class FastABOD<V extends NumberVector> extends ABOD<V> {
    */
   @Override
   public OutlierResult run(Relation<V> relation) {
-    DBIDs ids = relation.getDBIDs();
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
     WritableDoubleDataStore abodvalues = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
-    DoubleMinMax minmaxabod = new DoubleMinMax();
+    final long seed = pairs > 0 ? rnd.getSingleThreadedRandom().nextLong() : 0L;
     if(kernelFunction.getClass() == LinearKernel.class) {
-      if(!kNNABOD(relation, ids, abodvalues, minmaxabod)) {
-        // Fallback, if we do not have an index.
-        fastABOD(relation, ids, abodvalues, minmaxabod);
-      }
+      kNNABOD(relation, ids, abodvalues, seed);
     }
     else {
-      fastABOD(relation, ids, abodvalues, minmaxabod);
+      fastABOD(relation, ids, abodvalues, seed);
+    }
+    DoubleMinMax minmaxabod = new DoubleMinMax();
+    for(DBIDIter pA = ids.iter(); pA.valid(); pA.advance()) {
+      minmaxabod.put(abodvalues.doubleValue(pA));
     }
 
     // Build result representation.
@@ -130,62 +177,64 @@ public class FastABOD<V extends NumberVector> extends ABOD<V> {
    * @param relation Data relation
    * @param ids IDs
    * @param abodvalues Score storage
-   * @param minmaxabod Min/max storage
-   * @return {@code true} if kNN were available and usable.
+   * @param seed Random seed for sampling pairs
    */
-  private boolean kNNABOD(Relation<V> relation, DBIDs ids, WritableDoubleDataStore abodvalues, DoubleMinMax minmaxabod) {
-    int k1 = k + 1; // We will get the query point back by the knnq.
-    DistanceQuery<V> dq = new QueryBuilder<>(relation, SquaredEuclideanDistance.STATIC).distanceQuery();
-    KNNSearcher<DBIDRef> knnq = new QueryBuilder<>(dq).optimizedOnly().kNNByDBID(k1);
-    boolean squared = true;
-    if(knnq == null) {
-      dq = new QueryBuilder<>(relation, EuclideanDistance.STATIC).distanceQuery();
-      if((knnq = new QueryBuilder<>(dq).optimizedOnly().kNNByDBID(k1)) == null) {
-        return false;
-      }
-      squared = false;
-    }
-    SimilarityQuery<V> lk = new QueryBuilder<>(relation, (Similarity<? super V>) LinearKernel.STATIC).similarityQuery();
-
-    MeanVariance s = new MeanVariance();
-    for(DBIDIter pA = ids.iter(); pA.valid(); pA.advance()) {
-      KNNList nl = knnq.getKNN(pA, k1);
-      double simAA = lk.similarity(pA, pA);
+  private void kNNABOD(Relation<V> relation, ArrayDBIDs ids, WritableDoubleDataStore abodvalues, long seed) {
+    final int k1 = k + 1; // We will get the query point back by the knnq.
+    // Prefer squared Euclidean, unless we only have an index for Euclidean.
+    DistanceQuery<V> sqdq = new QueryBuilder<>(relation, SquaredEuclideanDistance.STATIC).distanceQuery();
+    DistanceQuery<V> edq = new QueryBuilder<>(relation, EuclideanDistance.STATIC).distanceQuery();
+    final boolean squared = new QueryBuilder<>(sqdq).optimizedOnly().kNNByDBID(k1) != null //
+        || new QueryBuilder<>(edq).optimizedOnly().kNNByDBID(k1) == null;
+    final QueryBuilder<V> qb = new QueryBuilder<>(squared ? sqdq : edq);
+    // Choose the query (and possibly build an index) only once. Batch
+    // searchers are thread-safe, other searchers are instantiated per block.
+    final KNNSearcher<DBIDRef> sharedq = qb.kNNByDBID(k1);
+    final boolean shared = sharedq instanceof BatchKNNSearcher;
 
-      s.reset();
-      DoubleDBIDListIter iB = nl.iter(), iC = nl.iter();
-      for(; iB.valid(); iB.advance()) {
-        double dAB = iB.doubleValue();
-        double simAB = lk.similarity(pA, iB);
-        if(!(dAB > 0.)) {
-          continue;
+    ParallelExecutor.runBlocks(ids, BLOCKSIZE, (block, start, end) -> {
+      KNNSearcher<DBIDRef> knnq = shared ? sharedq : qb.kNNByDBID(k1);
+      MeanVariance s = new MeanVariance();
+      Random random = pairs > 0 ? new Xoroshiro128NonThreadsafeRandom(seed) : null;
+      NumberVector[] vecs = new NumberVector[k1];
+      double[] sqdA = new double[k1], simA = new double[k1];
+      for(DBIDArrayIter pA = block.iter().seek(start); pA.getOffset() < end; pA.advance()) {
+        KNNList nl = knnq.getKNN(pA, k1);
+        if(vecs.length < nl.size()) { // Ties
+          vecs = new NumberVector[nl.size()];
+          sqdA = new double[nl.size()];
+          simA = new double[nl.size()];
         }
-        for(iC.seek(iB.getOffset() + 1); iC.valid(); iC.advance()) {
-          double dAC = iC.doubleValue();
-          double simAC = lk.similarity(pA, iC);
-          if(!(dAC > 0.)) {
+        final NumberVector vA = relation.get(pA);
+        final double simAA = VectorUtil.dot(vA, vA);
+        int m = 0;
+        for(DoubleDBIDListIter iB = nl.iter(); iB.valid(); iB.advance()) {
+          final double dAB = iB.doubleValue();
+          if(!(dAB > 0.)) {
             continue;
           }
-          // Exploit bilinearity of scalar product:
-          // <B-A, C-A> = <B, C-A> - <A,C-A>
-          // = <B,C> - <B,A> - <A,C> + <A,A>
-          double simBC = lk.similarity(iB, iC);
-          double numerator = simBC - simAB - simAC + simAA;
-          if(squared) {
-            double div = 1. / (dAB * dAC);
-            s.put(numerator * div, FastMath.sqrt(div));
+          sqdA[m] = squared ? dAB : dAB * dAB;
+          simA[m] = VectorUtil.dot(vA, vecs[m] = relation.get(iB));
+          m++;
+        }
+        s.reset();
+        if(sample(m)) {
+          random.setSeed(seed + pA.getOffset());
+          for(int i = 0; i < pairs; i++) {
+            final int b = random.nextInt(m), c = nextOther(random, m, b);
+            putAngle(s, VectorUtil.dot(vecs[b], vecs[c]), simA[b], simA[c], simAA, sqdA[b], sqdA[c]);
           }
-          else {
-            double sqrtdiv = 1. / (dAB * dAC);
-            s.put(numerator * sqrtdiv * sqrtdiv, sqrtdiv);
+        }
+        else {
+          for(int b = 0; b < m; b++) {
+            for(int c = b + 1; c < m; c++) {
+              putAngle(s, VectorUtil.dot(vecs[b], vecs[c]), simA[b], simA[c], simAA, sqdA[b], sqdA[c]);
+            }
           }
         }
+        abodvalues.putDouble(pA, s.getNaiveVariance());
       }
-      final double abof = s.getNaiveVariance();
-      minmaxabod.put(abof);
-      abodvalues.putDouble(pA, abof);
-    }
-    return true;
+    });
   }
 
   /**
@@ -194,61 +243,110 @@ public class FastABOD<V extends NumberVector> extends ABOD<V> {
    * @param relation Data relation
    * @param ids IDs
    * @param abodvalues Score storage
-   * @param minmaxabod Min/max storage
+   * @param seed Random seed for sampling pairs
    */
-  private void fastABOD(Relation<V> relation, DBIDs ids, WritableDoubleDataStore abodvalues, DoubleMinMax minmaxabod) {
+  private void fastABOD(Relation<V> relation, ArrayDBIDs ids, WritableDoubleDataStore abodvalues, long seed) {
     // Build a kernel matrix, to make O(n^3) slightly less bad.
     SimilarityQuery<V> sq = new QueryBuilder<>(relation, kernelFunction).similarityQuery();
     KernelMatrix kernelMatrix = new KernelMatrix(sq, relation, ids);
 
-    MeanVariance s = new MeanVariance();
-    KNNHeap nn = DBIDUtil.newHeap(k);
-    for(DBIDIter pA = ids.iter(); pA.valid(); pA.advance()) {
-      final double simAA = kernelMatrix.getSimilarity(pA, pA);
+    ParallelExecutor.runBlocks(ids, BLOCKSIZE, (block, start, end) -> {
+      MeanVariance s = new MeanVariance();
+      KNNHeap nn = DBIDUtil.newHeap(k);
+      Random random = pairs > 0 ? new Xoroshiro128NonThreadsafeRandom(seed) : null;
+      DBIDArrayIter nB = block.iter();
+      double[] sqdA = new double[k], simA = new double[k];
+      for(DBIDArrayIter pA = block.iter().seek(start); pA.getOffset() < end; pA.advance()) {
+        final double simAA = kernelMatrix.getSimilarity(pA, pA);
 
-      // Choose the k-min nearest
-      nn.clear();
-      for(DBIDIter nB = relation.iterDBIDs(); nB.valid(); nB.advance()) {
-        if(DBIDUtil.equal(nB, pA)) {
-          continue;
+        // Choose the k-min nearest
+        nn.clear();
+        for(nB.seek(0); nB.valid(); nB.advance()) {
+          if(DBIDUtil.equal(nB, pA)) {
+            continue;
+          }
+          double simBB = kernelMatrix.getSimilarity(nB, nB);
+          double simAB = kernelMatrix.getSimilarity(pA, nB);
+          double sqdAB = simAA + simBB - simAB - simAB;
+          if(!(sqdAB > 0.)) {
+            continue;
+          }
+          nn.insert(sqdAB, nB);
         }
-        double simBB = kernelMatrix.getSimilarity(nB, nB);
-        double simAB = kernelMatrix.getSimilarity(pA, nB);
-        double sqdAB = simAA + simBB - simAB - simAB;
-        if(!(sqdAB > 0.)) {
-          continue;
+        KNNList nl = nn.toKNNList();
+        final int m = nl.size();
+        if(sqdA.length < m) { // Ties
+          sqdA = new double[m];
+          simA = new double[m];
         }
-        nn.insert(sqdAB, nB);
-      }
-      KNNList nl = nn.toKNNList();
-
-      s.reset();
-      DoubleDBIDListIter iB = nl.iter(), iC = nl.iter();
-      for(; iB.valid(); iB.advance()) {
-        double sqdAB = iB.doubleValue();
-        double simAB = kernelMatrix.getSimilarity(pA, iB);
-        if(!(sqdAB > 0.)) {
-          continue;
+        DoubleDBIDListIter iB = nl.iter(), iC = nl.iter();
+        for(; iB.valid(); iB.advance()) {
+          sqdA[iB.getOffset()] = iB.doubleValue();
+          simA[iB.getOffset()] = kernelMatrix.getSimilarity(pA, iB);
         }
-        for(iC.seek(iB.getOffset() + 1); iC.valid(); iC.advance()) {
-          double sqdAC = iC.doubleValue();
-          double simAC = kernelMatrix.getSimilarity(pA, iC);
-          if(!(sqdAC > 0.)) {
-            continue;
+        s.reset();
+        if(sample(m)) {
+          random.setSeed(seed + pA.getOffset());
+          for(int i = 0; i < pairs; i++) {
+            final int b = random.nextInt(m), c = nextOther(random, m, b);
+            putAngle(s, kernelMatrix.getSimilarity(iB.seek(b), iC.seek(c)), simA[b], simA[c], simAA, sqdA[b], sqdA[c]);
+          }
+        }
+        else {
+          for(iB.seek(0); iB.valid(); iB.advance()) {
+            final int b = iB.getOffset();
+            for(iC.seek(b + 1); iC.valid(); iC.advance()) {
+              final int c = iC.getOffset();
+              putAngle(s, kernelMatrix.getSimilarity(iB, iC), simA[b], simA[c], simAA, sqdA[b], sqdA[c]);
+            }
           }
-          // Exploit bilinearity of scalar product:
-          // <B-A, C-A> = <B, C-A> - <A,C-A>
-          // = <B,C> - <B,A> - <A,C> + <A,A>
-          double simBC = kernelMatrix.getSimilarity(iB, iC);
-          double numerator = simBC - simAB - simAC + simAA;
-          double div = 1. / (sqdAB * sqdAC);
-          s.put(numerator * div, FastMath.sqrt(div));
         }
+        abodvalues.putDouble(pA, s.getNaiveVariance());
       }
-      final double abof = s.getNaiveVariance();
-      minmaxabod.put(abof);
-      abodvalues.putDouble(pA, abof);
-    }
+    });
+  }
+
+  /**
+   * Test whether to sample pairs instead of using all of them.
+   *
+   * @param m Number of neighbors
+   * @return {@code true} if fewer pairs are sampled than there are
+   */
+  private boolean sample(int m) {
+    return pairs > 0 && m > 1 && pairs < (m * (m - 1L)) >>> 1;
+  }
+
+  /**
+   * Choose a random neighbor different from the given one.
+   *
+   * @param random Random generator
+   * @param m Number of neighbors
+   * @param b Neighbor to exclude
+   * @return Other neighbor
+   */
+  private static int nextOther(Random random, int m, int b) {
+    final int c = random.nextInt(m - 1);
+    return c < b ? c : c + 1;
+  }
+
+  /**
+   * Add the angle of a pair of neighbors to the weighted variance.
+   *
+   * @param s Variance accumulator
+   * @param simBC Similarity of the neighbors B and C
+   * @param simAB Similarity of the query point A and B
+   * @param simAC Similarity of the query point A and C
+   * @param simAA Self-similarity of the query point A
+   * @param sqdAB Squared distance of A and B
+   * @param sqdAC Squared distance of A and C
+   */
+  private static void putAngle(MeanVariance s, double simBC, double simAB, double simAC, double simAA, double sqdAB, double sqdAC) {
+    // Exploit bilinearity of scalar product:
+    // <B-A, C-A> = <B, C-A> - <A,C-A>
+    // = <B,C> - <B,A> - <A,C> + <A,A>
+    double numerator = simBC - simAB - simAC + simAA;
+    double div = 1. / (sqdAB * sqdAC);
+    s.put(numerator * div, FastMath.sqrt(div));
   }
 
   @Override
@@ -267,22 +365,57 @@ public class FastABOD<V extends NumberVector> extends ABOD<V> {
      */
     public static final OptionID K_ID = new OptionID("fastabod.k", "Number of nearest neighbors to use for ABOD.");
 
+    /**
+     * Parameter for the number of neighbor pairs to sample.
+     */
+    public static final OptionID PAIRS_ID = new OptionID("fastabod.pairs", "Number of neighbor pairs to sample for each point. By default, all pairs are used.");
+
+    /**
+     * Random seed for sampling neighbor pairs.
+     */
+    public static final OptionID SEED_ID = new OptionID("fastabod.seed", "Random seed for sampling neighbor pairs.");
+
     /**
      * Number of neighbors.
      */
     protected int k;
 
+    /**
+     * Number of pairs to sample.
+     */
+    protected int pairs = 0;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory rnd;
+
     @Override
     public void configure(Parameterization config) {
       super.configure(config);
+      configureK(config, x -> k = x);
+      new IntParameter(PAIRS_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true) //
+          .grab(config, x -> pairs = x);
+      new RandomParameter(SEED_ID).grab(config, x -> rnd = x);
+    }
+
+    /**
+     * Configure the number of neighbors, also used by {@link LBABOD}.
+     *
+     * @param config Parameterization
+     * @param consumer Consumer of the parameter value
+     */
+    protected static void configureK(Parameterization config, IntConsumer consumer) {
       new IntParameter(K_ID) //
           .addConstraint(new GreaterEqualConstraint(3)) //
-          .grab(config, x -> k = x);
+          .grab(config, consumer);
     }
 
     @Override
     public FastABOD<V> make() {
-      return new FastABOD<>(kernelFunction, k);
+      return new FastABOD<>(kernelFunction, k, pairs, rnd);
     }
   }
 }
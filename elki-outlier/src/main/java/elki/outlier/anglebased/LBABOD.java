@@ -38,6 +38,8 @@ import elki.logging.LoggingConfiguration;
 import elki.logging.statistics.LongStatistic;
 import elki.math.DoubleMinMax;
 import elki.math.MeanVariance;
+import elki.parallel.ParallelCore;
+import elki.parallel.ParallelExecutor;
 import elki.result.outlier.InvertedOutlierScoreMeta;
 import elki.result.outlier.OutlierResult;
 import elki.result.outlier.OutlierScoreMeta;
@@ -61,6 +63,10 @@ import net.jafama.FastMath;
  * <p>
  * Exact on the top k outliers, approximate on the remaining.
  * <p>
+ * The lower bounds are computed in parallel; the exact scores of the
+ * candidates are refined in parallel batches, with the same result as a
+ * sequential refinement.
+ * <p>
  * Outlier detection using variance analysis on angles, especially for high
  * dimensional data sets.
  * <p>
@@ -116,114 +122,73 @@ public class LBABOD<V extends NumberVector> extends FastABOD<V> {
   @Override
   public OutlierResult run(Relation<V> relation) {
     ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
-    DBIDArrayIter pB = ids.iter(), pC = ids.iter();
     SimilarityQuery<V> sq = new QueryBuilder<>(relation, kernelFunction).similarityQuery();
     KernelMatrix kernelMatrix = new KernelMatrix(sq, relation, ids);
 
     // Output storage.
     WritableDoubleDataStore abodvalues = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
-    DoubleMinMax minmaxabod = new DoubleMinMax();
-    double max = 0.;
 
-    // Storage for squared distances (will be reused!)
-    WritableDoubleDataStore sqDists = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT);
-    // Nearest neighbor heap (will be reused!)
-    KNNHeap nn = DBIDUtil.newHeap(k);
+    // Compute the lower bounds in parallel
+    ParallelExecutor.runBlocks(ids, BLOCKSIZE, (block, start, end) -> {
+      // Nearest neighbor heap (will be reused!)
+      KNNHeap nn = DBIDUtil.newHeap(k);
+      DBIDArrayIter pB = block.iter();
+      for(DBIDArrayIter pA = block.iter().seek(start); pA.getOffset() < end; pA.advance()) {
+        abodvalues.putDouble(pA, computeLBABOF(kernelMatrix, pA, pB, nn));
+      }
+    });
 
+    // get Candidate Ranking
+    DoubleMinMax minmaxabod = new DoubleMinMax();
+    double max = 0.;
     // Priority queue for candidates
     ModifiableDoubleDBIDList candidates = DBIDUtil.newDistanceDBIDList(relation.size());
-    // get Candidate Ranking
-    for(DBIDIter pA = relation.iterDBIDs(); pA.valid(); pA.advance()) {
-      // Compute nearest neighbors and distances.
-      nn.clear();
-      double simAA = kernelMatrix.getSimilarity(pA, pA);
-      // Sum of 1./(|AB|) and 1./(|AB|^2); for computing R2.
-      double sumid = 0., sumisqd = 0.;
-      for(pB.seek(0); pB.valid(); pB.advance()) {
-        if(DBIDUtil.equal(pB, pA)) {
-          continue;
-        }
-        double simBB = kernelMatrix.getSimilarity(pB, pB);
-        double simAB = kernelMatrix.getSimilarity(pA, pB);
-        double sqdAB = simAA + simBB - simAB - simAB;
-        sqDists.putDouble(pB, sqdAB);
-        final double isqdAB = 1. / sqdAB;
-        sumid += FastMath.sqrt(isqdAB);
-        sumisqd += isqdAB;
-        // Update heap
-        nn.insert(sqdAB, pB);
-      }
-
-      // Compute FastABOD approximation, adjust for lower bound.
-      // LB-ABOF is defined via a numerically unstable formula.
-      // Variance as E(X^2)-E(X)^2 suffers from catastrophic cancellation!
-      // TODO: ensure numerical precision!
-      double nnsum = 0., nnsumsq = 0., nnsumisqd = 0.;
-      KNNList nl = nn.toKNNList();
-      DoubleDBIDListIter iB = nl.iter(), iC = nl.iter();
-      for(; iB.valid(); iB.advance()) {
-        double sqdAB = iB.doubleValue();
-        double simAB = kernelMatrix.getSimilarity(pA, iB);
-        if(!(sqdAB > 0.)) {
-          continue;
-        }
-        for(iC.seek(iB.getOffset() + 1); iC.valid(); iC.advance()) {
-          double sqdAC = iC.doubleValue();
-          double simAC = kernelMatrix.getSimilarity(pA, iC);
-          if(!(sqdAC > 0.)) {
-            continue;
-          }
-          // Exploit bilinearity of scalar product:
-          // <B-A, C-A> = <B, C-A> - <A,C-A>
-          // = <B,C> - <B,A> - <A,C> + <A,A>
-          double simBC = kernelMatrix.getSimilarity(iB, iC);
-          double numerator = simBC - simAB - simAC + simAA;
-          double sqweight = 1. / (sqdAB * sqdAC);
-          double weight = FastMath.sqrt(sqweight);
-          double val = numerator * sqweight;
-          nnsum += val * weight;
-          nnsumsq += val * val * weight;
-          nnsumisqd += sqweight;
-        }
-      }
-      // Remaining weight, term R2:
-      double r2 = sumisqd * sumisqd - 2. * nnsumisqd;
-      double tmp = (2. * nnsum + r2) / (sumid * sumid);
-      double lbabof = 2. * nnsumsq / (sumid * sumid) - tmp * tmp;
-
+    for(DBIDIter pA = ids.iter(); pA.valid(); pA.advance()) {
+      final double lbabof = abodvalues.doubleValue(pA);
       // Track maximum?
       if(lbabof > max) {
         max = lbabof;
       }
-      abodvalues.putDouble(pA, lbabof);
       candidates.add(lbabof, pA);
     }
     minmaxabod.put(max); // Put maximum from approximate values.
     candidates.sort();
 
-    // refine Candidates
+    // refine Candidates, in batches of exact scores computed in parallel.
+    // Scores beyond the stopping point are discarded, so the result does not
+    // depend on the batch size.
+    final int batchsize = ParallelCore.getCore().getParallelism();
+    double[] batch = new double[batchsize];
     int refinements = 0;
     DoubleMinHeap topscores = new DoubleMinHeap(l);
-    MeanVariance s = new MeanVariance();
-    for(DoubleDBIDListIter pA = candidates.iter(); pA.valid(); pA.advance()) {
-      // Stop refining
-      if(topscores.size() >= k && pA.doubleValue() > topscores.peek()) {
-        break;
-      }
-      final double abof = computeABOF(kernelMatrix, pA, pB, pC, s);
-      // Store refined score:
-      abodvalues.putDouble(pA, abof);
-      minmaxabod.put(abof);
-      // Update the heap tracking the top scores.
-      if(topscores.size() < k) {
-        topscores.add(abof);
-      }
-      else {
-        if(topscores.peek() > abof) {
-          topscores.replaceTopElement(abof);
+    DoubleDBIDListIter pA = candidates.iter();
+    refine: for(int off = 0; off < candidates.size(); off += batchsize) {
+      final int first = off, size = Math.min(batchsize, candidates.size() - off);
+      ParallelExecutor.runTasks(size, size, i -> {
+        DoubleDBIDListIter cand = candidates.iter().seek(first + i);
+        batch[i] = computeABOF(kernelMatrix, cand, ids.iter(), ids.iter(), new MeanVariance());
+      });
+      for(int i = 0; i < size; i++) {
+        pA.seek(first + i);
+        // Stop refining
+        if(topscores.size() >= k && pA.doubleValue() > topscores.peek()) {
+          break refine;
         }
+        final double abof = batch[i];
+        // Store refined score:
+        abodvalues.putDouble(pA, abof);
+        minmaxabod.put(abof);
+        // Update the heap tracking the top scores.
+        if(topscores.size() < k) {
+          topscores.add(abof);
+        }
+        else {
+          if(topscores.peek() > abof) {
+            topscores.replaceTopElement(abof);
+          }
+        }
+        refinements += 1;
       }
-      refinements += 1;
     }
     if(LOG.isStatistics()) {
       LoggingConfiguration.setVerbose(Level.VERYVERBOSE);
@@ -235,6 +200,73 @@ public class LBABOD<V extends NumberVector> extends FastABOD<V> {
     return new OutlierResult(scoreMeta, scoreResult);
   }
 
+  /**
+   * Compute the lower bound of the ABOF value, using the k nearest neighbors.
+   *
+   * @param kernelMatrix Kernel matrix
+   * @param pA Object A to compute the bound for
+   * @param pB Iterator over objects B
+   * @param nn Nearest neighbor heap (will be reused)
+   * @return LB-ABOF value
+   */
+  protected double computeLBABOF(KernelMatrix kernelMatrix, DBIDRef pA, DBIDArrayIter pB, KNNHeap nn) {
+    // Compute nearest neighbors and distances.
+    nn.clear();
+    double simAA = kernelMatrix.getSimilarity(pA, pA);
+    // Sum of 1./(|AB|) and 1./(|AB|^2); for computing R2.
+    double sumid = 0., sumisqd = 0.;
+    for(pB.seek(0); pB.valid(); pB.advance()) {
+      if(DBIDUtil.equal(pB, pA)) {
+        continue;
+      }
+      double simBB = kernelMatrix.getSimilarity(pB, pB);
+      double simAB = kernelMatrix.getSimilarity(pA, pB);
+      double sqdAB = simAA + simBB - simAB - simAB;
+      final double isqdAB = 1. / sqdAB;
+      sumid += FastMath.sqrt(isqdAB);
+      sumisqd += isqdAB;
+      // Update heap
+      nn.insert(sqdAB, pB);
+    }
+
+    // Compute FastABOD approximation, adjust for lower bound.
+    // LB-ABOF is defined via a numerically unstable formula.
+    // Variance as E(X^2)-E(X)^2 suffers from catastrophic cancellation!
+    // TODO: ensure numerical precision!
+    double nnsum = 0., nnsumsq = 0., nnsumisqd = 0.;
+    KNNList nl = nn.toKNNList();
+    DoubleDBIDListIter iB = nl.iter(), iC = nl.iter();
+    for(; iB.valid(); iB.advance()) {
+      double sqdAB = iB.doubleValue();
+      double simAB = kernelMatrix.getSimilarity(pA, iB);
+      if(!(sqdAB > 0.)) {
+        continue;
+      }
+      for(iC.seek(iB.getOffset() + 1); iC.valid(); iC.advance()) {
+        double sqdAC = iC.doubleValue();
+        double simAC = kernelMatrix.getSimilarity(pA, iC);
+        if(!(sqdAC > 0.)) {
+          continue;
+        }
+        // Exploit bilinearity of scalar product:
+        // <B-A, C-A> = <B, C-A> - <A,C-A>
+        // = <B,C> - <B,A> - <A,C> + <A,A>
+        double simBC = kernelMatrix.getSimilarity(iB, iC);
+        double numerator = simBC - simAB - simAC + simAA;
+        double sqweight = 1. / (sqdAB * sqdAC);
+        double weight = FastMath.sqrt(sqweight);
+        double val = numerator * sqweight;
+        nnsum += val * weight;
+        nnsumsq += val * val * weight;
+        nnsumisqd += sqweight;
+      }
+    }
+    // Remaining weight, term R2:
+    double r2 = sumisqd * sumisqd - 2. * nnsumisqd;
+    double tmp = (2. * nnsum + r2) / (sumid * sumid);
+    return 2. * nnsumsq / (sumid * sumid) - tmp * tmp;
+  }
+
   @Override
   public TypeInformation[] getInputTypeRestriction() {
     return TypeUtil.array(TypeUtil.NUMBER_VECTOR_FIELD);
@@ -245,12 +277,17 @@ public class LBABOD<V extends NumberVector> extends FastABOD<V> {
    *
    * @author Erich Schubert
    */
-  public static class Par<V extends NumberVector> extends FastABOD.Par<V> {
+  public static class Par<V extends NumberVector> extends ABOD.Par<V> {
     /**
      * Parameter to specify the number of outliers to compute exactly.
      */
     public static final OptionID L_ID = new OptionID("abod.l", "Number of top outliers to compute.");
 
+    /**
+     * Number of neighbors.
+     */
+    protected int k;
+
     /**
      * Number of outliers to find.
      */
@@ -259,6 +296,7 @@ public class LBABOD<V extends NumberVector> extends FastABOD<V> {
     @Override
     public void configure(Parameterization config) {
       super.configure(config);
+      FastABOD.Par.configureK(config, x -> k = x);
       new IntParameter(L_ID) //
           .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
           .grab(config, x -> l = x);
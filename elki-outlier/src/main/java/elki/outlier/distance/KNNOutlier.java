@@ -23,12 +23,15 @@ package elki.outlier.distance;
 import elki.Algorithm;
 import elki.data.type.TypeInformation;
 import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStore;
 import elki.database.datastore.DataStoreFactory;
 import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableDoubleDataStore;
 import elki.database.ids.DBIDIter;
 import elki.database.ids.DBIDRef;
+import elki.database.ids.KNNList;
 import elki.database.query.QueryBuilder;
+import elki.database.query.knn.BatchKNNSearcher;
 import elki.database.query.knn.KNNSearcher;
 import elki.database.relation.DoubleRelation;
 import elki.database.relation.MaterializedDoubleRelation;
@@ -129,6 +132,10 @@ public class KNNOutlier<O> implements OutlierAlgorithm {
   public OutlierResult run(Relation<O> relation) {
     KNNSearcher<DBIDRef> knnQuery = new QueryBuilder<>(relation, distance).kNNByDBID(kplus);
 
+    // Batch processing, if supported by the searcher:
+    DataStore<KNNList> knns = knnQuery instanceof BatchKNNSearcher ? //
+        ((BatchKNNSearcher) knnQuery).getKNNs(relation.getDBIDs(), kplus) : null;
+
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("kNN distance for objects", relation.size(), LOG) : null;
     DoubleMinMax minmax = new DoubleMinMax();
     WritableDoubleDataStore knno_score = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
@@ -136,7 +143,7 @@ public class KNNOutlier<O> implements OutlierAlgorithm {
     for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
       // distance to the kth nearest neighbor
       // (assuming the query point is always included, with distance 0)
-      final double dkn = knnQuery.getKNN(it, kplus).getKNNDistance();
+      final double dkn = (knns != null ? knns.get(it) : knnQuery.getKNN(it, kplus)).getKNNDistance();
       knno_score.putDouble(it, dkn);
       minmax.put(dkn);
       LOG.incrementProcessed(prog);
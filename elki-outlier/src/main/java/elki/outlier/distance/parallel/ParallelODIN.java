@@ -0,0 +1,183 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.distance.parallel;
+
+import elki.Algorithm;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.math.DoubleMinMax;
+import elki.outlier.OutlierAlgorithm;
+import elki.outlier.distance.ODIN;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.KNNProcessor;
+import elki.parallel.processor.WriteDataStoreProcessor;
+import elki.parallel.variables.SharedObject;
+import elki.result.outlier.InvertedOutlierScoreMeta;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Parallel implementation of ODIN, the outlier detection using the in-degree
+ * of the k-nearest neighbor graph.
+ * <p>
+ * The nearest neighbor search is done in parallel, the in-degrees are then
+ * counted in a single pass, in the same order as {@link ODIN}.
+ * <p>
+ * Reference:
+ * <p>
+ * V. Hautamäki and I. Kärkkäinen and P. Fränti<br>
+ * Outlier detection using k-nearest neighbour graph<br>
+ * Proc. 17th Int. Conf. Pattern Recognition (ICPR 2004)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @composed - - - KNNProcessor
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "V. Hautamäki, I. Kärkkäinen, P. Fränti", //
+    title = "Outlier detection using k-nearest neighbour graph", //
+    booktitle = "Proc. 17th Int. Conf. Pattern Recognition (ICPR 2004)", //
+    url = "https://doi.org/10.1109/ICPR.2004.1334558", //
+    bibkey = "DBLP:conf/icpr/HautamakiKF04")
+public class ParallelODIN<O> implements OutlierAlgorithm {
+  /**
+   * Distance function used.
+   */
+  protected Distance<? super O> distance;
+
+  /**
+   * Number of neighbors for kNN graph.
+   */
+  protected int kplus;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param k k parameter
+   */
+  public ParallelODIN(Distance<? super O> distance, int k) {
+    super();
+    this.distance = distance;
+    this.kplus = k + 1; // + query point
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(distance.getInputTypeRestriction());
+  }
+
+  /**
+   * Run the parallel ODIN algorithm
+   *
+   * @param relation Relation to process.
+   * @return ODIN outlier result.
+   */
+  public OutlierResult run(Relation<O> relation) {
+    DBIDs ids = relation.getDBIDs();
+    final QueryBuilder<O> qb = new QueryBuilder<>(relation, distance);
+    // Compute the kNN
+    WritableDataStore<KNNList> knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_TEMP, KNNList.class);
+    {
+      KNNProcessor knnm = new KNNProcessor(kplus, () -> qb.kNNByDBID(kplus));
+      SharedObject<KNNList> knnv = new SharedObject<>();
+      WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(knns);
+      knnm.connectKNNOutput(knnv);
+      storek.connectInput(knnv);
+      ParallelExecutor.run(ids, knnm, storek);
+    }
+
+    // Count the in-degrees. This is cheap compared to the kNN search.
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB, 0.);
+    double inc = 1. / (kplus - 1);
+    DoubleMinMax minmax = new DoubleMinMax();
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      for(DBIDIter nei = knns.get(iter).iter(); nei.valid(); nei.advance()) {
+        if(DBIDUtil.equal(iter, nei)) {
+          continue;
+        }
+        final double value = scores.doubleValue(nei) + inc;
+        scores.put(nei, value);
+        minmax.put(value);
+      }
+    }
+    knns.destroy();
+
+    // Wrap the result and add metadata.
+    OutlierScoreMeta meta = new InvertedOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., inc * (ids.size() - 1), 1);
+    DoubleRelation rel = new MaterializedDoubleRelation("ODIN In-Degree", ids, scores);
+    return new OutlierResult(meta, rel);
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> implements Parameterizer {
+    /**
+     * The distance function to use.
+     */
+    protected Distance<? super O> distance;
+
+    /**
+     * Number of nearest neighbors to use.
+     */
+    protected int k;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
+          .grab(config, x -> distance = x);
+      new IntParameter(ODIN.Par.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> k = x);
+    }
+
+    @Override
+    public ParallelODIN<O> make() {
+      return new ParallelODIN<>(distance, k);
+    }
+  }
+}
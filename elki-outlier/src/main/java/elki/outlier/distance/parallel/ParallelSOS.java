@@ -0,0 +1,209 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.distance.parallel;
+
+import elki.Algorithm;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.math.DoubleMinMax;
+import elki.outlier.OutlierAlgorithm;
+import elki.outlier.distance.SOS;
+import elki.parallel.ParallelCore;
+import elki.parallel.ParallelExecutor;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.result.outlier.ProbabilisticOutlierScore;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+import net.jafama.FastMath;
+
+/**
+ * Parallel implementation of Stochastic Outlier Selection.
+ * <p>
+ * The objects are processed in small batches: the sorted distance lists and
+ * the affinities (including the perplexity search) of a batch are computed in
+ * parallel, then the neighbors are nominated sequentially in the same order
+ * as {@link SOS}, so the scores are identical. Memory use is linear in the
+ * data set size times the batch size.
+ * <p>
+ * Unlike the other parallel outlier detectors, this class does not use the
+ * {@link elki.parallel.processor.Processor} framework: processors map each
+ * object to a value of its own, but SOS multiplies every object's binding
+ * probability into the scores of <em>all</em> other objects. Storing the
+ * affinities of all objects to combine them afterwards would need quadratic
+ * memory, and concurrent updates of the shared scores would change the
+ * floating point results depending on the thread schedule.
+ * <p>
+ * Reference:
+ * <p>
+ * J. Janssens, F. Huszár, E. Postma, J. van den Herik<br>
+ * Stochastic Outlier Selection<br>
+ * TiCC TR 2012–001
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "J. Janssens, F. Huszár, E. Postma, J. van den Herik", //
+    title = "Stochastic Outlier Selection", //
+    booktitle = "TiCC TR 2012–001", //
+    url = "https://www.tilburguniversity.edu/upload/b7bac5b2-9b00-402a-9261-7849aa019fbb_sostr.pdf", //
+    bibkey = "tr/tilburg/JanssensHPv12")
+public class ParallelSOS<O> implements OutlierAlgorithm {
+  /**
+   * Distance function used.
+   */
+  protected Distance<? super O> distance;
+
+  /**
+   * Perplexity
+   */
+  protected double perplexity;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param h Perplexity
+   */
+  public ParallelSOS(Distance<? super O> distance, double h) {
+    super();
+    this.distance = distance;
+    this.perplexity = h;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(distance.getInputTypeRestriction());
+  }
+
+  /**
+   * Run the parallel SOS algorithm.
+   *
+   * @param relation data relation
+   * @return outlier detection result
+   */
+  public OutlierResult run(Relation<O> relation) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
+    final double logPerp = FastMath.log(perplexity);
+    final int size = ids.size();
+
+    // Buffers for one batch of objects
+    final int batch = Math.max(1, Math.min(size, 2 * ParallelCore.getCore().getParallelism()));
+    final ModifiableDoubleDBIDList[] dlists = new ModifiableDoubleDBIDList[batch];
+    final double[][] ps = new double[batch][];
+    final double[] norms = new double[batch];
+    for(int i = 0; i < batch; i++) {
+      dlists[i] = DBIDUtil.newDistanceDBIDList(size - 1);
+      ps[i] = new double[size - 1];
+    }
+
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_DB, 1.);
+    DBIDArrayIter it = ids.iter();
+    for(int start = 0; start < size; start += batch) {
+      final int bstart = start, bsize = Math.min(batch, size - start);
+      // Compute affinities in parallel
+      ParallelExecutor.runTasks(bsize, bsize, i -> {
+        DBIDArrayIter it1 = ids.iter().seek(bstart + i);
+        ModifiableDoubleDBIDList dlist = dlists[i];
+        // Build sorted neighbors list.
+        dlist.clear();
+        for(DBIDIter i2 = ids.iter(); i2.valid(); i2.advance()) {
+          if(DBIDUtil.equal(it1, i2)) {
+            continue;
+          }
+          dlist.add(dq.distance(it1, i2), i2);
+        }
+        dlist.sort();
+        DoubleDBIDListMIter di = dlist.iter();
+        SOS.computePi(it1, di, ps[i], perplexity, logPerp);
+        norms[i] = SOS.sumOfProbabilities(it1, di, ps[i]);
+      });
+      // Nominate neighbors, in the serial order
+      for(int i = 0; i < bsize; i++) {
+        final double s = norms[i];
+        if(s > 0) {
+          SOS.nominateNeighbors(it.seek(bstart + i), dlists[i].iter(), ps[i], 1. / s, scores);
+        }
+      }
+    }
+    // Find minimum and maximum.
+    DoubleMinMax minmax = new DoubleMinMax();
+    for(DBIDIter it2 = ids.iter(); it2.valid(); it2.advance()) {
+      minmax.put(scores.doubleValue(it2));
+    }
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Stoachastic Outlier Selection", ids, scores);
+    OutlierScoreMeta meta = new ProbabilisticOutlierScore(minmax.getMin(), minmax.getMax(), 0.);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> implements Parameterizer {
+    /**
+     * Distance function used.
+     */
+    protected Distance<? super O> distance;
+
+    /**
+     * Perplexity
+     */
+    protected double perplexity = 4.5;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
+          .grab(config, x -> distance = x);
+      new DoubleParameter(SOS.Par.PERPLEXITY_ID, 4.5) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .grab(config, x -> perplexity = x);
+    }
+
+    @Override
+    public ParallelSOS<O> make() {
+      return new ParallelSOS<>(distance, perplexity);
+    }
+  }
+}
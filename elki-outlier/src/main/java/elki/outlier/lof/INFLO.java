@@ -234,7 +234,6 @@ public class INFLO<O> implements OutlierAlgorithm {
    */
   protected void computeINFLO(Relation<O> relation, ModifiableDBIDs pruned, KNNSearcher<DBIDRef> knnq, WritableDataStore<ModifiableDBIDs> rNNminuskNNs, WritableDoubleDataStore inflos, DoubleMinMax inflominmax) {
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Computing INFLOs", relation.size(), LOG) : null;
-    HashSetModifiableDBIDs set = DBIDUtil.newHashSet();
     for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
       if(pruned.contains(iter)) {
         inflos.putDouble(iter, 1.);
@@ -249,13 +248,11 @@ public class INFLO<O> implements OutlierAlgorithm {
         LOG.incrementProcessed(prog);
         continue;
       }
-      set.clear();
-      set.addDBIDs(knn);
-      set.addDBIDs(rNNminuskNNs.get(iter));
-      // Compute mean density of NN \cup RNN
+      // Compute mean density of NN \cup RNN; these sets are disjoint, and we
+      // process them in a fixed order for reproducible sums.
       double sum = 0.;
       int c = 0;
-      for(DBIDIter niter = set.iter(); niter.valid(); niter.advance()) {
+      for(DBIDIter niter = knn.iter(); niter.valid(); niter.advance()) {
         if(DBIDUtil.equal(iter, niter)) {
           continue;
         }
@@ -268,6 +265,16 @@ public class INFLO<O> implements OutlierAlgorithm {
         sum += 1. / kdist;
         c++;
       }
+      for(DBIDIter niter = rNNminuskNNs.get(iter).iter(); niter.valid() && sum < Double.POSITIVE_INFINITY; niter.advance()) {
+        final double kdist = knnq.getKNN(niter, kplus).getKNNDistance();
+        if(kdist <= 0) {
+          sum = Double.POSITIVE_INFINITY;
+          c++;
+          break;
+        }
+        sum += 1. / kdist;
+        c++;
+      }
       sum *= knn.getKNNDistance();
       final double inflo = sum == 0 ? 1. : sum / c;
       inflos.putDouble(iter, inflo);
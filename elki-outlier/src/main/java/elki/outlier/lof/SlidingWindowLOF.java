@@ -0,0 +1,741 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof;
+
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+
+import elki.Algorithm;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.datasource.bundle.BundleMeta;
+import elki.datasource.bundle.BundleStreamSource;
+import elki.distance.PrimitiveDistance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.statistics.LongStatistic;
+import elki.math.DoubleMinMax;
+import elki.outlier.OutlierAlgorithm;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.result.outlier.QuotientOutlierScoreMeta;
+import elki.utilities.documentation.Reference;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Incremental LOF over a sliding window of the most recent objects.
+ * <p>
+ * Each object is scored when it arrives, by its LOF with respect to the
+ * current window. When the window is full, the oldest object is removed first.
+ * The k nearest neighbors and reverse k nearest neighbors of the window are
+ * maintained in primitive arrays, and on every insertion and deletion only the
+ * local reachability densities and LOF scores of the affected objects are
+ * updated, as in the incremental LOF of Pokrajac et al.
+ * <p>
+ * Each object keeps k additional neighbors in reserve. When a neighbor is
+ * deleted, the next one moves up from the reserve; the window is only scanned
+ * again once the reserve is exhausted.
+ * <p>
+ * The window contents always have the same scores as {@link LOF} on the
+ * window, except that distance ties at the k-th neighbor are broken by arrival
+ * order rather than included.
+ * <p>
+ * Objects can be read from a relation (in storage order), from a
+ * {@link BundleStreamSource} such as a streaming parser, or pushed into a
+ * {@link Window} directly.
+ * <p>
+ * Reference:
+ * <p>
+ * D. Pokrajac, A. Lazarevic, L. J. Latecki<br>
+ * Incremental Local Outlier Detection for Data Streams<br>
+ * IEEE Symposium on Computational Intelligence and Data Mining (CIDM 2007)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Window
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "D. Pokrajac, A. Lazarevic, L. J. Latecki", //
+    title = "Incremental Local Outlier Detection for Data Streams", //
+    booktitle = "IEEE Symposium on Computational Intelligence and Data Mining (CIDM 2007)", //
+    url = "https://doi.org/10.1109/CIDM.2007.368917", //
+    bibkey = "DBLP:conf/cidm/PokrajacLL07")
+public class SlidingWindowLOF<O> implements OutlierAlgorithm {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(SlidingWindowLOF.class);
+
+  /**
+   * Distance function used.
+   */
+  protected PrimitiveDistance<? super O> distance;
+
+  /**
+   * The number of neighbors to query (not including the query point).
+   */
+  protected int k;
+
+  /**
+   * Window size.
+   */
+  protected int window;
+
+  /**
+   * Constructor.
+   *
+   * @param k the number of neighbors to use for comparison (excluding the
+   *        query point)
+   * @param window Window size
+   * @param distance the neighborhood distance function
+   */
+  public SlidingWindowLOF(int k, int window, PrimitiveDistance<? super O> distance) {
+    super();
+    this.k = k;
+    this.window = window;
+    this.distance = distance;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(distance.getInputTypeRestriction());
+  }
+
+  /**
+   * Create a new, empty window to push objects into.
+   *
+   * @return Window
+   */
+  public Window<O> newWindow() {
+    return new Window<>(distance, k, window);
+  }
+
+  /**
+   * Score the objects of a relation in storage order, as a stream.
+   *
+   * @param relation Data to process
+   * @return LOF score of each object at its arrival
+   */
+  public OutlierResult run(Relation<O> relation) {
+    Window<O> win = newWindow();
+    WritableDoubleDataStore lofs = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_DB);
+    DoubleMinMax lofminmax = new DoubleMinMax();
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Sliding window LOF", relation.size(), LOG) : null;
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+      final double lof = win.insert(relation.get(iter));
+      lofs.putDouble(iter, lof);
+      lofminmax.put(lof);
+      LOG.incrementProcessed(prog);
+    }
+    LOG.ensureCompleted(prog);
+    LOG.statistics(new LongStatistic(SlidingWindowLOF.class.getName() + ".updated-lofs", win.updated));
+
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Sliding Window LOF", relation.getDBIDs(), lofs);
+    OutlierScoreMeta scoreMeta = new QuotientOutlierScoreMeta(lofminmax.getMin(), lofminmax.getMax(), 0.0, Double.POSITIVE_INFINITY, 1.0);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Score a data stream, without materializing a database.
+   *
+   * @param source Data source
+   * @param scores Consumer of the LOF score of each object at its arrival, in
+   *        stream order
+   * @return Number of objects processed
+   */
+  @SuppressWarnings("unchecked")
+  public long runStream(BundleStreamSource source, DoubleConsumer scores) {
+    Window<O> win = newWindow();
+    int col = -1;
+    long processed = 0;
+    IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Sliding window LOF", LOG) : null;
+    loop: while(true) {
+      switch(source.nextEvent()){
+      case META_CHANGED: {
+        BundleMeta meta = source.getMeta();
+        col = -1;
+        for(int i = 0; i < meta.size(); i++) {
+          if(distance.getInputTypeRestriction().isAssignableFromType(meta.get(i))) {
+            col = i;
+            break;
+          }
+        }
+        if(col < 0) {
+          throw new AbortException("No field suitable for " + distance.getClass().getSimpleName() + " in the data stream.");
+        }
+        break;
+      }
+      case NEXT_OBJECT:
+        if(col < 0) {
+          throw new AbortException("Data stream did not provide metadata before the first object.");
+        }
+        scores.accept(win.insert((O) source.data(col)));
+        ++processed;
+        if(prog != null && (processed & 0xFFF) == 0) {
+          prog.setProcessed((int) Math.min(processed, Integer.MAX_VALUE), LOG);
+        }
+        break;
+      case END_OF_STREAM:
+        break loop;
+      }
+    }
+    if(prog != null) {
+      prog.setProcessed((int) Math.min(processed, Integer.MAX_VALUE), LOG);
+    }
+    LOG.setCompleted(prog);
+    LOG.statistics(new LongStatistic(SlidingWindowLOF.class.getName() + ".objects", processed));
+    return processed;
+  }
+
+  /**
+   * Sliding window with incrementally maintained LOF scores.
+   * <p>
+   * The objects are kept in a ring buffer; all per-object state is stored in
+   * arrays indexed by the ring buffer slot.
+   *
+   * @author Erich Schubert
+   *
+   * @param <O> Object type
+   */
+  public static class Window<O> {
+    /**
+     * Distance function.
+     */
+    private final PrimitiveDistance<? super O> distance;
+
+    /**
+     * Number of neighbors, window capacity.
+     */
+    private final int k, capacity;
+
+    /**
+     * Number of neighbors kept per object, including a reserve such that
+     * deletions only occasionally require a scan of the window.
+     */
+    private final int kext;
+
+    /**
+     * Objects in the window.
+     */
+    private final Object[] objs;
+
+    /**
+     * Slot of the oldest object, and current size.
+     */
+    private int start, size;
+
+    /**
+     * Nearest neighbor slots, kext per slot, sorted by distance.
+     */
+    private final int[] knn;
+
+    /**
+     * Nearest neighbor distances, kext per slot.
+     */
+    private final double[] kdists;
+
+    /**
+     * Number of nearest neighbors of each slot.
+     */
+    private final int[] knnsize;
+
+    /**
+     * Reverse nearest neighbors of each slot (unordered), including objects
+     * that have this object only in their reserve.
+     */
+    private final int[][] rknn;
+
+    /**
+     * Number of reverse nearest neighbors of each slot.
+     */
+    private final int[] rknnsize;
+
+    /**
+     * Local reachability densities and LOF scores.
+     */
+    private final double[] lrds, lofs;
+
+    /**
+     * Objects whose lrd or LOF need to be updated.
+     */
+    private final int[] lrdupd, lofupd;
+
+    /**
+     * Markers for the update lists and for kNN membership.
+     */
+    private final int[] lrdmark, lofmark, member;
+
+    /**
+     * Current marker epochs of the update lists and of kNN membership.
+     */
+    private int epoch = 0, mepoch = 0;
+
+    /**
+     * Number of objects in the update lists.
+     */
+    private int numlrd, numlof;
+
+    /**
+     * Number of LOF scores computed.
+     */
+    long updated = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param distance Distance function
+     * @param k Number of neighbors
+     * @param capacity Window size
+     */
+    public Window(PrimitiveDistance<? super O> distance, int k, int capacity) {
+      this.distance = distance;
+      this.k = k;
+      this.capacity = capacity;
+      this.kext = k << 1;
+      this.objs = new Object[capacity];
+      this.knn = new int[capacity * kext];
+      this.kdists = new double[capacity * kext];
+      this.knnsize = new int[capacity];
+      this.rknn = new int[capacity][];
+      this.rknnsize = new int[capacity];
+      this.lrds = new double[capacity];
+      this.lofs = new double[capacity];
+      this.lrdupd = new int[capacity];
+      this.lofupd = new int[capacity];
+      this.lrdmark = new int[capacity];
+      this.lofmark = new int[capacity];
+      this.member = new int[capacity];
+      for(int i = 0; i < capacity; i++) {
+        rknn[i] = new int[kext];
+      }
+    }
+
+    /**
+     * Number of objects in the window.
+     *
+     * @return Size
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Get an object from the window.
+     *
+     * @param i Position, 0 is the oldest object
+     * @return Object
+     */
+    @SuppressWarnings("unchecked")
+    public O get(int i) {
+      return (O) objs[checkedSlot(i)];
+    }
+
+    /**
+     * Get the current LOF score of an object in the window.
+     *
+     * @param i Position, 0 is the oldest object
+     * @return LOF score
+     */
+    public double lof(int i) {
+      return lofs[checkedSlot(i)];
+    }
+
+    /**
+     * Get the ring buffer slot of an object in the window.
+     *
+     * @param i Position, 0 is the oldest object
+     * @return Slot
+     */
+    private int checkedSlot(int i) {
+      if(i < 0 || i >= size) {
+        throw new IndexOutOfBoundsException("Position " + i + " not in window of size " + size);
+      }
+      return slot(i);
+    }
+
+    /**
+     * Get the ring buffer slot of a position, including the next free slot at
+     * position {@code size}.
+     *
+     * @param i Position, 0 is the oldest object
+     * @return Slot
+     */
+    private int slot(int i) {
+      assert i >= 0 && i <= size;
+      final int s = start + i;
+      return s < capacity ? s : s - capacity;
+    }
+
+    /**
+     * Add an object to the window, removing the oldest object if the window is
+     * full.
+     *
+     * @param obj Object to add
+     * @return LOF score of the new object
+     */
+    @SuppressWarnings("unchecked")
+    public double insert(O obj) {
+      if(size == capacity) {
+        removeOldest();
+      }
+      final int p = slot(size++);
+      objs[p] = obj;
+      knnsize[p] = 0;
+      rknnsize[p] = 0;
+      beginUpdate();
+      for(int i = 0; i < size - 1; i++) {
+        final int q = slot(i), qo = q * kext, qs = knnsize[q];
+        final double d = distance.distance(obj, (O) objs[q]);
+        if(knnsize[p] < kext || d < kdists[p * kext + kext - 1]) {
+          addNeighbor(p, q, d);
+        }
+        // The list of q must remain a prefix of its sorted neighbors:
+        if(qs < kext && qs == size - 2 || d < kdists[qo + qs - 1]) {
+          // kNN of q changes, unless only the reserve changes.
+          final boolean changed = qs < k || d < kdists[qo + k - 1];
+          final int dropped = addNeighbor(q, p, d);
+          if(dropped >= 0) {
+            removeReverse(dropped, q);
+          }
+          addReverse(p, q);
+          if(changed) {
+            markLRD(q);
+          }
+        }
+      }
+      final int po = p * kext;
+      for(int i = po, e = po + knnsize[p]; i < e; i++) {
+        addReverse(knn[i], p);
+      }
+      markLRD(p);
+      // Objects with a changed kNN have their reachability distances changed
+      for(int i = 0, e = numlrd; i < e; i++) {
+        final int q = lrdupd[i];
+        if(q == p) {
+          continue;
+        }
+        final int[] rq = rknn[q];
+        for(int j = 0, f = rknnsize[q]; j < f; j++) {
+          markLRD(rq[j]);
+        }
+      }
+      finishUpdate();
+      return lofs[p];
+    }
+
+    /**
+     * Remove the oldest object from the window.
+     */
+    private void removeOldest() {
+      final int o = start, oo = o * kext;
+      start = start + 1 < capacity ? start + 1 : 0;
+      --size;
+      beginUpdate();
+      for(int i = oo, e = oo + knnsize[o]; i < e; i++) {
+        removeReverse(knn[i], o);
+      }
+      // Remove o from the neighbors of all objects
+      final int[] ro = rknn[o];
+      for(int j = 0, f = rknnsize[o]; j < f; j++) {
+        final int q = ro[j], qo = q * kext, qs = knnsize[q];
+        int pos = qo;
+        while(knn[pos] != o) {
+          ++pos;
+        }
+        System.arraycopy(knn, pos + 1, knn, pos, qo + qs - pos - 1);
+        System.arraycopy(kdists, pos + 1, kdists, pos, qo + qs - pos - 1);
+        knnsize[q] = qs - 1;
+        // Refill the list once the reserve is used up.
+        if(qs - 1 < k && qs - 1 < size - 1) {
+          refill(q);
+        }
+        if(pos - qo < k) {
+          markLRD(q);
+        }
+      }
+      objs[o] = null;
+      knnsize[o] = 0;
+      rknnsize[o] = 0;
+      // Objects with a changed kNN have their reachability distances changed
+      for(int i = 0, e = numlrd; i < e; i++) {
+        final int q = lrdupd[i];
+        final int[] rq = rknn[q];
+        for(int j = 0, f = rknnsize[q]; j < f; j++) {
+          markLRD(rq[j]);
+        }
+      }
+      finishUpdate();
+    }
+
+    /**
+     * Extend the neighbors of an object with the nearest objects not yet in
+     * the list, by a linear scan of the window.
+     *
+     * @param q Object
+     */
+    @SuppressWarnings("unchecked")
+    private void refill(int q) {
+      final int qo = q * kext, qs = knnsize[q];
+      if(++mepoch == Integer.MAX_VALUE) {
+        Arrays.fill(member, 0);
+        mepoch = 1;
+      }
+      member[q] = mepoch;
+      for(int i = qo, e = qo + qs; i < e; i++) {
+        member[knn[i]] = mepoch;
+      }
+      final O oq = (O) objs[q];
+      for(int i = 0; i < size; i++) {
+        final int r = slot(i);
+        if(member[r] == mepoch) {
+          continue;
+        }
+        final double d = distance.distance(oq, (O) objs[r]);
+        // All new candidates are at least as far as the existing neighbors,
+        // so only the newly added entries can be dropped again.
+        if(knnsize[q] < kext || d < kdists[qo + kext - 1]) {
+          addNeighbor(q, r, d);
+        }
+      }
+      for(int i = qo + qs, e = qo + knnsize[q]; i < e; i++) {
+        addReverse(knn[i], q);
+      }
+    }
+
+    /**
+     * Add a neighbor to the sorted neighbor list of an object. If the list is
+     * full, the farthest neighbor is dropped.
+     *
+     * @param q Object
+     * @param n New neighbor
+     * @param d Distance
+     * @return Neighbor that was dropped, or -1
+     */
+    private int addNeighbor(int q, int n, double d) {
+      final int qo = q * kext, qs = knnsize[q];
+      final int dropped = qs == kext ? knn[qo + kext - 1] : -1;
+      int pos = qo + (qs == kext ? kext - 1 : qs);
+      for(; pos > qo && kdists[pos - 1] > d; --pos) {
+        knn[pos] = knn[pos - 1];
+        kdists[pos] = kdists[pos - 1];
+      }
+      knn[pos] = n;
+      kdists[pos] = d;
+      if(qs < kext) {
+        knnsize[q] = qs + 1;
+      }
+      return dropped;
+    }
+
+    /**
+     * Add a reverse nearest neighbor.
+     *
+     * @param n Neighbor
+     * @param q Object that has n as neighbor
+     */
+    private void addReverse(int n, int q) {
+      final int s = rknnsize[n];
+      if(s == rknn[n].length) {
+        rknn[n] = Arrays.copyOf(rknn[n], s << 1);
+      }
+      rknn[n][s] = q;
+      rknnsize[n] = s + 1;
+    }
+
+    /**
+     * Remove a reverse nearest neighbor.
+     *
+     * @param n Neighbor
+     * @param q Object that no longer has n as neighbor
+     */
+    private void removeReverse(int n, int q) {
+      final int[] rn = rknn[n];
+      final int s = rknnsize[n] - 1;
+      for(int i = 0; i <= s; i++) {
+        if(rn[i] == q) {
+          rn[i] = rn[s];
+          rknnsize[n] = s;
+          return;
+        }
+      }
+      assert false : "Reverse neighbor not found.";
+    }
+
+    /**
+     * Start collecting the objects to update.
+     */
+    private void beginUpdate() {
+      numlrd = numlof = 0;
+      if(++epoch == Integer.MAX_VALUE) {
+        Arrays.fill(lrdmark, 0);
+        Arrays.fill(lofmark, 0);
+        epoch = 1;
+      }
+    }
+
+    /**
+     * Mark an object for updating its lrd (and LOF).
+     *
+     * @param q Object
+     */
+    private void markLRD(int q) {
+      if(lrdmark[q] != epoch) {
+        lrdmark[q] = epoch;
+        lrdupd[numlrd++] = q;
+      }
+    }
+
+    /**
+     * Mark an object for updating its LOF.
+     *
+     * @param q Object
+     */
+    private void markLOF(int q) {
+      if(lofmark[q] != epoch) {
+        lofmark[q] = epoch;
+        lofupd[numlof++] = q;
+      }
+    }
+
+    /**
+     * Update the lrds of the marked objects, then the LOF of all objects that
+     * have any of them as neighbor.
+     */
+    private void finishUpdate() {
+      for(int i = 0; i < numlrd; i++) {
+        final int q = lrdupd[i];
+        lrds[q] = computeLRD(q);
+        markLOF(q);
+        final int[] rq = rknn[q];
+        for(int j = 0, f = rknnsize[q]; j < f; j++) {
+          markLOF(rq[j]);
+        }
+      }
+      for(int i = 0; i < numlof; i++) {
+        final int q = lofupd[i];
+        lofs[q] = computeLOF(q);
+      }
+      updated += numlof;
+    }
+
+    /**
+     * Compute the local reachability density of an object.
+     *
+     * @param q Object
+     * @return lrd
+     */
+    private double computeLRD(int q) {
+      final int qo = q * kext, qs = Math.min(knnsize[q], k);
+      double sum = 0.;
+      for(int i = qo, e = qo + qs; i < e; i++) {
+        final int n = knn[i], ns = Math.min(knnsize[n], k);
+        final double kdist = ns > 0 ? kdists[n * kext + ns - 1] : 0.;
+        sum += kdists[i] > kdist ? kdists[i] : kdist;
+      }
+      // Avoid division by 0
+      return (sum > 0) ? (qs / sum) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Compute the LOF score of an object.
+     *
+     * @param q Object
+     * @return LOF
+     */
+    private double computeLOF(int q) {
+      final double lrdq = lrds[q];
+      if(Double.isInfinite(lrdq)) {
+        return 1.0;
+      }
+      final int qo = q * kext, qs = Math.min(knnsize[q], k);
+      double sum = 0.;
+      for(int i = qo, e = qo + qs; i < e; i++) {
+        sum += lrds[knn[i]];
+      }
+      return sum / (lrdq * qs);
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> implements Parameterizer {
+    /**
+     * Window size parameter.
+     */
+    public static final OptionID WINDOW_ID = new OptionID("lof.window", "Number of most recent objects in the sliding window.");
+
+    /**
+     * The distance function to use.
+     */
+    protected PrimitiveDistance<? super O> distance;
+
+    /**
+     * The neighborhood size to use.
+     */
+    protected int k;
+
+    /**
+     * Window size.
+     */
+    protected int window;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<PrimitiveDistance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, PrimitiveDistance.class, EuclideanDistance.class) //
+          .grab(config, x -> distance = x);
+      new IntParameter(LOF.Par.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> k = x);
+      new IntParameter(WINDOW_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> window = x);
+    }
+
+    @Override
+    public SlidingWindowLOF<O> make() {
+      return new SlidingWindowLOF<>(k, window, distance);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.database.datastore.DataStore;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.database.query.distance.DistanceQuery;
+import elki.parallel.Executor;
+import elki.parallel.processor.AbstractDoubleProcessor;
+import elki.parallel.variables.SharedDouble;
+
+/**
+ * Processor for the average chaining distance ("ACD") of COF.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ */
+public class ACDProcessor extends AbstractDoubleProcessor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Distance query
+   */
+  private DistanceQuery<?> dq;
+
+  /**
+   * Number of neighbors, including the query point.
+   */
+  private int k;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param dq Distance query
+   * @param k Number of neighbors, including the query point
+   */
+  public ACDProcessor(DataStore<? extends KNNList> knns, DistanceQuery<?> dq, int k) {
+    super();
+    this.knns = knns;
+    this.dq = dq;
+    this.k = k;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      final KNNList neighbors = knns.get(id);
+      final int r = neighbors.size();
+      DoubleDBIDListIter it1 = neighbors.iter(), it2 = neighbors.iter();
+      // Store the current lowest reachability.
+      final double[] mindists = new double[r];
+      for(int i = 0; it1.valid(); it1.advance(), ++i) {
+        mindists[i] = DBIDUtil.equal(it1, id) ? Double.NaN : it1.doubleValue();
+      }
+
+      double acsum = 0.;
+      for(int j = ((r < k) ? r : k) - 1; j > 0; --j) {
+        // Find the minimum:
+        int minpos = -1;
+        double mindist = Double.NaN;
+        for(int i = 0; i < mindists.length; ++i) {
+          double curdist = mindists[i];
+          // Both values could be NaN, deliberately.
+          if(curdist == curdist && !(curdist > mindist)) {
+            minpos = i;
+            mindist = curdist;
+          }
+        }
+        acsum += mindist * j; // Weighted sum, decreasing weights
+        mindists[minpos] = Double.NaN;
+        it1.seek(minpos);
+        // Update distances
+        it2.seek(0);
+        for(int i = 0; it2.valid(); it2.advance(), ++i) {
+          final double curdist = mindists[i];
+          if(curdist != curdist) {
+            continue; // NaN = processed!
+          }
+          double newdist = dq.distance(it1, it2);
+          if(newdist < curdist) {
+            mindists[i] = newdist;
+          }
+        }
+      }
+      output.set(acsum / (r * 0.5 * (r - 1.)));
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.database.datastore.DataStore;
+import elki.database.ids.*;
+import elki.parallel.Executor;
+import elki.parallel.processor.AbstractDoubleProcessor;
+import elki.parallel.variables.SharedDouble;
+
+/**
+ * Processor for the influenced outlierness ("INFLO").
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ */
+public class INFLOProcessor extends AbstractDoubleProcessor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Reverse nearest neighbors that are not also nearest neighbors.
+   */
+  private DataStore<? extends DBIDs> rnnMinusKNNs;
+
+  /**
+   * Pruned objects, which receive a score of 1.
+   */
+  private DBIDs pruned;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param rnnMinusKNNs reverse nearest neighbors, not in the kNN
+   * @param pruned Pruned objects
+   */
+  public INFLOProcessor(DataStore<? extends KNNList> knns, DataStore<? extends DBIDs> rnnMinusKNNs, DBIDs pruned) {
+    super();
+    this.knns = knns;
+    this.rnnMinusKNNs = rnnMinusKNNs;
+    this.pruned = pruned;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      final KNNList knn = knns.get(id);
+      if(pruned.contains(id) || knn.getKNNDistance() == 0.) {
+        output.set(1.);
+        return;
+      }
+      // Compute mean density of NN \cup RNN, in the same order as INFLO
+      double sum = 0.;
+      int c = 0;
+      for(DBIDIter niter = knn.iter(); niter.valid(); niter.advance()) {
+        if(DBIDUtil.equal(id, niter)) {
+          continue;
+        }
+        final double kdist = knns.get(niter).getKNNDistance();
+        if(kdist <= 0) {
+          sum = Double.POSITIVE_INFINITY;
+          c++;
+          break;
+        }
+        sum += 1. / kdist;
+        c++;
+      }
+      for(DBIDIter niter = rnnMinusKNNs.get(id).iter(); niter.valid() && sum < Double.POSITIVE_INFINITY; niter.advance()) {
+        final double kdist = knns.get(niter).getKNNDistance();
+        if(kdist <= 0) {
+          sum = Double.POSITIVE_INFINITY;
+          c++;
+          break;
+        }
+        sum += 1. / kdist;
+        c++;
+      }
+      sum *= knn.getKNNDistance();
+      output.set(sum == 0 ? 1. : sum / c);
+    }
+  }
+}
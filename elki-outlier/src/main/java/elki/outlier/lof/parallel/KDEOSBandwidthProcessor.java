@@ -0,0 +1,176 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.database.datastore.DataStore;
+import elki.database.datastore.WritableDataStore;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.math.MathUtil;
+import elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import elki.parallel.Executor;
+import elki.parallel.processor.Processor;
+
+/**
+ * Processor to compute the kernel bandwidths of KDEOS for every k, and how
+ * many neighbors receive a density contribution before the cutoff.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ */
+public class KDEOSBandwidthProcessor implements Processor {
+  /**
+   * Minimum density contribution, below which we stop.
+   */
+  static final double CUTOFF = 1e-20;
+
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Kernel function
+   */
+  private KernelDensityFunction kernel;
+
+  /**
+   * Minimum and maximum number of neighbors
+   */
+  private int kmin, kmax;
+
+  /**
+   * Kernel scaling parameter
+   */
+  private double scale;
+
+  /**
+   * Inverse of the minimum bandwidth
+   */
+  private double iminbw;
+
+  /**
+   * Dimensionality
+   */
+  private int dim;
+
+  /**
+   * Output: inverse bandwidths for each k.
+   */
+  private WritableDataStore<double[]> ibws;
+
+  /**
+   * Output: number of neighbors that receive density.
+   */
+  private WritableDataStore<int[]> lens;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param kernel Kernel function
+   * @param kmin Minimum number of neighbors
+   * @param kmax Maximum number of neighbors
+   * @param scale Kernel scaling parameter
+   * @param iminbw Inverse of the minimum bandwidth
+   * @param dim Dimensionality
+   * @param ibws Output inverse bandwidths
+   * @param lens Output number of neighbors that receive density
+   */
+  public KDEOSBandwidthProcessor(DataStore<? extends KNNList> knns, KernelDensityFunction kernel, int kmin, int kmax, double scale, double iminbw, int dim, WritableDataStore<double[]> ibws, WritableDataStore<int[]> lens) {
+    super();
+    this.knns = knns;
+    this.kernel = kernel;
+    this.kmin = kmin;
+    this.kmax = kmax;
+    this.scale = scale;
+    this.iminbw = iminbw;
+    this.dim = dim;
+    this.ibws = ibws;
+    this.lens = lens;
+  }
+
+  /**
+   * Density contribution of a neighbor.
+   *
+   * @param kernel Kernel function
+   * @param ibw Inverse bandwidth
+   * @param dim Dimensionality
+   * @param dist Distance to the neighbor
+   * @return Density contribution
+   */
+  static double density(KernelDensityFunction kernel, double ibw, int dim, double dist) {
+    final double sca = MathUtil.powi(ibw, dim);
+    if(sca < Double.POSITIVE_INFINITY) { // NaNs with duplicate points!
+      return sca * kernel.density(dist * ibw);
+    }
+    return dist == 0. ? 1. : 0.;
+  }
+
+  @Override
+  public Instance instantiate(Executor executor) {
+    return new Instance();
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    // Nothing to do.
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance implements Processor.Instance {
+    @Override
+    public void map(DBIDRef id) {
+      final KNNList neighbors = knns.get(id);
+      final int knum = kmax + 1 - kmin;
+      double[] ibw = new double[knum];
+      int[] len = new int[knum];
+      int k = 1, idx = 0;
+      double sum = 0.;
+      for(DoubleDBIDListIter kneighbor = neighbors.iter(); k <= kmax && kneighbor.valid(); kneighbor.advance(), k++) {
+        sum += kneighbor.doubleValue();
+        if(k < kmin) {
+          continue;
+        }
+        final double ib = Math.min(k / (sum * scale), iminbw);
+        int j = 0;
+        for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
+          ++j;
+          if(density(kernel, ib, dim, neighbor.doubleValue()) < CUTOFF) {
+            break;
+          }
+        }
+        ibw[idx] = ib;
+        len[idx] = j;
+        ++idx; // Only if k >= kmin
+      }
+      ibws.put(id, ibw);
+      lens.put(id, len);
+    }
+  }
+}
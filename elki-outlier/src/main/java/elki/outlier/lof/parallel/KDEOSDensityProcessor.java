@@ -0,0 +1,164 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.database.datastore.DataStore;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DoubleDBIDList;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import elki.parallel.Executor;
+import elki.parallel.processor.Processor;
+import elki.parallel.variables.SharedObject;
+
+/**
+ * Processor to collect the KDEOS densities of an object from all objects that
+ * have it as a neighbor ("pull" instead of "push"). The reverse neighbor lists
+ * must be in the order of the serial algorithm, then the sums are identical.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ */
+public class KDEOSDensityProcessor implements Processor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Reverse neighbors, with the rank in the neighbors list instead of the
+   * distance.
+   */
+  private DataStore<? extends DoubleDBIDList> rnns;
+
+  /**
+   * Inverse bandwidths
+   */
+  private DataStore<double[]> ibws;
+
+  /**
+   * Number of neighbors that receive density
+   */
+  private DataStore<int[]> lens;
+
+  /**
+   * Kernel function
+   */
+  private KernelDensityFunction kernel;
+
+  /**
+   * Dimensionality
+   */
+  private int dim;
+
+  /**
+   * Number of k values
+   */
+  private int knum;
+
+  /**
+   * Output variable
+   */
+  private SharedObject<double[]> output;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param rnns Reverse neighbors, with ranks
+   * @param ibws Inverse bandwidths
+   * @param lens Number of neighbors that receive density
+   * @param kernel Kernel function
+   * @param dim Dimensionality
+   * @param knum Number of k values
+   */
+  public KDEOSDensityProcessor(DataStore<? extends KNNList> knns, DataStore<? extends DoubleDBIDList> rnns, DataStore<double[]> ibws, DataStore<int[]> lens, KernelDensityFunction kernel, int dim, int knum) {
+    super();
+    this.knns = knns;
+    this.rnns = rnns;
+    this.ibws = ibws;
+    this.lens = lens;
+    this.kernel = kernel;
+    this.dim = dim;
+    this.knum = knum;
+  }
+
+  /**
+   * Connect the output variable.
+   *
+   * @param output Output variable
+   */
+  public void connectOutput(SharedObject<double[]> output) {
+    this.output = output;
+  }
+
+  @Override
+  public Instance instantiate(Executor executor) {
+    return new Instance(executor.getInstance(output));
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    // Nothing to do.
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance implements Processor.Instance {
+    /**
+     * Output variable
+     */
+    private SharedObject.Instance<double[]> output;
+
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedObject.Instance<double[]> output) {
+      super();
+      this.output = output;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      double[] dens = new double[knum];
+      for(DoubleDBIDListIter src = rnns.get(id).iter(); src.valid(); src.advance()) {
+        final int rank = (int) src.doubleValue();
+        final double dist = knns.get(src).doubleValue(rank);
+        final double[] ibw = ibws.get(src);
+        final int[] len = lens.get(src);
+        for(int idx = 0; idx < knum; idx++) {
+          if(rank < len[idx]) {
+            dens[idx] += KDEOSBandwidthProcessor.density(kernel, ibw[idx], dim, dist);
+          }
+        }
+      }
+      output.set(dens);
+    }
+  }
+}
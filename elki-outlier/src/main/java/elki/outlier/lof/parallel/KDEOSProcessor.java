@@ -0,0 +1,134 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.database.datastore.DataStore;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.math.MeanVariance;
+import elki.math.statistics.distribution.NormalDistribution;
+import elki.parallel.Executor;
+import elki.parallel.processor.AbstractDoubleProcessor;
+import elki.parallel.variables.SharedDouble;
+
+/**
+ * Processor for the kernel density estimation outlier score ("KDEOS").
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ */
+public class KDEOSProcessor extends AbstractDoubleProcessor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Densities for each k
+   */
+  private DataStore<double[]> densities;
+
+  /**
+   * Number of k values
+   */
+  private int knum;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param densities Densities for each k
+   * @param knum Number of k values
+   */
+  public KDEOSProcessor(DataStore<? extends KNNList> knns, DataStore<double[]> densities, int knum) {
+    super();
+    this.knns = knns;
+    this.densities = densities;
+    this.knum = knum;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Scratch buffer for the densities of the neighbors
+     */
+    private double[][] scratch = new double[knum][0];
+
+    /**
+     * Mean and variance
+     */
+    private MeanVariance mv = new MeanVariance();
+
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      double[] dens = densities.get(id);
+      KNNList neighbors = knns.get(id);
+      if(scratch[0].length < neighbors.size()) {
+        // Resize scratch. Add some extra margin again.
+        scratch = new double[knum][neighbors.size() + 5];
+      }
+      { // Store density matrix of neighbors
+        int i = 0;
+        for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance(), i++) {
+          double[] ndens = densities.get(neighbor);
+          for(int k = 0; k < knum; k++) {
+            scratch[k][i] = ndens[k];
+          }
+        }
+      }
+      // Compute means and stddevs for each k
+      double score = 0.;
+      for(int i = 0; i < knum; i++) {
+        mv.reset();
+        for(int j = 0; j < neighbors.size(); j++) {
+          mv.put(scratch[i][j]);
+        }
+        final double mean = mv.getMean(), stddev = mv.getSampleStddev();
+        if(stddev > 0.) {
+          score += (mean - dens[i]) / stddev;
+        }
+      }
+      score /= knum; // average
+      output.set(NormalDistribution.standardNormalCDF(score));
+    }
+  }
+}
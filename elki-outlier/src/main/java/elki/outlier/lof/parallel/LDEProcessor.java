@@ -0,0 +1,120 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.database.datastore.DataStore;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.math.MathUtil;
+import elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import elki.parallel.Executor;
+import elki.parallel.processor.AbstractDoubleProcessor;
+import elki.parallel.variables.SharedDouble;
+
+/**
+ * Processor for the local density estimate ("LDE") of LDF.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ */
+public class LDEProcessor extends AbstractDoubleProcessor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Kernel density function
+   */
+  private KernelDensityFunction kernel;
+
+  /**
+   * Bandwidth scaling factor.
+   */
+  private double h;
+
+  /**
+   * Dimensionality
+   */
+  private int dim;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param kernel Kernel density function
+   * @param h Bandwidth scaling factor
+   * @param dim Dimensionality
+   */
+  public LDEProcessor(DataStore<? extends KNNList> knns, KernelDensityFunction kernel, double h, int dim) {
+    super();
+    this.knns = knns;
+    this.kernel = kernel;
+    this.h = h;
+    this.dim = dim;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      double sum = 0.0;
+      int count = 0;
+      for(DoubleDBIDListIter neighbor = knns.get(id).iter(); neighbor.valid(); neighbor.advance()) {
+        if(DBIDUtil.equal(neighbor, id)) {
+          continue;
+        }
+        final double nkdist = knns.get(neighbor).getKNNDistance();
+        if(!(nkdist > 0.) || nkdist == Double.POSITIVE_INFINITY) {
+          sum = Double.POSITIVE_INFINITY;
+          count++;
+          break;
+        }
+        final double v = MathUtil.max(nkdist, neighbor.doubleValue()) / (h * nkdist);
+        sum += kernel.density(v) / MathUtil.powi(h * nkdist, dim);
+        count++;
+      }
+      output.set(sum / count);
+    }
+  }
+}
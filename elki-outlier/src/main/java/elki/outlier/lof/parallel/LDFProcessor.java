@@ -0,0 +1,108 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.database.datastore.DataStore;
+import elki.database.datastore.DoubleDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.KNNList;
+import elki.parallel.Executor;
+import elki.parallel.processor.AbstractDoubleProcessor;
+import elki.parallel.variables.SharedDouble;
+
+/**
+ * Processor for the local density factor ("LDF").
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ */
+public class LDFProcessor extends AbstractDoubleProcessor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Local density estimates
+   */
+  private DoubleDataStore ldes;
+
+  /**
+   * Scaling constant, to limit value range to 1/c
+   */
+  private double c;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param ldes Local density estimates
+   * @param c Score scaling constant
+   */
+  public LDFProcessor(DataStore<? extends KNNList> knns, DoubleDataStore ldes, double c) {
+    super();
+    this.knns = knns;
+    this.ldes = ldes;
+    this.c = c;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      final double lrdp = ldes.doubleValue(id);
+      double sum = 0.0;
+      int count = 0;
+      for(DBIDIter neighbor = knns.get(id).iter(); neighbor.valid(); neighbor.advance()) {
+        if(DBIDUtil.equal(neighbor, id)) {
+          continue;
+        }
+        sum += ldes.doubleValue(neighbor);
+        count++;
+      }
+      sum /= count;
+      final double div = lrdp + c * sum;
+      output.set(div == Double.POSITIVE_INFINITY ? (sum < Double.POSITIVE_INFINITY ? 0. : 1) : (div > 0) ? sum / div : 0);
+    }
+  }
+}
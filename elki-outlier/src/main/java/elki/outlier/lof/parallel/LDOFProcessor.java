@@ -0,0 +1,115 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.database.datastore.DataStore;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.database.query.distance.DistanceQuery;
+import elki.math.Mean;
+import elki.parallel.Executor;
+import elki.parallel.processor.AbstractDoubleProcessor;
+import elki.parallel.variables.SharedDouble;
+
+/**
+ * Processor for the local distance-based outlier factor ("LDOF").
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ */
+public class LDOFProcessor extends AbstractDoubleProcessor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Distance query
+   */
+  private DistanceQuery<?> dq;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param dq Distance query
+   */
+  public LDOFProcessor(DataStore<? extends KNNList> knns, DistanceQuery<?> dq) {
+    super();
+    this.knns = knns;
+    this.dq = dq;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Mean of kNN distances, and of the pairwise distances of the kNN.
+     */
+    private Mean dxp = new Mean(), Dxp = new Mean();
+
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      final KNNList neighbors = knns.get(id);
+      dxp.reset();
+      Dxp.reset();
+      DoubleDBIDListIter neighbor1 = neighbors.iter(),
+          neighbor2 = neighbors.iter();
+      for(; neighbor1.valid(); neighbor1.advance()) {
+        // skip the point itself
+        if(DBIDUtil.equal(neighbor1, id)) {
+          continue;
+        }
+        dxp.put(neighbor1.doubleValue());
+        for(neighbor2.seek(neighbor1.getOffset() + 1); neighbor2.valid(); neighbor2.advance()) {
+          // skip the point itself
+          if(DBIDUtil.equal(neighbor2, id)) {
+            continue;
+          }
+          Dxp.put(dq.distance(neighbor1, neighbor2));
+        }
+      }
+      double ldof = dxp.getMean() / Dxp.getMean();
+      output.set(Double.isNaN(ldof) || Double.isInfinite(ldof) ? 1.0 : ldof);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.database.datastore.DataStore;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.parallel.Executor;
+import elki.parallel.processor.AbstractDoubleProcessor;
+import elki.parallel.variables.SharedDouble;
+
+import net.jafama.FastMath;
+
+/**
+ * Processor for the probabilistic distance ("pdist") of LoOP.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ */
+public class PDistProcessor extends AbstractDoubleProcessor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Number of neighbors to use, excluding the query point.
+   */
+  private int kreach;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param kreach Number of neighbors to use
+   */
+  public PDistProcessor(DataStore<? extends KNNList> knns, int kreach) {
+    super();
+    this.knns = knns;
+    this.kreach = kreach;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      // use first kref neighbors as reference set
+      int ks = 0;
+      double ssum = 0.;
+      for(DoubleDBIDListIter neighbor = knns.get(id).iter(); neighbor.valid() && ks < kreach; neighbor.advance()) {
+        if(DBIDUtil.equal(neighbor, id)) {
+          continue;
+        }
+        final double d = neighbor.doubleValue();
+        ssum += d * d;
+        ks++;
+      }
+      output.set(ks > 0 ? FastMath.sqrt(ssum / ks) : 0.);
+    }
+  }
+}
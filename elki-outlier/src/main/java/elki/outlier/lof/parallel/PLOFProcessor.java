@@ -0,0 +1,108 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.database.datastore.DataStore;
+import elki.database.datastore.DoubleDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.KNNList;
+import elki.math.MathUtil;
+import elki.parallel.Executor;
+import elki.parallel.processor.AbstractDoubleProcessor;
+import elki.parallel.variables.SharedDouble;
+
+/**
+ * Processor for the probabilistic local outlier factor ("PLOF") of LoOP.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - Instance
+ */
+public class PLOFProcessor extends AbstractDoubleProcessor {
+  /**
+   * KNN store
+   */
+  private DataStore<? extends KNNList> knns;
+
+  /**
+   * Probabilistic distances
+   */
+  private DoubleDataStore pdists;
+
+  /**
+   * Number of neighbors to compare with, excluding the query point.
+   */
+  private int kcomp;
+
+  /**
+   * Constructor.
+   *
+   * @param knns k nearest neighbors
+   * @param pdists Probabilistic distances
+   * @param kcomp Number of neighbors to compare with
+   */
+  public PLOFProcessor(DataStore<? extends KNNList> knns, DoubleDataStore pdists, int kcomp) {
+    super();
+    this.knns = knns;
+    this.pdists = pdists;
+    this.kcomp = kcomp;
+  }
+
+  @Override
+  public Instance instantiate(Executor master) {
+    return new Instance(master.getInstance(output));
+  }
+
+  /**
+   * Instance
+   *
+   * @author Erich Schubert
+   */
+  private class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Constructor.
+     *
+     * @param output Output variable
+     */
+    protected Instance(SharedDouble.Instance output) {
+      super(output);
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      // use first kref neighbors as comparison set.
+      int ks = 0;
+      double sum = 0.;
+      for(DBIDIter neighbor = knns.get(id).iter(); neighbor.valid() && ks < kcomp; neighbor.advance()) {
+        if(DBIDUtil.equal(neighbor, id)) {
+          continue;
+        }
+        sum += pdists.doubleValue(neighbor);
+        ks++;
+      }
+      double plof = MathUtil.max(pdists.doubleValue(id) * ks / sum, 1.0);
+      output.set(Double.isNaN(plof) || Double.isInfinite(plof) ? 1.0 : plof);
+    }
+  }
+}
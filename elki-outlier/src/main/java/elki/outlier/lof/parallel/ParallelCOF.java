@@ -0,0 +1,198 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.Algorithm;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.DBIDs;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.math.DoubleMinMax;
+import elki.outlier.OutlierAlgorithm;
+import elki.outlier.lof.COF;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.DoubleMinMaxProcessor;
+import elki.parallel.processor.KNNProcessor;
+import elki.parallel.processor.WriteDataStoreProcessor;
+import elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import elki.parallel.variables.SharedDouble;
+import elki.parallel.variables.SharedObject;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.result.outlier.QuotientOutlierScoreMeta;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Parallel implementation of the Connectivity-based Outlier Factor using
+ * processors. The scores are identical to {@link COF}.
+ * <p>
+ * Reference:
+ * <p>
+ * J. Tang, Z. Chen, A. W. C. Fu, D. W. Cheung<br>
+ * Enhancing effectiveness of outlier detections for low density patterns.<br>
+ * Advances in Knowledge Discovery and Data Mining.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - ACDProcessor
+ * @has - - - COFProcessor
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "J. Tang, Z. Chen, A. W. C. Fu, D. W. Cheung", //
+    title = "Enhancing effectiveness of outlier detections for low density patterns", //
+    booktitle = "In Advances in Knowledge Discovery and Data Mining", //
+    url = "https://doi.org/10.1007/3-540-47887-6_53", //
+    bibkey = "DBLP:conf/pakdd/TangCFC02")
+public class ParallelCOF<O> implements OutlierAlgorithm {
+  /**
+   * Distance function used.
+   */
+  protected Distance<? super O> distance;
+
+  /**
+   * Number of neighbors, including the query point.
+   */
+  protected int k;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param k Number of neighbors, not including the query point
+   */
+  public ParallelCOF(Distance<? super O> distance, int k) {
+    super();
+    this.distance = distance;
+    this.k = k + 1; // + query point
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(distance.getInputTypeRestriction());
+  }
+
+  /**
+   * Run the COF algorithm in parallel.
+   *
+   * @param relation Data relation
+   * @return COF result
+   */
+  public OutlierResult run(Relation<O> relation) {
+    DBIDs ids = relation.getDBIDs();
+    DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
+    QueryBuilder<O> qb = new QueryBuilder<>(dq);
+
+    // Phase one: kNN
+    WritableDataStore<KNNList> knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, KNNList.class);
+    {
+      KNNProcessor knnm = new KNNProcessor(k, () -> qb.kNNByDBID(k));
+      SharedObject<KNNList> knnv = new SharedObject<>();
+      WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(knns);
+      knnm.connectKNNOutput(knnv);
+      storek.connectInput(knnv);
+      ParallelExecutor.run(ids, knnm, storek);
+    }
+
+    // Phase two: average chaining distances
+    WritableDoubleDataStore acds = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+    {
+      ACDProcessor acdm = new ACDProcessor(knns, dq, k);
+      SharedDouble acdv = new SharedDouble();
+      WriteDoubleDataStoreProcessor storeacd = new WriteDoubleDataStoreProcessor(acds);
+      acdm.connectOutput(acdv);
+      storeacd.connectInput(acdv);
+      ParallelExecutor.run(ids, acdm, storeacd);
+    }
+
+    // Phase three: COF
+    WritableDoubleDataStore cofs = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_DB);
+    DoubleMinMax minmax;
+    {
+      COFProcessor cofm = new COFProcessor(knns, acds, k);
+      SharedDouble cofv = new SharedDouble();
+      DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+      WriteDoubleDataStoreProcessor storecof = new WriteDoubleDataStoreProcessor(cofs);
+      cofm.connectOutput(cofv);
+      mmm.connectInput(cofv);
+      storecof.connectInput(cofv);
+      ParallelExecutor.run(ids, cofm, storecof, mmm);
+      minmax = mmm.getMinMax();
+    }
+    acds.destroy();
+
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Connectivity-Based Outlier Factor", ids, cofs);
+    OutlierScoreMeta scoreMeta = new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY, 1.0);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> implements Parameterizer {
+    /**
+     * The distance function to use.
+     */
+    protected Distance<? super O> distance;
+
+    /**
+     * Number of neighbors, not including the query point.
+     */
+    protected int k;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
+          .grab(config, x -> distance = x);
+      new IntParameter(COF.Par.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> k = x);
+    }
+
+    @Override
+    public ParallelCOF<O> make() {
+      return new ParallelCOF<>(distance, k);
+    }
+  }
+}
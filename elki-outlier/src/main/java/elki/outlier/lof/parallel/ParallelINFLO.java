@@ -0,0 +1,241 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.Algorithm;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.*;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.math.DoubleMinMax;
+import elki.outlier.OutlierAlgorithm;
+import elki.outlier.lof.INFLO;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.DoubleMinMaxProcessor;
+import elki.parallel.processor.KNNProcessor;
+import elki.parallel.processor.WriteDataStoreProcessor;
+import elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import elki.parallel.variables.SharedDouble;
+import elki.parallel.variables.SharedObject;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.result.outlier.QuotientOutlierScoreMeta;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Parallel implementation of the Influenced Outlierness Factor using
+ * processors. The nearest neighbor search and the final scores are computed
+ * in parallel; the reverse nearest neighbors are collected sequentially, so
+ * that the scores are identical to {@link INFLO}.
+ * <p>
+ * Reference:
+ * <p>
+ * W. Jin, A. Tung, J. Han, W. Wang<br>
+ * Ranking outliers using symmetric neighborhood relationship<br>
+ * Proc. 10th Pacific-Asia conference on Advances in Knowledge Discovery and
+ * Data Mining
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - INFLOProcessor
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "W. Jin, A. Tung, J. Han, W. Wang", //
+    title = "Ranking outliers using symmetric neighborhood relationship", //
+    booktitle = "Proc. 10th Pacific-Asia conference on Advances in Knowledge Discovery and Data Mining", //
+    url = "https://doi.org/10.1007/11731139_68", //
+    bibkey = "DBLP:conf/pakdd/JinTHW06")
+public class ParallelINFLO<O> implements OutlierAlgorithm {
+  /**
+   * Distance function used.
+   */
+  private Distance<? super O> distance;
+
+  /**
+   * Pruning threshold m.
+   */
+  private double m;
+
+  /**
+   * Number of neighbors to use.
+   */
+  private int kplus;
+
+  /**
+   * Constructor with parameters.
+   *
+   * @param distance Distance function in use
+   * @param m m Parameter
+   * @param k k Parameter
+   */
+  public ParallelINFLO(Distance<? super O> distance, double m, int k) {
+    super();
+    this.distance = distance;
+    this.m = m;
+    this.kplus = k + 1;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(distance.getInputTypeRestriction());
+  }
+
+  /**
+   * Run the INFLO algorithm in parallel.
+   *
+   * @param relation Data relation
+   * @return INFLO result
+   */
+  public OutlierResult run(Relation<O> relation) {
+    DBIDs ids = relation.getDBIDs();
+    QueryBuilder<O> qb = new QueryBuilder<>(relation, distance);
+
+    // Phase one: kNN
+    WritableDataStore<KNNList> knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, KNNList.class);
+    {
+      KNNProcessor knnm = new KNNProcessor(kplus, () -> qb.kNNByDBID(kplus));
+      SharedObject<KNNList> knnv = new SharedObject<>();
+      WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(knns);
+      knnm.connectKNNOutput(knnv);
+      storek.connectInput(knnv);
+      ParallelExecutor.run(ids, knnm, storek);
+    }
+
+    // Phase two: reverse kNN minus kNN, sequentially for a stable order.
+    HashSetModifiableDBIDs pruned = DBIDUtil.newHashSet();
+    WritableDataStore<ModifiableDBIDs> rnnMinusKNNs = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, ModifiableDBIDs.class);
+    computeNeighborhoods(ids, knns, pruned, rnnMinusKNNs);
+
+    // Phase three: INFLO
+    WritableDoubleDataStore inflos = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    DoubleMinMax minmax;
+    {
+      INFLOProcessor inflom = new INFLOProcessor(knns, rnnMinusKNNs, pruned);
+      SharedDouble inflov = new SharedDouble();
+      DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+      WriteDoubleDataStoreProcessor storeinflo = new WriteDoubleDataStoreProcessor(inflos);
+      inflom.connectOutput(inflov);
+      mmm.connectInput(inflov);
+      storeinflo.connectInput(inflov);
+      ParallelExecutor.run(ids, inflom, storeinflo, mmm);
+      minmax = mmm.getMinMax();
+    }
+    rnnMinusKNNs.destroy();
+
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Influence Outlier Score", ids, inflos);
+    OutlierScoreMeta scoreMeta = new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0., Double.POSITIVE_INFINITY, 1.);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Compute the reverse kNN minus the kNN, and the pruned objects.
+   *
+   * @param ids Object ids
+   * @param knnlists Stored nearest neighbors
+   * @param pruned Pruned objects: with too many neighbors
+   * @param rNNminuskNNs reverse kNN storage
+   */
+  private void computeNeighborhoods(DBIDs ids, DataStore<KNNList> knnlists, ModifiableDBIDs pruned, WritableDataStore<ModifiableDBIDs> rNNminuskNNs) {
+    // Convert the kNN into sets, for fast containment tests.
+    WritableDataStore<SetDBIDs> knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, SetDBIDs.class);
+    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      knns.put(iditer, DBIDUtil.ensureSet(knnlists.get(iditer)));
+      rNNminuskNNs.put(iditer, DBIDUtil.newArray());
+    }
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      DBIDs knn = knns.get(iter);
+      int count = 1; // The point itself.
+      for(DBIDIter niter = knn.iter(); niter.valid(); niter.advance()) {
+        if(DBIDUtil.equal(iter, niter)) {
+          continue;
+        }
+        if(knns.get(niter).contains(iter)) {
+          count++;
+        }
+        else {
+          rNNminuskNNs.get(niter).add(iter);
+        }
+      }
+      // INFLO pruning rule
+      if(count >= knn.size() * m) {
+        pruned.add(iter);
+      }
+    }
+    knns.destroy();
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> implements Parameterizer {
+    /**
+     * The distance function to use.
+     */
+    protected Distance<? super O> distance;
+
+    /**
+     * M parameter
+     */
+    protected double m = 1.0;
+
+    /**
+     * Number of neighbors to use.
+     */
+    protected int k = 0;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
+          .grab(config, x -> distance = x);
+      new DoubleParameter(INFLO.Par.M_ID, 1.0)//
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .grab(config, x -> m = x);
+      new IntParameter(INFLO.Par.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> k = x);
+    }
+
+    @Override
+    public ParallelINFLO<O> make() {
+      return new ParallelINFLO<>(distance, m, k);
+    }
+  }
+}
@@ -0,0 +1,339 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.Algorithm;
+import elki.data.NumberVector;
+import elki.data.type.CombinedTypeInformation;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.database.relation.RelationUtil;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.math.DoubleMinMax;
+import elki.math.statistics.kernelfunctions.GaussianKernelDensityFunction;
+import elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import elki.outlier.OutlierAlgorithm;
+import elki.outlier.lof.KDEOS;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.DoubleMinMaxProcessor;
+import elki.parallel.processor.KNNProcessor;
+import elki.parallel.processor.WriteDataStoreProcessor;
+import elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import elki.parallel.variables.SharedDouble;
+import elki.parallel.variables.SharedObject;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.result.outlier.ProbabilisticOutlierScore;
+import elki.utilities.documentation.Reference;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.WrongParameterValueException;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Parallel implementation of the Kernel Density Estimator Outlier Score using
+ * processors. The serial algorithm distributes the density of each object to
+ * its neighbors; here every object instead collects the densities from its
+ * reverse neighbors, in the same order, so that the scores are identical to
+ * {@link KDEOS}.
+ * <p>
+ * Reference:
+ * <p>
+ * Erich Schubert, Arthur Zimek, Hans-Peter Kriegel<br>
+ * Generalized Outlier Detection with Flexible Kernel Density Estimates<br>
+ * Proc. 14th SIAM International Conference on Data Mining (SDM 2014)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - KDEOSBandwidthProcessor
+ * @has - - - KDEOSDensityProcessor
+ * @has - - - KDEOSProcessor
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "Erich Schubert, Arthur Zimek, Hans-Peter Kriegel", //
+    title = "Generalized Outlier Detection with Flexible Kernel Density Estimates", //
+    booktitle = "Proc. 14th SIAM International Conference on Data Mining (SDM 2014)", //
+    url = "https://doi.org/10.1137/1.9781611973440.63", //
+    bibkey = "DBLP:conf/sdm/SchubertZK14")
+public class ParallelKDEOS<O> implements OutlierAlgorithm {
+  /**
+   * Distance function used.
+   */
+  protected Distance<? super O> distance;
+
+  /**
+   * Kernel function to use for density estimation.
+   */
+  protected KernelDensityFunction kernel;
+
+  /**
+   * Minimum number of neighbors to use.
+   */
+  protected int kmin;
+
+  /**
+   * Maximum number of neighbors to use.
+   */
+  protected int kmax;
+
+  /**
+   * Kernel scaling parameter.
+   */
+  protected double scale;
+
+  /**
+   * Kernel minimum bandwidth.
+   */
+  protected double minBandwidth = 1e-6;
+
+  /**
+   * Intrinsic dimensionality.
+   */
+  protected int idim = -1;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param kmin Minimum number of neighbors
+   * @param kmax Maximum number of neighbors
+   * @param kernel Kernel function
+   * @param minBandwidth Minimum bandwidth
+   * @param scale Kernel scaling parameter
+   * @param idim Intrinsic dimensionality (use 0 to use real dimensionality)
+   */
+  public ParallelKDEOS(Distance<? super O> distance, int kmin, int kmax, KernelDensityFunction kernel, double minBandwidth, double scale, int idim) {
+    super();
+    this.distance = distance;
+    this.kmin = kmin;
+    this.kmax = kmax;
+    this.kernel = kernel;
+    this.minBandwidth = minBandwidth;
+    this.scale = scale;
+    this.idim = idim;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    TypeInformation res = distance.getInputTypeRestriction();
+    res = idim == 0 ? res : new CombinedTypeInformation(TypeUtil.NUMBER_VECTOR_FIELD, res);
+    return TypeUtil.array(res);
+  }
+
+  /**
+   * Run the KDEOS algorithm in parallel.
+   *
+   * @param rel Relation to process
+   * @return Outlier detection result
+   */
+  public OutlierResult run(Relation<O> rel) {
+    final DBIDs ids = rel.getDBIDs();
+    final int dim = dimensionality(rel), knum = kmax + 1 - kmin;
+    QueryBuilder<O> qb = new QueryBuilder<>(rel, distance);
+
+    // Phase one: kNN
+    WritableDataStore<KNNList> knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, KNNList.class);
+    {
+      KNNProcessor knnm = new KNNProcessor(kmax + 1, () -> qb.kNNByDBID(kmax + 1));
+      SharedObject<KNNList> knnv = new SharedObject<>();
+      WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(knns);
+      knnm.connectKNNOutput(knnv);
+      storek.connectInput(knnv);
+      ParallelExecutor.run(ids, knnm, storek);
+    }
+
+    // Phase two: bandwidths and kernel cutoffs
+    WritableDataStore<double[]> ibws = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, double[].class);
+    WritableDataStore<int[]> lens = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, int[].class);
+    final double iminbw = (minBandwidth > 0.) ? 1. / (minBandwidth * scale) : Double.POSITIVE_INFINITY;
+    ParallelExecutor.run(ids, new KDEOSBandwidthProcessor(knns, kernel, kmin, kmax, scale, iminbw, dim, ibws, lens));
+
+    // Phase three: reverse neighbors, in serial order
+    WritableDataStore<ModifiableDoubleDBIDList> rnns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, ModifiableDoubleDBIDList.class);
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      rnns.put(iter, DBIDUtil.newDistanceDBIDList());
+    }
+    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      int maxlen = 0;
+      for(int len : lens.get(iter)) {
+        maxlen = len > maxlen ? len : maxlen;
+      }
+      int rank = 0;
+      for(DBIDIter neighbor = knns.get(iter).iter(); rank < maxlen && neighbor.valid(); neighbor.advance(), rank++) {
+        // We store the rank instead of the distance
+        rnns.get(neighbor).add(rank, iter);
+      }
+    }
+
+    // Phase four: collect densities
+    WritableDataStore<double[]> densities = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, double[].class);
+    {
+      KDEOSDensityProcessor densm = new KDEOSDensityProcessor(knns, rnns, ibws, lens, kernel, dim, knum);
+      SharedObject<double[]> densv = new SharedObject<>();
+      WriteDataStoreProcessor<double[]> stored = new WriteDataStoreProcessor<>(densities);
+      densm.connectOutput(densv);
+      stored.connectInput(densv);
+      ParallelExecutor.run(ids, densm, stored);
+    }
+    rnns.destroy();
+    ibws.destroy();
+    lens.destroy();
+
+    // Phase five: KDEOS scores
+    WritableDoubleDataStore kofs = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    DoubleMinMax minmax;
+    {
+      KDEOSProcessor kdeosm = new KDEOSProcessor(knns, densities, knum);
+      SharedDouble kdeosv = new SharedDouble();
+      DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+      WriteDoubleDataStoreProcessor storekdeos = new WriteDoubleDataStoreProcessor(kofs);
+      kdeosm.connectOutput(kdeosv);
+      mmm.connectInput(kdeosv);
+      storekdeos.connectInput(kdeosv);
+      ParallelExecutor.run(ids, kdeosm, storekdeos, mmm);
+      minmax = mmm.getMinMax();
+    }
+    densities.destroy();
+
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Kernel Density Estimation Outlier Scores", ids, kofs);
+    OutlierScoreMeta meta = new ProbabilisticOutlierScore(minmax.getMin(), minmax.getMax());
+    return new OutlierResult(meta, scoreres);
+  }
+
+  /**
+   * Ugly hack to allow using this implementation without having a well-defined
+   * dimensionality.
+   *
+   * @param rel Data relation
+   * @return Dimensionality
+   */
+  private int dimensionality(Relation<O> rel) {
+    // Explicit:
+    if(idim >= 0) {
+      return idim;
+    }
+    // Cast to vector field relation.
+    @SuppressWarnings("unchecked")
+    final Relation<NumberVector> frel = (Relation<NumberVector>) rel;
+    int dim = RelationUtil.dimensionality(frel);
+    if(dim < 1) {
+      throw new AbortException("When using KDEOS with non-vectorspace data, the intrinsic dimensionality parameter must be set!");
+    }
+    return dim;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> implements Parameterizer {
+    /**
+     * The distance function to use.
+     */
+    protected Distance<? super O> distance;
+
+    /**
+     * Kernel function to use for density estimation.
+     */
+    protected KernelDensityFunction kernel;
+
+    /**
+     * Minimum number of neighbors to use.
+     */
+    protected int kmin;
+
+    /**
+     * Maximum number of neighbors to use.
+     */
+    protected int kmax;
+
+    /**
+     * Kernel scaling parameter.
+     */
+    protected double scale;
+
+    /**
+     * Kernel minimum bandwidth.
+     */
+    protected double minBandwidth = 0.;
+
+    /**
+     * Intrinsic dimensionality.
+     */
+    protected int idim = -1;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
+          .grab(config, x -> distance = x);
+      new ObjectParameter<KernelDensityFunction>(KDEOS.Par.KERNEL_ID, KernelDensityFunction.class, GaussianKernelDensityFunction.class) //
+          .grab(config, x -> kernel = x);
+      IntParameter kminP = new IntParameter(KDEOS.Par.KMIN_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      kminP.grab(config, x -> kmin = x);
+      IntParameter kmaxP = new IntParameter(KDEOS.Par.KMAX_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      kmaxP.grab(config, x -> kmax = x);
+      // Non-formalized parameter constraint: k_min <= k_max
+      if(kmin > kmax) {
+        config.reportError(new WrongParameterValueException(kminP, "must be at most", kmaxP, ""));
+      }
+      new DoubleParameter(KDEOS.Par.KERNEL_SCALE_ID)//
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .setDefaultValue(.25) //
+          // For simpler parameterization, scale kernels by their canonical
+          // bandwidth, when the kernel is configured.
+          .grab(config, x -> scale = x * ((kernel != null) ? kernel.canonicalBandwidth() : 1.));
+      new DoubleParameter(KDEOS.Par.KERNEL_MIN_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE) //
+          .setOptional(true) //
+          .grab(config, x -> minBandwidth = x);
+      new IntParameter(KDEOS.Par.IDIM_ID, 1) //
+          .grab(config, x -> idim = x);
+    }
+
+    @Override
+    public ParallelKDEOS<O> make() {
+      return new ParallelKDEOS<>(distance, kmin, kmax, kernel, minBandwidth, scale, idim);
+    }
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.Algorithm;
+import elki.data.NumberVector;
+import elki.data.type.CombinedTypeInformation;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.DBIDs;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.database.relation.RelationUtil;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.math.DoubleMinMax;
+import elki.math.statistics.kernelfunctions.GaussianKernelDensityFunction;
+import elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import elki.outlier.OutlierAlgorithm;
+import elki.outlier.lof.LDF;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.DoubleMinMaxProcessor;
+import elki.parallel.processor.KNNProcessor;
+import elki.parallel.processor.WriteDataStoreProcessor;
+import elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import elki.parallel.variables.SharedDouble;
+import elki.parallel.variables.SharedObject;
+import elki.result.outlier.BasicOutlierScoreMeta;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Parallel implementation of Outlier Detection with Kernel Density Functions
+ * using processors. The scores are identical to {@link LDF}.
+ * <p>
+ * Reference:
+ * <p>
+ * Outlier Detection with Kernel Density Functions<br>
+ * L. J. Latecki, A. Lazarevic, D. Pokrajac<br>
+ * Machine Learning and Data Mining in Pattern Recognition
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - LDEProcessor
+ * @has - - - LDFProcessor
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "L. J. Latecki, A. Lazarevic, D. Pokrajac", //
+    title = "Outlier Detection with Kernel Density Functions", //
+    booktitle = "Machine Learning and Data Mining in Pattern Recognition", //
+    url = "https://doi.org/10.1007/978-3-540-73499-4_6", //
+    bibkey = "DBLP:conf/mldm/LateckiLP07")
+public class ParallelLDF<O extends NumberVector> implements OutlierAlgorithm {
+  /**
+   * Distance function used.
+   */
+  protected Distance<? super O> distance;
+
+  /**
+   * Parameter k + 1 for the query point.
+   */
+  protected int kplus;
+
+  /**
+   * Bandwidth scaling factor.
+   */
+  protected double h = 1;
+
+  /**
+   * Scaling constant, to limit value range to 1/c
+   */
+  protected double c = 0.1;
+
+  /**
+   * Kernel density function
+   */
+  protected KernelDensityFunction kernel;
+
+  /**
+   * Constructor.
+   *
+   * @param k the value of k
+   * @param distance Distance function
+   * @param kernel Kernel function
+   * @param h Kernel bandwidth scaling
+   * @param c Score scaling parameter
+   */
+  public ParallelLDF(int k, Distance<? super O> distance, KernelDensityFunction kernel, double h, double c) {
+    super();
+    this.distance = distance;
+    this.kplus = k + 1;
+    this.kernel = kernel;
+    this.h = h;
+    this.c = c;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(new CombinedTypeInformation(distance.getInputTypeRestriction(), TypeUtil.NUMBER_VECTOR_FIELD));
+  }
+
+  /**
+   * Run the LDF algorithm in parallel.
+   *
+   * @param relation Data relation
+   * @return LDF result
+   */
+  public OutlierResult run(Relation<O> relation) {
+    final int dim = RelationUtil.dimensionality(relation);
+    DBIDs ids = relation.getDBIDs();
+    QueryBuilder<O> qb = new QueryBuilder<>(relation, distance);
+
+    // Phase one: kNN
+    WritableDataStore<KNNList> knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, KNNList.class);
+    {
+      KNNProcessor knnm = new KNNProcessor(kplus, () -> qb.kNNByDBID(kplus));
+      SharedObject<KNNList> knnv = new SharedObject<>();
+      WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(knns);
+      knnm.connectKNNOutput(knnv);
+      storek.connectInput(knnv);
+      ParallelExecutor.run(ids, knnm, storek);
+    }
+
+    // Phase two: local density estimates
+    WritableDoubleDataStore ldes = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+    {
+      LDEProcessor ldem = new LDEProcessor(knns, kernel, h, dim);
+      SharedDouble ldev = new SharedDouble();
+      WriteDoubleDataStoreProcessor storelde = new WriteDoubleDataStoreProcessor(ldes);
+      ldem.connectOutput(ldev);
+      storelde.connectInput(ldev);
+      ParallelExecutor.run(ids, ldem, storelde);
+    }
+
+    // Phase three: local density factors
+    WritableDoubleDataStore ldfs = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_STATIC);
+    DoubleMinMax minmax;
+    {
+      LDFProcessor ldfm = new LDFProcessor(knns, ldes, c);
+      SharedDouble ldfv = new SharedDouble();
+      DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+      WriteDoubleDataStoreProcessor storeldf = new WriteDoubleDataStoreProcessor(ldfs);
+      ldfm.connectOutput(ldfv);
+      mmm.connectInput(ldfv);
+      storeldf.connectInput(ldfv);
+      ParallelExecutor.run(ids, ldfm, storeldf, mmm);
+      minmax = mmm.getMinMax();
+    }
+    ldes.destroy();
+
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Local Density Factor", ids, ldfs);
+    OutlierScoreMeta scoreMeta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, 1. / c, 1 / (1 + c));
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O extends NumberVector> implements Parameterizer {
+    /**
+     * The distance function to use.
+     */
+    protected Distance<? super O> distance;
+
+    /**
+     * Number of neighbors
+     */
+    protected int k = 2;
+
+    /**
+     * Kernel density function parameter
+     */
+    protected KernelDensityFunction kernel;
+
+    /**
+     * Bandwidth scaling factor.
+     */
+    protected double h = 1;
+
+    /**
+     * Scaling constant, to limit value range to 1/c
+     */
+    protected double c = 0.1;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
+          .grab(config, x -> distance = x);
+      new IntParameter(LDF.Par.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ONE_INT) //
+          .grab(config, x -> k = x);
+      new ObjectParameter<KernelDensityFunction>(LDF.Par.KERNEL_ID, KernelDensityFunction.class, GaussianKernelDensityFunction.class) //
+          .grab(config, x -> kernel = x);
+      new DoubleParameter(LDF.Par.H_ID) //
+          .grab(config, x -> h = x);
+      new DoubleParameter(LDF.Par.C_ID, 0.1) //
+          .grab(config, x -> c = x);
+    }
+
+    @Override
+    public ParallelLDF<O> make() {
+      return new ParallelLDF<>(k, distance, kernel, h, c);
+    }
+  }
+}
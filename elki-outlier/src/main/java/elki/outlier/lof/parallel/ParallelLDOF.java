@@ -0,0 +1,193 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.Algorithm;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.DBIDs;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.math.DoubleMinMax;
+import elki.outlier.OutlierAlgorithm;
+import elki.outlier.lof.LDOF;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.DoubleMinMaxProcessor;
+import elki.parallel.processor.KNNProcessor;
+import elki.parallel.processor.WriteDataStoreProcessor;
+import elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import elki.parallel.variables.SharedDouble;
+import elki.parallel.variables.SharedObject;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.result.outlier.QuotientOutlierScoreMeta;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+/**
+ * Parallel implementation of the Local Distance-Based Outlier Factor using
+ * processors. The scores are identical to {@link LDOF}.
+ * <p>
+ * Reference:
+ * <p>
+ * K. Zhang, M. Hutter, H. Jin<br>
+ * A New Local Distance-Based Outlier Detection Approach for Scattered
+ * Real-World Data.<br>
+ * Proc. 13th Pacific-Asia Conf. Adv. Knowledge Discovery and Data Mining
+ * (PAKDD 2009)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - LDOFProcessor
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "K. Zhang, M. Hutter, H. Jin", //
+    title = "A New Local Distance-Based Outlier Detection Approach for Scattered Real-World Data", //
+    booktitle = "Proc. 13th Pacific-Asia Conf. Adv. Knowledge Discovery and Data Mining (PAKDD 2009)", //
+    url = "https://doi.org/10.1007/978-3-642-01307-2_84", //
+    bibkey = "DBLP:conf/pakdd/ZhangHJ09")
+public class ParallelLDOF<O> implements OutlierAlgorithm {
+  /**
+   * The baseline for LDOF values. The paper gives 0.5 for uniform
+   * distributions, although one might also discuss using 1.0 as baseline.
+   */
+  private static final double LDOF_BASELINE = 0.5;
+
+  /**
+   * Distance function used.
+   */
+  protected Distance<? super O> distance;
+
+  /**
+   * Number of neighbors to query + query point itself.
+   */
+  protected int kplus;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param k k Parameter
+   */
+  public ParallelLDOF(Distance<? super O> distance, int k) {
+    super();
+    this.distance = distance;
+    this.kplus = k + 1; // + query point
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(distance.getInputTypeRestriction());
+  }
+
+  /**
+   * Run the LDOF algorithm in parallel.
+   *
+   * @param relation Data relation
+   * @return LDOF result
+   */
+  public OutlierResult run(Relation<O> relation) {
+    DBIDs ids = relation.getDBIDs();
+    QueryBuilder<O> qb = new QueryBuilder<>(relation, distance);
+    DistanceQuery<O> dq = qb.distanceQuery();
+
+    // Phase one: kNN
+    WritableDataStore<KNNList> knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, KNNList.class);
+    {
+      KNNProcessor knnm = new KNNProcessor(kplus, () -> qb.kNNByDBID(kplus));
+      SharedObject<KNNList> knnv = new SharedObject<>();
+      WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(knns);
+      knnm.connectKNNOutput(knnv);
+      storek.connectInput(knnv);
+      ParallelExecutor.run(ids, knnm, storek);
+    }
+
+    // Phase two: LDOF
+    WritableDoubleDataStore ldofs = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+    DoubleMinMax minmax;
+    {
+      LDOFProcessor ldofm = new LDOFProcessor(knns, dq);
+      SharedDouble ldofv = new SharedDouble();
+      DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+      WriteDoubleDataStoreProcessor storeldof = new WriteDoubleDataStoreProcessor(ldofs);
+      ldofm.connectOutput(ldofv);
+      mmm.connectInput(ldofv);
+      storeldof.connectInput(ldofv);
+      ParallelExecutor.run(ids, ldofm, storeldof, mmm);
+      minmax = mmm.getMinMax();
+    }
+
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("LDOF Outlier Score", ids, ldofs);
+    OutlierScoreMeta scoreMeta = new QuotientOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY, LDOF_BASELINE);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> implements Parameterizer {
+    /**
+     * The distance function to use.
+     */
+    protected Distance<? super O> distance;
+
+    /**
+     * Number of neighbors, not including the query point.
+     */
+    protected int k;
+
+    @Override
+    public void configure(Parameterization config) {
+      new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
+          .grab(config, x -> distance = x);
+      new IntParameter(LDOF.Par.K_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> k = x);
+    }
+
+    @Override
+    public ParallelLDOF<O> make() {
+      return new ParallelLDOF<>(distance, k);
+    }
+  }
+}
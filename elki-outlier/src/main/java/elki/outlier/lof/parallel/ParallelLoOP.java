@@ -0,0 +1,283 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.data.type.CombinedTypeInformation;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDs;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.math.DoubleMinMax;
+import elki.math.MathUtil;
+import elki.math.statistics.distribution.NormalDistribution;
+import elki.outlier.OutlierAlgorithm;
+import elki.outlier.lof.LoOP;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.processor.KNNProcessor;
+import elki.parallel.processor.WriteDataStoreProcessor;
+import elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import elki.parallel.variables.SharedDouble;
+import elki.parallel.variables.SharedObject;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.result.outlier.ProbabilisticOutlierScore;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel implementation of Local Outlier Probabilities using processors.
+ * <p>
+ * The scores are identical to {@link LoOP}; only the normalization constant
+ * is aggregated serially, in the order of the relation.
+ * <p>
+ * Reference:
+ * <p>
+ * Hans-Peter Kriegel, Peer Kröger, Erich Schubert, Arthur Zimek:<br>
+ * LoOP: Local Outlier Probabilities<br>
+ * Proc. 18th Int. Conf. Information and Knowledge Management (CIKM 2009)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @has - - - PDistProcessor
+ * @has - - - PLOFProcessor
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "Hans-Peter Kriegel, Peer Kröger, Erich Schubert, Arthur Zimek", //
+    title = "LoOP: Local Outlier Probabilities", //
+    booktitle = "Proc. 18th Int. Conf. Information and Knowledge Management (CIKM 2009)", //
+    url = "https://doi.org/10.1145/1645953.1646195", //
+    bibkey = "DBLP:conf/cikm/KriegelKSZ09")
+public class ParallelLoOP<O> implements OutlierAlgorithm {
+  /**
+   * Reachability neighborhood size.
+   */
+  protected int kreach;
+
+  /**
+   * Comparison neighborhood size.
+   */
+  protected int kcomp;
+
+  /**
+   * Lambda parameter.
+   */
+  protected double lambda;
+
+  /**
+   * Distance function for reachability.
+   */
+  protected Distance<? super O> reachabilityDistance;
+
+  /**
+   * Distance function for comparison set.
+   */
+  protected Distance<? super O> comparisonDistance;
+
+  /**
+   * Constructor.
+   *
+   * @param kreach k for reachability
+   * @param kcomp k for comparison
+   * @param reachabilityDistance distance function for reachability
+   * @param comparisonDistance distance function for comparison
+   * @param lambda Lambda parameter
+   */
+  public ParallelLoOP(int kreach, int kcomp, Distance<? super O> reachabilityDistance, Distance<? super O> comparisonDistance, double lambda) {
+    super();
+    this.kreach = kreach;
+    this.kcomp = kcomp;
+    this.reachabilityDistance = reachabilityDistance;
+    this.comparisonDistance = comparisonDistance;
+    this.lambda = lambda;
+  }
+
+  @Override
+  public TypeInformation[] getInputTypeRestriction() {
+    return TypeUtil.array(reachabilityDistance.equals(comparisonDistance) ? reachabilityDistance.getInputTypeRestriction() : //
+        new CombinedTypeInformation(reachabilityDistance.getInputTypeRestriction(), comparisonDistance.getInputTypeRestriction()));
+  }
+
+  /**
+   * Run the LoOP algorithm in parallel.
+   *
+   * @param relation Data relation
+   * @return LoOP result
+   */
+  public OutlierResult run(Relation<O> relation) {
+    DBIDs ids = relation.getDBIDs();
+
+    // Phase one: kNN, shared if both distances agree
+    WritableDataStore<KNNList> knnReach = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, KNNList.class);
+    WritableDataStore<KNNList> knnComp = knnReach;
+    if(comparisonDistance == reachabilityDistance || comparisonDistance.equals(reachabilityDistance)) {
+      materializeKNN(relation, reachabilityDistance, MathUtil.max(kcomp, kreach) + 1, knnReach);
+    }
+    else {
+      materializeKNN(relation, reachabilityDistance, kreach + 1, knnReach);
+      knnComp = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, KNNList.class);
+      materializeKNN(relation, comparisonDistance, kcomp + 1, knnComp);
+    }
+
+    // Phase two: probabilistic distances
+    WritableDoubleDataStore pdists = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_DB);
+    {
+      PDistProcessor pdistm = new PDistProcessor(knnReach, kreach);
+      SharedDouble pdistv = new SharedDouble();
+      WriteDoubleDataStoreProcessor storep = new WriteDoubleDataStoreProcessor(pdists);
+      pdistm.connectOutput(pdistv);
+      storep.connectInput(pdistv);
+      ParallelExecutor.run(ids, pdistm, storep);
+    }
+
+    // Phase three: PLOF
+    WritableDoubleDataStore plofs = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+    {
+      PLOFProcessor plofm = new PLOFProcessor(knnComp, pdists, kcomp);
+      SharedDouble plofv = new SharedDouble();
+      WriteDoubleDataStoreProcessor storep = new WriteDoubleDataStoreProcessor(plofs);
+      plofm.connectOutput(plofv);
+      storep.connectInput(plofv);
+      ParallelExecutor.run(ids, plofm, storep);
+    }
+    pdists.destroy();
+
+    // Normalization, serially to obtain the same sum as LoOP.
+    double nplof = 0.;
+    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      final double plof = plofs.doubleValue(iditer);
+      nplof += (plof - 1.0) * (plof - 1.0);
+    }
+    nplof = lambda * FastMath.sqrt(nplof / relation.size());
+    nplof = nplof > 0. ? nplof : 1.;
+
+    DoubleMinMax mm = new DoubleMinMax();
+    final double norm = 1. / (nplof * MathUtil.SQRT2);
+    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      double loop = NormalDistribution.erf((plofs.doubleValue(iditer) - 1.) * norm);
+      plofs.putDouble(iditer, loop);
+      mm.put(loop);
+    }
+
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Local Outlier Probabilities", ids, plofs);
+    OutlierScoreMeta scoreMeta = new ProbabilisticOutlierScore(mm.getMin(), mm.getMax(), 0.);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Materialize the kNN of all objects in parallel.
+   *
+   * @param relation Data relation
+   * @param distance Distance function
+   * @param k Number of neighbors, including the query point
+   * @param knns Output storage
+   */
+  private void materializeKNN(Relation<O> relation, Distance<? super O> distance, int k, WritableDataStore<KNNList> knns) {
+    QueryBuilder<O> qb = new QueryBuilder<>(relation, distance);
+    KNNProcessor knnm = new KNNProcessor(k, () -> qb.kNNByDBID(k));
+    SharedObject<KNNList> knnv = new SharedObject<>();
+    WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(knns);
+    knnm.connectKNNOutput(knnv);
+    storek.connectInput(knnv);
+    ParallelExecutor.run(relation.getDBIDs(), knnm, storek);
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author Erich Schubert
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> implements Parameterizer {
+    /**
+     * Holds the value of {@link LoOP.Par#KREACH_ID}.
+     */
+    protected int kreach = 0;
+
+    /**
+     * Holds the value of {@link LoOP.Par#KCOMP_ID}.
+     */
+    protected int kcomp = 0;
+
+    /**
+     * Hold the value of {@link LoOP.Par#LAMBDA_ID}.
+     */
+    protected double lambda = 2.0;
+
+    /**
+     * Preprocessor Step 1
+     */
+    protected Distance<O> reachabilityDistance = null;
+
+    /**
+     * Preprocessor Step 2
+     */
+    protected Distance<O> comparisonDistance = null;
+
+    @Override
+    public void configure(Parameterization config) {
+      new IntParameter(LoOP.Par.KCOMP_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> kcomp = x);
+      new ObjectParameter<Distance<O>>(LoOP.Par.COMPARISON_DISTANCE_FUNCTION_ID, Distance.class, EuclideanDistance.class) //
+          .grab(config, x -> comparisonDistance = x);
+      kreach = kcomp;
+      new IntParameter(LoOP.Par.KREACH_ID) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .setOptional(true) //
+          .grab(config, x -> kreach = x);
+      new ObjectParameter<Distance<O>>(LoOP.Par.REACHABILITY_DISTANCE_FUNCTION_ID, Distance.class) //
+          .setOptional(true) //
+          .grab(config, x -> reachabilityDistance = x);
+      new DoubleParameter(LoOP.Par.LAMBDA_ID, 2.0) //
+          .addConstraint(CommonConstraints.GREATER_THAN_ZERO_DOUBLE) //
+          .grab(config, x -> lambda = x);
+    }
+
+    @Override
+    public ParallelLoOP<O> make() {
+      Distance<O> realreach = reachabilityDistance != null ? reachabilityDistance : comparisonDistance;
+      return new ParallelLoOP<>(kreach, kcomp, realreach, comparisonDistance, lambda);
+    }
+  }
+}
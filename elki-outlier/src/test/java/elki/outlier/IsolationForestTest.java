@@ -0,0 +1,88 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.relation.ProxyView;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.result.outlier.OutlierResult;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the IsolationForest algorithm.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class IsolationForestTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testIsolationForest() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<IsolationForest<DoubleVector>>(IsolationForest.class) //
+        .with(IsolationForest.Par.SEED_ID, 0).build().autorun(db);
+    assertSingleScore(result, 945, 0.458570285004381);
+    assertAUC(db, "Noise", result, 0.9646666666666667);
+  }
+
+  @Test
+  public void testEmpty() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    OutlierResult result = new ELKIBuilder<IsolationForest<DoubleVector>>(IsolationForest.class) //
+        .with(IsolationForest.Par.SEED_ID, 0).build().run(new ProxyView<>(DBIDUtil.EMPTYDBIDS, rel));
+    assertEquals("Result not empty", 0, result.getScores().size());
+  }
+
+  @Test
+  public void testNearDuplicates() {
+    // Values only a few ulps apart, where the random split may round to min.
+    double[][] data = new double[20][1];
+    double v = 1.;
+    for(int i = 0; i < data.length; i++) {
+      data[i][0] = v;
+      v = (i & 3) == 3 ? v + 1 : Math.nextUp(v);
+    }
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data));
+    db.initialize();
+    Relation<DoubleVector> rel = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    OutlierResult result = new ELKIBuilder<IsolationForest<DoubleVector>>(IsolationForest.class) //
+        .with(IsolationForest.Par.NUM_TREES_ID, 500) //
+        .with(IsolationForest.Par.SUBSAMPLE_SIZE_ID, 5) //
+        .with(IsolationForest.Par.SEED_ID, 0).build().run(rel);
+    DoubleRelation scores = result.getScores();
+    for(DBIDIter it = scores.iterDBIDs(); it.valid(); it.advance()) {
+      final double s = scores.doubleValue(it);
+      assertTrue("Invalid score: " + s, s > 0 && s <= 1);
+    }
+  }
+}
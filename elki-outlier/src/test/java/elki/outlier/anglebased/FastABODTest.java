@@ -59,6 +59,19 @@ public class FastABODTest extends AbstractOutlierAlgorithmTest {
     assertSingleScore(result, 945, 0.498653289);
   }
 
+  @Test
+  public void testFastABODLinearSampled() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<FastABOD<DoubleVector>>(FastABOD.class) //
+        .with(FastABOD.Par.K_ID, 30)//
+        .with(FastABOD.Par.KERNEL_FUNCTION_ID, LinearKernel.STATIC) //
+        .with(FastABOD.Par.PAIRS_ID, 100) //
+        .with(FastABOD.Par.SEED_ID, 0) //
+        .build().autorun(db);
+    assertAUC(db, "Noise", result, 0.99196296296);
+    assertSingleScore(result, 945, 0.21253574829);
+  }
+
   @Test
   public void testFastABODLinearIndexSquared() {
     ListParameterization pars = new ListParameterization();
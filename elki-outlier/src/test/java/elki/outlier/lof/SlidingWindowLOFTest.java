@@ -0,0 +1,128 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDIter;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.datasource.parser.NumberVectorLabelParser;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.outlier.AbstractOutlierAlgorithmTest;
+import elki.result.outlier.OutlierResult;
+import elki.utilities.ELKIBuilder;
+import elki.utilities.datastructures.arraylike.DoubleArray;
+
+/**
+ * Tests the sliding window LOF algorithm.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class SlidingWindowLOFTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testSlidingWindowLOF() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    OutlierResult result = new ELKIBuilder<SlidingWindowLOF<DoubleVector>>(SlidingWindowLOF.class) //
+        .with(LOF.Par.K_ID, 10) //
+        .with(SlidingWindowLOF.Par.WINDOW_ID, 500).build().autorun(db);
+    assertSingleScore(result, 1293, 3.6535967429773555);
+    assertAUC(db, "Noise", result, 0.9948235294117647);
+  }
+
+  @Test
+  public void testFullWindow() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    Relation<NumberVector> relation = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    SlidingWindowLOF.Window<NumberVector> window = new SlidingWindowLOF<NumberVector>(10, relation.size(), EuclideanDistance.STATIC).newWindow();
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+      window.insert(relation.get(iter));
+    }
+    // Once all objects have arrived, the scores must be the same as LOF.
+    DoubleRelation scores = new LOF<NumberVector>(10, EuclideanDistance.STATIC).run(relation).getScores();
+    int i = 0;
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance(), i++) {
+      assertEquals("Score does not match LOF.", scores.doubleValue(iter), window.lof(i), 1e-15);
+    }
+  }
+
+  @Test
+  public void testSmallWindow() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    Relation<NumberVector> relation = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    SlidingWindowLOF.Window<NumberVector> window = new SlidingWindowLOF<NumberVector>(10, 50, EuclideanDistance.STATIC).newWindow();
+    int steps = 0;
+    for(DBIDIter iter = relation.iterDBIDs(); iter.valid() && steps < 300; iter.advance(), steps++) {
+      window.insert(relation.get(iter));
+      if(window.size() <= 10) {
+        continue;
+      }
+      // Compare to LOF on the current window contents.
+      double[][] data = new double[window.size()][];
+      for(int i = 0; i < data.length; i++) {
+        data[i] = window.get(i).toArray();
+      }
+      Database wdb = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data));
+      wdb.initialize();
+      Relation<NumberVector> wrel = wdb.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+      DoubleRelation scores = new LOF<NumberVector>(10, EuclideanDistance.STATIC).run(wrel).getScores();
+      int i = 0;
+      for(DBIDIter it = wrel.iterDBIDs(); it.valid(); it.advance(), i++) {
+        assertEquals("Score does not match LOF at step " + steps + " position " + i, scores.doubleValue(it), window.lof(i), 1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void testStream() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-axis-subspaces-6d.ascii", 1345);
+    Relation<NumberVector> relation = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    SlidingWindowLOF<NumberVector> lof = new SlidingWindowLOF<>(10, 500, EuclideanDistance.STATIC);
+    DoubleRelation expected = lof.run(relation).getScores();
+    try (InputStream in = open(UNITTEST + "outlier-axis-subspaces-6d.ascii")) {
+      NumberVectorLabelParser<DoubleVector> parser = new NumberVectorLabelParser<>(DoubleVector.FACTORY);
+      parser.initStream(in);
+      DoubleArray scores = new DoubleArray(relation.size());
+      assertEquals("Number of objects does not match.", relation.size(), lof.runStream(parser, scores::add));
+      // Same order of objects, hence the same scores:
+      int i = 0;
+      for(DBIDIter iter = expected.iterDBIDs(); iter.valid(); iter.advance(), i++) {
+        assertEquals("Score does not match.", expected.doubleValue(iter), scores.get(i), 0.);
+      }
+    }
+    catch(IOException e) {
+      fail("Test data not found.");
+    }
+  }
+}
@@ -0,0 +1,455 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import elki.utilities.io.ByteArrayUtil;
+
+/**
+ * Memory-mapped file storing vectors of a fixed dimensionality, as double or
+ * float values.
+ * <p>
+ * Because a single {@link MappedByteBuffer} is limited to 2 GB, the file is
+ * mapped in multiple segments. Each segment holds a power of two number of
+ * records, so that a record never crosses a segment boundary and the segment
+ * can be found with a shift. Values are accessed with absolute reads, without
+ * copying, and concurrent readers are safe. The operating system page cache
+ * decides what is kept in memory, so the file can be much larger than the
+ * Java heap.
+ * <p>
+ * The file format is a fixed header (magic, value size, dimensionality, and
+ * number of records) followed by the records in little-endian byte order.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class MappedVectorFile implements AutoCloseable {
+  /**
+   * Magic number to identify files.
+   */
+  private static final int MAGIC = OnDiskArray.mixMagic(0x4D564543, 1);
+
+  /**
+   * Header size: magic, value size, dimensionality, and number of records.
+   */
+  private static final int HEADER_SIZE = 4 * ByteArrayUtil.SIZE_INT;
+
+  /**
+   * Maximum size of a single mapping.
+   */
+  private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+  /**
+   * File name.
+   */
+  private final Path filename;
+
+  /**
+   * File channel.
+   */
+  private FileChannel file;
+
+  /**
+   * Mapped segments.
+   */
+  private MappedByteBuffer[] segments;
+
+  /**
+   * Dimensionality.
+   */
+  private final int dim;
+
+  /**
+   * Number of records.
+   */
+  private final int size;
+
+  /**
+   * Bytes per value (4 for float, 8 for double).
+   */
+  private final int valuesize;
+
+  /**
+   * Bytes per record.
+   */
+  private final int recordsize;
+
+  /**
+   * Shift and mask to find the segment of a record.
+   */
+  private final int shift, mask;
+
+  /**
+   * Constructor, use {@link #open} or {@link #create}.
+   *
+   * @param filename File name
+   * @param file File channel
+   * @param writable Map writable
+   * @throws IOException on IO errors
+   */
+  protected MappedVectorFile(Path filename, FileChannel file, boolean writable) throws IOException {
+    this.filename = filename;
+    this.file = file;
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    if(file.read(header, 0) != HEADER_SIZE) {
+      file.close();
+      throw new IOException("Incomplete header in " + filename);
+    }
+    header.flip();
+    if(header.getInt() != MAGIC) {
+      file.close();
+      throw new IOException("Not a vector file: " + filename);
+    }
+    this.valuesize = header.getInt();
+    this.dim = header.getInt();
+    this.size = header.getInt();
+    if((valuesize != ByteArrayUtil.SIZE_DOUBLE && valuesize != ByteArrayUtil.SIZE_FLOAT) || dim <= 0 || size < 0 //
+        || (long) dim * valuesize > MAX_SEGMENT_SIZE) {
+      file.close();
+      throw new IOException("Invalid header in " + filename);
+    }
+    this.recordsize = dim * valuesize;
+    if(file.size() != HEADER_SIZE + recordsize * (long) size) {
+      file.close();
+      throw new IOException("File size and number of records do not agree: " + filename);
+    }
+    this.shift = 31 - Integer.numberOfLeadingZeros((int) (MAX_SEGMENT_SIZE / recordsize));
+    this.mask = (1 << shift) - 1;
+    final int numseg = size == 0 ? 0 : ((size - 1) >>> shift) + 1;
+    final MapMode mode = writable ? MapMode.READ_WRITE : MapMode.READ_ONLY;
+    this.segments = new MappedByteBuffer[numseg];
+    for(int i = 0; i < numseg; i++) {
+      final long first = ((long) i) << shift;
+      final long recs = Math.min(1L << shift, size - first);
+      segments[i] = file.map(mode, HEADER_SIZE + first * recordsize, recs * recordsize);
+      segments[i].order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+
+  /**
+   * Open an existing file.
+   *
+   * @param filename File name
+   * @param writable Open for writing
+   * @return Vector file
+   * @throws IOException on IO errors
+   */
+  public static MappedVectorFile open(Path filename, boolean writable) throws IOException {
+    return new MappedVectorFile(filename, writable ? //
+        FileChannel.open(filename, StandardOpenOption.READ, StandardOpenOption.WRITE) : //
+        FileChannel.open(filename, StandardOpenOption.READ), writable);
+  }
+
+  /**
+   * Create a new file, initialized with zeros.
+   *
+   * @param filename File name
+   * @param dim Dimensionality
+   * @param size Number of records
+   * @param isfloat Store float values instead of double values
+   * @return Writable vector file
+   * @throws IOException on IO errors
+   */
+  public static MappedVectorFile create(Path filename, int dim, int size, boolean isfloat) throws IOException {
+    try (Writer writer = new Writer(filename, dim, isfloat)) {
+      writer.reserve(size);
+    }
+    return open(filename, true);
+  }
+
+  /**
+   * Get a value as double.
+   *
+   * @param off Record offset
+   * @param d Dimension
+   * @return Value
+   */
+  public double doubleValue(int off, int d) {
+    final int pos = (off & mask) * recordsize + d * valuesize;
+    final ByteBuffer seg = segments[off >>> shift];
+    return valuesize == ByteArrayUtil.SIZE_DOUBLE ? seg.getDouble(pos) : seg.getFloat(pos);
+  }
+
+  /**
+   * Get a value as float.
+   *
+   * @param off Record offset
+   * @param d Dimension
+   * @return Value
+   */
+  public float floatValue(int off, int d) {
+    final int pos = (off & mask) * recordsize + d * valuesize;
+    final ByteBuffer seg = segments[off >>> shift];
+    return valuesize == ByteArrayUtil.SIZE_DOUBLE ? (float) seg.getDouble(pos) : seg.getFloat(pos);
+  }
+
+  /**
+   * Set a value (the file must have been opened writable).
+   *
+   * @param off Record offset
+   * @param d Dimension
+   * @param v Value
+   */
+  public void set(int off, int d, double v) {
+    final int pos = (off & mask) * recordsize + d * valuesize;
+    final ByteBuffer seg = segments[off >>> shift];
+    if(valuesize == ByteArrayUtil.SIZE_DOUBLE) {
+      seg.putDouble(pos, v);
+    }
+    else {
+      seg.putFloat(pos, (float) v);
+    }
+  }
+
+  /**
+   * Get the dimensionality.
+   *
+   * @return Dimensionality
+   */
+  public int getDimensionality() {
+    return dim;
+  }
+
+  /**
+   * Get the number of records.
+   *
+   * @return Number of records
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Check whether the file contains float values.
+   *
+   * @return {@code true} for float values, {@code false} for double values
+   */
+  public boolean isFloat() {
+    return valuesize == ByteArrayUtil.SIZE_FLOAT;
+  }
+
+  /**
+   * Get the number of mapped segments.
+   *
+   * @return Number of segments
+   */
+  public int getNumSegments() {
+    return segments.length;
+  }
+
+  /**
+   * Get the file name.
+   *
+   * @return File name
+   */
+  public Path getFilename() {
+    return filename;
+  }
+
+  /**
+   * Explicitly close the file. Following accesses will fail.
+   *
+   * @throws IOException on IO errors
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if(segments != null) {
+      for(MappedByteBuffer seg : segments) {
+        if(!seg.isReadOnly()) {
+          seg.force();
+        }
+        ByteArrayUtil.unmapByteBuffer(seg);
+      }
+      segments = null;
+    }
+    if(file != null) {
+      file.close();
+      file = null;
+    }
+  }
+
+  /**
+   * Sequential writer, for creating files of initially unknown size without
+   * holding the data in memory.
+   *
+   * @author Erich Schubert
+   */
+  public static class Writer implements AutoCloseable {
+    /**
+     * File channel.
+     */
+    private FileChannel file;
+
+    /**
+     * Write buffer.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Dimensionality.
+     */
+    private final int dim;
+
+    /**
+     * Store float values.
+     */
+    private final boolean isfloat;
+
+    /**
+     * Number of records written.
+     */
+    private int size = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param filename File name, must not exist or be empty
+     * @param dim Dimensionality
+     * @param isfloat Store float values instead of double values
+     * @throws IOException on IO errors
+     */
+    public Writer(Path filename, int dim, boolean isfloat) throws IOException {
+      if(Files.exists(filename) && Files.size(filename) != 0) {
+        throw new IOException("File already exists: " + filename);
+      }
+      final int recordsize = dim * (isfloat ? ByteArrayUtil.SIZE_FLOAT : ByteArrayUtil.SIZE_DOUBLE);
+      if(dim <= 0 || recordsize > MAX_SEGMENT_SIZE / 2) {
+        throw new IOException("Invalid dimensionality: " + dim);
+      }
+      this.dim = dim;
+      this.isfloat = isfloat;
+      this.file = FileChannel.open(filename, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+      this.buffer = ByteBuffer.allocateDirect(Math.max(recordsize, 1 << 20)).order(ByteOrder.LITTLE_ENDIAN);
+      file.position(HEADER_SIZE);
+    }
+
+    /**
+     * Append a vector.
+     *
+     * @param values Values
+     * @throws IOException on IO errors
+     */
+    public void append(double[] values) throws IOException {
+      if(values.length != dim) {
+        throw new IOException("Vector dimensionality " + values.length + " does not match " + dim);
+      }
+      if(size == Integer.MAX_VALUE) {
+        throw new IOException("Too many records.");
+      }
+      if(buffer.remaining() < dim * (isfloat ? ByteArrayUtil.SIZE_FLOAT : ByteArrayUtil.SIZE_DOUBLE)) {
+        flush();
+      }
+      if(isfloat) {
+        for(double v : values) {
+          buffer.putFloat((float) v);
+        }
+      }
+      else {
+        for(double v : values) {
+          buffer.putDouble(v);
+        }
+      }
+      ++size;
+    }
+
+    /**
+     * Append zero vectors, up to the given size.
+     *
+     * @param newsize Number of records
+     * @throws IOException on IO errors
+     */
+    protected void reserve(int newsize) throws IOException {
+      flush();
+      if(newsize > size) {
+        size = newsize;
+        final long end = HEADER_SIZE + size * (long) dim * (isfloat ? ByteArrayUtil.SIZE_FLOAT : ByteArrayUtil.SIZE_DOUBLE);
+        // Extend the file by writing its last byte.
+        file.write(ByteBuffer.allocate(1), end - 1);
+        file.position(end);
+      }
+    }
+
+    /**
+     * Write buffered data.
+     *
+     * @throws IOException on IO errors
+     */
+    private void flush() throws IOException {
+      buffer.flip();
+      while(buffer.hasRemaining()) {
+        file.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    /**
+     * Get the number of records written.
+     *
+     * @return Number of records
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Close the file without writing the header, e.g., after an error.
+     * The incomplete file is not a valid vector file, and should be deleted.
+     *
+     * @throws IOException on IO errors
+     */
+    public void abort() throws IOException {
+      if(file == null) {
+        return;
+      }
+      file.close();
+      file = null;
+    }
+
+    /**
+     * Write the header and close the file.
+     */
+    @Override
+    public void close() throws IOException {
+      if(file == null) {
+        return;
+      }
+      flush();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC) //
+          .putInt(isfloat ? ByteArrayUtil.SIZE_FLOAT : ByteArrayUtil.SIZE_DOUBLE) //
+          .putInt(dim).putInt(size).flip();
+      while(header.hasRemaining()) {
+        file.write(header, header.position());
+      }
+      file.close();
+      file = null;
+    }
+  }
+}
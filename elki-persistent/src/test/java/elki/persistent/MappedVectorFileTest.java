@@ -0,0 +1,100 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test the memory-mapped vector file.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class MappedVectorFileTest {
+  @Test
+  public void testDouble() throws IOException {
+    dotest(false);
+  }
+
+  @Test
+  public void testFloat() throws IOException {
+    dotest(true);
+  }
+
+  private void dotest(boolean isfloat) throws IOException {
+    Path file = Files.createTempFile("ELKIUnitTest", null);
+    file.toFile().deleteOnExit();
+    final int dim = 5, size = 1000;
+    Random rnd = new Random(0L);
+    double[][] data = new double[size][dim];
+    try (MappedVectorFile.Writer writer = new MappedVectorFile.Writer(file, dim, isfloat)) {
+      for(double[] row : data) {
+        for(int d = 0; d < dim; d++) {
+          row[d] = rnd.nextDouble();
+        }
+        writer.append(row);
+      }
+    }
+    assertEquals("File size doesn't match.", 16 + size * dim * (isfloat ? 4 : 8), Files.size(file));
+
+    try (MappedVectorFile vecs = MappedVectorFile.open(file, true)) {
+      assertEquals("Dimensionality", dim, vecs.getDimensionality());
+      assertEquals("Size", size, vecs.size());
+      assertEquals("Type", isfloat, vecs.isFloat());
+      for(int i = 0; i < size; i++) {
+        for(int d = 0; d < dim; d++) {
+          assertEquals("Value differs", isfloat ? (float) data[i][d] : data[i][d], vecs.doubleValue(i, d), 0.);
+          assertEquals("Value differs", (float) data[i][d], vecs.floatValue(i, d), 0.);
+        }
+      }
+      vecs.set(42, 3, -1.);
+    }
+    try (MappedVectorFile vecs = MappedVectorFile.open(file, false)) {
+      assertEquals("Value not written", -1., vecs.doubleValue(42, 3), 0.);
+      assertEquals("Value differs", isfloat ? (float) data[42][2] : data[42][2], vecs.doubleValue(42, 2), 0.);
+    }
+  }
+
+  @Test
+  public void testCreate() throws IOException {
+    Path file = Files.createTempFile("ELKIUnitTest", null);
+    file.toFile().deleteOnExit();
+    try (MappedVectorFile vecs = MappedVectorFile.create(file, 3, 10, false)) {
+      assertEquals("Size", 10, vecs.size());
+      assertFalse("Type", vecs.isFloat());
+      assertEquals("Not initialized", 0., vecs.doubleValue(9, 2), 0.);
+      vecs.set(9, 2, 1.);
+    }
+    try (MappedVectorFile vecs = MappedVectorFile.open(file, false)) {
+      assertEquals("Value not written", 1., vecs.doubleValue(9, 2), 0.);
+      assertTrue("Segments", vecs.getNumSegments() == 1);
+    }
+  }
+}
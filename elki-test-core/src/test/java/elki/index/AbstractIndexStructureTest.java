@@ -29,10 +29,12 @@ import elki.data.DoubleVector;
 import elki.data.type.TypeUtil;
 import elki.database.Database;
 import elki.database.StaticArrayDatabase;
+import elki.database.datastore.DataStore;
 import elki.database.ids.*;
 import elki.database.query.PrioritySearcher;
 import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.BatchKNNSearcher;
 import elki.database.query.knn.KNNSearcher;
 import elki.database.query.range.RangeSearcher;
 import elki.database.relation.Relation;
@@ -172,6 +174,24 @@ public abstract class AbstractIndexStructureTest {
     }
   }
 
+  /**
+   * Check that batch queries produce the same results as single queries.
+   *
+   * @param relation Data relation
+   * @param knnq kNN searcher
+   * @param k Number of neighbors
+   */
+  private static void assertBatchKNN(Relation<?> relation, BatchKNNSearcher knnq, int k) {
+    DataStore<KNNList> knns = knnq.getKNNs(relation.getDBIDs(), k);
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      KNNList expect = knnq.getKNN(it, k), batch = knns.get(it);
+      assertEquals("Batch result size does not match.", expect.size(), batch.size());
+      for(DoubleDBIDListIter e = expect.iter(), b = batch.iter(); e.valid(); e.advance(), b.advance()) {
+        assertEquals("Batch result distance does not match.", e.doubleValue(), b.doubleValue(), 1e-15);
+      }
+    }
+  }
+
   /**
    * Check the class of a query.
    *
@@ -227,6 +247,9 @@ public abstract class AbstractIndexStructureTest {
         assertNeighbors(relation, dist, knnq.getKNN(DoubleVector.wrap(querypoint), k), shouldd, shouldc);
       }
       assertNeighbors(knnq2.getKNN(second, k), shouldd2, shouldc2);
+      if(knnq2 instanceof BatchKNNSearcher) {
+        assertBatchKNN(relation, (BatchKNNSearcher) knnq2, k);
+      }
     }
     if(expectRangeQuery != null) {
       RangeSearcher<DoubleVector> rangeq = qb.rangeByObject(eps);
@@ -280,6 +303,9 @@ public abstract class AbstractIndexStructureTest {
         assertNeighbors(relation, dist, knnq.getKNN(DoubleVector.wrap(querypoint), k), cosshouldd, cosshouldc);
       }
       assertNeighbors(knnq2.getKNN(second, k), cosshouldd2, cosshouldc2);
+      if(knnq2 instanceof BatchKNNSearcher) {
+        assertBatchKNN(relation, (BatchKNNSearcher) knnq2, k);
+      }
     }
     if(expectRangeQuery != null) {
       RangeSearcher<DoubleVector> rangeq = qb.cheapOnly().rangeByObject(coseps);
@@ -24,6 +24,7 @@ import java.util.Collection;
 
 import elki.application.KDDCLIApplication;
 import elki.database.Database;
+import elki.parallel.ParallelCore;
 import elki.result.Metadata;
 import elki.result.SettingsResult;
 import elki.utilities.optionhandling.Parameterizer;
@@ -46,6 +47,7 @@ import elki.workflow.OutputStep;
  * @composed - - - AlgorithmStep
  * @composed - - - EvaluationStep
  * @composed - - - OutputStep
+ * @assoc - - - ParallelCore
  */
 public class KDDTask {
   /**
@@ -73,6 +75,16 @@ public class KDDTask {
    */
   private OutputStep outputStep;
 
+  /**
+   * Parallel processing core of this task.
+   */
+  private ParallelCore core;
+
+  /**
+   * Whether the core was created for this task, and is to be shut down.
+   */
+  private boolean ownsCore;
+
   /**
    * Constructor.
    *
@@ -83,19 +95,67 @@ public class KDDTask {
    * @param settings
    */
   public KDDTask(InputStep inputStep, AlgorithmStep algorithmStep, EvaluationStep evaluationStep, OutputStep outputStep, Collection<TrackedParameter> settings) {
+    this(inputStep, algorithmStep, evaluationStep, outputStep, settings, ParallelCore.getCore());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param inputStep
+   * @param algorithmStep
+   * @param evaluationStep
+   * @param outputStep
+   * @param settings
+   * @param core Parallel processing core to use
+   */
+  public KDDTask(InputStep inputStep, AlgorithmStep algorithmStep, EvaluationStep evaluationStep, OutputStep outputStep, Collection<TrackedParameter> settings, ParallelCore core) {
+    this(inputStep, algorithmStep, evaluationStep, outputStep, settings, core, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param inputStep
+   * @param algorithmStep
+   * @param evaluationStep
+   * @param outputStep
+   * @param settings
+   * @param core Parallel processing core to use
+   * @param ownsCore Shut down the core after running
+   */
+  private KDDTask(InputStep inputStep, AlgorithmStep algorithmStep, EvaluationStep evaluationStep, OutputStep outputStep, Collection<TrackedParameter> settings, ParallelCore core, boolean ownsCore) {
     super();
     this.inputStep = inputStep;
     this.algorithmStep = algorithmStep;
     this.evaluationStep = evaluationStep;
     this.outputStep = outputStep;
     this.settings = settings;
+    this.core = core;
+    this.ownsCore = ownsCore;
   }
 
   /**
    * Method to run the specified algorithm using the specified database
    * connection.
+   * <p>
+   * If the core was created for this task by its parameterization, the worker
+   * pool of the core is shut down afterwards.
    */
   public void run() {
+    try {
+      core.run(this::runSteps);
+    }
+    finally {
+      if(ownsCore) {
+        core.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Run the individual steps.
+   */
+  private void runSteps() {
     // Input step
     Database db = inputStep.getDatabase();
 
@@ -128,10 +188,13 @@ public class KDDTask {
 
     OutputStep outputStep = null;
 
+    ParallelCore core = null;
+
     @Override
     public void configure(Parameterization config) {
       TrackParameters track = new TrackParameters(config);
 
+      core = track.tryInstantiate(ParallelCore.class);
       inputStep = track.tryInstantiate(InputStep.class);
       algorithmStep = track.tryInstantiate(AlgorithmStep.class);
       evaluationStep = track.tryInstantiate(EvaluationStep.class);
@@ -144,7 +207,7 @@ public class KDDTask {
 
     @Override
     public KDDTask make() {
-      return new KDDTask(inputStep, algorithmStep, evaluationStep, outputStep, settings);
+      return new KDDTask(inputStep, algorithmStep, evaluationStep, outputStep, settings, core, core != ParallelCore.getStaticCore());
     }
   }
 
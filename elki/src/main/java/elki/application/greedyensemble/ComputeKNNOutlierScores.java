@@ -169,11 +169,11 @@ public class ComputeKNNOutlierScores<O extends NumberVector> extends AbstractDis
     // Ensure we don't go beyond the relation size:
     final int maxk = Math.min(krange.getMax(), relation.size() - 1);
 
-    // Get a KNN query.
+    // Materialize the kNN once, shared by all methods and all k below.
     final int lim = Math.min(maxk + 2, relation.size());
-    KNNSearcher<DBIDRef> knnq = new QueryBuilder<>(relation, distance).precomputed().kNNByDBID(lim);
+    KNNSearcher<DBIDRef> knnq = new QueryBuilder<>(relation, distance).sharedKNN().kNNByDBID(lim);
     if(!(knnq instanceof PreprocessorKNNQuery)) {
-      throw new AbortException("Not using preprocessor knn query -- KNN queries using class: " + knnq.getClass());
+      LOG.warning("Not using a shared kNN preprocessor, every method will repeat the kNN search -- KNN queries using class: " + knnq.getClass());
     }
 
     // Warn for some known slow methods and large k:
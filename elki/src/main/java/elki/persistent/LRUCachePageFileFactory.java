@@ -24,21 +24,39 @@ import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.constraints.CommonConstraints;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.EnumParameter;
 import elki.utilities.optionhandling.parameters.IntParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
- * Page file factory for memory page files.
+ * Page file factory for cached page files.
+ * <p>
+ * By default, a least-recently-used cache is used. The {@link TwoQueueCache}
+ * can be selected instead, which allows concurrent access and is resistant to
+ * sequential scans.
  * 
  * @author Erich Schubert
  * @since 0.6.0
  * 
  * @has - - - LRUCache
+ * @has - - - TwoQueueCache
  * @composed - - - PageFileFactory
  * 
  * @param <P> Page type
  */
 public class LRUCachePageFileFactory<P extends Page> implements PageFileFactory<P> {
+  /**
+   * Cache replacement policy.
+   *
+   * @author Erich Schubert
+   */
+  public enum Policy {
+    /** Least recently used, see {@link LRUCache}. */
+    LRU,
+    /** Concurrent 2Q cache, see {@link TwoQueueCache}. */
+    TWO_QUEUE
+  }
+
   /**
    * Inner page file factory.
    */
@@ -49,6 +67,11 @@ public class LRUCachePageFileFactory<P extends Page> implements PageFileFactory<
    */
   private int cacheSize;
 
+  /**
+   * Cache replacement policy.
+   */
+  private Policy policy;
+
   /**
    * Constructor.
    * 
@@ -56,15 +79,27 @@ public class LRUCachePageFileFactory<P extends Page> implements PageFileFactory<
    * @param cacheSize Size of cache, in bytes.
    */
   public LRUCachePageFileFactory(PageFileFactory<P> pageFileFactory, int cacheSize) {
+    this(pageFileFactory, cacheSize, Policy.LRU);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param pageFileFactory Inner page file
+   * @param cacheSize Size of cache, in bytes.
+   * @param policy Cache replacement policy
+   */
+  public LRUCachePageFileFactory(PageFileFactory<P> pageFileFactory, int cacheSize, Policy policy) {
     super();
     this.cacheSize = cacheSize;
     this.pageFileFactory = pageFileFactory;
+    this.policy = policy;
   }
 
   @Override
   public PageFile<P> newPageFile(Class<P> cls) {
     PageFile<P> inner = pageFileFactory.newPageFile(cls);
-    return new LRUCache<>(cacheSize, inner);
+    return policy == Policy.TWO_QUEUE ? new TwoQueueCache<>(cacheSize, inner) : new LRUCache<>(cacheSize, inner);
   }
 
   @Override
@@ -89,6 +124,11 @@ public class LRUCachePageFileFactory<P extends Page> implements PageFileFactory<
      */
     public static final OptionID PAGEFILE_ID = new OptionID("pagefile.pagefile", "The backing pagefile for the cache.");
 
+    /**
+     * Parameter to choose the cache replacement policy.
+     */
+    public static final OptionID POLICY_ID = new OptionID("pagefile.cachepolicy", "The cache replacement policy.");
+
     /**
      * Inner page file factory.
      */
@@ -99,6 +139,11 @@ public class LRUCachePageFileFactory<P extends Page> implements PageFileFactory<
      */
     protected int cacheSize;
 
+    /**
+     * Cache replacement policy.
+     */
+    protected Policy policy;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<PageFileFactory<Page>>(PAGEFILE_ID, PageFileFactory.class, PersistentPageFileFactory.class) //
@@ -106,11 +151,13 @@ public class LRUCachePageFileFactory<P extends Page> implements PageFileFactory<
       new IntParameter(CACHE_SIZE_ID) //
           .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
           .grab(config, x -> cacheSize = x);
+      new EnumParameter<Policy>(POLICY_ID, Policy.class, Policy.LRU) //
+          .grab(config, x -> policy = x);
     }
 
     @Override
     public LRUCachePageFileFactory<Page> make() {
-      return new LRUCachePageFileFactory<>(pageFileFactory, cacheSize);
+      return new LRUCachePageFileFactory<>(pageFileFactory, cacheSize, policy);
     }
   }
 }
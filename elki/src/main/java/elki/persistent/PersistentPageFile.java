@@ -20,7 +20,10 @@
  */
 package elki.persistent;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
@@ -30,11 +33,19 @@ import java.nio.file.StandardOpenOption;
 import elki.index.tree.TreeIndexHeader;
 import elki.logging.Logging;
 import elki.utilities.exceptions.AbortException;
+import elki.utilities.io.ByteBufferInputStream;
+import elki.utilities.io.ByteBufferObjectInput;
+import elki.utilities.io.ByteBufferObjectOutput;
 
 /**
  * A PersistentPageFile stores objects persistently that implement the
  * <code>Page</code> interface. For convenience each page is represented by a
  * single file. All pages are stored in a specified directory.
+ * <p>
+ * Pages are encoded directly into a reusable direct {@link ByteBuffer}, which
+ * is transferred with positional {@link FileChannel} I/O. Pages written by
+ * older versions using Java serialization streams are still read, and are
+ * rewritten in the current layout when they are read.
  * 
  * @author Elke Achtert
  * @since 0.1
@@ -60,6 +71,11 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
    */
   private static final int FILLED_PAGE = 1;
 
+  /**
+   * Header of pages written with Java serialization by older versions.
+   */
+  private static final int LEGACY_STREAM_HEADER = 0xACED0005;
+
   /**
    * The file storing the pages.
    */
@@ -80,6 +96,16 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
    */
   private boolean existed;
 
+  /**
+   * Buffer for reading and writing pages.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * Zeros, for padding pages.
+   */
+  private final byte[] zeros;
+
   /**
    * Creates a new PersistentPageFile from an existing file.
    * 
@@ -91,8 +117,10 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
     this.pageclass = pageclass;
     // create from existing file
     existed = Files.exists(filename);
+    buffer = ByteBuffer.allocateDirect(pageSize);
+    zeros = new byte[pageSize];
     try {
-      file = FileChannel.open(filename, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      file = FileChannel.open(filename, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
     }
     catch(IOException e) {
       throw new AbortException("IO error in loading persistent page file.", e);
@@ -110,12 +138,18 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
     try {
       countRead();
       long offset = ((long) (header.getReservedPages() + pageID)) * (long) pageSize;
-      byte[] buffer = new byte[pageSize];
-      int read = file.read(ByteBuffer.wrap(buffer), offset);
-      if(read != pageSize) {
-        throw new IOException("Incomplete read at offset " + offset + " read " + read + " bytes, expected " + pageSize);
+      synchronized(buffer) {
+        readBuffer(offset);
+        if(buffer.getInt(0) != LEGACY_STREAM_HEADER) {
+          return decodePage();
+        }
+        // Migrate pages written by older versions.
+        P page = decodeLegacyPage();
+        countWrite();
+        encodePage(page);
+        writeBuffer(offset);
+        return page;
       }
-      return byteArrayToPage(buffer);
     }
     catch(IOException e) {
       throw new RuntimeException("IOException occurred during reading of page " + pageID + "\n", e);
@@ -135,11 +169,10 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
 
       // delete from file
       countWrite();
-      byte[] array = pageToByteArray(null);
       long offset = (header.getReservedPages() + pageID) * (long) pageSize;
-      int written = file.write(ByteBuffer.wrap(array), offset);
-      if(written != pageSize) {
-        throw new IOException("Incomplete write at offset " + offset + " wrote " + written + " bytes, expected " + array.length);
+      synchronized(buffer) {
+        encodePage(null);
+        writeBuffer(offset);
       }
     }
     catch(IOException e) {
@@ -157,12 +190,11 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
   public void writePage(int pageID, P page) {
     try {
       countWrite();
-      byte[] array = pageToByteArray(page);
       long offset = ((long) (header.getReservedPages() + pageID)) * (long) pageSize;
       assert offset >= 0 : header.getReservedPages() + " " + pageID + " " + pageSize + " " + offset;
-      int written = file.write(ByteBuffer.wrap(array), offset);
-      if(written != pageSize) {
-        throw new IOException("Incomplete write at offset " + offset + " wrote " + written + " bytes, expected " + array.length);
+      synchronized(buffer) {
+        encodePage(page);
+        writeBuffer(offset);
       }
       page.setDirty(false);
     }
@@ -205,84 +237,103 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
   }
 
   /**
-   * Reconstruct a serialized object from the specified byte array.
+   * Read a page into the buffer.
    * 
-   * @param array the byte array from which the object should be reconstructed
-   * @return a serialized object from the specified byte array
+   * @param offset File offset
+   * @throws IOException on IO errors
    */
-  private P byteArrayToPage(byte[] array) {
-    try {
-      ByteArrayInputStream bais = new ByteArrayInputStream(array);
-      ObjectInputStream ois = new ObjectInputStream(bais);
-      int type = ois.readInt();
-      if(type == EMPTY_PAGE) {
-        return null;
+  private void readBuffer(long offset) throws IOException {
+    buffer.clear();
+    while(buffer.hasRemaining()) {
+      if(file.read(buffer, offset + buffer.position()) < 0) {
+        throw new IOException("Incomplete read at offset " + offset + " read " + buffer.position() + " bytes, expected " + pageSize);
       }
-      else if(type == FILLED_PAGE) {
-        P page;
-        try {
-          page = pageclass.newInstance();
-          page.readExternal(ois);
-        }
-        catch(InstantiationException | IllegalAccessException
-            | ClassNotFoundException e) {
-          throw new AbortException("Error instanciating an index page", e);
-        }
-        return page;
+    }
+    buffer.flip();
+  }
+
+  /**
+   * Write the buffer to the file.
+   * 
+   * @param offset File offset
+   * @throws IOException on IO errors
+   */
+  private void writeBuffer(long offset) throws IOException {
+    while(buffer.hasRemaining()) {
+      file.write(buffer, offset + buffer.position());
+    }
+  }
+
+  /**
+   * Decode the page in the buffer.
+   * 
+   * @return Page, or {@code null} for an empty page
+   * @throws IOException on IO errors
+   */
+  private P decodePage() throws IOException {
+    return decodePage(buffer.getInt(), new ByteBufferObjectInput(buffer));
+  }
+
+  /**
+   * Decode a page in the buffer that was written with Java serialization.
+   * 
+   * @return Page, or {@code null} for an empty page
+   * @throws IOException on IO errors
+   */
+  private P decodeLegacyPage() throws IOException {
+    ObjectInputStream ois = new ObjectInputStream(new ByteBufferInputStream(buffer));
+    return decodePage(ois.readInt(), ois);
+  }
+
+  /**
+   * Decode a page after its header.
+   * 
+   * @param type Page type from the header
+   * @param in Input to read the page contents from
+   * @return Page, or {@code null} for an empty page
+   * @throws IOException on IO errors
+   */
+  private P decodePage(int type, ObjectInput in) throws IOException {
+    if(type == EMPTY_PAGE) {
+      return null;
+    }
+    else if(type == FILLED_PAGE) {
+      P page;
+      try {
+        page = pageclass.getDeclaredConstructor().newInstance();
+        page.readExternal(in);
       }
-      else {
-        throw new IllegalArgumentException("Unknown type: " + type);
+      catch(ReflectiveOperationException e) {
+        throw new AbortException("Error instanciating an index page", e);
       }
+      return page;
     }
-    catch(IOException e) {
-      throw new AbortException("IO Error in page file", e);
+    else {
+      throw new IllegalArgumentException("Unknown type: " + type);
     }
   }
 
   /**
-   * Serializes an object into a byte array.
+   * Encode a page into the buffer, padded to the page size.
    * 
-   * @param page the object to be serialized
-   * @return the byte array
+   * @param page the page to encode, or {@code null} for an empty page
+   * @throws IOException on IO errors
    */
-  private byte[] pageToByteArray(P page) {
+  private void encodePage(P page) throws IOException {
+    buffer.clear();
     try {
       if(page == null) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(baos);
-        oos.writeInt(EMPTY_PAGE);
-        oos.close();
-        baos.close();
-        byte[] array = baos.toByteArray();
-        byte[] result = new byte[pageSize];
-        System.arraycopy(array, 0, result, 0, array.length);
-        return result;
+        buffer.putInt(EMPTY_PAGE);
       }
       else {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(baos);
-        oos.writeInt(FILLED_PAGE);
-        page.writeExternal(oos);
-        oos.close();
-        baos.close();
-        byte[] array = baos.toByteArray();
-        if(array.length > this.pageSize) {
-          throw new IllegalArgumentException("Size of page " + page + " is greater than specified" + " pagesize: " + array.length + " > " + pageSize);
-        }
-        else if(array.length == this.pageSize) {
-          return array;
-        }
-
-        else {
-          byte[] result = new byte[pageSize];
-          System.arraycopy(array, 0, result, 0, array.length);
-          return result;
-        }
+        buffer.putInt(FILLED_PAGE);
+        page.writeExternal(new ByteBufferObjectOutput(buffer));
       }
     }
-    catch(IOException e) {
-      throw new RuntimeException("IOException occurred! ", e);
+    catch(BufferOverflowException e) {
+      throw new IllegalArgumentException("Size of page " + page + " is greater than specified" + " pagesize: " + pageSize);
     }
+    buffer.put(zeros, 0, buffer.remaining()).flip();
   }
 
   /** @return the random access file storing the pages. */
@@ -339,16 +390,14 @@ public class PersistentPageFile<P extends ExternalizablePage> extends AbstractSt
         }
         else { // must scan complete file
           int i = 0;
-          while(file.position() + pageSize <= file.size()) {
-            long offset = ((long) (header.getReservedPages() + i)) * (long) pageSize;
-            byte[] buffer = new byte[pageSize];
-            if(file.read(ByteBuffer.wrap(buffer), offset) != pageSize) {
-              throw new IOException("Incomplete read at position " + offset);
+          long offset = ((long) header.getReservedPages()) * (long) pageSize;
+          for(; offset + pageSize <= file.size(); offset += pageSize) {
+            int type;
+            synchronized(buffer) {
+              readBuffer(offset);
+              type = buffer.getInt(0) != LEGACY_STREAM_HEADER ? buffer.getInt(0) //
+                  : new ObjectInputStream(new ByteBufferInputStream(buffer)).readInt();
             }
-
-            ByteArrayInputStream bais = new ByteArrayInputStream(buffer);
-            ObjectInputStream ois = new ObjectInputStream(bais);
-            int type = ois.readInt();
             if(type == EMPTY_PAGE) {
               emptyPages.push(i);
             }
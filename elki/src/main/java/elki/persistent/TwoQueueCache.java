@@ -0,0 +1,516 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import elki.logging.Logging;
+import elki.logging.statistics.AtomicLongCounter;
+import elki.logging.statistics.Counter;
+import elki.utilities.documentation.Reference;
+import elki.utilities.exceptions.AbortException;
+
+/**
+ * Concurrent, scan-resistant page cache using the 2Q replacement policy.
+ * <p>
+ * New pages first enter a small FIFO queue. Only pages that are accessed again
+ * after being evicted from this queue (which is detected using a queue of
+ * recently evicted page ids) are promoted to the main LRU queue. Hence, a
+ * single sequential scan only replaces the FIFO queue, not the frequently used
+ * pages in the main queue.
+ * <p>
+ * To allow concurrent queries, the cache is split into independent stripes by
+ * page id, each with its own lock, instead of a single lock on the cache.
+ * <p>
+ * Reference:
+ * <p>
+ * T. Johnson, D. Shasha<br>
+ * 2Q: A Low Overhead High Performance Buffer Management Replacement
+ * Algorithm<br>
+ * Proc. 20th Int. Conf. on Very Large Data Bases (VLDB'94)
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ *
+ * @assoc - - - PageFile
+ *
+ * @param <P> Page type
+ */
+@Reference(authors = "T. Johnson, D. Shasha", //
+    title = "2Q: A Low Overhead High Performance Buffer Management Replacement Algorithm", //
+    booktitle = "Proc. 20th Int. Conf. on Very Large Data Bases (VLDB'94)", //
+    url = "http://www.vldb.org/conf/1994/P439.PDF", //
+    bibkey = "DBLP:conf/vldb/JohnsonS94")
+public class TwoQueueCache<P extends Page> extends AbstractPageFile<P> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(TwoQueueCache.class);
+
+  /**
+   * Maximum number of stripes.
+   */
+  private static final int MAX_STRIPES = 16;
+
+  /**
+   * Minimum number of pages per stripe.
+   */
+  private static final int MIN_STRIPE_SIZE = 16;
+
+  /**
+   * Cache size in bytes.
+   */
+  protected int cacheSizeBytes;
+
+  /**
+   * The underlying file of this cache. If a page is dropped it is written to
+   * the file.
+   */
+  protected PageFile<P> file;
+
+  /**
+   * Cache stripes.
+   */
+  private List<Stripe> stripes;
+
+  /**
+   * Cache statistics.
+   */
+  private Counter hits, misses, evictions;
+
+  /**
+   * Constructor.
+   *
+   * @param cacheSizeBytes the maximum number of bytes for this cache
+   * @param file the underlying file of this cache, if a page is dropped it is
+   *        written to the file
+   */
+  public TwoQueueCache(int cacheSizeBytes, PageFile<P> file) {
+    super();
+    this.file = file;
+    this.cacheSizeBytes = cacheSizeBytes;
+    final String prefix = this.getClass().getName();
+    // Atomic, as the counters are shared by all stripes.
+    this.hits = LOG.isStatistics() ? new AtomicLongCounter(prefix + ".hits") : null;
+    this.misses = LOG.isStatistics() ? new AtomicLongCounter(prefix + ".misses") : null;
+    this.evictions = LOG.isStatistics() ? new AtomicLongCounter(prefix + ".evictions") : null;
+  }
+
+  @Override
+  public boolean initialize(PageHeader header) {
+    boolean created = file.initialize(header);
+    // Compute the actual cache size.
+    final int cacheSize = cacheSizeBytes / header.getPageSize();
+    if(cacheSize <= 0) {
+      throw new AbortException("Invalid cache size: " + cacheSizeBytes + " / " + header.getPageSize() + " = " + cacheSize);
+    }
+    final int numstripes = Integer.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, cacheSize / MIN_STRIPE_SIZE)));
+    stripes = new ArrayList<>(numstripes);
+    for(int i = 0; i < numstripes; i++) {
+      // Distribute the remainder to the first stripes.
+      stripes.add(new Stripe(cacheSize / numstripes + (i < cacheSize % numstripes ? 1 : 0)));
+    }
+    if(LOG.isDebugging()) {
+      LOG.debug("2Q cache size is " + cacheSize + " pages in " + numstripes + " stripes.");
+    }
+    return created;
+  }
+
+  /**
+   * Get the stripe responsible for a page.
+   *
+   * @param pageID Page id
+   * @return Stripe
+   */
+  private Stripe stripe(int pageID) {
+    return stripes.get(pageID & (stripes.size() - 1));
+  }
+
+  @Override
+  public P readPage(int pageID) {
+    countRead();
+    return stripe(pageID).read(pageID);
+  }
+
+  @Override
+  protected void writePage(int pageID, P page) {
+    countWrite();
+    page.setDirty(true);
+    stripe(pageID).write(pageID, page);
+  }
+
+  @Override
+  public void deletePage(int pageID) {
+    countWrite();
+    stripe(pageID).remove(pageID);
+    file.deletePage(pageID);
+  }
+
+  /**
+   * Write page through to disk.
+   *
+   * @param page page
+   */
+  protected void expirePage(P page) {
+    if(page.isDirty()) {
+      file.writePage(page);
+    }
+  }
+
+  @Override
+  public int setPageID(P page) {
+    return file.setPageID(page);
+  }
+
+  @Override
+  public int getNextPageID() {
+    return file.getNextPageID();
+  }
+
+  @Override
+  public void setNextPageID(int nextPageID) {
+    file.setNextPageID(nextPageID);
+  }
+
+  @Override
+  public int getPageSize() {
+    return file.getPageSize();
+  }
+
+  @Override
+  public void close() {
+    flush();
+    file.close();
+  }
+
+  /**
+   * Flushes this caches by writing any entry to the underlying file.
+   */
+  public void flush() {
+    for(Stripe stripe : stripes) {
+      stripe.flush();
+    }
+  }
+
+  /**
+   * Clears this cache.
+   */
+  @Override
+  public void clear() {
+    for(Stripe stripe : stripes) {
+      stripe.clear();
+    }
+  }
+
+  @Override
+  public void logStatistics() {
+    super.logStatistics();
+    if(hits != null) {
+      LOG.statistics(hits);
+      LOG.statistics(misses);
+      LOG.statistics(evictions);
+    }
+    file.logStatistics();
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * A stripe of the cache, with its own queues and lock.
+   *
+   * @author Erich Schubert
+   */
+  private class Stripe {
+    /**
+     * Maximum number of resident pages, and of the FIFO and ghost queues.
+     */
+    final int capacity, kin, kout;
+
+    /**
+     * FIFO queue of pages accessed once.
+     */
+    final LinkedHashMap<Integer, P> in = new LinkedHashMap<>();
+
+    /**
+     * LRU queue of frequently accessed pages.
+     */
+    final LinkedHashMap<Integer, P> main = new LinkedHashMap<>(16, .75f, true);
+
+    /**
+     * Ids of pages recently evicted from the FIFO queue.
+     */
+    final LinkedHashSet<Integer> ghost = new LinkedHashSet<>();
+
+    /**
+     * Dirty pages evicted from the queues, but not yet written to the file.
+     */
+    final Map<Integer, P> writing = new HashMap<>();
+
+    /**
+     * Number of pages inserted by writes, to detect stale reads.
+     */
+    long modcount;
+
+    /**
+     * Lock to serialize the writes of this stripe to the backing file.
+     */
+    final Object io = new Object();
+
+    /**
+     * Constructor.
+     *
+     * @param capacity Number of pages
+     */
+    Stripe(int capacity) {
+      this.capacity = capacity;
+      this.kin = Math.max(1, capacity >> 2);
+      this.kout = Math.max(1, capacity >> 1);
+    }
+
+    /**
+     * Read a page, from the cache or the backing file.
+     * <p>
+     * The backing file is read without holding the lock of the stripe; the
+     * page is only added if it was not added or modified concurrently.
+     *
+     * @param pageID Page id
+     * @return Page
+     */
+    P read(int pageID) {
+      final long mod;
+      synchronized(this) {
+        P page = lookup(pageID);
+        if(page != null) {
+          if(hits != null) {
+            hits.increment();
+          }
+          return page;
+        }
+        if(misses != null) {
+          misses.increment();
+        }
+        mod = modcount;
+      }
+      P page = file.readPage(pageID);
+      if(page == null) {
+        return null;
+      }
+      final List<P> victims;
+      synchronized(this) {
+        P other = lookup(pageID);
+        if(other != null) {
+          return other; // Read concurrently.
+        }
+        if(mod != modcount) {
+          return page; // Possibly stale, do not cache.
+        }
+        victims = put(pageID, page);
+      }
+      writeBack(victims);
+      return page;
+    }
+
+    /**
+     * Find a page in the queues, or pending to be written.
+     *
+     * @param pageID Page id
+     * @return Page, or {@code null}
+     */
+    private P lookup(int pageID) {
+      P page = main.get(pageID); // Moves to the front
+      if(page == null) {
+        page = in.get(pageID); // Does not change order
+      }
+      return page != null ? page : writing.get(pageID);
+    }
+
+    /**
+     * Insert or update a page, then write evicted pages.
+     *
+     * @param pageID Page id
+     * @param page Page
+     */
+    void write(int pageID, P page) {
+      final List<P> victims;
+      synchronized(this) {
+        ++modcount;
+        writing.remove(pageID); // Superseded
+        victims = put(pageID, page);
+      }
+      writeBack(victims);
+    }
+
+    /**
+     * Insert or update a page. Evicted dirty pages are added to the pending
+     * writes, and must be written using {@link #writeBack} by the caller,
+     * after releasing the lock.
+     *
+     * @param pageID Page id
+     * @param page Page
+     * @return Dirty pages to write
+     */
+    private List<P> put(int pageID, P page) {
+      if(main.containsKey(pageID)) {
+        main.put(pageID, page);
+        return Collections.emptyList();
+      }
+      if(in.containsKey(pageID)) {
+        in.put(pageID, page);
+        return Collections.emptyList();
+      }
+      // Promote pages that were evicted recently, otherwise start in FIFO.
+      (ghost.remove(pageID) ? main : in).put(pageID, page);
+      List<P> victims = null;
+      while(in.size() + main.size() > capacity) {
+        final P victim;
+        if(in.size() > kin || main.isEmpty()) {
+          victim = removeFirst(in);
+          ghost.add(victim.getPageID());
+          if(ghost.size() > kout) {
+            Iterator<Integer> it = ghost.iterator();
+            it.next();
+            it.remove();
+          }
+        }
+        else {
+          victim = removeFirst(main);
+        }
+        if(evictions != null) {
+          evictions.increment();
+        }
+        if(victim.isDirty()) {
+          writing.put(victim.getPageID(), victim);
+          if(victims == null) {
+            victims = new ArrayList<>();
+          }
+          victims.add(victim);
+        }
+      }
+      return victims != null ? victims : Collections.emptyList();
+    }
+
+    /**
+     * Write evicted pages to the backing file, without holding the lock of the
+     * stripe. Pages that were taken back into the cache or superseded in the
+     * meantime are skipped.
+     *
+     * @param victims Pages to write
+     */
+    private void writeBack(List<P> victims) {
+      if(victims.isEmpty()) {
+        return;
+      }
+      synchronized(io) {
+        for(P victim : victims) {
+          final Integer id = victim.getPageID();
+          synchronized(this) {
+            if(writing.get(id) != victim) {
+              continue;
+            }
+          }
+          expirePage(victim);
+          synchronized(this) {
+            // If written again in the meantime, it must stay dirty.
+            if(!writing.remove(id, victim) && (main.get(id) == victim || in.get(id) == victim)) {
+              victim.setDirty(true);
+            }
+          }
+        }
+      }
+    }
+
+    /**
+     * Remove the first entry of a queue.
+     *
+     * @param queue Queue
+     * @return Removed page
+     */
+    private P removeFirst(LinkedHashMap<Integer, P> queue) {
+      Iterator<Map.Entry<Integer, P>> it = queue.entrySet().iterator();
+      P page = it.next().getValue();
+      it.remove();
+      return page;
+    }
+
+    /**
+     * Remove a page.
+     *
+     * @param pageID Page id
+     */
+    void remove(int pageID) {
+      synchronized(io) { // Wait for a pending write of the page
+        synchronized(this) {
+          if(main.remove(pageID) == null) {
+            in.remove(pageID);
+          }
+          ghost.remove(pageID);
+          writing.remove(pageID);
+        }
+      }
+    }
+
+    /**
+     * Write all pages and clear the stripe.
+     */
+    void flush() {
+      final List<P> dirty = new ArrayList<>();
+      synchronized(this) {
+        for(P page : in.values()) {
+          if(page.isDirty()) {
+            dirty.add(page);
+          }
+        }
+        for(P page : main.values()) {
+          if(page.isDirty()) {
+            dirty.add(page);
+          }
+        }
+        for(P page : dirty) {
+          writing.put(page.getPageID(), page);
+        }
+        in.clear();
+        main.clear();
+        ghost.clear();
+      }
+      writeBack(dirty);
+    }
+
+    /**
+     * Clear the stripe.
+     */
+    synchronized void clear() {
+      in.clear();
+      main.clear();
+      ghost.clear();
+      writing.clear();
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import elki.index.tree.TreeIndexHeader;
+
+/**
+ * Test the persistent page file, including reading the legacy page layout.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class PersistentPageFileTest {
+  /**
+   * Page size to use.
+   */
+  private static final int PAGESIZE = 256;
+
+  @Test
+  public void testReadWrite() throws IOException {
+    Path dir = Files.createTempDirectory("ELKIUnitTest");
+    Path path = dir.resolve("pages");
+    try {
+      PersistentPageFile<TestPage> file = new PersistentPageFile<>(PAGESIZE, path, TestPage.class);
+      file.initialize(new TreeIndexHeader(PAGESIZE, 1, 1, 1, 1));
+      int id1 = file.writePage(new TestPage(new double[] { 1., 2., 3. }, "first"));
+      int id2 = file.writePage(new TestPage(new double[] { 4., 5. }, "second"));
+      int id3 = file.writePage(new TestPage(new double[] { 6. }, "third"));
+      file.deletePage(id3);
+      TestPage p1 = file.readPage(id1);
+      assertArrayEquals(new double[] { 1., 2., 3. }, p1.values, 0.);
+      assertEquals("first", p1.label);
+      assertArrayEquals(new double[] { 4., 5. }, file.readPage(id2).values, 0.);
+      assertEquals("second", file.readPage(id2).label);
+      assertNull(file.readPage(id3));
+      file.close();
+    }
+    finally {
+      Files.deleteIfExists(path);
+      Files.delete(dir);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOversized() throws IOException {
+    Path dir = Files.createTempDirectory("ELKIUnitTest");
+    Path path = dir.resolve("pages");
+    try {
+      PersistentPageFile<TestPage> file = new PersistentPageFile<>(PAGESIZE, path, TestPage.class);
+      file.initialize(new TreeIndexHeader(PAGESIZE, 1, 1, 1, 1));
+      file.writePage(new TestPage(new double[PAGESIZE], "too large"));
+    }
+    finally {
+      Files.deleteIfExists(path);
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  public void testLegacyMigration() throws IOException {
+    Path dir = Files.createTempDirectory("ELKIUnitTest");
+    Path path = dir.resolve("pages");
+    try {
+      PersistentPageFile<TestPage> file = new PersistentPageFile<>(PAGESIZE, path, TestPage.class);
+      file.initialize(new TreeIndexHeader(PAGESIZE, 1, 1, 1, 1));
+      int id = file.writePage(new TestPage(new double[] { 0. }, "placeholder"));
+      final long offset = (file.getHeader().getReservedPages() + id) * (long) PAGESIZE;
+
+      // Overwrite with a page in the legacy serialization layout.
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+        oos.writeInt(1);
+        TestPage legacy = new TestPage(new double[] { 7., 8. }, "legacy");
+        legacy.setPageID(id);
+        legacy.writeExternal(oos);
+      }
+      file.getFile().write(ByteBuffer.wrap(baos.toByteArray()), offset);
+
+      TestPage page = file.readPage(id);
+      assertArrayEquals(new double[] { 7., 8. }, page.values, 0.);
+      assertEquals("legacy", page.label);
+      // The page must have been rewritten in the current layout.
+      ByteBuffer buf = ByteBuffer.allocate(4);
+      file.getFile().read(buf, offset);
+      assertEquals("Page not migrated.", 1, buf.getInt(0));
+      assertEquals("legacy", file.readPage(id).label);
+      file.close();
+    }
+    finally {
+      Files.deleteIfExists(path);
+      Files.delete(dir);
+    }
+  }
+
+  /**
+   * Simple page for testing.
+   *
+   * @author Erich Schubert
+   */
+  public static class TestPage extends AbstractExternalizablePage implements ExternalizablePage {
+    /**
+     * Page contents.
+     */
+    double[] values;
+
+    /**
+     * Page label.
+     */
+    String label;
+
+    /**
+     * Empty constructor for Externalizable interface.
+     */
+    public TestPage() {
+      super();
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param values Values
+     * @param label Label
+     */
+    public TestPage(double[] values, String label) {
+      super();
+      this.values = values;
+      this.label = label;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+      super.writeExternal(out);
+      out.writeInt(values.length);
+      for(double v : values) {
+        out.writeDouble(v);
+      }
+      out.writeUTF(label);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+      super.readExternal(in);
+      values = new double[in.readInt()];
+      for(int i = 0; i < values.length; i++) {
+        values[i] = in.readDouble();
+      }
+      label = in.readUTF();
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2019
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import elki.persistent.PersistentPageFileTest.TestPage;
+
+/**
+ * Test the 2Q page cache.
+ *
+ * @author Erich Schubert
+ * @since 0.8.0
+ */
+public class TwoQueueCacheTest {
+  /**
+   * Page size to use.
+   */
+  private static final int PAGESIZE = 100;
+
+  @Test
+  public void testWriteBack() {
+    CountingPageFile backing = new CountingPageFile();
+    TwoQueueCache<TestPage> cache = new TwoQueueCache<>(20 * PAGESIZE, backing);
+    cache.initialize(new DefaultPageHeader(PAGESIZE));
+    TestPage[] pages = new TestPage[100];
+    for(int i = 0; i < pages.length; i++) {
+      pages[i] = new TestPage(new double[] { i }, "page " + i);
+      assertEquals("Page id", i, cache.writePage(pages[i]));
+    }
+    // Evicted pages must have been written to the backing file.
+    for(int i = 0; i < pages.length; i++) {
+      assertSame("Page lost", pages[i], cache.readPage(i));
+    }
+    cache.deletePage(42);
+    assertNull("Page not deleted", cache.readPage(42));
+    cache.flush();
+    assertSame("Page lost", pages[99], backing.readPage(99));
+  }
+
+  @Test
+  public void testScanResistance() {
+    CountingPageFile backing = new CountingPageFile();
+    for(int i = 0; i < 1000; i++) {
+      backing.writePage(new TestPage(new double[] { i }, "page " + i));
+    }
+    TwoQueueCache<TestPage> cache = new TwoQueueCache<>(64 * PAGESIZE, backing);
+    cache.initialize(new DefaultPageHeader(PAGESIZE));
+    // Access the hot pages, then other pages, then the hot pages again.
+    for(int i = 0; i < 8; i++) {
+      cache.readPage(i);
+    }
+    for(int i = 100; i < 164; i++) {
+      cache.readPage(i);
+    }
+    for(int i = 0; i < 8; i++) {
+      cache.readPage(i);
+    }
+    // A long sequential scan must not evict the hot pages.
+    for(int i = 500; i < 1000; i++) {
+      cache.readPage(i);
+    }
+    backing.reads.set(0);
+    for(int i = 0; i < 8; i++) {
+      assertEquals("Wrong page", i, (int) cache.readPage(i).values[0]);
+    }
+    assertEquals("Hot pages were evicted by the scan.", 0, backing.reads.get());
+  }
+
+  @Test
+  public void testConcurrentReads() throws InterruptedException {
+    CountingPageFile backing = new CountingPageFile();
+    for(int i = 0; i < 1000; i++) {
+      backing.writePage(new TestPage(new double[] { i }, "page " + i));
+    }
+    TwoQueueCache<TestPage> cache = new TwoQueueCache<>(256 * PAGESIZE, backing);
+    cache.initialize(new DefaultPageHeader(PAGESIZE));
+    AtomicInteger errors = new AtomicInteger();
+    Thread[] threads = new Thread[4];
+    for(int t = 0; t < threads.length; t++) {
+      final int seed = t;
+      threads[t] = new Thread(() -> {
+        for(int i = 0; i < 10000; i++) {
+          final int id = (i * 31 + seed * 17) % 1000;
+          if((int) cache.readPage(id).values[0] != id) {
+            errors.incrementAndGet();
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for(Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals("Wrong pages returned.", 0, errors.get());
+  }
+
+  @Test
+  public void testConcurrentWrites() throws InterruptedException {
+    CountingPageFile backing = new CountingPageFile();
+    for(int i = 0; i < 1000; i++) {
+      backing.writePage(new TestPage(new double[] { i, 0 }, "page " + i));
+    }
+    TwoQueueCache<TestPage> cache = new TwoQueueCache<>(64 * PAGESIZE, backing);
+    cache.initialize(new DefaultPageHeader(PAGESIZE));
+    AtomicInteger errors = new AtomicInteger();
+    Thread[] threads = new Thread[4];
+    for(int t = 0; t < threads.length; t++) {
+      final int seed = t;
+      threads[t] = new Thread(() -> {
+        for(int i = 0; i < 10000; i++) {
+          final int id = (i * 31 + seed * 17) % 1000;
+          TestPage page = cache.readPage(id);
+          if((int) page.values[0] != id) {
+            errors.incrementAndGet();
+          }
+          // Each thread modifies its own pages only.
+          if(id % threads.length == seed) {
+            TestPage updated = new TestPage(new double[] { id, page.values[1] + 1 }, page.label);
+            updated.setPageID(id);
+            cache.writePage(updated);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for(Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals("Wrong pages returned.", 0, errors.get());
+    // Every page must have seen all updates, once written back.
+    int[] updates = new int[1000];
+    for(int t = 0; t < threads.length; t++) {
+      for(int i = 0; i < 10000; i++) {
+        final int id = (i * 31 + t * 17) % 1000;
+        updates[id] += id % threads.length == t ? 1 : 0;
+      }
+    }
+    cache.flush();
+    for(int i = 0; i < 1000; i++) {
+      assertEquals("Lost update of page " + i, updates[i], (int) backing.readPage(i).values[1]);
+    }
+  }
+
+  /**
+   * Memory page file counting reads.
+   *
+   * @author Erich Schubert
+   */
+  private static class CountingPageFile extends MemoryPageFile<TestPage> {
+    /**
+     * Number of reads.
+     */
+    AtomicInteger reads = new AtomicInteger();
+
+    /**
+     * Constructor.
+     */
+    CountingPageFile() {
+      super(PAGESIZE);
+    }
+
+    @Override
+    public synchronized TestPage readPage(int pageID) {
+      reads.incrementAndGet();
+      return super.readPage(pageID);
+    }
+  }
+}